@@ -0,0 +1,105 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import com.betfair.platform.virtualheap.projection.BooleanScalarProjection;
+import com.betfair.platform.virtualheap.updates.SetBooleanScalar;
+import com.betfair.platform.virtualheap.updates.SetScalar;
+
+/**
+ * A scalar node holding an unboxed {@code boolean}, which starts out as false rather than null.
+ */
+public class BooleanScalarNode extends ScalarNode<Boolean> implements BooleanScalarProjection {
+
+    boolean booleanValue;
+
+    BooleanScalarNode(int id, MutableHeap heap) {
+        super(id, heap);
+    }
+
+    public boolean getBoolean() {
+        return booleanValue;
+    }
+
+    public void setBoolean(boolean newValue) {
+        setBoolean(false, newValue);
+    }
+
+    void setBoolean(boolean fromListener, boolean newValue) {
+        if (!fromListener) {
+            beforeMutation();
+        }
+        if (booleanValue == newValue) {
+            return;
+        }
+
+        booleanValue = newValue;
+        heap.emitSetBooleanScalar(this.id, newValue);
+    }
+
+    @Override
+    void set(boolean fromListener, Boolean newValue) {
+        if (newValue == null) {
+            throw new IllegalArgumentException("Can't set a " + getType() + " node to null");
+        }
+        setBoolean(fromListener, newValue);
+    }
+
+    @Override
+    public Boolean get() {
+        return getBoolean();
+    }
+
+    @Override
+    void recycle() {
+        super.recycle();
+        booleanValue = false;
+    }
+
+    @Override
+    SetScalar toUpdate() {
+        return new SetBooleanScalar(this.id, getBoolean());
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(getBoolean());
+    }
+
+    @Override
+    public NodeType getType() {
+        return NodeType.BOOLEAN;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        BooleanScalarNode that = (BooleanScalarNode) o;
+
+        return getBoolean() == that.getBoolean();
+    }
+
+    @Override
+    public int hashCode() {
+        return getBoolean() ? 1231 : 1237;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import com.betfair.platform.virtualheap.projection.DoubleScalarProjection;
+import com.betfair.platform.virtualheap.updates.SetDoubleScalar;
+import com.betfair.platform.virtualheap.updates.SetScalar;
+
+/**
+ * A scalar node holding an unboxed {@code double}, which starts out as 0 rather than null.
+ */
+public class DoubleScalarNode extends ScalarNode<Double> implements DoubleScalarProjection {
+
+    double doubleValue;
+
+    DoubleScalarNode(int id, MutableHeap heap) {
+        super(id, heap);
+    }
+
+    public double getDouble() {
+        return doubleValue;
+    }
+
+    public void setDouble(double newValue) {
+        setDouble(false, newValue);
+    }
+
+    void setDouble(boolean fromListener, double newValue) {
+        if (!fromListener) {
+            beforeMutation();
+        }
+        if (Double.doubleToLongBits(doubleValue) == Double.doubleToLongBits(newValue)) {
+            return;
+        }
+
+        doubleValue = newValue;
+        heap.emitSetDoubleScalar(this.id, newValue);
+    }
+
+    @Override
+    void set(boolean fromListener, Double newValue) {
+        if (newValue == null) {
+            throw new IllegalArgumentException("Can't set a " + getType() + " node to null");
+        }
+        setDouble(fromListener, newValue);
+    }
+
+    @Override
+    public Double get() {
+        return getDouble();
+    }
+
+    @Override
+    void recycle() {
+        super.recycle();
+        doubleValue = 0;
+    }
+
+    @Override
+    SetScalar toUpdate() {
+        return new SetDoubleScalar(this.id, getDouble());
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(getDouble());
+    }
+
+    @Override
+    public NodeType getType() {
+        return NodeType.DOUBLE;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        DoubleScalarNode that = (DoubleScalarNode) o;
+
+        return Double.doubleToLongBits(getDouble()) == Double.doubleToLongBits(that.getDouble());
+    }
+
+    @Override
+    public int hashCode() {
+        long bits = Double.doubleToLongBits(getDouble());
+        return (int) (bits ^ (bits >>> 32));
+    }
+}
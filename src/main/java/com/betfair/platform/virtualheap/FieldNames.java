@@ -0,0 +1,236 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * JVM wide table of field names, each given a small int symbol the first time it is seen. Map nodes key their
+ * children on these symbols and field updates carry them, so a name repeated across thousands of nodes is held once
+ * and looked up without hashing or comparing strings.
+ * <p/>
+ * The table holds each name's canonical instance only weakly, so map keys which come from data rather than from a
+ * bounded vocabulary don't accumulate: once nothing holds a name's canonical instance, its entry is dropped and its
+ * symbol is handed out again. A symbol therefore only stands for its name while the canonical instance is reachable,
+ * and whatever keeps a symbol must keep that instance too, taking it from {@link #intern(String)} before asking for the
+ * symbol. Nodes, updates, snapshots and the wire codecs all do, so a symbol read from any of them always resolves.
+ * <p/>
+ * Lookups take no lock. Allocation is synchronized, and is where entries whose names have been collected are cleared.
+ */
+public final class FieldNames {
+
+    /**
+     * The symbol standing for no name at all.
+     */
+    public static final int NONE = -1;
+
+    private static final int INITIAL_SLOTS = 512;
+
+    private static final ReferenceQueue<String> collected = new ReferenceQueue<String>();
+
+    // open addressing on the names' hashes, kept under half full. Entries are never removed in place, so that lookups
+    // can probe without a lock; the table is rebuilt without its collected entries instead, once they've filled it
+    private static volatile Entry[] byName = new Entry[INITIAL_SLOTS];
+    // indexed by symbol
+    private static volatile Entry[] bySymbol = new Entry[256];
+
+    // the rest are guarded by the class lock
+    private static int usedSlots;
+    private static int live;
+    private static int nextSymbol;
+    private static int[] freeSymbols = new int[16];
+    private static int freeCount;
+
+    private FieldNames() {
+    }
+
+    /**
+     * @return the canonical instance of the given name, which keeps its symbol allocated for as long as it's reachable
+     */
+    public static String intern(String name) {
+        if (name == null) {
+            return null;
+        }
+        Entry entry = find(byName, name);
+        if (entry != null) {
+            String canonical = entry.get();
+            if (canonical != null) {
+                return canonical;
+            }
+        }
+        while (true) {
+            // the entry found may lose its name to the collector in between, in which case another is allocated
+            String canonical = allocate(name).get();
+            if (canonical != null) {
+                return canonical;
+            }
+        }
+    }
+
+    /**
+     * @param name the name, which should be the instance returned by {@link #intern(String)} if the symbol is to be
+     * kept, since the symbol is only reserved while that instance is reachable
+     * @return the symbol for the given name, allocating one if the name has no symbol at the moment
+     */
+    public static int symbolFor(String name) {
+        if (name == null) {
+            return NONE;
+        }
+        Entry entry = find(byName, name);
+        if (entry != null && entry.get() != null) {
+            return entry.symbol;
+        }
+        // an allocated entry holds the instance given, which the caller holds for as long as it needs the symbol
+        return allocate(name).symbol;
+    }
+
+    /**
+     * @return the symbol for the given name, or {@link #NONE} if the name has no symbol at the moment
+     */
+    public static int lookup(String name) {
+        if (name == null) {
+            return NONE;
+        }
+        Entry entry = find(byName, name);
+        return entry != null && entry.get() != null ? entry.symbol : NONE;
+    }
+
+    /**
+     * @return the canonical name the given symbol stands for, or null if it stands for none
+     */
+    public static String nameOf(int symbol) {
+        if (symbol == NONE) {
+            return null;
+        }
+        Entry[] entries = bySymbol;
+        Entry entry = symbol < entries.length ? entries[symbol] : null;
+        return entry != null ? entry.get() : null;
+    }
+
+    /**
+     * @return the number of names holding a symbol
+     */
+    public static synchronized int size() {
+        expunge();
+        return live;
+    }
+
+    private static Entry find(Entry[] table, String name) {
+        int hash = hash(name);
+        int mask = table.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            Entry entry = table[slot];
+            if (entry == null) {
+                return null;
+            }
+            if (entry.hash == hash && name.equals(entry.get())) {
+                return entry;
+            }
+        }
+    }
+
+    private static synchronized Entry allocate(String name) {
+        expunge();
+        Entry[] table = byName;
+        Entry entry = find(table, name);
+        if (entry != null && entry.get() != null) {
+            return entry;
+        }
+
+        int symbol = freeCount > 0 ? freeSymbols[--freeCount] : nextSymbol++;
+        entry = new Entry(name, symbol, hash(name));
+        Entry[] symbols = bySymbol;
+        if (symbol >= symbols.length) {
+            Entry[] grown = new Entry[symbols.length * 2];
+            System.arraycopy(symbols, 0, grown, 0, symbols.length);
+            symbols = grown;
+        }
+        symbols[symbol] = entry;
+        // publish the name before the symbol, so that whoever reads the symbol can resolve it
+        bySymbol = symbols;
+
+        if ((usedSlots + 1) * 2 > table.length) {
+            table = rebuild(table);
+        }
+        insert(table, entry);
+        usedSlots++;
+        live++;
+        byName = table;
+        return entry;
+    }
+
+    // copies the entries whose names are still reachable into a table sized for them, readers carrying on with the old
+    private static Entry[] rebuild(Entry[] table) {
+        int slots = INITIAL_SLOTS;
+        while (slots < (live + 1) * 4) {
+            slots *= 2;
+        }
+        Entry[] rebuilt = new Entry[slots];
+        usedSlots = 0;
+        for (Entry entry : table) {
+            if (entry != null && entry.get() != null) {
+                insert(rebuilt, entry);
+                usedSlots++;
+            }
+        }
+        return rebuilt;
+    }
+
+    private static void insert(Entry[] table, Entry entry) {
+        int mask = table.length - 1;
+        int slot = entry.hash & mask;
+        while (table[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = entry;
+    }
+
+    // frees the symbols of the names which have been collected, leaving their entries in the name table to be dropped
+    // when it's next rebuilt
+    private static void expunge() {
+        Entry entry;
+        while ((entry = (Entry) collected.poll()) != null) {
+            if (bySymbol[entry.symbol] == entry) {
+                bySymbol[entry.symbol] = null;
+                if (freeCount == freeSymbols.length) {
+                    int[] grown = new int[freeCount * 2];
+                    System.arraycopy(freeSymbols, 0, grown, 0, freeCount);
+                    freeSymbols = grown;
+                }
+                freeSymbols[freeCount++] = entry.symbol;
+                live--;
+            }
+        }
+    }
+
+    private static int hash(String name) {
+        int h = name.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Entry extends WeakReference<String> {
+
+        final int symbol;
+        final int hash;
+
+        Entry(String name, int symbol, int hash) {
+            super(name, collected);
+            this.symbol = symbol;
+            this.hash = hash;
+        }
+    }
+}
@@ -1,38 +1,43 @@
-/*
- Copyright 2013, The Sporting Exchange Limited
-
- Licensed under the Apache License, Version 2.0 (the "License");
- you may not use this file except in compliance with the License.
- You may obtain a copy of the License at
-
- http://www.apache.org/licenses/LICENSE-2.0
-
- Unless required by applicable law or agreed to in writing, software
- distributed under the License is distributed on an "AS IS" BASIS,
- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- See the License for the specific language governing permissions and
- limitations under the License.
- */
-package com.betfair.platform.virtualheap;
-
-/**
- *
- */
-public interface HListBase<T> extends Iterable<T>, HCollection {
-
-    T get(int index);
-
-    void remove(int index);
-
-    boolean remove(T value);
-
-    void removeLast();
-
-    void removeFirst();
-
-    T peek();
-
-    boolean pop();
-
-    void clear();
-}
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+/**
+ *
+ */
+public interface HListBase<T> extends Iterable<T>, HCollection {
+
+    T get(int index);
+
+    void remove(int index);
+
+    boolean remove(T value);
+
+    void removeLast();
+
+    void removeFirst();
+
+    T peek();
+
+    boolean pop();
+
+    /**
+     * Removes the elements from index {@code from}, inclusive, to index {@code to}, exclusive, in a single update.
+     */
+    void removeRange(int from, int to);
+
+    void clear();
+}
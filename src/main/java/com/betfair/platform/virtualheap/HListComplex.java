@@ -1,30 +1,39 @@
-/*
- Copyright 2013, The Sporting Exchange Limited
-
- Licensed under the Apache License, Version 2.0 (the "License");
- you may not use this file except in compliance with the License.
- You may obtain a copy of the License at
-
- http://www.apache.org/licenses/LICENSE-2.0
-
- Unless required by applicable law or agreed to in writing, software
- distributed under the License is distributed on an "AS IS" BASIS,
- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- See the License for the specific language governing permissions and
- limitations under the License.
- */
-package com.betfair.platform.virtualheap;
-
-/**
- *
- */
-public interface HListComplex<T> extends HListBase<T> {
-
-    T insertAt(int index);
-
-    T addLast();
-
-    T addFirst();
-
-    T push();
-}
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import java.util.List;
+
+/**
+ *
+ */
+public interface HListComplex<T> extends HListBase<T> {
+
+    T insertAt(int index);
+
+    T addLast();
+
+    T addFirst();
+
+    T push();
+
+    /**
+     * Inserts the given number of new elements, the first at the given index, with a single structural update.
+     *
+     * @return the new elements, in list order
+     */
+    List<T> insertRange(int index, int count);
+}
@@ -1,30 +1,42 @@
-/*
- Copyright 2013, The Sporting Exchange Limited
-
- Licensed under the Apache License, Version 2.0 (the "License");
- you may not use this file except in compliance with the License.
- You may obtain a copy of the License at
-
- http://www.apache.org/licenses/LICENSE-2.0
-
- Unless required by applicable law or agreed to in writing, software
- distributed under the License is distributed on an "AS IS" BASIS,
- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- See the License for the specific language governing permissions and
- limitations under the License.
- */
-package com.betfair.platform.virtualheap;
-
-/**
- *
- */
-public interface HListScalar<T> extends HListBase<T> {
-
-    void insertAt(int index, T value);
-
-    void addFirst(T value);
-
-    void addLast(T value);
-
-    void push(T value);
-}
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import java.util.Collection;
+
+/**
+ *
+ */
+public interface HListScalar<T> extends HListBase<T> {
+
+    void insertAt(int index, T value);
+
+    void addFirst(T value);
+
+    void addLast(T value);
+
+    void push(T value);
+
+    /**
+     * Inserts the given values in iteration order, the first at the given index, with a single structural update.
+     */
+    void insertRange(int index, Collection<? extends T> values);
+
+    /**
+     * Appends the given values in iteration order, with a single structural update.
+     */
+    void addAll(Collection<? extends T> values);
+}
@@ -1,209 +1,811 @@
-/*
- Copyright 2013, The Sporting Exchange Limited
-
- Licensed under the Apache License, Version 2.0 (the "License");
- you may not use this file except in compliance with the License.
- You may obtain a copy of the License at
-
- http://www.apache.org/licenses/LICENSE-2.0
-
- Unless required by applicable law or agreed to in writing, software
- distributed under the License is distributed on an "AS IS" BASIS,
- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- See the License for the specific language governing permissions and
- limitations under the License.
- */
-package com.betfair.platform.virtualheap;
-
-import com.betfair.platform.virtualheap.updates.*;
-
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Set;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-
-public abstract class Heap extends ObservableHeap {
-
-    private final String uri;
-
-    protected ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
-
-    private HeapListener meAsListener;
-    protected boolean terminated = false;
-
-    private List<Update> currentUpdates;
-
-    public Heap(String uri) {
-        this.uri = uri;
-    }
-
-    public String getUri() {
-        return uri;
-    }
-
-    /**
-     * Get this heap as a listener. Allows chaining of heaps.
-     */
-    public HeapListener asListener() {
-        if (meAsListener == null) {
-            meAsListener = new HeapListener() {
-
-                @Override
-                public void applyUpdate(UpdateBlock update) {
-                    Heap.this.beginUpdate();
-                    for (Update u : update.list()) {
-                        switch (u.getUpdateType()) {
-                            case INSTALL_ROOT:
-                                InstallRoot installRoot = (InstallRoot) u;
-                                Heap.this.installRoot(true, installRoot.getId(), installRoot.getType());
-                                break;
-                            case INSTALL_FIELD:
-                                InstallField installField = (InstallField) u;
-                                Heap.this.installField(true, installField.getParentId(), installField.getId(),
-                                                       installField.getName(), installField.getType());
-                                break;
-                            case INSTALL_INDEX:
-                                InstallIndex installIndex = (InstallIndex) u;
-                                Heap.this.installIndex(true, installIndex.getParentId(), installIndex.getId(),
-                                                       installIndex.getIndex(), installIndex.getType());
-                                break;
-                            case SET_SCALAR:
-                                SetScalar setScalar = (SetScalar) u;
-                                Heap.this.setScalar(true, setScalar.getId(), setScalar.getValue());
-                                break;
-                            case REMOVE_FIELD:
-                                RemoveField removeField = (RemoveField) u;
-                                Heap.this.removeField(true, removeField.getParentId(), removeField.getId());
-                                break;
-                            case REMOVE_INDEX:
-                                RemoveIndex removeIndex = (RemoveIndex) u;
-                                Heap.this.removeIndex(true, removeIndex.getParentId(), removeIndex.getId());
-                                break;
-                            case REMOVE_CHILDREN:
-                                RemoveChildren removeChildren = (RemoveChildren) u;
-                                Heap.this.removeChildren(true, removeChildren.getId());
-                                break;
-                            case TERMINATE_HEAP:
-                                Heap.this.terminateHeap();
-                                break;
-                            default:
-                                throw new IllegalStateException("Unrecognised update type: "+u.getUpdateType());
-                        }
-                    }
-                    Heap.this.endUpdate();
-                }
-            };
-        }
-        return meAsListener;
-    }
-
-    public void beginUpdate() {
-        lock.writeLock().lock();
-        if (currentUpdates !=null) {
-            throw new IllegalStateException("Heap has current update block, did you finish the previous update?");
-        }
-        currentUpdates = new ArrayList<Update>();
-    }
-
-    public UpdateBlock endUpdate() {
-        try {
-            assertHaveUpdateBlock();
-            UpdateBlock block = new UpdateBlock(currentUpdates);
-            onEndUpdate(block);
-            currentUpdates = null;
-            return block;
-        }
-        finally {
-            lock.writeLock().unlock();
-        }
-    }
-
-    public void terminateHeap() {
-        assertLock();
-        terminated = true;
-        emit(new TerminateHeap());
-    }
-
-    public boolean isTerminated() {
-        return terminated;
-    }
-
-    public void addListener(HeapListener listener, boolean populateWithCurrentState) {
-        if (lock.writeLock().isHeldByCurrentThread()) {
-            throw new IllegalStateException("Listeners cannot be added whilst holding the lock");
-        }
-        lock.readLock().lock();
-        try {
-            // pass the current state to the listener
-            if (populateWithCurrentState) {
-                traverse(listener);
-            }
-            super.addListener(listener);
-        } finally {
-            lock.readLock().unlock();
-        }
-    }
-
-    public abstract boolean isRootInstalled();
-
-    public abstract Node ensureRoot(NodeType type);
-
-    public abstract Node getRoot();
-
-    public abstract void traverse(HeapListener listener);
-
-    // ---- Protected methods
-
-    protected void assertLock() {
-        if (!lock.writeLock().isHeldByCurrentThread()) {
-            throw new IllegalStateException("Lock not held by current thread");
-        }
-    }
-
-    protected void assertNotTerminated() {
-        if (terminated) {
-            throw new IllegalStateException("Heap has been terminated and so can't take further updates");
-        }
-    }
-
-    protected void assertHaveUpdateBlock() {
-        if (currentUpdates ==null) {
-            throw new IllegalStateException("Heap doesn't have a current update block");
-        }
-    }
-
-    protected abstract void removeField(boolean fromListener, int parentId, int id);
-
-    protected abstract void removeIndex(boolean fromListener, int parentId, int id);
-
-    protected abstract void installField(boolean fromListener, int parentId, int id, String name, NodeType type);
-
-    protected abstract void installRoot(boolean fromListener, int id, NodeType type);
-
-    protected abstract void setScalar(boolean fromListener, int id, Object value);
-
-    protected abstract void removeChildren(boolean fromListener, int id);
-
-    protected abstract void installIndex(boolean fromListener, int parentId, int id, int index, NodeType type);
-
-    // --- Package private methods
-
-    void emit(Update delta) {
-        if (currentUpdates ==null) {
-            throw new IllegalStateException("Being asked to emit an delta, yet we don't appear to have started an update");
-        }
-        currentUpdates.add(delta);
-    }
-
-    abstract void assertCanUpdate();
-
-    abstract int allocateId();
-
-    abstract Node allocateNode(int id, NodeType type);
-
-    abstract void deallocateNode(boolean fromListener, Node node, final Set<Integer> deallocatedIds);
-
-    abstract Node getNode(int id);
-
-}
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import com.betfair.platform.virtualheap.codec.UpdateBlockDecoder;
+import com.betfair.platform.virtualheap.codec.UpdateHandler;
+import com.betfair.platform.virtualheap.conflate.Conflater;
+import com.betfair.platform.virtualheap.snapshot.HeapSnapshot;
+import com.betfair.platform.virtualheap.snapshot.SnapshotPublisher;
+import com.betfair.platform.virtualheap.updates.*;
+
+import java.lang.reflect.Field;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import sun.misc.Unsafe;
+
+public abstract class Heap extends ObservableHeap {
+
+    private final String uri;
+
+    protected ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // odd whilst an update is in progress, and so never zero, which is left to mean an update was in progress
+    private final AtomicLong sequence = new AtomicLong(2);
+
+    // for its load fence, where the JVM has one (java 8 on), null elsewhere
+    private static final Unsafe FENCES = loadFences();
+
+    private HeapListener meAsListener;
+    protected boolean terminated = false;
+
+    // the updates of the current update, held flat so that the buffer can be used again for the next
+    private final UpdateBuffer updates = new UpdateBuffer();
+    private boolean updating;
+
+    private static final UpdateHandler[] NO_HANDLERS = new UpdateHandler[0];
+
+    // copied on write, and an array rather than a set so that replaying to them allocates no iterator
+    private volatile UpdateHandler[] handlers = NO_HANDLERS;
+    // guards changes to the handlers, and is never held whilst waiting for anything else
+    private final Object handlersLock = new Object();
+
+    private volatile SnapshotPublisher snapshots;
+
+    // the only thread allowed to update the heap, when it belongs to a HeapActor
+    private volatile Thread owner;
+
+    // whether blocks from a source heap are republished to listeners as they are, rather than re-emitted
+    private volatile boolean passThrough;
+    // the block being applied from a source heap, whilst passing through
+    private UpdateBlock passingThrough;
+
+    private static final UpdateBlock NO_UPDATES = new UpdateBlock();
+    // whether updates go unemitted, as whilst applying an encoded block with nobody listening
+    private boolean muted;
+    private UpdateHandler encodedUpdateApplier;
+
+    public Heap(String uri) {
+        this.uri = uri;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    /**
+     * Get this heap as a listener. Allows chaining of heaps.
+     */
+    public HeapListener asListener() {
+        if (meAsListener == null) {
+            meAsListener = new HeapListener() {
+
+                @Override
+                public void applyUpdate(UpdateBlock update) {
+                    Heap.this.beginUpdate();
+                    if (passThrough) {
+                        passingThrough = update;
+                    }
+                    for (Update u : update.list()) {
+                        Heap.this.apply(u);
+                    }
+                    Heap.this.endUpdate();
+                }
+            };
+        }
+        return meAsListener;
+    }
+
+    /**
+     * When set, a block this heap applies through {@link #asListener()} is passed on to this heap's own listeners
+     * as the very same instance, rather than as a newly built copy of it. Applying the block still updates this heap,
+     * but no updates are created for it, so each hop in a chain of heaps costs no more allocation than the state
+     * itself. Updates made directly to the heap are emitted as usual.
+     */
+    public void setPassThrough(boolean passThrough) {
+        this.passThrough = passThrough;
+    }
+
+    public boolean isPassThrough() {
+        return passThrough;
+    }
+
+    /**
+     * Applies a backlog of blocks from a source heap under a single write lock, emitting them to this heap's
+     * listeners as one combined block. Wrapping {@link #asListener()} in a
+     * {@link com.betfair.platform.virtualheap.dispatch.ConflatingHeapListener} gives the same effect as a draining
+     * listener. When {@link #setPassThrough(boolean) passing through}, the combined block is made up of the given
+     * blocks' own updates.
+     */
+    public UpdateBlock applyAll(List<UpdateBlock> blocks) {
+        return applyAll(blocks, null);
+    }
+
+    /**
+     * As {@link #applyAll(List)}, first merging the blocks with the given conflater so that updates superseded
+     * within the backlog are neither applied nor emitted downstream.
+     * @param conflater the conflater to merge with, or null to apply every update
+     */
+    public UpdateBlock applyAll(List<UpdateBlock> blocks, Conflater conflater) {
+        if (conflater != null && blocks.size() > 1) {
+            blocks = Collections.singletonList(conflater.conflate(blocks.toArray(new UpdateBlock[blocks.size()])));
+        }
+        beginUpdate();
+        if (passThrough) {
+            passingThrough = blocks.size() == 1 ? blocks.get(0) : UpdateBlock.merge(blocks.toArray(new UpdateBlock[blocks.size()]));
+        }
+        for (UpdateBlock block : blocks) {
+            for (Update u : block.list()) {
+                apply(u);
+            }
+        }
+        return endUpdate();
+    }
+
+    /**
+     * Applies the next block in the buffer, as written by a {@link com.betfair.platform.virtualheap.codec.UpdateBlockEncoder},
+     * straight to this heap as it's decoded. No update is created for any of the block's updates, and if nobody is
+     * listening to this heap, none is created to emit either, so a replica at the end of a chain can apply a stream
+     * of blocks with next to no garbage.
+     *
+     * <p/>
+     * If the block can't be read or applied part way through, the update is still ended, and the updates applied
+     * before the failure are emitted as usual, but the stream can't be read any further: see
+     * {@link UpdateBlockDecoder#decode(ByteBuffer, UpdateHandler)}.
+     *
+     * @return the block emitted to this heap's listeners, which is empty if it hasn't any
+     * @throws BufferUnderflowException if the buffer doesn't hold the whole block, in which case nothing is applied
+     */
+    public UpdateBlock applyEncoded(ByteBuffer buffer, UpdateBlockDecoder decoder) {
+        if (!decoder.hasBlock(buffer)) {
+            throw new BufferUnderflowException();
+        }
+        if (encodedUpdateApplier == null) {
+            encodedUpdateApplier = new EncodedUpdateApplier();
+        }
+        UpdateBlock block;
+        beginUpdate();
+        try {
+            muted = !hasListeners() && handlers.length == 0;
+            decoder.decode(buffer, encodedUpdateApplier);
+        }
+        finally {
+            block = endUpdate();
+        }
+        return block;
+    }
+
+    // applies an update received from a heap this one is listening to
+    private void apply(Update u) {
+        switch (u.getUpdateType()) {
+            case INSTALL_ROOT:
+                InstallRoot installRoot = (InstallRoot) u;
+                installRoot(true, installRoot.getId(), installRoot.getType());
+                break;
+            case INSTALL_FIELD:
+                InstallField installField = (InstallField) u;
+                installField(true, installField.getParentId(), installField.getId(),
+                             installField.getName(), installField.getType());
+                break;
+            case INSTALL_INDEX:
+                InstallIndex installIndex = (InstallIndex) u;
+                installIndex(true, installIndex.getParentId(), installIndex.getId(),
+                             installIndex.getIndex(), installIndex.getType());
+                break;
+            case SET_SCALAR:
+                SetScalar setScalar = (SetScalar) u;
+                switch (setScalar.getScalarType()) {
+                    case BOOLEAN:
+                        setBooleanScalar(true, setScalar.getId(), ((SetBooleanScalar) setScalar).getBoolean());
+                        break;
+                    case INTEGER:
+                        setIntScalar(true, setScalar.getId(), ((SetIntScalar) setScalar).getInt());
+                        break;
+                    case LONG:
+                        setLongScalar(true, setScalar.getId(), ((SetLongScalar) setScalar).getLong());
+                        break;
+                    case DOUBLE:
+                        setDoubleScalar(true, setScalar.getId(), ((SetDoubleScalar) setScalar).getDouble());
+                        break;
+                    default:
+                        setScalar(true, setScalar.getId(), setScalar.getValue());
+                }
+                break;
+            case REMOVE_FIELD:
+                RemoveField removeField = (RemoveField) u;
+                removeField(true, removeField.getParentId(), removeField.getId());
+                break;
+            case REMOVE_INDEX:
+                RemoveIndex removeIndex = (RemoveIndex) u;
+                removeIndex(true, removeIndex.getParentId(), removeIndex.getId());
+                break;
+            case REMOVE_CHILDREN:
+                RemoveChildren removeChildren = (RemoveChildren) u;
+                removeChildren(true, removeChildren.getId());
+                break;
+            case TERMINATE_HEAP:
+                terminateHeap();
+                break;
+            case REMAP_IDS:
+                RemapIds remapIds = (RemapIds) u;
+                remapIds(true, remapIds.getFromIds(), remapIds.getToIds());
+                break;
+            case INSTALL_RANGE:
+                InstallRange installRange = (InstallRange) u;
+                installRange(true, installRange.getId(), installRange.getIndex(),
+                             installRange.getChildIds(), installRange.getType());
+                break;
+            case REMOVE_RANGE:
+                RemoveRange removeRange = (RemoveRange) u;
+                removeRange(true, removeRange.getId(), removeRange.getIndex(),
+                            removeRange.getChildIds());
+                break;
+            default:
+                throw new IllegalStateException("Unrecognised update type: "+u.getUpdateType());
+        }
+    }
+
+    public void beginUpdate() {
+        Thread owner = this.owner;
+        if (owner != null && owner != Thread.currentThread()) {
+            throw new IllegalStateException("Heap " + uri + " can only be updated by its owner, " + owner.getName());
+        }
+        lock.writeLock().lock();
+        if (updating) {
+            lock.writeLock().unlock();
+            throw new IllegalStateException("Heap has current update block, did you finish the previous update?");
+        }
+        updating = true;
+        sequence.incrementAndGet();
+    }
+
+    public UpdateBlock endUpdate() {
+        return endUpdate(true);
+    }
+
+    /**
+     * Ends the current update just as {@link #endUpdate()} does, but without returning its block of updates. If
+     * nobody but {@link #addUpdateHandler(UpdateHandler) update handlers} is listening to the heap, no block is created
+     * at all, and neither are any update objects.
+     */
+    public void commit() {
+        endUpdate(false);
+    }
+
+    private UpdateBlock endUpdate(boolean blockWanted) {
+        boolean wasUpdating = updating;
+        try {
+            assertHaveUpdateBlock();
+            UpdateBlock passedThrough = passingThrough;
+            boolean unemitted = muted;
+            passingThrough = null;
+            muted = false;
+            UpdateBlock block = passedThrough;
+            if (block == null && (blockWanted || hasListeners())) {
+                block = unemitted ? NO_UPDATES : new UpdateBlock(updates.copy());
+            }
+            if (block != null) {
+                onEndUpdate(block);
+            }
+            // as with listeners, handlers aren't passed empty blocks
+            if (passedThrough != null ? !passedThrough.isEmpty() : !updates.isEmpty()) {
+                for (UpdateHandler handler : this.handlers) {
+                    if (passedThrough != null) {
+                        passedThrough.replay(handler);
+                    } else {
+                        updates.replay(handler);
+                    }
+                }
+            }
+            return block;
+        }
+        finally {
+            // a failing handler mustn't leave the heap mid update, or with the failed block to emit next time
+            updates.clear();
+            updating = false;
+            if (wasUpdating) {
+                sequence.incrementAndGet();
+            }
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Start an optimistic read of the heap, which takes no lock and, on java 8 or later, writes nothing shared, so never
+     * contends with other readers. Whatever is read must then be checked with {@link #validate(long)}, and thrown away
+     * if that fails. On older JVMs validating a read has to write to the heap's sequence of updates, so optimistic
+     * readers don't wait for each other, nor for a slow reader with a writer queued behind it, but they do contend.
+     * <p/>
+     * An optimistic reader may see the heap half way through an update, so until it is validated anything it has read
+     * may be inconsistent: a structure it walks may throw, or be of the wrong size or type. Reads made this way should
+     * be small, and bounded by something other than what they read; {@link #read(HeapReader)} takes care of the rest.
+     *
+     * @return a stamp to validate the read with, or zero if an update is in progress and the read is bound to fail
+     */
+    public long tryOptimisticRead() {
+        long stamp = sequence.get();
+        return (stamp & 1) == 0 ? stamp : 0;
+    }
+
+    /**
+     * @return true if no update has started since the given stamp was returned by {@link #tryOptimisticRead()}, so
+     * that everything read since is consistent
+     */
+    public boolean validate(long stamp) {
+        if (stamp == 0) {
+            return false;
+        }
+        // a plain re-read of the sequence could be reordered before the reads it validates. The fence orders them
+        // before it, as StampedLock's validation does; without one, writing the sequence back orders them before the
+        // next update's writes instead, as it is the update which starts by moving the sequence on
+        if (FENCES != null) {
+            FENCES.loadFence();
+            return sequence.get() == stamp;
+        }
+        return sequence.get() == stamp && sequence.compareAndSet(stamp, stamp);
+    }
+
+    private static Unsafe loadFences() {
+        try {
+            Unsafe.class.getMethod("loadFence");
+            Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return (Unsafe) field.get(null);
+        } catch (Exception e) {
+            // an older JVM, or one which won't give Unsafe out
+            return null;
+        }
+    }
+
+    /**
+     * Run the given read against the heap, first optimistically and then, if an update got in the way, again under
+     * the read lock. A read which fails part way through because an update changed the heap under it, with any
+     * exception or error, is retried the same way, so the reader needn't guard against seeing the heap half updated;
+     * it must not have side effects beyond its result though, as it may run twice, and it mustn't loop over anything
+     * it reads without a bound, as it may see a structure part way through being changed.
+     */
+    public <T> T read(HeapReader<T> reader) {
+        long stamp = tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T result = reader.read();
+                if (validate(stamp)) {
+                    return result;
+                }
+            } catch (Throwable t) {
+                if (validate(stamp)) {
+                    throw rethrow(t);
+                }
+            }
+        }
+        lock.readLock().lock();
+        try {
+            return reader.read();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // a reader declares no checked exceptions, so anything it throws is unchecked
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        throw (RuntimeException) t;
+    }
+
+    public void terminateHeap() {
+        assertLock();
+        terminated = true;
+        emitTerminateHeap();
+    }
+
+    public boolean isTerminated() {
+        return terminated;
+    }
+
+    public void addListener(HeapListener listener, boolean populateWithCurrentState) {
+        if (lock.writeLock().isHeldByCurrentThread()) {
+            throw new IllegalStateException("Listeners cannot be added whilst holding the lock");
+        }
+        lock.readLock().lock();
+        try {
+            // pass the current state to the listener
+            if (populateWithCurrentState) {
+                traverse(listener);
+            }
+            super.addListener(listener);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a listener, first passing it the current state in blocks of at most chunkSize updates. Unlike
+     * {@link #addListener(HeapListener, boolean)}, the state is read from a {@link #snapshot()} rather than the heap
+     * itself, so writers carry on whilst it's passed on, and their updates are buffered to be replayed after it.
+     * Writers are held up only whilst the last chunk's worth of buffered updates is replayed, or, if they're making
+     * updates faster than the listener takes them, whatever is left after a few rounds of catching up. Enables
+     * snapshots if they aren't already.
+     */
+    public void addListener(HeapListener listener, int chunkSize) {
+        if (lock.writeLock().isHeldByCurrentThread()) {
+            throw new IllegalStateException("Listeners cannot be added whilst holding the lock");
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        enableSnapshots();
+        new ListenerBootstrap(this, listener, chunkSize).run();
+    }
+
+    /**
+     * Add a handler to be given every update made from now on, replayed straight from the heap's buffer at the end of
+     * each update rather than as an {@link UpdateBlock}. A heap listened to only by handlers creates no update objects
+     * when ended with {@link #commit()}. The handler isn't given the heap's current state, nor updates which made no
+     * change. An exception thrown by a handler is thrown on from the end of the update, which has been made all the
+     * same.
+     */
+    public void addUpdateHandler(UpdateHandler handler) {
+        if (lock.writeLock().isHeldByCurrentThread()) {
+            throw new IllegalStateException("Update handlers cannot be added whilst holding the lock");
+        }
+        lock.readLock().lock();
+        try {
+            synchronized (handlersLock) {
+                UpdateHandler[] added = Arrays.copyOf(handlers, handlers.length + 1);
+                added[handlers.length] = handler;
+                handlers = added;
+            }
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a handler. Takes none of the heap's locks, so may be called from a handler or listener.
+     */
+    public void removeUpdateHandler(UpdateHandler handler) {
+        synchronized (handlersLock) {
+            List<UpdateHandler> remaining = new ArrayList<UpdateHandler>(Arrays.asList(handlers));
+            if (remaining.remove(handler)) {
+                handlers = remaining.toArray(new UpdateHandler[remaining.size()]);
+            }
+        }
+    }
+
+    /**
+     * Start publishing a snapshot of this heap at the end of every update, so that it can be read with
+     * {@link #snapshot()} without taking the heap's lock. Does nothing if snapshots are already enabled.
+     */
+    public void enableSnapshots() {
+        if (snapshots != null) {
+            return;
+        }
+        if (lock.writeLock().isHeldByCurrentThread()) {
+            throw new IllegalStateException("Snapshots cannot be enabled whilst holding the lock");
+        }
+        // the read lock is always taken before the monitor, never whilst holding it, so the two can't be taken in
+        // opposite orders by two threads
+        lock.readLock().lock();
+        try {
+            synchronized (this) {
+                if (snapshots == null) {
+                    SnapshotPublisher publisher = new SnapshotPublisher();
+                    addListener(publisher, true);
+                    snapshots = publisher;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the heap as it was at the end of the latest update. Never blocks, and the snapshot returned never changes,
+     * however the heap is updated afterwards.
+     *
+     * @throws IllegalStateException if {@link #enableSnapshots()} hasn't been called
+     */
+    public HeapSnapshot snapshot() {
+        SnapshotPublisher publisher = snapshots;
+        if (publisher == null) {
+            throw new IllegalStateException("Snapshots are not enabled for heap " + uri);
+        }
+        return publisher.snapshot();
+    }
+
+    public abstract boolean isRootInstalled();
+
+    public abstract Node ensureRoot(NodeType type);
+
+    public abstract Node getRoot();
+
+    public abstract void traverse(HeapListener listener);
+
+    // ---- Protected methods
+
+    /**
+     * Gives the heap to a single thread, which is then the only one allowed to update it. As it only ever updates the
+     * heap whilst holding the write lock, mutations needn't check for the lock.
+     */
+    void setOwner(Thread owner) {
+        this.owner = owner;
+    }
+
+    protected void assertLock() {
+        if (owner != Thread.currentThread() && !lock.writeLock().isHeldByCurrentThread()) {
+            throw new IllegalStateException("Lock not held by current thread");
+        }
+    }
+
+    protected void assertNotTerminated() {
+        if (terminated) {
+            throw new IllegalStateException("Heap has been terminated and so can't take further updates");
+        }
+    }
+
+    protected void assertHaveUpdateBlock() {
+        if (!updating) {
+            throw new IllegalStateException("Heap doesn't have a current update block");
+        }
+    }
+
+    protected abstract void removeField(boolean fromListener, int parentId, int id);
+
+    protected abstract void removeIndex(boolean fromListener, int parentId, int id);
+
+    protected abstract void installField(boolean fromListener, int parentId, int id, String name, NodeType type);
+
+    protected abstract void installRoot(boolean fromListener, int id, NodeType type);
+
+    protected abstract void setScalar(boolean fromListener, int id, Object value);
+
+    protected abstract void setBooleanScalar(boolean fromListener, int id, boolean value);
+
+    protected abstract void setIntScalar(boolean fromListener, int id, int value);
+
+    protected abstract void setLongScalar(boolean fromListener, int id, long value);
+
+    protected abstract void setDoubleScalar(boolean fromListener, int id, double value);
+
+    protected abstract void removeChildren(boolean fromListener, int id);
+
+    protected abstract void installIndex(boolean fromListener, int parentId, int id, int index, NodeType type);
+
+    protected abstract void remapIds(boolean fromListener, int[] from, int[] to);
+
+    protected abstract void installRange(boolean fromListener, int parentId, int index, int[] ids, NodeType type);
+
+    protected abstract void removeRange(boolean fromListener, int parentId, int index, int[] ids);
+
+    // --- Package private methods
+
+    /**
+     * Whether the updates made to the heap are to be emitted, which they're not whilst a source heap's block is
+     * being passed through, or an encoded block is applied with nobody listening.
+     */
+    boolean isEmitting() {
+        return passingThrough == null && !muted;
+    }
+
+    boolean isPassingThrough() {
+        return passingThrough != null;
+    }
+
+    void emit(Update delta) {
+        if (canEmit()) {
+            updates.add(delta);
+        }
+    }
+
+    // the emit methods below record updates straight into the buffer, so that emitting allocates nothing
+
+    void emitInstallRoot(int id, NodeType type) {
+        if (canEmit()) {
+            updates.addInstallRoot(id, type);
+        }
+    }
+
+    void emitInstallField(int parentId, int id, int symbol, NodeType type) {
+        if (canEmit()) {
+            updates.addInstallField(parentId, id, symbol, type);
+        }
+    }
+
+    void emitInstallIndex(int parentId, int id, int index, NodeType type) {
+        if (canEmit()) {
+            updates.addInstallIndex(parentId, id, index, type);
+        }
+    }
+
+    void emitInstallRange(int parentId, int index, int[] ids, NodeType type) {
+        if (canEmit()) {
+            updates.addInstallRange(parentId, index, ids, type);
+        }
+    }
+
+    void emitRemoveField(int parentId, int id, int symbol, IntSet deallocatedIds) {
+        if (canEmit()) {
+            updates.addRemoveField(parentId, id, symbol, deallocatedIds);
+        }
+    }
+
+    void emitRemoveIndex(int parentId, int id, int index, IntSet deallocatedIds) {
+        if (canEmit()) {
+            updates.addRemoveIndex(parentId, id, index, deallocatedIds);
+        }
+    }
+
+    void emitRemoveRange(int parentId, int index, int[] ids, IntSet deallocatedIds) {
+        if (canEmit()) {
+            updates.addRemoveRange(parentId, index, ids, deallocatedIds);
+        }
+    }
+
+    void emitRemoveChildren(int id, IntSet deallocatedIds) {
+        if (canEmit()) {
+            updates.addRemoveChildren(id, deallocatedIds);
+        }
+    }
+
+    void emitSetScalar(int id, Object value) {
+        if (canEmit()) {
+            updates.addSetScalar(id, value);
+        }
+    }
+
+    void emitSetBooleanScalar(int id, boolean value) {
+        if (canEmit()) {
+            updates.addSetBooleanScalar(id, value);
+        }
+    }
+
+    void emitSetIntScalar(int id, int value) {
+        if (canEmit()) {
+            updates.addSetIntScalar(id, value);
+        }
+    }
+
+    void emitSetLongScalar(int id, long value) {
+        if (canEmit()) {
+            updates.addSetLongScalar(id, value);
+        }
+    }
+
+    void emitSetDoubleScalar(int id, double value) {
+        if (canEmit()) {
+            updates.addSetDoubleScalar(id, value);
+        }
+    }
+
+    void emitRemapIds(int[] from, int[] to) {
+        if (canEmit()) {
+            updates.addRemapIds(from, to);
+        }
+    }
+
+    void emitTerminateHeap() {
+        if (canEmit()) {
+            updates.addTerminateHeap();
+        }
+    }
+
+    private boolean canEmit() {
+        if (!updating) {
+            throw new IllegalStateException("Being asked to emit an delta, yet we don't appear to have started an update");
+        }
+        return isEmitting();
+    }
+
+    abstract void assertCanUpdate();
+
+    abstract int allocateId();
+
+    abstract Node allocateNode(int id, NodeType type);
+
+    abstract void deallocateNode(boolean fromListener, Node node, final IntSet deallocatedIds);
+
+    abstract Node getNode(int id);
+
+    abstract int indexOf(Node node);
+
+    // applies the updates of an encoded block as they're decoded
+    private class EncodedUpdateApplier implements UpdateHandler {
+
+        @Override
+        public void beginBlock(int size) {
+        }
+
+        @Override
+        public void endBlock() {
+        }
+
+        @Override
+        public void installRoot(int id, NodeType type) {
+            Heap.this.installRoot(true, id, type);
+        }
+
+        @Override
+        public void installField(int parentId, int id, int symbol, NodeType type) {
+            Heap.this.installField(true, parentId, id, FieldNames.nameOf(symbol), type);
+        }
+
+        @Override
+        public void installIndex(int parentId, int id, int index, NodeType type) {
+            Heap.this.installIndex(true, parentId, id, index, type);
+        }
+
+        @Override
+        public void installRange(int parentId, int index, int[] ids, NodeType type) {
+            Heap.this.installRange(true, parentId, index, ids, type);
+        }
+
+        @Override
+        public void removeField(int parentId, int id, int symbol, IntSet deallocatedIds) {
+            Heap.this.removeField(true, parentId, id);
+        }
+
+        @Override
+        public void removeIndex(int parentId, int id, int index, IntSet deallocatedIds) {
+            Heap.this.removeIndex(true, parentId, id);
+        }
+
+        @Override
+        public void removeRange(int parentId, int index, int[] ids, IntSet deallocatedIds) {
+            Heap.this.removeRange(true, parentId, index, ids);
+        }
+
+        @Override
+        public void removeChildren(int id, IntSet deallocatedIds) {
+            Heap.this.removeChildren(true, id);
+        }
+
+        @Override
+        public void setScalar(int id, Object value) {
+            Heap.this.setScalar(true, id, value);
+        }
+
+        @Override
+        public void setBooleanScalar(int id, boolean value) {
+            Heap.this.setBooleanScalar(true, id, value);
+        }
+
+        @Override
+        public void setIntScalar(int id, int value) {
+            Heap.this.setIntScalar(true, id, value);
+        }
+
+        @Override
+        public void setLongScalar(int id, long value) {
+            Heap.this.setLongScalar(true, id, value);
+        }
+
+        @Override
+        public void setDoubleScalar(int id, double value) {
+            Heap.this.setDoubleScalar(true, id, value);
+        }
+
+        @Override
+        public void remapIds(int[] from, int[] to) {
+            Heap.this.remapIds(true, from, to);
+        }
+
+        @Override
+        public void terminateHeap() {
+            Heap.this.terminateHeap();
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns a heap on behalf of many writing threads. Writers submit {@link HeapWriter}s to the actor's mailbox rather than
+ * updating the heap themselves, and a single thread belonging to the actor applies them, draining as many as are
+ * waiting, up to a limit, into a single update. Writers therefore never wait on the heap's lock or on one another, and
+ * listeners see one block per batch rather than one per writer.
+ * <p/>
+ * Once owned, the heap can't be updated by any other thread, so it mustn't be chained to a source heap. It can still be
+ * read and listened to as usual, as the owning thread holds the write lock for each batch.
+ */
+public class HeapActor {
+
+    private final Heap heap;
+    private final int maxBatch;
+    private final BlockingQueue<Task<?>> mailbox = new LinkedBlockingQueue<Task<?>>();
+    private final Thread owner;
+    private volatile boolean shutdown;
+
+    public HeapActor(Heap heap) {
+        this(heap, 1024);
+    }
+
+    /**
+     * @param maxBatch the most writers applied within a single update
+     */
+    public HeapActor(Heap heap, int maxBatch) {
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException("Invalid batch size: " + maxBatch);
+        }
+        this.heap = heap;
+        this.maxBatch = maxBatch;
+        this.owner = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                HeapActor.this.run();
+            }
+        }, "HeapActor-" + heap.getUri());
+        owner.setDaemon(true);
+        heap.setOwner(owner);
+        owner.start();
+    }
+
+    public Heap getHeap() {
+        return heap;
+    }
+
+    /**
+     * Queues a writer to be applied to the heap. Its future completes once the update it was part of has ended, and
+     * its listeners have been told of it.
+     *
+     * @throws IllegalStateException if the actor has been shut down
+     */
+    public <T> Future<T> submit(HeapWriter<T> writer) {
+        if (shutdown) {
+            throw shutDown();
+        }
+        Task<T> task = new Task<T>(writer);
+        mailbox.add(task);
+        // the owner may have stopped, and failed whatever it found left in the mailbox, since shutdown was checked
+        if (shutdown && mailbox.remove(task)) {
+            throw shutDown();
+        }
+        return task.future;
+    }
+
+    /**
+     * Stops taking writers. Those already submitted are still applied, after which the owning thread stops.
+     */
+    public void shutdown() {
+        if (!shutdown) {
+            shutdown = true;
+            mailbox.add(new Task<Object>(null));
+        }
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Waits for the owning thread to stop after {@link #shutdown()}.
+     *
+     * @return false if the time ran out first
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        owner.join(unit.toMillis(timeout));
+        return !owner.isAlive();
+    }
+
+    private void run() {
+        List<Task<?>> batch = new ArrayList<Task<?>>();
+        try {
+            boolean stopping = false;
+            while (!stopping) {
+                try {
+                    batch.add(mailbox.take());
+                } catch (InterruptedException e) {
+                    // only shutdown stops the owner
+                    continue;
+                }
+                mailbox.drainTo(batch, maxBatch - 1);
+                stopping = apply(batch);
+                batch.clear();
+            }
+        } finally {
+            // however the owner stops, the heap is released and nobody is left waiting on a writer
+            shutdown = true;
+            heap.setOwner(null);
+
+            mailbox.drainTo(batch);
+            for (Task<?> task : batch) {
+                if (task.writer != null) {
+                    task.complete(shutDown());
+                }
+            }
+        }
+    }
+
+    private IllegalStateException shutDown() {
+        return new IllegalStateException("HeapActor for " + heap.getUri() + " has been shut down");
+    }
+
+    // applies a batch of writers in a single update, completing each of them, and returns whether it holds a shutdown
+    private boolean apply(List<Task<?>> batch) {
+        Throwable failure = null;
+        boolean begun = false;
+        try {
+            heap.beginUpdate();
+            begun = true;
+            for (Task<?> task : batch) {
+                if (task.writer != null) {
+                    task.write(heap);
+                }
+            }
+        } catch (Throwable t) {
+            failure = t;
+        } finally {
+            if (begun) {
+                try {
+                    heap.endUpdate();
+                } catch (Throwable t) {
+                    if (failure == null) {
+                        failure = t;
+                    }
+                }
+            }
+        }
+        boolean stopping = false;
+        for (Task<?> task : batch) {
+            if (task.writer == null) {
+                stopping = true;
+            } else {
+                task.complete(failure);
+            }
+        }
+        return stopping;
+    }
+
+    private static final class Task<T> implements Callable<T> {
+        private final HeapWriter<T> writer;
+        private final Completion<T> future = new Completion<T>(this);
+        private T result;
+        private Throwable failure;
+
+        private Task(HeapWriter<T> writer) {
+            this.writer = writer;
+        }
+
+        void write(Heap heap) {
+            if (!future.isCancelled()) {
+                try {
+                    result = writer.write(heap);
+                } catch (Throwable t) {
+                    // anything the writer did before failing still stands
+                    failure = t;
+                }
+            }
+        }
+
+        void complete(Throwable endFailure) {
+            if (failure == null) {
+                failure = endFailure;
+            }
+            if (failure != null) {
+                // set directly, as call() can't throw a throwable which is neither an exception nor an error
+                future.fail(failure);
+            } else {
+                future.run();
+            }
+        }
+
+        @Override
+        public T call() {
+            return result;
+        }
+    }
+
+    private static final class Completion<T> extends FutureTask<T> {
+
+        private Completion(Callable<T> callable) {
+            super(callable);
+        }
+
+        void fail(Throwable failure) {
+            setException(failure);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import com.betfair.platform.virtualheap.codec.UpdateHandlerAdapter;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps track of heaps by {@link Heap#getUri() uri}, for processes which hold very many of them. Lookups never lock,
+ * heaps are created on first use, and a heap is retired from the registry as soon as it is terminated. The registry
+ * only ever locks a single uri's entry whilst creating its heap. Registering a heap briefly takes the heap's read lock
+ * to add the registry's update handler to it, so can't be done by a thread part way through updating that heap;
+ * retiring a heap takes none of its locks.
+ */
+public class HeapRegistry implements Iterable<Heap> {
+
+    private final ConcurrentMap<String, Entry> entries;
+    private final HeapFactory factory;
+
+    public HeapRegistry(HeapFactory factory) {
+        this(factory, 16);
+    }
+
+    /**
+     * @param expectedHeaps the number of heaps to size the registry for
+     */
+    public HeapRegistry(HeapFactory factory, int expectedHeaps) {
+        if (factory == null) {
+            throw new IllegalArgumentException("Factory is required");
+        }
+        this.factory = factory;
+        this.entries = new ConcurrentHashMap<String, Entry>(expectedHeaps);
+    }
+
+    /**
+     * @return the heap with the given uri, or null if there isn't one
+     */
+    public Heap get(String uri) {
+        Entry entry = entries.get(uri);
+        return entry == null ? null : entry.heap;
+    }
+
+    /**
+     * @return the heap with the given uri, created by the registry's factory if there isn't one yet
+     */
+    public Heap getOrCreate(String uri) {
+        return getOrCreate(uri, factory);
+    }
+
+    /**
+     * @return the heap with the given uri, created as a replica of the heap with the source uri, and populated with
+     * its current state, if there isn't one yet
+     * @throws IllegalArgumentException if there's no heap with the source uri
+     */
+    public Heap chain(String uri, String sourceUri) {
+        final Heap source = get(sourceUri);
+        if (source == null) {
+            throw new IllegalArgumentException("No heap registered with uri " + sourceUri);
+        }
+        return getOrCreate(uri, new HeapFactory() {
+            @Override
+            public Heap create(String uri) {
+                return new MutableHeap(uri, source, true);
+            }
+        });
+    }
+
+    private Heap getOrCreate(String uri, HeapFactory factory) {
+        while (true) {
+            Entry entry = entries.get(uri);
+            if (entry == null) {
+                Entry created = new Entry(uri);
+                entry = entries.putIfAbsent(uri, created);
+                if (entry == null) {
+                    entry = created;
+                }
+            }
+            Heap heap = entry.create(factory);
+            // a heap terminated as soon as it was created has already been retired, so is no use to the caller
+            if (heap != null) {
+                return heap;
+            }
+        }
+    }
+
+    /**
+     * Adds a heap created elsewhere.
+     *
+     * @throws IllegalStateException if there's already a heap with the same uri
+     */
+    public void register(Heap heap) {
+        Entry entry = new Entry(heap.getUri());
+        if (entries.putIfAbsent(heap.getUri(), entry) != null) {
+            throw new IllegalStateException("A heap is already registered with uri " + heap.getUri());
+        }
+        entry.install(heap);
+    }
+
+    /**
+     * Removes the heap with the given uri from the registry without terminating it, disconnecting it from the heap it
+     * replicates if it is a chained {@link MutableHeap}.
+     *
+     * @return the heap retired, or null if there wasn't one
+     */
+    public Heap retire(String uri) {
+        Entry entry = entries.get(uri);
+        if (entry == null) {
+            return null;
+        }
+        Heap heap = entry.heap;
+        entry.retire();
+        if (heap != null) {
+            heap.removeUpdateHandler(entry);
+        }
+        if (heap instanceof MutableHeap) {
+            ((MutableHeap) heap).disconnectFromSourceHeap();
+        }
+        return heap;
+    }
+
+    public boolean contains(String uri) {
+        return entries.containsKey(uri);
+    }
+
+    /**
+     * @return the number of heaps registered, which is only an estimate whilst heaps are being created or retired
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Iterates over the heaps registered. As with the registry's other methods, this never locks, and reflects some
+     * of the heaps created or retired whilst iterating.
+     */
+    @Override
+    public Iterator<Heap> iterator() {
+        final Iterator<Entry> it = entries.values().iterator();
+        return new Iterator<Heap>() {
+            private Heap next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && it.hasNext()) {
+                    next = it.next().heap;
+                }
+                return next != null;
+            }
+
+            @Override
+            public Heap next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Heap heap = next;
+                next = null;
+                return heap;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * One uri's place in the registry, which is locked only whilst its heap is created. Retiring it takes no lock, as
+     * that happens whilst its heap is being updated. It watches its heap as an update handler rather than a listener,
+     * so that it neither has update objects created for it nor has every block built.
+     */
+    private class Entry extends UpdateHandlerAdapter {
+        private final String uri;
+        private final AtomicBoolean retired = new AtomicBoolean();
+        private volatile Heap heap;
+
+        private Entry(String uri) {
+            this.uri = uri;
+        }
+
+        synchronized Heap create(HeapFactory factory) {
+            if (heap == null && !retired.get()) {
+                install(factory.create(uri));
+            }
+            return retired.get() ? null : heap;
+        }
+
+        synchronized void install(Heap created) {
+            heap = created;
+            created.addUpdateHandler(this);
+            if (created.isTerminated() || retired.get()) {
+                retire();
+                created.removeUpdateHandler(this);
+            }
+        }
+
+        void retire() {
+            if (retired.compareAndSet(false, true)) {
+                entries.remove(uri, this);
+            }
+        }
+
+        /**
+         * Called at the end of the heap's last update, with its write lock held, so the entry is only retired here:
+         * it stays a handler of the terminated heap, which makes no more updates, and is left for that heap's garbage.
+         */
+        @Override
+        public void terminateHeap() {
+            retire();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+/**
+ * Hands out node ids for a heap, always reusing the lowest previously released id before extending the range.
+ * Released ids are tracked in a bitmap, so neither allocation nor release boxes.
+ */
+final class IdAllocator {
+
+    private long[] released = new long[1];
+    // no released ids are held in words below this one
+    private int lowestWord = 0;
+    private int next = 0;
+
+    int allocate() {
+        for (int w = lowestWord; w < released.length; w++) {
+            long word = released[w];
+            if (word != 0) {
+                int bit = Long.numberOfTrailingZeros(word);
+                released[w] = word & ~(1L << bit);
+                lowestWord = w;
+                return (w << 6) + bit;
+            }
+        }
+        lowestWord = released.length;
+        return next++;
+    }
+
+    void release(int id) {
+        int w = id >>> 6;
+        if (w >= released.length) {
+            long[] grown = new long[Math.max(released.length * 2, w + 1)];
+            System.arraycopy(released, 0, grown, 0, released.length);
+            released = grown;
+        }
+        released[w] |= 1L << id;
+        if (w < lowestWord) {
+            lowestWord = w;
+        }
+    }
+
+    boolean isReleased(int id) {
+        int w = id >>> 6;
+        return w < released.length && (released[w] & (1L << id)) != 0;
+    }
+
+    /**
+     * @return the lowest released id at or above the given one, or -1 if there isn't one
+     */
+    int nextReleased(int from) {
+        int w = Math.max(from >>> 6, lowestWord);
+        if (w >= released.length) {
+            return -1;
+        }
+        long word = w == from >>> 6 ? released[w] & (-1L << from) : released[w];
+        while (true) {
+            if (word != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++w == released.length) {
+                return -1;
+            }
+            word = released[w];
+        }
+    }
+
+    /**
+     * Takes a released id back into use without going through {@link #allocate()}.
+     */
+    void claim(int id) {
+        int w = id >>> 6;
+        if (w < released.length) {
+            released[w] &= ~(1L << id);
+        }
+    }
+
+    /**
+     * Forgets every id at or above the given limit, so that allocation resumes from it.
+     */
+    void truncate(int limit) {
+        int words = (limit + 63) >>> 6;
+        if (words < released.length) {
+            long[] truncated = new long[Math.max(words, 1)];
+            System.arraycopy(released, 0, truncated, 0, words);
+            released = truncated;
+        }
+        if ((limit & 63) != 0 && (limit >>> 6) < released.length) {
+            released[limit >>> 6] &= (1L << limit) - 1;
+        }
+        lowestWord = Math.min(lowestWord, released.length);
+        next = Math.min(next, limit);
+    }
+
+    /**
+     * One past the highest id ever allocated.
+     */
+    int limit() {
+        return next;
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The children of a {@link MapNode}, keyed on {@link FieldNames} symbols and kept in insertion order. Entries are held
+ * in a pair of parallel arrays in the order they were added. Removing an entry leaves a hole which is squeezed out the
+ * next time the arrays fill up.
+ * <p/>
+ * Most maps, and almost every object node, hold only a few fields. Up to {@link #SMALL_CAPACITY} entries lookup is a
+ * linear scan of the keys; only past that is an open addressing index built over them. Nothing at all is allocated
+ * until the first entry is added.
+ */
+final class IntNodeMap {
+
+    static final int SMALL_CAPACITY = 8;
+
+    private static final int INITIAL_CAPACITY = 4;
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+    private Node[] values;
+    // positions in keys and values, EMPTY for a free slot, null while the map is small
+    private int[] index;
+    // one past the last position used, including holes
+    private int end = 0;
+    private int size = 0;
+
+    int size() {
+        return size;
+    }
+
+    Node get(int key) {
+        int position = find(key);
+        return position == EMPTY ? null : values[position];
+    }
+
+    /**
+     * Adds an entry, or replaces the value of an existing one while keeping its position.
+     */
+    void put(int key, Node value) {
+        int position = find(key);
+        if (position != EMPTY) {
+            values[position] = value;
+            return;
+        }
+        if (keys == null) {
+            keys = new int[INITIAL_CAPACITY];
+            values = new Node[INITIAL_CAPACITY];
+        } else if (end == keys.length) {
+            resize(size <= keys.length / 2 ? keys.length : keys.length * 2);
+        }
+        keys[end] = key;
+        values[end] = value;
+        if (index != null) {
+            insertIndex(key, end);
+        }
+        end++;
+        size++;
+    }
+
+    Node remove(int key) {
+        int position;
+        if (index == null) {
+            position = scan(key);
+            if (position == EMPTY) {
+                return null;
+            }
+        } else {
+            int mask = index.length - 1;
+            int slot = slotFor(key, mask);
+            while (true) {
+                position = index[slot];
+                if (position == EMPTY) {
+                    return null;
+                }
+                if (keys[position] == key) {
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            removeIndex(slot);
+        }
+        Node removed = values[position];
+        values[position] = null;
+        size--;
+        if (position == end - 1) {
+            end--;
+        }
+        return removed;
+    }
+
+    void clear() {
+        keys = null;
+        values = null;
+        index = null;
+        end = 0;
+        size = 0;
+    }
+
+    /**
+     * Empties the map but keeps its storage, so that it can be refilled to the same size without reallocating.
+     */
+    void recycle() {
+        if (values != null) {
+            Arrays.fill(values, 0, end, null);
+        }
+        if (index != null) {
+            Arrays.fill(index, EMPTY);
+        }
+        end = 0;
+        size = 0;
+    }
+
+    /**
+     * One past the last position in use. Positions below it hold a value, or null where an entry has been removed.
+     */
+    int end() {
+        return end;
+    }
+
+    int keyAt(int position) {
+        return keys[position];
+    }
+
+    Node valueAt(int position) {
+        return values[position];
+    }
+
+    /**
+     * @return a read only view of the names of the entries, in insertion order
+     */
+    Set<String> names() {
+        return new AbstractSet<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<String>() {
+                    private int position = skipHoles(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return position < end;
+                    }
+
+                    @Override
+                    public String next() {
+                        if (position >= end) {
+                            throw new NoSuchElementException();
+                        }
+                        String name = FieldNames.nameOf(keys[position]);
+                        position = skipHoles(position + 1);
+                        return name;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof String)) {
+                    return false;
+                }
+                int key = FieldNames.lookup((String) o);
+                return key != FieldNames.NONE && find(key) != EMPTY;
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        IntNodeMap that = (IntNodeMap) o;
+
+        if (size != that.size) {
+            return false;
+        }
+        for (int i = 0; i < end; i++) {
+            if (values[i] != null && !values[i].equals(that.get(keys[i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (int i = 0; i < end; i++) {
+            if (values[i] != null) {
+                hash += keys[i] ^ values[i].hashCode();
+            }
+        }
+        return hash;
+    }
+
+    private int skipHoles(int position) {
+        while (position < end && values[position] == null) {
+            position++;
+        }
+        return position;
+    }
+
+    private int find(int key) {
+        if (index == null) {
+            return scan(key);
+        }
+        int mask = index.length - 1;
+        // bounded, as an optimistic reader racing a resize may see an index with no free slot
+        for (int probe = 0, slot = slotFor(key, mask); probe <= mask; probe++, slot = (slot + 1) & mask) {
+            int position = index[slot];
+            if (position == EMPTY || keys[position] == key) {
+                return position;
+            }
+        }
+        return EMPTY;
+    }
+
+    private int scan(int key) {
+        for (int position = 0; position < end; position++) {
+            if (keys[position] == key && values[position] != null) {
+                return position;
+            }
+        }
+        return EMPTY;
+    }
+
+    private void insertIndex(int key, int position) {
+        int mask = index.length - 1;
+        int slot = slotFor(key, mask);
+        while (index[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        index[slot] = position;
+    }
+
+    private void removeIndex(int slot) {
+        // backward shift deletion keeps probe sequences intact without tombstones
+        int mask = index.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; index[next] != EMPTY; next = (next + 1) & mask) {
+            int home = slotFor(keys[index[next]], mask);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                index[hole] = index[next];
+                hole = next;
+            }
+        }
+        index[hole] = EMPTY;
+    }
+
+    /**
+     * Reallocates the entry arrays at the given capacity, squeezing out any holes, and rebuilds the index over them
+     * if the map is no longer small.
+     */
+    private void resize(int capacity) {
+        int[] newKeys = new int[capacity];
+        Node[] newValues = new Node[capacity];
+        int to = 0;
+        for (int from = 0; from < end; from++) {
+            if (values[from] != null) {
+                newKeys[to] = keys[from];
+                newValues[to] = values[from];
+                to++;
+            }
+        }
+        keys = newKeys;
+        values = newValues;
+        end = to;
+        if (capacity <= SMALL_CAPACITY) {
+            index = null;
+            return;
+        }
+        index = newIndex(capacity * 2);
+        for (int i = 0; i < end; i++) {
+            insertIndex(keys[i], i);
+        }
+    }
+
+    private static int[] newIndex(int slots) {
+        int[] index = new int[slots];
+        for (int i = 0; i < slots; i++) {
+            index[i] = EMPTY;
+        }
+        return index;
+    }
+
+    private static int slotFor(int key, int mask) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import com.betfair.platform.virtualheap.projection.IntScalarProjection;
+import com.betfair.platform.virtualheap.updates.SetIntScalar;
+import com.betfair.platform.virtualheap.updates.SetScalar;
+
+/**
+ * A scalar node holding an unboxed {@code int}, which starts out as 0 rather than null.
+ */
+public class IntScalarNode extends ScalarNode<Integer> implements IntScalarProjection {
+
+    int intValue;
+
+    IntScalarNode(int id, MutableHeap heap) {
+        super(id, heap);
+    }
+
+    public int getInt() {
+        return intValue;
+    }
+
+    public void setInt(int newValue) {
+        setInt(false, newValue);
+    }
+
+    void setInt(boolean fromListener, int newValue) {
+        if (!fromListener) {
+            beforeMutation();
+        }
+        if (intValue == newValue) {
+            return;
+        }
+
+        intValue = newValue;
+        heap.emitSetIntScalar(this.id, newValue);
+    }
+
+    @Override
+    void set(boolean fromListener, Integer newValue) {
+        if (newValue == null) {
+            throw new IllegalArgumentException("Can't set a " + getType() + " node to null");
+        }
+        setInt(fromListener, newValue);
+    }
+
+    @Override
+    public Integer get() {
+        return getInt();
+    }
+
+    @Override
+    void recycle() {
+        super.recycle();
+        intValue = 0;
+    }
+
+    @Override
+    SetScalar toUpdate() {
+        return new SetIntScalar(this.id, getInt());
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(getInt());
+    }
+
+    @Override
+    public NodeType getType() {
+        return NodeType.INTEGER;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        IntScalarNode that = (IntScalarNode) o;
+
+        return getInt() == that.getInt();
+    }
+
+    @Override
+    public int hashCode() {
+        return getInt();
+    }
+}
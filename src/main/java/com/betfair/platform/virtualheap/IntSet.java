@@ -0,0 +1,188 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import java.util.Arrays;
+
+/**
+ * A set of ints, held without boxing, such as the ids deallocated by a removal. Values are kept in a single array in
+ * the order they were added, so that they can be walked by position with {@link #get(int)} without allocating an
+ * iterator. Up to {@link #SMALL_CAPACITY} values lookup is a linear scan; past that an open addressing index of
+ * positions is built over them, as in {@link IntNodeMap}. Values can't be removed.
+ */
+public final class IntSet {
+
+    static final int SMALL_CAPACITY = 8;
+
+    private static final int INITIAL_CAPACITY = 4;
+    private static final int EMPTY = -1;
+
+    private int[] values;
+    // positions in values, EMPTY for a free slot, null while the set is small
+    private int[] index;
+    private int size = 0;
+
+    public IntSet() {
+    }
+
+    public static IntSet of(int... values) {
+        IntSet set = new IntSet();
+        for (int value : values) {
+            set.add(value);
+        }
+        return set;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the value at the given position, in the order values were added
+     */
+    public int get(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Position " + position + " of " + size);
+        }
+        return values[position];
+    }
+
+    public boolean contains(int value) {
+        return find(value) != EMPTY;
+    }
+
+    /**
+     * @return whether the value was added, rather than already being in the set
+     */
+    public boolean add(int value) {
+        if (find(value) != EMPTY) {
+            return false;
+        }
+        if (values == null) {
+            values = new int[INITIAL_CAPACITY];
+        } else if (size == values.length) {
+            resize(values.length * 2);
+        }
+        values[size] = value;
+        if (index != null) {
+            insertIndex(value, size);
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * @return a copy of the values, in the order they were added
+     */
+    public int[] toArray() {
+        return values == null ? new int[0] : Arrays.copyOf(values, size);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        IntSet that = (IntSet) o;
+
+        if (size != that.size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (!that.contains(values[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        // the sum of the values, as for a java.util.Set of them, whatever the order they were added in
+        int hash = 0;
+        for (int i = 0; i < size; i++) {
+            hash += values[i];
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(values[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    private int find(int value) {
+        if (index == null) {
+            for (int position = 0; position < size; position++) {
+                if (values[position] == value) {
+                    return position;
+                }
+            }
+            return EMPTY;
+        }
+        int mask = index.length - 1;
+        for (int slot = slotFor(value, mask); ; slot = (slot + 1) & mask) {
+            int position = index[slot];
+            if (position == EMPTY || values[position] == value) {
+                return position;
+            }
+        }
+    }
+
+    private void insertIndex(int value, int position) {
+        int mask = index.length - 1;
+        int slot = slotFor(value, mask);
+        while (index[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        index[slot] = position;
+    }
+
+    /**
+     * Reallocates the values at the given capacity, and rebuilds the index over them if the set is no longer small.
+     */
+    private void resize(int capacity) {
+        values = Arrays.copyOf(values, capacity);
+        if (capacity <= SMALL_CAPACITY) {
+            return;
+        }
+        index = new int[capacity * 2];
+        Arrays.fill(index, EMPTY);
+        for (int i = 0; i < size; i++) {
+            insertIndex(values[i], i);
+        }
+    }
+
+    private static int slotFor(int value, int mask) {
+        int h = value * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -1,164 +1,244 @@
-/*
- Copyright 2013, The Sporting Exchange Limited
-
- Licensed under the Apache License, Version 2.0 (the "License");
- you may not use this file except in compliance with the License.
- You may obtain a copy of the License at
-
- http://www.apache.org/licenses/LICENSE-2.0
-
- Unless required by applicable law or agreed to in writing, software
- distributed under the License is distributed on an "AS IS" BASIS,
- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- See the License for the specific language governing permissions and
- limitations under the License.
- */
-package com.betfair.platform.virtualheap;
-
-import com.betfair.platform.virtualheap.updates.InstallIndex;
-import com.betfair.platform.virtualheap.updates.RemoveChildren;
-import com.betfair.platform.virtualheap.updates.RemoveIndex;
-
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
-
-public class ListNode extends Node implements CollectionNode {
-    private final List<Node> children = new ArrayList<Node>();
-
-    ListNode(int id, MutableHeap heap) {
-        super(id, heap);
-    }
-
-    Node installIndex(boolean fromListener, int id, int index, NodeType type) {
-        if (!fromListener) {
-            beforeMutation();
-        }
-        Node child = heap.allocateNode(id, type);
-        child.index = index;
-        children.add(index, child);
-        //re-index
-        for (int i = index + 1; i < children.size(); i++) {
-            children.get(i).index = i;
-        }
-        heap.emit(new InstallIndex(this.id, id, index, type));
-        return child;
-    }
-
-    void removeById(boolean fromListener, int id) {
-        if (!fromListener) {
-            beforeMutation();
-        }
-        Set<Integer> deallocatedIds = new HashSet<Integer>();
-        Node child = heap.getNode(id);
-        children.remove(child.index);
-        //re-index
-        for (int i = child.index; i < children.size(); i++) {
-            Node next = children.get(i);
-            next.index = i;
-        }
-        heap.deallocateNode(fromListener, child, deallocatedIds);
-        deallocatedIds.add(child.id);
-        heap.emit(new RemoveIndex(this.id, id, child.index, deallocatedIds));
-    }
-
-    public Node getIndexAt(int index) {
-        return children.get(index);
-    }
-
-    public Node insertAt(int index, NodeType type) {
-        return installIndex(false, heap.allocateId(), index, type);
-    }
-
-    public void removeIndex(int index) {
-        removeById(false, children.get(index).id);
-    }
-
-    @Override
-    void visitChildren(NodeVisitor visitor) {
-        for (Node child : children) {
-            visitor.visitNode(child);
-            child.visitChildren(visitor);
-        }
-    }
-
-    public void clear() {
-       clear(false);
-    }
-
-    void clear(boolean fromListener) {
-        if (!fromListener) {
-            beforeMutation();
-        }
-        if (size() == 0) {
-            return;
-        }
-
-        Set<Integer> deallocatedIds = new HashSet<Integer>();
-        for (Node child : children) {
-            heap.deallocateNode(fromListener, child, deallocatedIds);
-            deallocatedIds.add(child.id);
-        }
-        children.clear();
-        heap.emit(new RemoveChildren(this.id, deallocatedIds));
-    }
-
-    public int size() {
-        return children.size();
-    }
-
-    public String toString() {
-        StringBuilder s = new StringBuilder("[");
-        int i = 0;
-        for (Node child : children) {
-            s.append(child.id);
-            if (i < children.size() - 1) {
-                s.append(", ");
-            }
-            i++;
-        }
-        return s.append(']').toString();
-    }
-
-    @Override
-    public String prettyPrint(int depth, boolean collapse) {
-        StringBuilder s = new StringBuilder("[");
-        int i = 0;
-        for (Node child : children) {
-            s.append(child.prettyPrint(depth, true));
-            if (i < children.size() - 1) {
-                s.append(", ");
-            }
-            i++;
-        }
-        return s.append(']').toString();
-    }
-
-    public NodeType getType() {
-        return NodeType.LIST;
-    }
-
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) {
-            return true;
-        }
-        if (o == null || getClass() != o.getClass()) {
-            return false;
-        }
-
-        ListNode listNode = (ListNode) o;
-
-        if (children != null ? !children.equals(listNode.children) : listNode.children != null) {
-            return false;
-        }
-
-        return true;
-    }
-
-    public List<Node> children() {
-        return children;
-    }
-
-}
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ListNode extends Node implements CollectionNode {
+    private final NodeList children = new NodeList();
+
+    ListNode(int id, MutableHeap heap) {
+        super(id, heap);
+    }
+
+    Node installIndex(boolean fromListener, int id, int index, NodeType type) {
+        if (!fromListener) {
+            beforeMutation();
+        }
+        Node child = heap.allocateNode(id, type);
+        children.insert(index, child);
+        heap.emitInstallIndex(this.id, id, index, type);
+        return child;
+    }
+
+    void removeById(boolean fromListener, int id) {
+        if (!fromListener) {
+            beforeMutation();
+        }
+        IntSet deallocatedIds = new IntSet();
+        Node child = heap.getNode(id);
+        int index = children.remove(child);
+        heap.deallocateNode(fromListener, child, deallocatedIds);
+        deallocatedIds.add(child.id);
+        heap.emitRemoveIndex(this.id, id, index, deallocatedIds);
+    }
+
+    List<Node> installRange(boolean fromListener, int index, int[] ids, NodeType type) {
+        if (!fromListener) {
+            beforeMutation();
+        }
+        checkRange(index, index);
+        List<Node> installed = new ArrayList<Node>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            Node child = heap.allocateNode(ids[i], type);
+            children.insert(index + i, child);
+            installed.add(child);
+        }
+        if (ids.length > 0) {
+            heap.emitInstallRange(this.id, index, ids, type);
+        }
+        return installed;
+    }
+
+    void removeRange(boolean fromListener, int from, int to) {
+        if (!fromListener) {
+            beforeMutation();
+        }
+        checkRange(from, to);
+        if (from == to) {
+            return;
+        }
+        IntSet deallocatedIds = new IntSet();
+        int[] ids = new int[to - from];
+        for (int i = 0; i < ids.length; i++) {
+            Node child = children.get(from);
+            children.remove(child);
+            heap.deallocateNode(fromListener, child, deallocatedIds);
+            deallocatedIds.add(child.id);
+            ids[i] = child.id;
+        }
+        heap.emitRemoveRange(this.id, from, ids, deallocatedIds);
+    }
+
+    /**
+     * Removes the given children, which should start at the given index. Conflation can leave the index of a removal
+     * stale, which doesn't matter to a single removal as that goes by id, so a range which isn't where it should be is
+     * removed a child at a time instead.
+     */
+    void removeRange(boolean fromListener, int index, int[] ids) {
+        boolean inPlace = index >= 0 && index + ids.length <= size();
+        for (int i = 0; inPlace && i < ids.length; i++) {
+            inPlace = getIndexAt(index + i).id == ids[i];
+        }
+        if (inPlace) {
+            removeRange(fromListener, index, index + ids.length);
+        } else {
+            for (int id : ids) {
+                removeById(fromListener, id);
+            }
+        }
+    }
+
+    void checkRange(int from, int to) {
+        int size = size();
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("From: " + from + ", To: " + to + ", Size: " + size);
+        }
+    }
+
+    public Node getIndexAt(int index) {
+        return children.get(index);
+    }
+
+    public Node insertAt(int index, NodeType type) {
+        return installIndex(false, heap.allocateId(), index, type);
+    }
+
+    public void removeIndex(int index) {
+        removeById(false, children.get(index).id);
+    }
+
+    /**
+     * Inserts a run of new children of the same type, as a single update.
+     *
+     * @return the new children, in list order
+     */
+    public List<Node> insertRange(int index, int count, NodeType type) {
+        if (count == 0) {
+            checkRange(index, index);
+            return Collections.emptyList();
+        }
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = heap.allocateId();
+        }
+        return installRange(false, index, ids, type);
+    }
+
+    /**
+     * Removes the children from index {@code from}, inclusive, to index {@code to}, exclusive, as a single update.
+     */
+    public void removeRange(int from, int to) {
+        removeRange(false, from, to);
+    }
+
+    @Override
+    void visitChildren(NodeVisitor visitor) {
+        for (Node child : children) {
+            visitor.visitNode(child);
+            child.visitChildren(visitor);
+        }
+    }
+
+    public void clear() {
+       clear(false);
+    }
+
+    void clear(boolean fromListener) {
+        if (!fromListener) {
+            beforeMutation();
+        }
+        if (size() == 0) {
+            return;
+        }
+
+        IntSet deallocatedIds = new IntSet();
+        for (Node child : children) {
+            heap.deallocateNode(fromListener, child, deallocatedIds);
+            deallocatedIds.add(child.id);
+        }
+        children.clear();
+        heap.emitRemoveChildren(this.id, deallocatedIds);
+    }
+
+    @Override
+    void recycle() {
+        super.recycle();
+        children.clear();
+    }
+
+    public int size() {
+        return children.size();
+    }
+
+    public String toString() {
+        StringBuilder s = new StringBuilder("[");
+        int size = size();
+        for (int i = 0; i < size; i++) {
+            s.append(getIndexAt(i).id);
+            if (i < size - 1) {
+                s.append(", ");
+            }
+        }
+        return s.append(']').toString();
+    }
+
+    @Override
+    public String prettyPrint(int depth, boolean collapse) {
+        StringBuilder s = new StringBuilder("[");
+        int size = size();
+        for (int i = 0; i < size; i++) {
+            s.append(getIndexAt(i).prettyPrint(depth, true));
+            if (i < size - 1) {
+                s.append(", ");
+            }
+        }
+        return s.append(']').toString();
+    }
+
+    public NodeType getType() {
+        return NodeType.LIST;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        ListNode listNode = (ListNode) o;
+
+        if (children != null ? !children.equals(listNode.children) : listNode.children != null) {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return a read only view of the children of this list
+     */
+    public List<Node> children() {
+        return children;
+    }
+
+}
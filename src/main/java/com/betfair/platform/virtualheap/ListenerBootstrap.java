@@ -0,0 +1,106 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import com.betfair.platform.virtualheap.snapshot.HeapSnapshot;
+import com.betfair.platform.virtualheap.updates.UpdateBlock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Brings a new listener up to date with a heap without holding the heap's lock whilst it does so. The listener is
+ * passed a snapshot of the heap a chunk at a time, whilst the heap's updates from the moment the snapshot was taken
+ * are buffered here. Once the snapshot has been passed on, the buffered blocks are replayed, and when few enough are
+ * left to be replayed under the heap's write lock, the listener takes this one's place on the heap. Writers which
+ * outpace the listener would keep it from ever catching up, so after a few rounds the rest is replayed under the lock
+ * however much there is.
+ */
+final class ListenerBootstrap implements HeapListener {
+
+    // the most times the buffered blocks are replayed without the lock
+    private static final int MAX_CATCH_UP_ROUNDS = 8;
+
+    private final Heap heap;
+    private final HeapListener listener;
+    private final int chunkSize;
+
+    private List<UpdateBlock> buffered = new ArrayList<UpdateBlock>();
+    private int bufferedUpdates;
+
+    ListenerBootstrap(Heap heap, HeapListener listener, int chunkSize) {
+        this.heap = heap;
+        this.listener = listener;
+        this.chunkSize = chunkSize;
+    }
+
+    void run() {
+        HeapSnapshot snapshot;
+        heap.lock.readLock().lock();
+        try {
+            // no update can be in progress, so the snapshot and the buffer pick up exactly where each other leave off
+            snapshot = heap.snapshot();
+            heap.addListener(this);
+        } finally {
+            heap.lock.readLock().unlock();
+        }
+
+        boolean handedOver = false;
+        try {
+            snapshot.traverse(listener, chunkSize);
+            // catch up without the lock whilst more than a chunk has built up, then stop the writers for the rest
+            for (int round = 0; round < MAX_CATCH_UP_ROUNDS && pending() > chunkSize; round++) {
+                deliver(take());
+            }
+            heap.lock.writeLock().lock();
+            try {
+                deliver(take());
+                heap.removeListener(this);
+                heap.addListener(listener);
+                handedOver = true;
+            } finally {
+                heap.lock.writeLock().unlock();
+            }
+        } finally {
+            if (!handedOver) {
+                heap.removeListener(this);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void applyUpdate(UpdateBlock block) {
+        buffered.add(block);
+        bufferedUpdates += block.size();
+    }
+
+    private synchronized int pending() {
+        return bufferedUpdates;
+    }
+
+    private synchronized List<UpdateBlock> take() {
+        List<UpdateBlock> blocks = buffered;
+        buffered = new ArrayList<UpdateBlock>();
+        bufferedUpdates = 0;
+        return blocks;
+    }
+
+    private void deliver(List<UpdateBlock> blocks) {
+        for (UpdateBlock block : blocks) {
+            listener.applyUpdate(block);
+        }
+    }
+}
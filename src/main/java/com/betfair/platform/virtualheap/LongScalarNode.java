@@ -0,0 +1,106 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import com.betfair.platform.virtualheap.projection.LongScalarProjection;
+import com.betfair.platform.virtualheap.updates.SetLongScalar;
+import com.betfair.platform.virtualheap.updates.SetScalar;
+
+/**
+ * A scalar node holding an unboxed {@code long}, which starts out as 0 rather than null.
+ */
+public class LongScalarNode extends ScalarNode<Long> implements LongScalarProjection {
+
+    long longValue;
+
+    LongScalarNode(int id, MutableHeap heap) {
+        super(id, heap);
+    }
+
+    public long getLong() {
+        return longValue;
+    }
+
+    public void setLong(long newValue) {
+        setLong(false, newValue);
+    }
+
+    void setLong(boolean fromListener, long newValue) {
+        if (!fromListener) {
+            beforeMutation();
+        }
+        if (longValue == newValue) {
+            return;
+        }
+
+        longValue = newValue;
+        heap.emitSetLongScalar(this.id, newValue);
+    }
+
+    @Override
+    void set(boolean fromListener, Long newValue) {
+        if (newValue == null) {
+            throw new IllegalArgumentException("Can't set a " + getType() + " node to null");
+        }
+        setLong(fromListener, newValue);
+    }
+
+    @Override
+    public Long get() {
+        return getLong();
+    }
+
+    @Override
+    void recycle() {
+        super.recycle();
+        longValue = 0;
+    }
+
+    @Override
+    SetScalar toUpdate() {
+        return new SetLongScalar(this.id, getLong());
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(getLong());
+    }
+
+    @Override
+    public NodeType getType() {
+        return NodeType.LONG;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        LongScalarNode that = (LongScalarNode) o;
+
+        return getLong() == that.getLong();
+    }
+
+    @Override
+    public int hashCode() {
+        long value = getLong();
+        return (int) (value ^ (value >>> 32));
+    }
+}
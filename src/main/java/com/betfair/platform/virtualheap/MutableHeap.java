@@ -1,305 +1,567 @@
-/*
- Copyright 2013, The Sporting Exchange Limited
-
- Licensed under the Apache License, Version 2.0 (the "License");
- you may not use this file except in compliance with the License.
- You may obtain a copy of the License at
-
- http://www.apache.org/licenses/LICENSE-2.0
-
- Unless required by applicable law or agreed to in writing, software
- distributed under the License is distributed on an "AS IS" BASIS,
- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- See the License for the specific language governing permissions and
- limitations under the License.
- */
-package com.betfair.platform.virtualheap;
-
-import com.betfair.platform.virtualheap.conflate.Conflater;
-import com.betfair.platform.virtualheap.updates.*;
-
-import java.util.*;
-
-
-public class MutableHeap extends Heap {
-
-    private int idgen = 0;
-    // previously deallocated ids which are available for reuse
-    private Queue<Integer> availableIds = new ArrayDeque<Integer>();
-    protected List<Node> heap = new ArrayList<Node>();
-    private Node root = null;
-    private Heap srcHeap;
-    private Conflater newListenerConflater;
-    private UpdateBlock newListenerState = new UpdateBlock();
-
-    public MutableHeap(String uri) {
-        super(uri);
-    }
-
-    public MutableHeap(String uri, Conflater newListenerConflater) {
-        super(uri);
-        this.newListenerConflater = newListenerConflater;
-    }
-
-    public MutableHeap(String uri, Heap srcHeap, boolean populateWithCurrentState) {
-        this(uri);
-        this.srcHeap = srcHeap;
-        srcHeap.addListener(asListener(), populateWithCurrentState);
-    }
-
-    public MutableHeap(String uri, Heap srcHeap, boolean populateWithCurrentState, Conflater newListenerConflater) {
-        this(uri, newListenerConflater);
-        this.srcHeap = srcHeap;
-        srcHeap.addListener(asListener(), populateWithCurrentState);
-    }
-
-    public void disconnectFromSourceHeap() {
-        if (srcHeap != null) {
-            srcHeap.removeListener(asListener());
-            srcHeap = null;
-        }
-    }
-
-    int allocateId() {
-        if (!availableIds.isEmpty()) {
-            return availableIds.poll();
-        }
-        return idgen++;
-    }
-
-    Node allocateNode(int id, NodeType type) {
-        Node node = createNode(id, type);
-        while (heap.size() <= id) {
-            heap.add(null);
-        }
-        heap.set(id, node);
-        return node;
-    }
-
-    protected Node createNode(int id, NodeType type) {
-        Node node;
-        switch (type) {
-            case LIST:
-                node = new ListNode(id, this);
-                break;
-            case MAP:
-                node = new MapNode(id, this);
-                break;
-            case OBJECT:
-                node = new ObjectNode(id, this);
-                break;
-            case SCALAR:
-                node = new ScalarNode(id, this);
-                break;
-            default:
-                throw new IllegalArgumentException("Can't create node for type: " + type);
-        }
-        return node;
-    }
-
-    void deallocateNode(final boolean fromListener, Node node, final Set<Integer> deallocatedIds) {
-        heap.set(node.id, null);
-        if (!fromListener) {
-            availableIds.add(node.id);
-        }
-        node.visitChildren(new NodeVisitor() {
-            @Override
-            public void visitNode(Node child) {
-                heap.set(child.id, null);
-                deallocatedIds.add(child.id);
-                if (!fromListener) {
-                    availableIds.add(child.id);
-                }
-            }
-        });
-    }
-
-    public Node ensureRoot(NodeType type) {
-        if (root != null) {
-            if (!root.getType().equals(type)) {
-                throw new IllegalArgumentException("Can't change node type of an existing root node");
-            }
-            return root;
-        }
-        installRoot(false, allocateId(), type);
-        return root;
-    }
-
-    Node getNode(int id) {
-        return heap.get(id);
-    }
-
-    public Node getRoot() {
-        return root;
-    }
-
-    @Override
-    public boolean isRootInstalled() {
-        return root != null;
-    }
-
-    @Override
-    protected void onEndUpdate(UpdateBlock block) {
-        if (newListenerConflater != null) {
-            newListenerState = newListenerConflater.conflate(newListenerState, block);
-        }
-        super.onEndUpdate(block);
-    }
-
-    /**
-     * Give the current state of this heap to the given listener. Requires that this listener is not already listening to the heap.
-     */
-    public void traverse(final HeapListener listener) {
-        lock.readLock().lock();
-        try {
-            if (getListeners() != null && getListeners().contains(listener)) {
-                throw new IllegalArgumentException("Passed listener is already listening to this heap!");
-            }
-            if (newListenerConflater != null) {
-                listener.applyUpdate(newListenerState);
-            }
-            else {
-                List<Update> updates = new HeapCopyingNodeVisitor().copy(getRoot());
-
-                // last thing if we're there..
-                if (terminated) {
-                    updates.add(new TerminateHeap());
-                }
-                listener.applyUpdate(new UpdateBlock(updates));
-            }
-        }
-        finally {
-            lock.readLock().unlock();
-        }
-    }
-
-    // --- Package private methods
-
-    void assertCanUpdate() {
-        assertLock();
-        assertHaveUpdateBlock();
-        assertNotTerminated();
-    }
-
-    // ---- Protected methods
-
-    protected void removeField(boolean fromListener, int parentId, int id) {
-        MapNode parent = (MapNode) heap.get(parentId);
-        if (parent == null) {
-            throw new IllegalStateException("Trying to remove a field from a parentId which doesn't map to a node: "+ parentId);
-        }
-        parent.removeField(fromListener, id);
-    }
-
-    protected void removeIndex(boolean fromListener, int parentId, int id) {
-        Node parent = heap.get(parentId);
-        if (parent instanceof ListNode) {
-            ((ListNode) parent).removeById(fromListener, id);
-        }
-        else {
-            throw new IllegalArgumentException("Can't remove an index from a node of type "+parent.getClass().getName());
-        }
-    }
-
-    protected void installField(boolean fromListener, int parentId, int id, String name, NodeType type) {
-        MapNode parent = (MapNode) heap.get(parentId);
-        parent.installField(fromListener, id, name, type);
-    }
-
-    protected void installRoot(boolean fromListener, int id, NodeType type) {
-        if (isRootInstalled()) {
-            throw new IllegalStateException("Root already installed");
-        }
-        this.root = allocateNode(id, type);
-        emit(new InstallRoot(id, type));
-    }
-
-    @SuppressWarnings("unchecked")
-    protected void setScalar(boolean fromListener, int id, Object value) {
-        ScalarNode node = (ScalarNode) heap.get(id);
-        node.set(fromListener, value);
-    }
-
-    protected void removeChildren(boolean fromListener, int id) {
-        Node node = heap.get(id);
-        switch (node.getType()) {
-            case LIST: ((ListNode)node).clear(fromListener); return;
-            case MAP: ((MapNode)node).clear(fromListener); return;
-            case OBJECT: ((ObjectNode)node).clear(fromListener); return;
-        }
-        throw new IllegalStateException(id +  " " + node.getClass() + " " + node.getType());
-    }
-
-    protected void installIndex(boolean fromListener, int parentId, int id, int index, NodeType type) {
-        Node parent = heap.get(parentId);
-        if (parent instanceof ListNode) {
-            ((ListNode) parent).installIndex(fromListener, id, index, type);
-        }
-        else {
-            throw new IllegalArgumentException("Can't install an index on a node of type "+parent.getClass().getName());
-        }
-    }
-
-    // --- Private methods
-
-    private static class HeapCopyingNodeVisitor implements NodeVisitor {
-
-        private final List<Update> updates = new ArrayList<Update>();
-
-        public List<Update> copy(Node rootNode) {
-            if (rootNode != null) {
-                updates.add(new InstallRoot(rootNode.id, rootNode.getType()));
-                visitNode(rootNode);
-                rootNode.visitChildren(this);
-            }
-            return updates;
-
-        }
-
-        @Override
-        public void visitNode(Node node) {
-            switch (node.getType()) {
-                case MAP:
-                case OBJECT:
-                    MapNode mapNode = (MapNode) node;
-                    for (String field : mapNode.getFields()) {
-                        Node childNode = mapNode.getField(field);
-                        if (childNode != null) {
-                            updates.add(new InstallField(node.id, childNode.id, field, childNode.getType()));
-                        }
-                    }
-                    break;
-                case LIST:
-                    ListNode listNode = (ListNode) node;
-                    for (int i = 0; i < listNode.size(); i++) {
-                        Node childNode = listNode.getIndexAt(i);
-                        if (childNode != null) {
-                            updates.add(new InstallIndex(node.id, childNode.id, childNode.index, childNode.getType()));
-                        }
-                    }
-                    break;
-                case SCALAR:
-                    ScalarNode scalarNode = (ScalarNode) node;
-                    updates.add(new SetScalar(node.id, scalarNode.value));
-                    break;
-                default:
-                    throw new AssertionError("Unknown node type: " + node.getType());
-
-            }
-        }
-    }
-
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-
-        for (Node n : heap) {
-            sb.append(n).append("\n");
-        }
-
-        return sb.toString();
-    }
-
-    public String prettyPrint() {
-        return root == null ? "null" : root.prettyPrint();
-    }
-}
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import com.betfair.platform.virtualheap.conflate.Conflater;
+import com.betfair.platform.virtualheap.updates.*;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+
+
+public class MutableHeap extends Heap {
+
+    private final IdAllocator ids = new IdAllocator();
+    protected final NodeTable heap = new NodeTable();
+    private Node root = null;
+    private Heap srcHeap;
+    private Conflater newListenerConflater;
+    private UpdateBlock newListenerState = new UpdateBlock();
+    private NodePool pool;
+    private Executor traversalExecutor;
+    private int traversalSplitSize;
+
+    public MutableHeap(String uri) {
+        super(uri);
+    }
+
+    public MutableHeap(String uri, Conflater newListenerConflater) {
+        super(uri);
+        this.newListenerConflater = newListenerConflater;
+    }
+
+    public MutableHeap(String uri, Heap srcHeap, boolean populateWithCurrentState) {
+        this(uri);
+        connectToSourceHeap(srcHeap, populateWithCurrentState);
+    }
+
+    public MutableHeap(String uri, Heap srcHeap, boolean populateWithCurrentState, Conflater newListenerConflater) {
+        this(uri, newListenerConflater);
+        connectToSourceHeap(srcHeap, populateWithCurrentState);
+    }
+
+    /**
+     * Starts listening to the given source heap. Subclasses with their own state to initialise call this from their
+     * constructors once that state exists, rather than chaining to the source heap constructors.
+     */
+    void connectToSourceHeap(Heap srcHeap, boolean populateWithCurrentState) {
+        this.srcHeap = srcHeap;
+        srcHeap.addListener(asListener(), populateWithCurrentState);
+    }
+
+    public void disconnectFromSourceHeap() {
+        if (srcHeap != null) {
+            srcHeap.removeListener(asListener());
+            srcHeap = null;
+        }
+    }
+
+    int allocateId() {
+        return ids.allocate();
+    }
+
+    /**
+     * Keeps up to the given number of deallocated nodes of each type for reuse, rather than creating new ones, which
+     * suits heaps that repeatedly build and tear down the same shapes. A node or projection held on to after its node
+     * has been removed may then find itself reused elsewhere in the heap, so this is only safe where nothing outlives
+     * its removal. Zero, the default, turns recycling off.
+     */
+    public void setNodePoolLimit(int maxPerType) {
+        pool = maxPerType == 0 ? null : new NodePool(maxPerType);
+    }
+
+    /**
+     * Shares the work of {@link #traverse(HeapListener) traversing} the heap for a new listener out to the given
+     * executor, in pieces of roughly the given number of nodes, which speeds up the bootstrapping of replicas of very
+     * large heaps. The listener is given exactly what a traversal on the calling thread would give it. A null executor
+     * turns this off again.
+     */
+    public void setParallelTraversal(Executor executor, int splitSize) {
+        if (splitSize < 1) {
+            throw new IllegalArgumentException("Invalid split size: " + splitSize);
+        }
+        traversalExecutor = executor;
+        traversalSplitSize = splitSize;
+    }
+
+    Node allocateNode(int id, NodeType type) {
+        if (isPassingThrough() && isAllocated(id)) {
+            throw new IllegalStateException("Can't pass through an install of node " + id + ", which is already allocated");
+        }
+        Node node = pool == null ? null : pool.acquire(id, type);
+        if (node == null) {
+            node = createNode(id, type);
+        }
+        heap.set(id, node);
+        return node;
+    }
+
+    protected Node createNode(int id, NodeType type) {
+        Node node;
+        switch (type) {
+            case LIST:
+                node = new ListNode(id, this);
+                break;
+            case MAP:
+                node = new MapNode(id, this);
+                break;
+            case OBJECT:
+                node = new ObjectNode(id, this);
+                break;
+            case SCALAR:
+                node = new ScalarNode(id, this);
+                break;
+            case BOOLEAN:
+                node = new BooleanScalarNode(id, this);
+                break;
+            case INTEGER:
+                node = new IntScalarNode(id, this);
+                break;
+            case LONG:
+                node = new LongScalarNode(id, this);
+                break;
+            case DOUBLE:
+                node = new DoubleScalarNode(id, this);
+                break;
+            default:
+                throw new IllegalArgumentException("Can't create node for type: " + type);
+        }
+        return node;
+    }
+
+    void deallocateNode(final boolean fromListener, Node node, final IntSet deallocatedIds) {
+        heap.clear(node.id);
+        if (!fromListener) {
+            releaseId(node.id);
+        }
+        // nodes can only be recycled once the whole subtree has been walked
+        final List<Node> released = pool == null ? null : new ArrayList<Node>();
+        node.visitChildren(new NodeVisitor() {
+            @Override
+            public void visitNode(Node child) {
+                heap.clear(child.id);
+                deallocatedIds.add(child.id);
+                if (!fromListener) {
+                    releaseId(child.id);
+                }
+                if (released != null) {
+                    released.add(child);
+                }
+            }
+        });
+        if (released != null) {
+            pool.release(node);
+            for (Node child : released) {
+                pool.release(child);
+            }
+        }
+    }
+
+    /**
+     * @return the number of spare nodes of the given type waiting to be reused
+     */
+    int pooledNodes(NodeType type) {
+        return pool == null ? 0 : pool.size(type);
+    }
+
+    /**
+     * Makes a locally deallocated id available for reuse by {@link #allocateId()}.
+     */
+    void releaseId(int id) {
+        ids.release(id);
+    }
+
+    /**
+     * Renumbers live nodes into a dense id range, emitting a {@link RemapIds} so that chained heaps and other listeners
+     * follow suit, and shrinks the node table to fit. Must be called within an update.
+     *
+     * @return the number of nodes moved
+     */
+    public int compact() {
+        return compact(Integer.MAX_VALUE);
+    }
+
+    /**
+     * As {@link #compact()}, but moves at most the given number of nodes so that a large heap can be compacted a little
+     * at a time across several updates. Each call moves the highest live ids into the lowest free ones.
+     *
+     * @return the number of nodes moved
+     */
+    public int compact(int maxMoves) {
+        assertCanUpdate();
+        if (srcHeap != null) {
+            throw new IllegalStateException("Can't compact a chained heap, its ids are allocated by its source heap");
+        }
+        int limit = nodeLimit();
+        int[] from = new int[16];
+        int[] to = new int[from.length];
+        int moves = 0;
+        int hi = limit - 1;
+        int lo = ids.nextReleased(0);
+        while (moves < maxMoves && lo >= 0) {
+            while (hi > lo && !isAllocated(hi)) {
+                hi--;
+            }
+            if (hi <= lo) {
+                break;
+            }
+            if (moves == from.length) {
+                from = Arrays.copyOf(from, moves * 2);
+                to = Arrays.copyOf(to, moves * 2);
+            }
+            from[moves] = hi--;
+            to[moves] = lo;
+            moves++;
+            lo = ids.nextReleased(lo + 1);
+        }
+        while (hi >= 0 && !isAllocated(hi)) {
+            hi--;
+        }
+        if (moves > 0 || hi + 1 < limit) {
+            remapIds(false, Arrays.copyOf(from, moves), Arrays.copyOf(to, moves));
+        }
+        return moves;
+    }
+
+    public Node ensureRoot(NodeType type) {
+        if (root != null) {
+            if (!root.getType().equals(type)) {
+                throw new IllegalArgumentException("Can't change node type of an existing root node");
+            }
+            return root;
+        }
+        installRoot(false, allocateId(), type);
+        return root;
+    }
+
+    Node getNode(int id) {
+        return heap.get(id);
+    }
+
+    @Override
+    int indexOf(Node node) {
+        return node.leaf == null ? 0 : NodeList.indexOf(node);
+    }
+
+    /**
+     * One past the highest id this heap may hold a node at.
+     */
+    int nodeLimit() {
+        return heap.size();
+    }
+
+    boolean isAllocated(int id) {
+        return heap.get(id) != null;
+    }
+
+    void moveNode(int from, int to) {
+        Node node = heap.get(from);
+        heap.clear(from);
+        node.id = to;
+        heap.set(to, node);
+    }
+
+    /**
+     * Discards storage for ids at or above the given limit, none of which hold a node.
+     */
+    void truncateNodes(int limit) {
+        heap.truncate(limit);
+    }
+
+    public Node getRoot() {
+        return root;
+    }
+
+    @Override
+    public boolean isRootInstalled() {
+        return root != null;
+    }
+
+    @Override
+    protected void onEndUpdate(UpdateBlock block) {
+        if (newListenerConflater != null) {
+            newListenerState = newListenerConflater.conflate(newListenerState, block);
+        }
+        super.onEndUpdate(block);
+    }
+
+    /**
+     * Give the current state of this heap to the given listener. Requires that this listener is not already listening to the heap.
+     */
+    public void traverse(final HeapListener listener) {
+        lock.readLock().lock();
+        try {
+            if (getListeners() != null && getListeners().contains(listener)) {
+                throw new IllegalArgumentException("Passed listener is already listening to this heap!");
+            }
+            if (newListenerConflater != null) {
+                listener.applyUpdate(newListenerState);
+            }
+            else {
+                List<Update> updates = traversalExecutor != null
+                        ? new ParallelHeapCopier(traversalExecutor, traversalSplitSize).copy(getRoot())
+                        : new HeapCopyingNodeVisitor().copy(getRoot());
+
+                // last thing if we're there..
+                if (terminated) {
+                    updates.add(new TerminateHeap());
+                }
+                listener.applyUpdate(new UpdateBlock(updates));
+            }
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // --- Package private methods
+
+    void assertCanUpdate() {
+        assertLock();
+        assertHaveUpdateBlock();
+        assertNotTerminated();
+    }
+
+    // ---- Protected methods
+
+    protected void removeField(boolean fromListener, int parentId, int id) {
+        MapNode parent = (MapNode) getNode(parentId);
+        if (parent == null) {
+            throw new IllegalStateException("Trying to remove a field from a parentId which doesn't map to a node: "+ parentId);
+        }
+        parent.removeField(fromListener, id);
+    }
+
+    protected void removeIndex(boolean fromListener, int parentId, int id) {
+        Node parent = getNode(parentId);
+        if (parent instanceof ListNode) {
+            ((ListNode) parent).removeById(fromListener, id);
+        }
+        else {
+            throw new IllegalArgumentException("Can't remove an index from a node of type "+parent.getClass().getName());
+        }
+    }
+
+    protected void installField(boolean fromListener, int parentId, int id, String name, NodeType type) {
+        MapNode parent = (MapNode) getNode(parentId);
+        parent.installField(fromListener, id, name, type);
+    }
+
+    protected void installRoot(boolean fromListener, int id, NodeType type) {
+        if (isRootInstalled()) {
+            throw new IllegalStateException("Root already installed");
+        }
+        this.root = allocateNode(id, type);
+        emitInstallRoot(id, type);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected void setScalar(boolean fromListener, int id, Object value) {
+        ScalarNode node = (ScalarNode) getNode(id);
+        node.set(fromListener, value);
+    }
+
+    // a typed update may also arrive for an untyped SCALAR node, which takes the boxed value
+
+    protected void setBooleanScalar(boolean fromListener, int id, boolean value) {
+        Node node = getNode(id);
+        if (node instanceof BooleanScalarNode) {
+            ((BooleanScalarNode) node).setBoolean(fromListener, value);
+        } else {
+            setScalar(fromListener, id, value);
+        }
+    }
+
+    protected void setIntScalar(boolean fromListener, int id, int value) {
+        Node node = getNode(id);
+        if (node instanceof IntScalarNode) {
+            ((IntScalarNode) node).setInt(fromListener, value);
+        } else {
+            setScalar(fromListener, id, value);
+        }
+    }
+
+    protected void setLongScalar(boolean fromListener, int id, long value) {
+        Node node = getNode(id);
+        if (node instanceof LongScalarNode) {
+            ((LongScalarNode) node).setLong(fromListener, value);
+        } else {
+            setScalar(fromListener, id, value);
+        }
+    }
+
+    protected void setDoubleScalar(boolean fromListener, int id, double value) {
+        Node node = getNode(id);
+        if (node instanceof DoubleScalarNode) {
+            ((DoubleScalarNode) node).setDouble(fromListener, value);
+        } else {
+            setScalar(fromListener, id, value);
+        }
+    }
+
+    protected void removeChildren(boolean fromListener, int id) {
+        Node node = getNode(id);
+        switch (node.getType()) {
+            case LIST: ((ListNode)node).clear(fromListener); return;
+            case MAP: ((MapNode)node).clear(fromListener); return;
+            case OBJECT: ((ObjectNode)node).clear(fromListener); return;
+        }
+        throw new IllegalStateException(id +  " " + node.getClass() + " " + node.getType());
+    }
+
+    protected void installIndex(boolean fromListener, int parentId, int id, int index, NodeType type) {
+        Node parent = getNode(parentId);
+        if (parent instanceof ListNode) {
+            ((ListNode) parent).installIndex(fromListener, id, index, type);
+        }
+        else {
+            throw new IllegalArgumentException("Can't install an index on a node of type "+parent.getClass().getName());
+        }
+    }
+
+    protected void installRange(boolean fromListener, int parentId, int index, int[] ids, NodeType type) {
+        Node parent = getNode(parentId);
+        if (parent instanceof ListNode) {
+            ((ListNode) parent).installRange(fromListener, index, ids, type);
+        }
+        else {
+            throw new IllegalArgumentException("Can't install a range on a node of type "+parent.getClass().getName());
+        }
+    }
+
+    protected void removeRange(boolean fromListener, int parentId, int index, int[] ids) {
+        Node parent = getNode(parentId);
+        if (parent instanceof ListNode) {
+            ((ListNode) parent).removeRange(fromListener, index, ids);
+        }
+        else {
+            throw new IllegalArgumentException("Can't remove a range from a node of type "+parent.getClass().getName());
+        }
+    }
+
+    protected void remapIds(boolean fromListener, int[] from, int[] to) {
+        int rootId = root == null ? -1 : root.id;
+        for (int i = 0; i < from.length; i++) {
+            if (!isAllocated(from[i]) || isAllocated(to[i])) {
+                throw new IllegalStateException("Can't move node " + from[i] + " to " + to[i]);
+            }
+            moveNode(from[i], to[i]);
+            if (!fromListener) {
+                ids.claim(to[i]);
+            }
+            if (rootId == from[i]) {
+                rootId = to[i];
+            }
+        }
+        if (root != null) {
+            root = getNode(rootId);
+        }
+        int limit = nodeLimit();
+        while (limit > 0 && !isAllocated(limit - 1)) {
+            limit--;
+        }
+        truncateNodes(limit);
+        if (!fromListener) {
+            ids.truncate(limit);
+        }
+        emitRemapIds(from, to);
+    }
+
+    // --- Private methods
+
+    static class HeapCopyingNodeVisitor implements NodeVisitor {
+
+        private final List<Update> updates = new ArrayList<Update>();
+
+        public List<Update> copy(Node rootNode) {
+            if (rootNode != null) {
+                updates.add(new InstallRoot(rootNode.id, rootNode.getType()));
+                visitNode(rootNode);
+                rootNode.visitChildren(this);
+            }
+            return updates;
+
+        }
+
+        /**
+         * Copies the installation of the given node's children, though nothing beneath them.
+         */
+        List<Update> copyInstalls(Node node) {
+            visitNode(node);
+            return updates;
+        }
+
+        /**
+         * Copies the given nodes and everything beneath them, though not their own installation.
+         */
+        List<Update> copySubtrees(List<Node> nodes) {
+            for (Node node : nodes) {
+                visitNode(node);
+                node.visitChildren(this);
+            }
+            return updates;
+        }
+
+        @Override
+        public void visitNode(Node node) {
+            switch (node.getType()) {
+                case MAP:
+                case OBJECT:
+                    MapNode mapNode = (MapNode) node;
+                    for (String field : mapNode.getFields()) {
+                        Node childNode = mapNode.getField(field);
+                        if (childNode != null) {
+                            updates.add(new InstallField(node.id, childNode.id, field, childNode.getType()));
+                        }
+                    }
+                    break;
+                case LIST:
+                    ListNode listNode = (ListNode) node;
+                    for (int i = 0; i < listNode.size(); i++) {
+                        Node childNode = listNode.getIndexAt(i);
+                        if (childNode != null) {
+                            updates.add(new InstallIndex(node.id, childNode.id, i, childNode.getType()));
+                        }
+                    }
+                    break;
+                case SCALAR:
+                case BOOLEAN:
+                case INTEGER:
+                case LONG:
+                case DOUBLE:
+                    updates.add(((ScalarNode) node).toUpdate());
+                    break;
+                default:
+                    throw new AssertionError("Unknown node type: " + node.getType());
+
+            }
+        }
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        for (int id = 0; id < heap.size(); id++) {
+            sb.append(heap.get(id)).append("\n");
+        }
+
+        return sb.toString();
+    }
+
+    public String prettyPrint() {
+        return root == null ? "null" : root.prettyPrint();
+    }
+}
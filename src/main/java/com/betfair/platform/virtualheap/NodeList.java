@@ -0,0 +1,322 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The children of a {@link ListNode}, held in a counted B+tree so that positional lookup, insertion and removal are
+ * all logarithmic in the size of the list. Every child points back at the leaf holding it, and a child's position is
+ * worked out on demand by climbing from that leaf to the root, so nothing need be renumbered when the list changes.
+ * <p/>
+ * This list is a read only view as far as the {@link java.util.List} interface is concerned.
+ */
+final class NodeList extends AbstractList<Node> {
+
+    // fan out of both leaves and branches, either of which is split as soon as it goes over
+    static final int MAX_PAGE = 64;
+
+    private static final int INITIAL_LEAF = 4;
+
+    abstract static class Page {
+        Branch parent;
+        // number of nodes held beneath this page
+        int count;
+    }
+
+    static final class Leaf extends Page {
+        Node[] nodes = new Node[INITIAL_LEAF];
+        Leaf prev;
+        Leaf next;
+
+        int positionOf(Node node) {
+            for (int i = 0; i < count; i++) {
+                if (nodes[i] == node) {
+                    return i;
+                }
+            }
+            throw new IllegalStateException("Node " + node.id + " isn't held by its leaf");
+        }
+    }
+
+    static final class Branch extends Page {
+        Page[] pages = new Page[MAX_PAGE + 1];
+        int size;
+
+        int positionOf(Page page) {
+            for (int i = 0; i < size; i++) {
+                if (pages[i] == page) {
+                    return i;
+                }
+            }
+            throw new IllegalStateException("Page isn't held by its parent");
+        }
+    }
+
+    // created on first insert, so that an empty list costs nothing more than this object
+    private Page root;
+
+    @Override
+    public int size() {
+        return root == null ? 0 : root.count;
+    }
+
+    @Override
+    public Node get(int index) {
+        checkIndex(index, size() - 1);
+        Page page = root;
+        while (page instanceof Branch) {
+            Branch branch = (Branch) page;
+            int i = 0;
+            while (index >= branch.pages[i].count) {
+                index -= branch.pages[i].count;
+                i++;
+            }
+            page = branch.pages[i];
+        }
+        return ((Leaf) page).nodes[index];
+    }
+
+    /**
+     * @return the position of the given node, which must be held by this list
+     */
+    static int indexOf(Node node) {
+        Leaf leaf = node.leaf;
+        int index = leaf.positionOf(node);
+        Page page = leaf;
+        for (Branch branch = page.parent; branch != null; page = branch, branch = branch.parent) {
+            for (int i = 0; branch.pages[i] != page; i++) {
+                index += branch.pages[i].count;
+            }
+        }
+        return index;
+    }
+
+    void insert(int index, Node node) {
+        checkIndex(index, size());
+        if (root == null) {
+            root = new Leaf();
+        }
+        Page page = root;
+        while (page instanceof Branch) {
+            Branch branch = (Branch) page;
+            int i = 0;
+            // an index at the very end of a page goes into that page rather than the start of the next
+            while (i < branch.size - 1 && index > branch.pages[i].count) {
+                index -= branch.pages[i].count;
+                i++;
+            }
+            page = branch.pages[i];
+        }
+        Leaf leaf = (Leaf) page;
+        if (leaf.count == leaf.nodes.length) {
+            Node[] grown = new Node[Math.min(leaf.count * 2, MAX_PAGE + 1)];
+            System.arraycopy(leaf.nodes, 0, grown, 0, leaf.count);
+            leaf.nodes = grown;
+        }
+        System.arraycopy(leaf.nodes, index, leaf.nodes, index + 1, leaf.count - index);
+        leaf.nodes[index] = node;
+        node.leaf = leaf;
+        for (Page p = leaf; p != null; p = p.parent) {
+            p.count++;
+        }
+        if (leaf.count > MAX_PAGE) {
+            split(leaf);
+        }
+    }
+
+    /**
+     * Removes the given node, which must be held by this list.
+     *
+     * @return the position the node was at
+     */
+    int remove(Node node) {
+        int index = indexOf(node);
+        Leaf leaf = node.leaf;
+        int position = leaf.positionOf(node);
+        System.arraycopy(leaf.nodes, position + 1, leaf.nodes, position, leaf.count - position - 1);
+        leaf.nodes[leaf.count - 1] = null;
+        node.leaf = null;
+        for (Page p = leaf; p != null; p = p.parent) {
+            p.count--;
+        }
+        if (leaf.count == 0) {
+            detach(leaf);
+        }
+        return index;
+    }
+
+    /**
+     * Empties the list, letting go of every child.
+     */
+    @Override
+    public void clear() {
+        for (Leaf leaf = firstLeaf(); leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.count; i++) {
+                leaf.nodes[i].leaf = null;
+            }
+        }
+        if (root instanceof Leaf) {
+            // keep a lone leaf for refilling
+            Arrays.fill(((Leaf) root).nodes, 0, root.count, null);
+            root.count = 0;
+        } else {
+            root = null;
+        }
+    }
+
+    @Override
+    public Iterator<Node> iterator() {
+        return new Iterator<Node>() {
+            private Leaf leaf = firstLeaf();
+            private int position = 0;
+
+            @Override
+            public boolean hasNext() {
+                while (leaf != null && position == leaf.count) {
+                    leaf = leaf.next;
+                    position = 0;
+                }
+                return leaf != null;
+            }
+
+            @Override
+            public Node next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return leaf.nodes[position++];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private Leaf firstLeaf() {
+        Page page = root;
+        while (page instanceof Branch) {
+            page = ((Branch) page).pages[0];
+        }
+        return (Leaf) page;
+    }
+
+    /**
+     * Moves the upper half of an overfull leaf into a new leaf alongside it.
+     */
+    private void split(Leaf leaf) {
+        Leaf right = new Leaf();
+        int half = leaf.count / 2;
+        right.nodes = new Node[MAX_PAGE + 1];
+        right.count = leaf.count - half;
+        System.arraycopy(leaf.nodes, half, right.nodes, 0, right.count);
+        for (int i = half; i < leaf.count; i++) {
+            right.nodes[i - half].leaf = right;
+            leaf.nodes[i] = null;
+        }
+        leaf.count = half;
+        right.prev = leaf;
+        right.next = leaf.next;
+        if (leaf.next != null) {
+            leaf.next.prev = right;
+        }
+        leaf.next = right;
+        addAfter(leaf, right);
+    }
+
+    /**
+     * Moves the upper half of an overfull branch into a new branch alongside it.
+     */
+    private void split(Branch branch) {
+        Branch right = new Branch();
+        int half = branch.size / 2;
+        right.size = branch.size - half;
+        System.arraycopy(branch.pages, half, right.pages, 0, right.size);
+        for (int i = half; i < branch.size; i++) {
+            Page page = branch.pages[i];
+            page.parent = right;
+            right.count += page.count;
+            branch.pages[i] = null;
+        }
+        branch.size = half;
+        branch.count -= right.count;
+        addAfter(branch, right);
+    }
+
+    /**
+     * Adds a page split off from its left hand neighbour to the same parent, splitting branches as far up as
+     * necessary. The counts of the ancestors already include the nodes held by the new page.
+     */
+    private void addAfter(Page left, Page right) {
+        Branch parent = left.parent;
+        if (parent == null) {
+            parent = new Branch();
+            parent.pages[0] = left;
+            parent.size = 1;
+            parent.count = left.count + right.count;
+            left.parent = parent;
+            root = parent;
+        }
+        int position = parent.positionOf(left) + 1;
+        System.arraycopy(parent.pages, position, parent.pages, position + 1, parent.size - position);
+        parent.pages[position] = right;
+        parent.size++;
+        right.parent = parent;
+        if (parent.size > MAX_PAGE) {
+            split(parent);
+        }
+    }
+
+    /**
+     * Unhooks an emptied page from the tree, along with any branch left empty as a result.
+     */
+    private void detach(Page page) {
+        if (page instanceof Leaf) {
+            Leaf leaf = (Leaf) page;
+            if (leaf.prev != null) {
+                leaf.prev.next = leaf.next;
+            }
+            if (leaf.next != null) {
+                leaf.next.prev = leaf.prev;
+            }
+        }
+        Branch parent = page.parent;
+        if (parent == null) {
+            root = null;
+            return;
+        }
+        int position = parent.positionOf(page);
+        System.arraycopy(parent.pages, position + 1, parent.pages, position, parent.size - position - 1);
+        parent.pages[--parent.size] = null;
+        if (parent.size == 0) {
+            detach(parent);
+        } else if (parent == root && parent.size == 1) {
+            root = parent.pages[0];
+            root.parent = null;
+        }
+    }
+
+    private static void checkIndex(int index, int max) {
+        if (index < 0 || index > max) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Max: " + max);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+/**
+ * Spare nodes kept by a {@link MutableHeap} for reuse, up to a fixed number of each {@link NodeType}. Nodes are
+ * {@link Node#recycle() recycled} as they're released, so a pooled node holds on to nothing but its own storage.
+ */
+final class NodePool {
+
+    private final int limit;
+    private final Node[][] free = new Node[NodeType.values().length][];
+    private final int[] sizes = new int[NodeType.values().length];
+
+    NodePool(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Pool limit must be positive: " + limit);
+        }
+        this.limit = limit;
+    }
+
+    /**
+     * @return a spare node of the given type renumbered to the given id, or null if there are none
+     */
+    Node acquire(int id, NodeType type) {
+        int t = type.ordinal();
+        if (sizes[t] == 0) {
+            return null;
+        }
+        Node node = free[t][--sizes[t]];
+        free[t][sizes[t]] = null;
+        node.id = id;
+        return node;
+    }
+
+    void release(Node node) {
+        int t = node.getType().ordinal();
+        if (sizes[t] == limit) {
+            return;
+        }
+        node.recycle();
+        Node[] nodes = free[t];
+        if (nodes == null || sizes[t] == nodes.length) {
+            Node[] grown = new Node[nodes == null ? Math.min(16, limit) : Math.min(nodes.length * 2, limit)];
+            if (nodes != null) {
+                System.arraycopy(nodes, 0, grown, 0, sizes[t]);
+            }
+            free[t] = nodes = grown;
+        }
+        nodes[sizes[t]++] = node;
+    }
+
+    int size(NodeType type) {
+        return sizes[type.ordinal()];
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * The nodes of a {@link MutableHeap}, indexed by id. Storage grows a whole page at a time, so installing a node never
+ * has to grow the table slot by slot, and growing it never copies existing nodes.
+ */
+public final class NodeTable {
+
+    private static final int PAGE_SHIFT = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private Node[][] pages = new Node[4][];
+    private int size = 0;
+
+    /**
+     * @return the node with the given id, or null if there isn't one
+     */
+    public Node get(int id) {
+        int page = id >>> PAGE_SHIFT;
+        if (id < 0 || page >= pages.length || pages[page] == null) {
+            return null;
+        }
+        return pages[page][id & PAGE_MASK];
+    }
+
+    /**
+     * @return one past the highest id ever stored in this table
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return a read only list view of this table, containing nulls for unused ids
+     */
+    public List<Node> asList() {
+        return new AbstractList<Node>() {
+            @Override
+            public Node get(int index) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+                }
+                return NodeTable.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    void set(int id, Node node) {
+        int page = id >>> PAGE_SHIFT;
+        if (page >= pages.length) {
+            Node[][] grown = new Node[Math.max(pages.length * 2, page + 1)][];
+            System.arraycopy(pages, 0, grown, 0, pages.length);
+            pages = grown;
+        }
+        if (pages[page] == null) {
+            pages[page] = new Node[PAGE_SIZE];
+        }
+        pages[page][id & PAGE_MASK] = node;
+        if (id >= size) {
+            size = id + 1;
+        }
+    }
+
+    void clear(int id) {
+        int page = id >>> PAGE_SHIFT;
+        if (page < pages.length && pages[page] != null) {
+            pages[page][id & PAGE_MASK] = null;
+        }
+    }
+
+    /**
+     * Drops every id at or above the given limit, releasing any pages left wholly unused.
+     */
+    void truncate(int limit) {
+        if (limit >= size) {
+            return;
+        }
+        int firstFreePage = (limit + PAGE_MASK) >>> PAGE_SHIFT;
+        for (int page = firstFreePage; page < pages.length; page++) {
+            pages[page] = null;
+        }
+        for (int id = limit; id < size && id < firstFreePage << PAGE_SHIFT; id++) {
+            clear(id);
+        }
+        size = limit;
+    }
+}
@@ -1,28 +1,121 @@
-/*
- Copyright 2013, The Sporting Exchange Limited
-
- Licensed under the Apache License, Version 2.0 (the "License");
- you may not use this file except in compliance with the License.
- You may obtain a copy of the License at
-
- http://www.apache.org/licenses/LICENSE-2.0
-
- Unless required by applicable law or agreed to in writing, software
- distributed under the License is distributed on an "AS IS" BASIS,
- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- See the License for the specific language governing permissions and
- limitations under the License.
- */
-package com.betfair.platform.virtualheap;
-
-public class ObjectNode extends MapNode {
-
-    public ObjectNode(int id, Heap heap) {
-        super(id, heap);
-    }
-
-    @Override
-    public NodeType getType() {
-        return NodeType.OBJECT;
-    }
-}
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import java.util.Arrays;
+
+public class ObjectNode extends MapNode {
+
+    private ObjectSchema schema;
+
+    // the children named by the schema, by slot
+    private Node[] slots;
+
+    public ObjectNode(int id, Heap heap) {
+        super(id, heap);
+    }
+
+    /**
+     * Lays this node's fields out according to the given schema, so that they can be read by slot. Binding to the
+     * schema the node is already bound to does nothing.
+     *
+     * @throws IllegalStateException if this node is already bound to a different schema
+     */
+    public void bind(ObjectSchema schema) {
+        if (this.schema == schema) {
+            return;
+        }
+        if (this.schema != null) {
+            throw new IllegalStateException("Node " + id + " is already bound to " + this.schema);
+        }
+        Node[] slots = new Node[schema.size()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = getField(schema.getSymbol(i));
+        }
+        this.slots = slots;
+        this.schema = schema;
+    }
+
+    public ObjectSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * @return the child in the given slot of the bound schema, or null if that field isn't present
+     */
+    public Node getSlot(int slot) {
+        checkBound();
+        return slots[slot];
+    }
+
+    /**
+     * Returns the child in the given slot of the bound schema, installing it with the schema's type if it isn't
+     * present.
+     */
+    public Node ensureSlot(int slot) {
+        Node node = getSlot(slot);
+        if (node == null) {
+            node = installField(false, heap.allocateId(), schema.getName(slot), schema.getType(slot));
+        }
+        return node;
+    }
+
+    @Override
+    void recycle() {
+        super.recycle();
+        schema = null;
+        slots = null;
+    }
+
+    @Override
+    void fieldInstalled(int symbol, Node child) {
+        if (schema != null) {
+            int slot = schema.slotOfSymbol(symbol);
+            if (slot != ObjectSchema.NO_SLOT) {
+                slots[slot] = child;
+            }
+        }
+    }
+
+    @Override
+    void fieldRemoved(int symbol) {
+        if (schema != null) {
+            int slot = schema.slotOfSymbol(symbol);
+            if (slot != ObjectSchema.NO_SLOT) {
+                slots[slot] = null;
+            }
+        }
+    }
+
+    @Override
+    void clear(boolean fromListener) {
+        super.clear(fromListener);
+        if (slots != null) {
+            Arrays.fill(slots, null);
+        }
+    }
+
+    void checkBound() {
+        if (schema == null) {
+            throw new IllegalStateException("Node " + id + " isn't bound to a schema");
+        }
+    }
+
+    @Override
+    public NodeType getType() {
+        return NodeType.OBJECT;
+    }
+}
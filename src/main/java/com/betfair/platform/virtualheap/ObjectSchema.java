@@ -0,0 +1,127 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A fixed, ordered set of field names and types for an {@link ObjectNode}. Once an object node is bound to a schema,
+ * each field in the schema is held in a slot of its own and can be read by slot number rather than looked up by name.
+ * The fields are still installed and removed by name, so replicas see exactly the same updates as they would without
+ * a schema.
+ */
+public final class ObjectSchema {
+
+    public static final int NO_SLOT = -1;
+
+    private final String[] names;
+    private final NodeType[] types;
+    private final int[] symbols;
+    // slot of each field indexed by FieldNames symbol, NO_SLOT for fields not in this schema
+    private final int[] slotsBySymbol;
+
+    private ObjectSchema(List<String> names, List<NodeType> types) {
+        this.names = names.toArray(new String[names.size()]);
+        this.types = types.toArray(new NodeType[types.size()]);
+        symbols = new int[this.names.length];
+        int maxSymbol = FieldNames.NONE;
+        for (int i = 0; i < symbols.length; i++) {
+            this.names[i] = FieldNames.intern(this.names[i]);
+            symbols[i] = FieldNames.symbolFor(this.names[i]);
+            maxSymbol = Math.max(maxSymbol, symbols[i]);
+        }
+        slotsBySymbol = new int[maxSymbol + 1];
+        Arrays.fill(slotsBySymbol, NO_SLOT);
+        for (int i = 0; i < symbols.length; i++) {
+            slotsBySymbol[symbols[i]] = i;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String getName(int slot) {
+        return names[slot];
+    }
+
+    public NodeType getType(int slot) {
+        return types[slot];
+    }
+
+    /**
+     * @return the {@link FieldNames} symbol of the field in the given slot
+     */
+    public int getSymbol(int slot) {
+        return symbols[slot];
+    }
+
+    /**
+     * @return the slot of the named field, or {@link #NO_SLOT} if it isn't part of this schema
+     */
+    public int slotOf(String name) {
+        return slotOfSymbol(FieldNames.lookup(name));
+    }
+
+    int slotOfSymbol(int symbol) {
+        return symbol >= 0 && symbol < slotsBySymbol.length ? slotsBySymbol[symbol] : NO_SLOT;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("ObjectSchema{");
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(names[i]).append(':').append(types[i]);
+        }
+        return sb.append('}').toString();
+    }
+
+    public static final class Builder {
+        private final List<String> names = new ArrayList<String>();
+        private final List<NodeType> types = new ArrayList<NodeType>();
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a field, which will take the next slot.
+         */
+        public Builder field(String name, NodeType type) {
+            if (name == null || type == null) {
+                throw new IllegalArgumentException("Schema fields need both a name and a type");
+            }
+            if (names.contains(name)) {
+                throw new IllegalArgumentException("Field '" + name + "' is already in the schema");
+            }
+            names.add(name);
+            types.add(type);
+            return this;
+        }
+
+        public ObjectSchema build() {
+            return new ObjectSchema(names, types);
+        }
+    }
+}
@@ -0,0 +1,765 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import com.betfair.platform.virtualheap.conflate.Conflater;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.betfair.platform.virtualheap.OffHeapNodeTable.NONE;
+
+/**
+ * A {@link MutableHeap} which keeps node type, parent, index, field name and scalar value in an
+ * {@link OffHeapNodeTable} instead of as a graph of java objects. The listener contract and update stream are
+ * identical to those of {@link MutableHeap}. Values of the primitive scalar node types are held unboxed off heap too.
+ * <p/>
+ * The {@link Node}s handed out by this heap are short lived views onto the table, so however large the heap grows the
+ * garbage collector only sees a handful of buffers plus the scalar values. As views are recreated on each access a
+ * projection is no longer cached against its node; projecting the same node twice yields two equivalent projections.
+ * For the same reason a view obtained before a {@link #compact()} must be looked up again afterwards.
+ * <p/>
+ * Lists are held as a chain of siblings in the table, each storing its own index, rather than in the counted tree
+ * {@link MutableHeap} uses. Inserting into or removing from the middle of a list renumbers every sibling after it,
+ * and looking a child up by index walks the chain, from whichever end is nearer or from the last position looked up,
+ * so both are linear in the size of the list. Walking a list in order, or appending to it, stays cheap; heaps holding
+ * long lists which are edited or read at random positions are better kept on heap.
+ */
+public class OffHeapMutableHeap extends MutableHeap {
+
+    private final OffHeapNodeTable table = new OffHeapNodeTable();
+
+    public OffHeapMutableHeap(String uri) {
+        super(uri);
+    }
+
+    public OffHeapMutableHeap(String uri, Conflater newListenerConflater) {
+        super(uri, newListenerConflater);
+    }
+
+    public OffHeapMutableHeap(String uri, Heap srcHeap, boolean populateWithCurrentState) {
+        super(uri);
+        connectToSourceHeap(srcHeap, populateWithCurrentState);
+    }
+
+    public OffHeapMutableHeap(String uri, Heap srcHeap, boolean populateWithCurrentState, Conflater newListenerConflater) {
+        super(uri, newListenerConflater);
+        connectToSourceHeap(srcHeap, populateWithCurrentState);
+    }
+
+    @Override
+    Node allocateNode(int id, NodeType type) {
+        if (isPassingThrough() && table.isAllocated(id)) {
+            throw new IllegalStateException("Can't pass through an install of node " + id + ", which is already allocated");
+        }
+        table.allocate(id, type);
+        return view(id);
+    }
+
+    @Override
+    Node getNode(int id) {
+        return table.isAllocated(id) ? view(id) : null;
+    }
+
+    /**
+     * Does nothing: off heap nodes are only ever transient views of slots in the node table, each kept for as
+     * long as its id, so there's nothing to recycle.
+     */
+    @Override
+    public void setNodePoolLimit(int maxPerType) {
+    }
+
+    @Override
+    int indexOf(Node node) {
+        return table.getIndex(node.id);
+    }
+
+    @Override
+    void deallocateNode(boolean fromListener, Node node, IntSet deallocatedIds) {
+        deallocate(fromListener, node.id, deallocatedIds);
+    }
+
+    @Override
+    int nodeLimit() {
+        return table.limit();
+    }
+
+    @Override
+    boolean isAllocated(int id) {
+        return table.isAllocated(id);
+    }
+
+    @Override
+    void moveNode(int from, int to) {
+        table.move(from, to);
+    }
+
+    @Override
+    void truncateNodes(int limit) {
+        table.truncate(limit);
+    }
+
+    private void deallocate(boolean fromListener, int id, IntSet deallocatedIds) {
+        table.free(id);
+        if (!fromListener) {
+            releaseId(id);
+        }
+        deallocateChildren(fromListener, id, deallocatedIds);
+    }
+
+    private void deallocateChildren(boolean fromListener, int id, IntSet deallocatedIds) {
+        for (int child = table.getFirstChild(id); child != NONE; child = table.getNextSibling(child)) {
+            table.free(child);
+            deallocatedIds.add(child);
+            if (!fromListener) {
+                releaseId(child);
+            }
+            deallocateChildren(fromListener, child, deallocatedIds);
+        }
+    }
+
+    private Node view(int id) {
+        Node node;
+        switch (table.getType(id)) {
+            case LIST:
+                node = new ListView(id);
+                break;
+            case MAP:
+                node = new MapView(id);
+                break;
+            case OBJECT:
+                node = new ObjectView(id);
+                break;
+            case SCALAR:
+                node = new ScalarView(id);
+                break;
+            case BOOLEAN:
+                node = new BooleanScalarView(id);
+                break;
+            case INTEGER:
+                node = new IntScalarView(id);
+                break;
+            case LONG:
+                node = new LongScalarView(id);
+                break;
+            case DOUBLE:
+                node = new DoubleScalarView(id);
+                break;
+            default:
+                throw new IllegalStateException("Can't create view for type: " + table.getType(id));
+        }
+        node.name = table.getName(id);
+        return node;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int id = 0; id < table.limit(); id++) {
+            sb.append(getNode(id)).append("\n");
+        }
+        return sb.toString();
+    }
+
+    // ---- Map and object operations
+
+    private Node linkField(int parentId, int id, String name, NodeType type) {
+        // replacing an existing field keeps its position, as a LinkedHashMap would
+        int existing = table.getField(parentId, name);
+        int before = NONE;
+        if (existing != NONE) {
+            before = table.getNextSibling(existing);
+            table.unlink(existing);
+        }
+        table.allocate(id, type);
+        table.link(parentId, id, before);
+        table.putField(parentId, id, name);
+        emitInstallField(parentId, id, FieldNames.symbolFor(name), type);
+        return view(id);
+    }
+
+    private void unlinkField(int parentId, boolean fromListener, Node child) {
+        IntSet deallocatedIds = new IntSet();
+        if (table.getParent(child.id) == parentId) {
+            table.unlink(child.id);
+        }
+        deallocateNode(fromListener, child, deallocatedIds);
+        deallocatedIds.add(child.id);
+        emitRemoveField(parentId, child.id, FieldNames.symbolFor(child.name), deallocatedIds);
+    }
+
+    private Node fieldOf(int parentId, String name) {
+        int id = table.getField(parentId, name);
+        return id == NONE ? null : view(id);
+    }
+
+    private Node fieldOf(int parentId, int symbol) {
+        int id = table.getField(parentId, symbol);
+        return id == NONE ? null : view(id);
+    }
+
+    private Set<String> fieldNames(int parentId) {
+        Set<String> fields = new LinkedHashSet<String>();
+        for (int child = table.getFirstChild(parentId); child != NONE; child = table.getNextSibling(child)) {
+            fields.add(table.getName(child));
+        }
+        return Collections.unmodifiableSet(fields);
+    }
+
+    private void clearChildren(int parentId, boolean fromListener) {
+        IntSet deallocatedIds = new IntSet();
+        for (int child = table.getFirstChild(parentId); child != NONE; child = table.getNextSibling(child)) {
+            deallocate(fromListener, child, deallocatedIds);
+            deallocatedIds.add(child);
+        }
+        table.unlinkAll(parentId);
+        emitRemoveChildren(parentId, deallocatedIds);
+    }
+
+    // views of the children of the given node, in order; only reads the table, so may be called from many threads at once
+    private List<Node> childViews(int parentId) {
+        List<Node> children = new ArrayList<Node>(table.getSize(parentId));
+        for (int child = table.getFirstChild(parentId); child != NONE; child = table.getNextSibling(child)) {
+            children.add(view(child));
+        }
+        return children;
+    }
+
+    private void visitSubtree(int parentId, NodeVisitor visitor) {
+        for (int child = table.getFirstChild(parentId); child != NONE; child = table.getNextSibling(child)) {
+            Node node = view(child);
+            visitor.visitNode(node);
+            node.visitChildren(visitor);
+        }
+    }
+
+    private boolean sameNode(Node node, Object o) {
+        return o != null && o.getClass() == node.getClass() && ((Node) o).heap == node.heap && ((Node) o).id == node.id;
+    }
+
+    private class MapView extends MapNode {
+
+        MapView(int id) {
+            super(id, OffHeapMutableHeap.this);
+        }
+
+        @Override
+        Node installField(boolean fromListener, int id, String name, NodeType type) {
+            if (!fromListener) {
+                beforeMutation();
+            }
+            return linkField(this.id, id, name, type);
+        }
+
+        @Override
+        void removeField(boolean fromListener, Node child) {
+            if (!fromListener) {
+                beforeMutation();
+            }
+            if (child != null) {
+                unlinkField(this.id, fromListener, child);
+            }
+        }
+
+        @Override
+        public Node getField(String name) {
+            return fieldOf(id, name);
+        }
+
+        @Override
+        public Node getField(int symbol) {
+            return fieldOf(id, symbol);
+        }
+
+        @Override
+        public void removeField(String name) {
+            removeField(false, getField(name));
+        }
+
+        @Override
+        public int size() {
+            return table.getSize(id);
+        }
+
+        @Override
+        void clear(boolean fromListener) {
+            if (size() == 0) {
+                return;
+            }
+            if (!fromListener) {
+                beforeMutation();
+            }
+            clearChildren(id, fromListener);
+        }
+
+        @Override
+        void visitChildren(NodeVisitor visitor) {
+            visitSubtree(id, visitor);
+        }
+
+        @Override
+        public Set<String> getFields() {
+            return fieldNames(id);
+        }
+
+        @Override
+        List<Node> childNodes() {
+            return childViews(id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return sameNode(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+    }
+
+    private class ObjectView extends ObjectNode {
+
+        ObjectView(int id) {
+            super(id, OffHeapMutableHeap.this);
+        }
+
+        @Override
+        Node installField(boolean fromListener, int id, String name, NodeType type) {
+            if (!fromListener) {
+                beforeMutation();
+            }
+            return linkField(this.id, id, name, type);
+        }
+
+        @Override
+        void removeField(boolean fromListener, Node child) {
+            if (!fromListener) {
+                beforeMutation();
+            }
+            if (child != null) {
+                unlinkField(this.id, fromListener, child);
+            }
+        }
+
+        @Override
+        public Node getField(String name) {
+            return fieldOf(id, name);
+        }
+
+        @Override
+        public Node getField(int symbol) {
+            return fieldOf(id, symbol);
+        }
+
+        @Override
+        public Node getSlot(int slot) {
+            checkBound();
+            return fieldOf(id, getSchema().getSymbol(slot));
+        }
+
+        @Override
+        public void removeField(String name) {
+            removeField(false, getField(name));
+        }
+
+        @Override
+        public int size() {
+            return table.getSize(id);
+        }
+
+        @Override
+        void clear(boolean fromListener) {
+            if (size() == 0) {
+                return;
+            }
+            if (!fromListener) {
+                beforeMutation();
+            }
+            clearChildren(id, fromListener);
+        }
+
+        @Override
+        void visitChildren(NodeVisitor visitor) {
+            visitSubtree(id, visitor);
+        }
+
+        @Override
+        public Set<String> getFields() {
+            return fieldNames(id);
+        }
+
+        @Override
+        List<Node> childNodes() {
+            return childViews(id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return sameNode(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+    }
+
+    private class ListView extends ListNode {
+
+        // last position looked up, so that walking a list by index doesn't rescan the sibling chain each time
+        private int cursorIndex = NONE;
+        private int cursorId = NONE;
+        private int cursorModCount;
+
+        ListView(int id) {
+            super(id, OffHeapMutableHeap.this);
+        }
+
+        @Override
+        Node installIndex(boolean fromListener, int id, int index, NodeType type) {
+            if (!fromListener) {
+                beforeMutation();
+            }
+            int size = size();
+            if (index < 0 || index > size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            int before = index == size ? NONE : childAt(index);
+            table.allocate(id, type);
+            table.link(this.id, id, before);
+            table.renumber(id, index);
+            emitInstallIndex(this.id, id, index, type);
+            return view(id);
+        }
+
+        @Override
+        void removeById(boolean fromListener, int id) {
+            if (!fromListener) {
+                beforeMutation();
+            }
+            IntSet deallocatedIds = new IntSet();
+            int index = table.getIndex(id);
+            int next = table.getNextSibling(id);
+            table.unlink(id);
+            if (next != NONE) {
+                table.renumber(next, index);
+            }
+            deallocate(fromListener, id, deallocatedIds);
+            deallocatedIds.add(id);
+            emitRemoveIndex(this.id, id, index, deallocatedIds);
+        }
+
+        @Override
+        List<Node> installRange(boolean fromListener, int index, int[] ids, NodeType type) {
+            if (!fromListener) {
+                beforeMutation();
+            }
+            checkRange(index, index);
+            int before = index == size() ? NONE : childAt(index);
+            List<Node> installed = new ArrayList<Node>(ids.length);
+            for (int id : ids) {
+                table.allocate(id, type);
+                table.link(this.id, id, before);
+                installed.add(view(id));
+            }
+            if (ids.length > 0) {
+                table.renumber(ids[0], index);
+                emitInstallRange(this.id, index, ids, type);
+            }
+            return installed;
+        }
+
+        @Override
+        void removeRange(boolean fromListener, int from, int to) {
+            if (!fromListener) {
+                beforeMutation();
+            }
+            checkRange(from, to);
+            if (from == to) {
+                return;
+            }
+            IntSet deallocatedIds = new IntSet();
+            int[] ids = new int[to - from];
+            int child = childAt(from);
+            for (int i = 0; i < ids.length; i++) {
+                int next = table.getNextSibling(child);
+                table.unlink(child);
+                deallocate(fromListener, child, deallocatedIds);
+                deallocatedIds.add(child);
+                ids[i] = child;
+                child = next;
+            }
+            if (child != NONE) {
+                table.renumber(child, from);
+            }
+            emitRemoveRange(this.id, from, ids, deallocatedIds);
+        }
+
+        @Override
+        public Node getIndexAt(int index) {
+            return view(childAt(index));
+        }
+
+        @Override
+        public void removeIndex(int index) {
+            removeById(false, childAt(index));
+        }
+
+        private int childAt(int index) {
+            int size = size();
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            int child;
+            int fromCursor = cursorModCount == table.modCount() && cursorIndex != NONE ? index - cursorIndex : size;
+            if (Math.abs(fromCursor) < Math.min(index, size - 1 - index)) {
+                child = cursorId;
+                for (; fromCursor > 0; fromCursor--) {
+                    child = table.getNextSibling(child);
+                }
+                for (; fromCursor < 0; fromCursor++) {
+                    child = table.getPrevSibling(child);
+                }
+            } else {
+                child = table.childAt(id, index);
+            }
+            cursorIndex = index;
+            cursorId = child;
+            cursorModCount = table.modCount();
+            return child;
+        }
+
+        @Override
+        void visitChildren(NodeVisitor visitor) {
+            visitSubtree(id, visitor);
+        }
+
+        @Override
+        void clear(boolean fromListener) {
+            if (!fromListener) {
+                beforeMutation();
+            }
+            if (size() == 0) {
+                return;
+            }
+            clearChildren(id, fromListener);
+        }
+
+        @Override
+        public int size() {
+            return table.getSize(id);
+        }
+
+        @Override
+        public List<Node> children() {
+            return Collections.unmodifiableList(childViews(id));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return sameNode(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+    }
+
+    private class ScalarView extends ScalarNode<Object> {
+
+        ScalarView(int id) {
+            super(id, OffHeapMutableHeap.this);
+        }
+
+        @Override
+        void set(boolean fromListener, Object newValue) {
+            if (!fromListener) {
+                beforeMutation();
+            }
+            Object value = table.getValue(id);
+            if (value == null && newValue == null) {
+                return;
+            }
+            if (value != null && newValue != null && value.equals(newValue)) {
+                return;
+            }
+            table.setValue(id, newValue);
+            emitSetScalar(id, newValue);
+        }
+
+        @Override
+        public Object get() {
+            return table.getValue(id);
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(get());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return sameNode(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+    }
+
+    private class BooleanScalarView extends BooleanScalarNode {
+
+        BooleanScalarView(int id) {
+            super(id, OffHeapMutableHeap.this);
+        }
+
+        @Override
+        void setBoolean(boolean fromListener, boolean newValue) {
+            if (!fromListener) {
+                beforeMutation();
+            }
+            if (getBoolean() == newValue) {
+                return;
+            }
+            table.setPayload(id, newValue ? 1L : 0L);
+            emitSetBooleanScalar(id, newValue);
+        }
+
+        @Override
+        public boolean getBoolean() {
+            return table.getPayload(id) != 0L;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return sameNode(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+    }
+
+    private class IntScalarView extends IntScalarNode {
+
+        IntScalarView(int id) {
+            super(id, OffHeapMutableHeap.this);
+        }
+
+        @Override
+        void setInt(boolean fromListener, int newValue) {
+            if (!fromListener) {
+                beforeMutation();
+            }
+            if (getInt() == newValue) {
+                return;
+            }
+            table.setPayload(id, newValue);
+            emitSetIntScalar(id, newValue);
+        }
+
+        @Override
+        public int getInt() {
+            return (int) table.getPayload(id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return sameNode(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+    }
+
+    private class LongScalarView extends LongScalarNode {
+
+        LongScalarView(int id) {
+            super(id, OffHeapMutableHeap.this);
+        }
+
+        @Override
+        void setLong(boolean fromListener, long newValue) {
+            if (!fromListener) {
+                beforeMutation();
+            }
+            if (getLong() == newValue) {
+                return;
+            }
+            table.setPayload(id, newValue);
+            emitSetLongScalar(id, newValue);
+        }
+
+        @Override
+        public long getLong() {
+            return table.getPayload(id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return sameNode(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+    }
+
+    private class DoubleScalarView extends DoubleScalarNode {
+
+        DoubleScalarView(int id) {
+            super(id, OffHeapMutableHeap.this);
+        }
+
+        @Override
+        void setDouble(boolean fromListener, double newValue) {
+            if (!fromListener) {
+                beforeMutation();
+            }
+            long bits = Double.doubleToLongBits(newValue);
+            if (table.getPayload(id) == bits) {
+                return;
+            }
+            table.setPayload(id, bits);
+            emitSetDoubleScalar(id, newValue);
+        }
+
+        @Override
+        public double getDouble() {
+            return Double.longBitsToDouble(table.getPayload(id));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return sameNode(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+    }
+}
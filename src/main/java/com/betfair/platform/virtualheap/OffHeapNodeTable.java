@@ -0,0 +1,530 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * Struct-of-arrays node storage used by {@link OffHeapMutableHeap}. Each column is a direct buffer indexed by node id,
+ * so the shape of the heap lives outside the java heap and costs the garbage collector nothing to trace.
+ * <p/>
+ * The children of a node are a doubly linked chain of siblings, which gives maps their insertion order and lists
+ * their positional order. Map fields are located through an open addressing table keyed on (parent id, name symbol).
+ * Field names are held as their {@link FieldNames} symbols and values of the primitive scalar types live in a column
+ * of raw longs, so untyped scalar values, and one canonical instance of each field name in use, are the only things
+ * held on the java heap.
+ */
+final class OffHeapNodeTable {
+
+    static final int NONE = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int INITIAL_FIELD_SLOTS = 64;
+    private static final long EMPTY_KEY = -1L;
+
+    private static final NodeType[] TYPES = NodeType.values();
+
+    // NodeType ordinal + 1, zero for a free slot
+    private IntBuffer types;
+    private IntBuffer parents;
+    private IntBuffer indices;
+    // FieldNames symbol of the field name, NONE for list entries and the root
+    private IntBuffer names;
+    private IntBuffer firstChildren;
+    private IntBuffer lastChildren;
+    private IntBuffer nextSiblings;
+    private IntBuffer prevSiblings;
+    private IntBuffer sizes;
+    // unboxed values of the primitive scalar types, doubles stored as their raw bits
+    private LongBuffer payloads;
+    private Object[] values;
+    private int capacity;
+    private int limit;
+    private int modCount;
+
+    // the canonical names of the fields in the table indexed by symbol, each held while any node is named by it, which
+    // keeps its symbol allocated
+    private String[] pinnedNames = new String[64];
+    private int[] pinCounts = new int[64];
+
+    private LongBuffer fieldKeys;
+    private IntBuffer fieldIds;
+    private int fieldCount;
+
+    OffHeapNodeTable() {
+        resize(INITIAL_CAPACITY);
+        resizeFields(INITIAL_FIELD_SLOTS);
+    }
+
+    // ---- Node slots
+
+    void allocate(int id, NodeType type) {
+        if (id >= capacity) {
+            resize(Math.max(capacity * 2, id + 1));
+        }
+        types.put(id, type.ordinal() + 1);
+        parents.put(id, NONE);
+        indices.put(id, 0);
+        names.put(id, NONE);
+        firstChildren.put(id, NONE);
+        lastChildren.put(id, NONE);
+        nextSiblings.put(id, NONE);
+        prevSiblings.put(id, NONE);
+        sizes.put(id, 0);
+        payloads.put(id, 0L);
+        values[id] = null;
+        if (id >= limit) {
+            limit = id + 1;
+        }
+    }
+
+    /**
+     * Frees the slot of a node. Its links are left in place so a subtree can be walked while it is being freed.
+     */
+    void free(int id) {
+        int symbol = names.get(id);
+        int parent = parents.get(id);
+        if (symbol != NONE) {
+            if (parent != NONE) {
+                removeFieldKey(parent, symbol, id);
+            }
+            names.put(id, NONE);
+            unpin(symbol);
+        }
+        types.put(id, 0);
+        values[id] = null;
+    }
+
+    boolean isAllocated(int id) {
+        return id >= 0 && id < limit && types.get(id) != 0;
+    }
+
+    NodeType getType(int id) {
+        return TYPES[types.get(id) - 1];
+    }
+
+    /**
+     * One past the highest id ever allocated.
+     */
+    int limit() {
+        return limit;
+    }
+
+    int getParent(int id) {
+        return parents.get(id);
+    }
+
+    int getIndex(int id) {
+        return indices.get(id);
+    }
+
+    String getName(int id) {
+        int symbol = names.get(id);
+        return FieldNames.nameOf(symbol);
+    }
+
+    int getSize(int id) {
+        return sizes.get(id);
+    }
+
+    int getFirstChild(int id) {
+        return firstChildren.get(id);
+    }
+
+    int getLastChild(int id) {
+        return lastChildren.get(id);
+    }
+
+    int getNextSibling(int id) {
+        return nextSiblings.get(id);
+    }
+
+    int getPrevSibling(int id) {
+        return prevSiblings.get(id);
+    }
+
+    Object getValue(int id) {
+        return values[id];
+    }
+
+    void setValue(int id, Object value) {
+        values[id] = value;
+    }
+
+    long getPayload(int id) {
+        return payloads.get(id);
+    }
+
+    void setPayload(int id, long payload) {
+        payloads.put(id, payload);
+    }
+
+    /**
+     * Incremented on every structural change, allowing views to cache positions within a list.
+     */
+    int modCount() {
+        return modCount;
+    }
+
+    // ---- Structure
+
+    /**
+     * Links child into the sibling chain of parent, immediately before the given sibling or last if that is NONE.
+     */
+    void link(int parent, int child, int before) {
+        int prev = before == NONE ? lastChildren.get(parent) : prevSiblings.get(before);
+        parents.put(child, parent);
+        nextSiblings.put(child, before);
+        prevSiblings.put(child, prev);
+        if (prev == NONE) {
+            firstChildren.put(parent, child);
+        } else {
+            nextSiblings.put(prev, child);
+        }
+        if (before == NONE) {
+            lastChildren.put(parent, child);
+        } else {
+            prevSiblings.put(before, child);
+        }
+        sizes.put(parent, sizes.get(parent) + 1);
+        modCount++;
+    }
+
+    void unlink(int child) {
+        int parent = parents.get(child);
+        if (parent == NONE) {
+            return;
+        }
+        int symbol = names.get(child);
+        if (symbol != NONE) {
+            removeFieldKey(parent, symbol, child);
+        }
+        int prev = prevSiblings.get(child);
+        int next = nextSiblings.get(child);
+        if (prev == NONE) {
+            firstChildren.put(parent, next);
+        } else {
+            nextSiblings.put(prev, next);
+        }
+        if (next == NONE) {
+            lastChildren.put(parent, prev);
+        } else {
+            prevSiblings.put(next, prev);
+        }
+        sizes.put(parent, sizes.get(parent) - 1);
+        parents.put(child, NONE);
+        nextSiblings.put(child, NONE);
+        prevSiblings.put(child, NONE);
+        modCount++;
+    }
+
+    /**
+     * Detaches every child of the given node at once. The children themselves are expected to have been freed.
+     */
+    void unlinkAll(int parent) {
+        firstChildren.put(parent, NONE);
+        lastChildren.put(parent, NONE);
+        sizes.put(parent, 0);
+        modCount++;
+    }
+
+    /**
+     * Positional lookup, walking from whichever end of the sibling chain is nearer.
+     */
+    int childAt(int parent, int index) {
+        int size = sizes.get(parent);
+        if (index < size / 2) {
+            int child = firstChildren.get(parent);
+            for (int i = 0; i < index; i++) {
+                child = nextSiblings.get(child);
+            }
+            return child;
+        }
+        int child = lastChildren.get(parent);
+        for (int i = size - 1; i > index; i--) {
+            child = prevSiblings.get(child);
+        }
+        return child;
+    }
+
+    /**
+     * Rewrites the index column from the given child to the end of its sibling chain.
+     */
+    void renumber(int from, int index) {
+        for (int child = from; child != NONE; child = nextSiblings.get(child)) {
+            indices.put(child, index++);
+        }
+    }
+
+    void setIndex(int id, int index) {
+        indices.put(id, index);
+    }
+
+    /**
+     * Moves a node to a free slot, repointing its parent, siblings, children and field entries at its new id.
+     */
+    void move(int from, int to) {
+        if (to >= capacity) {
+            resize(Math.max(capacity * 2, to + 1));
+        }
+        types.put(to, types.get(from));
+        parents.put(to, parents.get(from));
+        indices.put(to, indices.get(from));
+        names.put(to, names.get(from));
+        firstChildren.put(to, firstChildren.get(from));
+        lastChildren.put(to, lastChildren.get(from));
+        nextSiblings.put(to, nextSiblings.get(from));
+        prevSiblings.put(to, prevSiblings.get(from));
+        sizes.put(to, sizes.get(from));
+        payloads.put(to, payloads.get(from));
+        values[to] = values[from];
+
+        int parent = parents.get(from);
+        if (parent != NONE) {
+            int prev = prevSiblings.get(from);
+            int next = nextSiblings.get(from);
+            if (prev == NONE) {
+                firstChildren.put(parent, to);
+            } else {
+                nextSiblings.put(prev, to);
+            }
+            if (next == NONE) {
+                lastChildren.put(parent, to);
+            } else {
+                prevSiblings.put(next, to);
+            }
+            int symbol = names.get(from);
+            if (symbol != NONE) {
+                insertFieldKey(fieldKey(parent, symbol), to);
+            }
+        }
+        for (int child = firstChildren.get(from); child != NONE; child = nextSiblings.get(child)) {
+            parents.put(child, to);
+            int symbol = names.get(child);
+            if (symbol != NONE) {
+                removeFieldKey(from, symbol, child);
+                insertFieldKey(fieldKey(to, symbol), child);
+                fieldCount++;
+            }
+        }
+
+        types.put(from, 0);
+        values[from] = null;
+        if (to >= limit) {
+            limit = to + 1;
+        }
+        modCount++;
+    }
+
+    /**
+     * Forgets every slot at or above the given limit, none of which may be allocated, and gives back the storage
+     * if most of it is then unused.
+     */
+    void truncate(int newLimit) {
+        if (newLimit >= limit) {
+            return;
+        }
+        limit = newLimit;
+        if (newLimit * 4 < capacity && capacity > INITIAL_CAPACITY) {
+            resize(Math.max(INITIAL_CAPACITY, newLimit * 2));
+        }
+    }
+
+    // ---- Fields
+
+    int getField(int parent, String name) {
+        int symbol = FieldNames.lookup(name);
+        return symbol == FieldNames.NONE ? NONE : getField(parent, symbol);
+    }
+
+    int getField(int parent, int symbol) {
+        long key = fieldKey(parent, symbol);
+        int mask = fieldKeys.capacity() - 1;
+        for (int slot = slotFor(key, mask); ; slot = (slot + 1) & mask) {
+            long k = fieldKeys.get(slot);
+            if (k == EMPTY_KEY) {
+                return NONE;
+            }
+            if (k == key) {
+                return fieldIds.get(slot);
+            }
+        }
+    }
+
+    void putField(int parent, int child, String name) {
+        int symbol = pin(name);
+        names.put(child, symbol);
+        if ((fieldCount + 1) * 2 > fieldKeys.capacity()) {
+            resizeFields(fieldKeys.capacity() * 2);
+        }
+        if (insertFieldKey(fieldKey(parent, symbol), child)) {
+            fieldCount++;
+        }
+    }
+
+    private int pin(String name) {
+        String canonical = FieldNames.intern(name);
+        int symbol = FieldNames.symbolFor(canonical);
+        if (symbol >= pinCounts.length) {
+            int length = Math.max(pinCounts.length * 2, symbol + 1);
+            pinnedNames = Arrays.copyOf(pinnedNames, length);
+            pinCounts = Arrays.copyOf(pinCounts, length);
+        }
+        pinnedNames[symbol] = canonical;
+        pinCounts[symbol]++;
+        return symbol;
+    }
+
+    private void unpin(int symbol) {
+        if (--pinCounts[symbol] == 0) {
+            pinnedNames[symbol] = null;
+        }
+    }
+
+    private boolean insertFieldKey(long key, int child) {
+        int mask = fieldKeys.capacity() - 1;
+        int slot = slotFor(key, mask);
+        while (true) {
+            long k = fieldKeys.get(slot);
+            if (k == EMPTY_KEY) {
+                fieldKeys.put(slot, key);
+                fieldIds.put(slot, child);
+                return true;
+            }
+            if (k == key) {
+                fieldIds.put(slot, child);
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void removeFieldKey(int parent, int symbol, int child) {
+        long key = fieldKey(parent, symbol);
+        int mask = fieldKeys.capacity() - 1;
+        int slot = slotFor(key, mask);
+        while (true) {
+            long k = fieldKeys.get(slot);
+            if (k == EMPTY_KEY) {
+                return;
+            }
+            if (k == key) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (fieldIds.get(slot) != child) {
+            // the field has since been replaced by another node
+            return;
+        }
+        // backward shift deletion keeps probe sequences intact without tombstones
+        int hole = slot;
+        for (int next = (hole + 1) & mask; ; next = (next + 1) & mask) {
+            long k = fieldKeys.get(next);
+            if (k == EMPTY_KEY) {
+                break;
+            }
+            int home = slotFor(k, mask);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                fieldKeys.put(hole, k);
+                fieldIds.put(hole, fieldIds.get(next));
+                hole = next;
+            }
+        }
+        fieldKeys.put(hole, EMPTY_KEY);
+        fieldCount--;
+    }
+
+    private static long fieldKey(int parent, int symbol) {
+        return ((long) parent << 32) | (symbol & 0xFFFFFFFFL);
+    }
+
+    private static int slotFor(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    // ---- Storage
+
+    private void resize(int newCapacity) {
+        types = copyColumn(types, newCapacity);
+        parents = copyColumn(parents, newCapacity);
+        indices = copyColumn(indices, newCapacity);
+        names = copyColumn(names, newCapacity);
+        firstChildren = copyColumn(firstChildren, newCapacity);
+        lastChildren = copyColumn(lastChildren, newCapacity);
+        nextSiblings = copyColumn(nextSiblings, newCapacity);
+        prevSiblings = copyColumn(prevSiblings, newCapacity);
+        sizes = copyColumn(sizes, newCapacity);
+        payloads = copyColumn(payloads, newCapacity);
+        Object[] newValues = new Object[newCapacity];
+        if (values != null) {
+            System.arraycopy(values, 0, newValues, 0, Math.min(capacity, newCapacity));
+        }
+        values = newValues;
+        capacity = newCapacity;
+    }
+
+    private void resizeFields(int slots) {
+        LongBuffer oldKeys = fieldKeys;
+        IntBuffer oldIds = fieldIds;
+        fieldKeys = allocateDirect(slots * 8).asLongBuffer();
+        fieldIds = allocateDirect(slots * 4).asIntBuffer();
+        for (int i = 0; i < slots; i++) {
+            fieldKeys.put(i, EMPTY_KEY);
+        }
+        if (oldKeys != null) {
+            for (int i = 0; i < oldKeys.capacity(); i++) {
+                long key = oldKeys.get(i);
+                if (key != EMPTY_KEY) {
+                    insertFieldKey(key, oldIds.get(i));
+                }
+            }
+        }
+    }
+
+    private static IntBuffer copyColumn(IntBuffer column, int newCapacity) {
+        IntBuffer copy = allocateDirect(newCapacity * 4).asIntBuffer();
+        if (column != null) {
+            IntBuffer source = column.duplicate();
+            source.clear();
+            source.limit(Math.min(column.capacity(), newCapacity));
+            copy.put(source);
+            copy.rewind();
+        }
+        return copy;
+    }
+
+    private static LongBuffer copyColumn(LongBuffer column, int newCapacity) {
+        LongBuffer copy = allocateDirect(newCapacity * 8).asLongBuffer();
+        if (column != null) {
+            LongBuffer source = column.duplicate();
+            source.clear();
+            source.limit(Math.min(column.capacity(), newCapacity));
+            copy.put(source);
+            copy.rewind();
+        }
+        return copy;
+    }
+
+    private static ByteBuffer allocateDirect(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+}
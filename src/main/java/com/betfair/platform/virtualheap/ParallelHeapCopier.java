@@ -0,0 +1,146 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import com.betfair.platform.virtualheap.updates.InstallRoot;
+import com.betfair.platform.virtualheap.updates.Update;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Copies a heap as {@link MutableHeap.HeapCopyingNodeVisitor} does, but shares the work out to an executor.
+ * <p/>
+ * A sequential copy emits each node's child installs as it visits the node, then visits each child in turn, so the
+ * copy of a run of sibling subtrees is a contiguous stretch of the whole. The tree is split up on the calling thread
+ * into such runs, each of roughly the split size in nodes, with the large collections along the way split up in turn;
+ * the runs are copied in parallel and stitched back together in order. The calling thread holds the heap's read lock
+ * throughout, so the nodes can't change under the workers.
+ */
+final class ParallelHeapCopier {
+
+    private final Executor executor;
+    private final int splitSize;
+
+    // each either a finished stretch of the copy or one being worked on, in order
+    private final List<Object> pieces = new ArrayList<Object>();
+
+    ParallelHeapCopier(Executor executor, int splitSize) {
+        this.executor = executor;
+        this.splitSize = splitSize;
+    }
+
+    List<Update> copy(Node root) {
+        if (root == null) {
+            return new ArrayList<Update>();
+        }
+        pieces.add(Collections.singletonList(new InstallRoot(root.id, root.getType())));
+        split(root);
+        return join();
+    }
+
+    private void split(Node node) {
+        pieces.add(new MutableHeap.HeapCopyingNodeVisitor().copyInstalls(node));
+
+        List<Node> run = new ArrayList<Node>();
+        int runSize = 0;
+        for (Node child : childrenOf(node)) {
+            int size = estimatedSize(child);
+            if (size >= splitSize) {
+                submit(run);
+                run = new ArrayList<Node>();
+                runSize = 0;
+                split(child);
+            } else {
+                run.add(child);
+                runSize += size;
+                if (runSize >= splitSize) {
+                    submit(run);
+                    run = new ArrayList<Node>();
+                    runSize = 0;
+                }
+            }
+        }
+        submit(run);
+    }
+
+    private static List<Node> childrenOf(Node node) {
+        switch (node.getType()) {
+            case MAP:
+            case OBJECT:
+                return ((MapNode) node).childNodes();
+            case LIST:
+                return ((ListNode) node).children();
+            default:
+                return Collections.emptyList();
+        }
+    }
+
+    // a node and its children, which is as far as can be seen without walking the subtree
+    private static int estimatedSize(Node node) {
+        return node instanceof CollectionNode ? 1 + ((CollectionNode) node).size() : 1;
+    }
+
+    private void submit(final List<Node> run) {
+        if (run.isEmpty()) {
+            return;
+        }
+        FutureTask<List<Update>> task = new FutureTask<List<Update>>(new Callable<List<Update>>() {
+            @Override
+            public List<Update> call() {
+                return new MutableHeap.HeapCopyingNodeVisitor().copySubtrees(run);
+            }
+        });
+        executor.execute(task);
+        pieces.add(task);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Update> join() {
+        List<List<Update>> copies = new ArrayList<List<Update>>(pieces.size());
+        int size = 0;
+        for (Object piece : pieces) {
+            List<Update> copy = piece instanceof Future ? get((Future<List<Update>>) piece) : (List<Update>) piece;
+            copies.add(copy);
+            size += copy.size();
+        }
+        List<Update> updates = new ArrayList<Update>(size);
+        for (List<Update> copy : copies) {
+            updates.addAll(copy);
+        }
+        return updates;
+    }
+
+    private static List<Update> get(Future<List<Update>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted whilst traversing heap", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Failed to traverse heap", e.getCause());
+        }
+    }
+}
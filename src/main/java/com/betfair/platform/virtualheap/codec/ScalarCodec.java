@@ -0,0 +1,31 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes and reads the values of one type of scalar, for types beyond those {@link ScalarCodecs} handles itself.
+ * A codec reads back exactly the bytes it wrote, and never sees null.
+ *
+ * @see ScalarCodecs#register(int, Class, ScalarCodec)
+ */
+public interface ScalarCodec<T> {
+
+    void encode(T value, ByteBuffer buffer);
+
+    T decode(ByteBuffer buffer);
+}
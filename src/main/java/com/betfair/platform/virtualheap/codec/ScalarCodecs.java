@@ -0,0 +1,219 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.codec;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.betfair.platform.virtualheap.codec.WireFormat.*;
+
+/**
+ * Encodes scalar values as a one byte tag followed by the value. The types
+ * {@link com.betfair.platform.virtualheap.projection.ProjectorFactory} has scalar projectors for are built in, and
+ * other value classes can be given a codec of their own under a tag of their own, which must be registered the same
+ * on both ends of a stream. Registration is expected to happen before values are encoded, but is safe at any time.
+ */
+public final class ScalarCodecs {
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte BOOLEAN = 2;
+    private static final byte INTEGER = 3;
+    private static final byte LONG = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte FLOAT = 6;
+    private static final byte SHORT = 7;
+    private static final byte BYTE = 8;
+    private static final byte CHARACTER = 9;
+    private static final byte DATE = 10;
+    private static final byte BYTE_ARRAY = 11;
+
+    /**
+     * The lowest tag available to registered codecs. Those below are kept for built in types.
+     */
+    public static final int FIRST_CUSTOM_TAG = 32;
+    public static final int LAST_CUSTOM_TAG = Byte.MAX_VALUE;
+
+    // both replaced rather than changed on registration, so they can be read without locking
+    private volatile Map<Class<?>, Registration<?>> byType = new HashMap<Class<?>, Registration<?>>();
+    private volatile Registration<?>[] byTag = new Registration<?>[LAST_CUSTOM_TAG + 1];
+
+    /**
+     * Registers a codec for values of exactly the given class, or for all the constants of an enum.
+     *
+     * @throws IllegalArgumentException if the tag is outside the custom range, or it or the type is already taken
+     */
+    public synchronized <T> void register(int tag, Class<T> type, ScalarCodec<T> codec) {
+        if (tag < FIRST_CUSTOM_TAG || tag > LAST_CUSTOM_TAG) {
+            throw new IllegalArgumentException("Scalar codec tags must be from " + FIRST_CUSTOM_TAG + " to "
+                    + LAST_CUSTOM_TAG + ": " + tag);
+        }
+        if (byTag[tag] != null) {
+            throw new IllegalArgumentException("Scalar codec tag " + tag + " is already registered for "
+                    + byTag[tag].type);
+        }
+        if (byType.containsKey(type)) {
+            throw new IllegalArgumentException("A scalar codec is already registered for " + type);
+        }
+        Registration<T> registration = new Registration<T>((byte) tag, type, codec);
+        Map<Class<?>, Registration<?>> types = new HashMap<Class<?>, Registration<?>>(byType);
+        types.put(type, registration);
+        Registration<?>[] tags = byTag.clone();
+        tags[tag] = registration;
+        byType = types;
+        byTag = tags;
+    }
+
+    /**
+     * A codec for an enum which writes each constant as its ordinal.
+     */
+    public static <E extends Enum<E>> ScalarCodec<E> enumCodec(Class<E> type) {
+        final E[] constants = type.getEnumConstants();
+        return new ScalarCodec<E>() {
+            @Override
+            public void encode(E value, ByteBuffer buffer) {
+                writeVarInt(buffer, value.ordinal());
+            }
+
+            @Override
+            public E decode(ByteBuffer buffer) {
+                return constants[readVarInt(buffer)];
+            }
+        };
+    }
+
+    /**
+     * @throws IllegalArgumentException if the value is of a type with no codec
+     */
+    public void encode(Object value, ByteBuffer buffer) {
+        if (value == null) {
+            buffer.put(NULL);
+            return;
+        }
+        Class<?> type = value.getClass();
+        if (type == String.class) {
+            buffer.put(STRING);
+            writeString(buffer, (String) value);
+        } else if (type == Integer.class) {
+            buffer.put(INTEGER);
+            writeSignedVarInt(buffer, (Integer) value);
+        } else if (type == Long.class) {
+            buffer.put(LONG);
+            writeSignedVarLong(buffer, (Long) value);
+        } else if (type == Double.class) {
+            buffer.put(DOUBLE);
+            buffer.putDouble((Double) value);
+        } else if (type == Boolean.class) {
+            buffer.put(BOOLEAN);
+            buffer.put((byte) ((Boolean) value ? 1 : 0));
+        } else if (type == Float.class) {
+            buffer.put(FLOAT);
+            buffer.putFloat((Float) value);
+        } else if (type == Short.class) {
+            buffer.put(SHORT);
+            writeSignedVarInt(buffer, (Short) value);
+        } else if (type == Byte.class) {
+            buffer.put(BYTE);
+            buffer.put((Byte) value);
+        } else if (type == Character.class) {
+            buffer.put(CHARACTER);
+            writeVarInt(buffer, (Character) value);
+        } else if (type == Date.class) {
+            buffer.put(DATE);
+            writeSignedVarLong(buffer, ((Date) value).getTime());
+        } else if (type == byte[].class) {
+            byte[] bytes = (byte[]) value;
+            buffer.put(BYTE_ARRAY);
+            writeVarInt(buffer, bytes.length);
+            buffer.put(bytes);
+        } else {
+            registration(value).encode(value, buffer);
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if the value has a tag with no codec
+     */
+    public Object decode(ByteBuffer buffer) {
+        byte tag = buffer.get();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(buffer);
+            case INTEGER:
+                return readSignedVarInt(buffer);
+            case LONG:
+                return readSignedVarLong(buffer);
+            case DOUBLE:
+                return buffer.getDouble();
+            case BOOLEAN:
+                return buffer.get() != 0;
+            case FLOAT:
+                return buffer.getFloat();
+            case SHORT:
+                return (short) readSignedVarInt(buffer);
+            case BYTE:
+                return buffer.get();
+            case CHARACTER:
+                return (char) readVarInt(buffer);
+            case DATE:
+                return new Date(readSignedVarLong(buffer));
+            case BYTE_ARRAY:
+                byte[] bytes = new byte[readLength(buffer)];
+                buffer.get(bytes);
+                return bytes;
+            default:
+                Registration<?> registration = tag < FIRST_CUSTOM_TAG ? null : byTag[tag];
+                if (registration == null) {
+                    throw new IllegalStateException("No scalar codec registered for tag " + tag);
+                }
+                return registration.codec.decode(buffer);
+        }
+    }
+
+    private Registration<?> registration(Object value) {
+        Map<Class<?>, Registration<?>> types = byType;
+        Registration<?> registration = types.get(value.getClass());
+        if (registration == null && value instanceof Enum) {
+            // constants with bodies of their own are instances of subclasses of the enum
+            registration = types.get(((Enum<?>) value).getDeclaringClass());
+        }
+        if (registration == null) {
+            throw new IllegalArgumentException("No scalar codec registered for " + value.getClass());
+        }
+        return registration;
+    }
+
+    private static final class Registration<T> {
+        private final byte tag;
+        private final Class<T> type;
+        private final ScalarCodec<T> codec;
+
+        Registration(byte tag, Class<T> type, ScalarCodec<T> codec) {
+            this.tag = tag;
+            this.type = type;
+            this.codec = codec;
+        }
+
+        void encode(Object value, ByteBuffer buffer) {
+            buffer.put(tag);
+            codec.encode(type.cast(value), buffer);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.codec;
+
+import com.betfair.platform.virtualheap.FieldNames;
+import com.betfair.platform.virtualheap.IntSet;
+import com.betfair.platform.virtualheap.NodeType;
+import com.betfair.platform.virtualheap.updates.*;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.betfair.platform.virtualheap.codec.WireFormat.*;
+
+/**
+ * Reads the update blocks written to one stream by an {@link UpdateBlockEncoder}, in the order they were written.
+ */
+public class UpdateBlockDecoder {
+
+    // the symbol of each field name in the stream's dictionary, in the order they were sent, and the names, which keep
+    // the symbols allocated for as long as the stream goes on
+    private int[] symbols = new int[256];
+    private String[] names = new String[256];
+    private int dictionarySize;
+
+    private final ScalarCodecs scalars;
+
+    public UpdateBlockDecoder() {
+        this(new ScalarCodecs());
+    }
+
+    /**
+     * @param scalars the codecs for the values of generic scalars, which must match the encoder's
+     */
+    public UpdateBlockDecoder(ScalarCodecs scalars) {
+        this.scalars = scalars;
+    }
+
+    /**
+     * Reads a block from the buffer's current position. If the buffer doesn't hold the whole block, its position is
+     * left where it was, so the block can be read again once the rest of it has arrived.
+     *
+     * @throws java.nio.BufferUnderflowException if the buffer doesn't hold the whole block
+     * @throws IllegalStateException if the buffer doesn't hold a block of a version this decoder can read
+     */
+    public UpdateBlock decode(ByteBuffer buffer) {
+        int start = buffer.position();
+        int dictionaryStart = dictionarySize;
+        try {
+            int count = readHeader(buffer);
+            List<Update> updates = new ArrayList<Update>(count);
+            for (int i = 0; i < count; i++) {
+                updates.add(decodeUpdate(buffer));
+            }
+            return new UpdateBlock(updates);
+        } catch (RuntimeException e) {
+            buffer.position(start);
+            while (dictionarySize > dictionaryStart) {
+                names[--dictionarySize] = null;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Reads a block from the buffer's current position, passing each of its updates to the handler as it's read
+     * rather than creating an update for it. Nothing is passed to the handler unless the buffer holds the whole block.
+     * The ids of the nodes deallocated by removals aren't passed on.
+     * <p/>
+     * Only a failure reading the block's header leaves the buffer where it was. Once the updates are being read, some
+     * of them may already have been passed to the handler, so reading the block again would pass them twice: any
+     * failure from then on, whether reading an update or in the handler, is fatal to the stream.
+     *
+     * @return the number of updates in the block
+     * @throws java.nio.BufferUnderflowException if the buffer doesn't hold the whole block, in which case its position
+     * is left where it was
+     * @throws IllegalStateException if the buffer doesn't hold a block of a version this decoder can read, or holds an
+     * update it can't read
+     */
+    public int decode(ByteBuffer buffer, UpdateHandler handler) {
+        int start = buffer.position();
+        int count;
+        try {
+            count = readHeader(buffer);
+        } catch (RuntimeException e) {
+            buffer.position(start);
+            throw e;
+        }
+        handler.beginBlock(count);
+        for (int i = 0; i < count; i++) {
+            decodeUpdate(buffer, handler);
+        }
+        handler.endBlock();
+        return count;
+    }
+
+    /**
+     * @return whether the buffer holds a whole block from its current position
+     */
+    public boolean hasBlock(ByteBuffer buffer) {
+        return buffer.remaining() >= HEADER_SIZE
+                && buffer.getInt(buffer.position() + 1) <= buffer.remaining() - HEADER_SIZE;
+    }
+
+    // checks the version and that the whole block is there, returning the number of updates
+    private static int readHeader(ByteBuffer buffer) {
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IllegalStateException("Unsupported wire format version: " + version);
+        }
+        if (buffer.getInt() > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        return readVarInt(buffer);
+    }
+
+    private void decodeUpdate(ByteBuffer buffer, UpdateHandler handler) {
+        byte tag = buffer.get();
+        switch (tag) {
+            case INSTALL_ROOT:
+                handler.installRoot(readVarInt(buffer), readType(buffer));
+                break;
+            case INSTALL_FIELD: {
+                int parentId = readVarInt(buffer);
+                int id = readVarInt(buffer);
+                int symbol = readName(buffer);
+                handler.installField(parentId, id, symbol, readType(buffer));
+                break;
+            }
+            case INSTALL_INDEX: {
+                int parentId = readVarInt(buffer);
+                int id = readVarInt(buffer);
+                int index = readVarInt(buffer);
+                handler.installIndex(parentId, id, index, readType(buffer));
+                break;
+            }
+            case INSTALL_RANGE: {
+                int parentId = readVarInt(buffer);
+                int index = readVarInt(buffer);
+                NodeType type = readType(buffer);
+                handler.installRange(parentId, index, readIds(buffer), type);
+                break;
+            }
+            case REMOVE_FIELD: {
+                int parentId = readVarInt(buffer);
+                int id = readVarInt(buffer);
+                int symbol = readName(buffer);
+                skipDeallocatedIds(buffer);
+                handler.removeField(parentId, id, symbol, null);
+                break;
+            }
+            case REMOVE_INDEX: {
+                int parentId = readVarInt(buffer);
+                int id = readVarInt(buffer);
+                int index = readVarInt(buffer);
+                skipDeallocatedIds(buffer);
+                handler.removeIndex(parentId, id, index, null);
+                break;
+            }
+            case REMOVE_RANGE: {
+                int parentId = readVarInt(buffer);
+                int index = readVarInt(buffer);
+                int[] ids = readIds(buffer);
+                skipDeallocatedIds(buffer);
+                handler.removeRange(parentId, index, ids, null);
+                break;
+            }
+            case REMOVE_CHILDREN: {
+                int id = readVarInt(buffer);
+                skipDeallocatedIds(buffer);
+                handler.removeChildren(id, null);
+                break;
+            }
+            case SET_SCALAR: {
+                int id = readVarInt(buffer);
+                handler.setScalar(id, scalars.decode(buffer));
+                break;
+            }
+            case SET_BOOLEAN:
+                handler.setBooleanScalar(readVarInt(buffer), buffer.get() != 0);
+                break;
+            case SET_INT:
+                handler.setIntScalar(readVarInt(buffer), readSignedVarInt(buffer));
+                break;
+            case SET_LONG:
+                handler.setLongScalar(readVarInt(buffer), readSignedVarLong(buffer));
+                break;
+            case SET_DOUBLE:
+                handler.setDoubleScalar(readVarInt(buffer), buffer.getDouble());
+                break;
+            case REMAP_IDS: {
+                int[] from = readIds(buffer);
+                handler.remapIds(from, readIds(buffer));
+                break;
+            }
+            case TERMINATE_HEAP:
+                handler.terminateHeap();
+                break;
+            default:
+                throw new IllegalStateException("Unrecognised update tag: " + tag);
+        }
+    }
+
+    private Update decodeUpdate(ByteBuffer buffer) {
+        byte tag = buffer.get();
+        switch (tag) {
+            case INSTALL_ROOT:
+                return new InstallRoot(readVarInt(buffer), readType(buffer));
+            case INSTALL_FIELD: {
+                int parentId = readVarInt(buffer);
+                int id = readVarInt(buffer);
+                int symbol = readName(buffer);
+                return new InstallField(parentId, id, symbol, readType(buffer));
+            }
+            case INSTALL_INDEX: {
+                int parentId = readVarInt(buffer);
+                int id = readVarInt(buffer);
+                int index = readVarInt(buffer);
+                return new InstallIndex(parentId, id, index, readType(buffer));
+            }
+            case INSTALL_RANGE: {
+                int parentId = readVarInt(buffer);
+                int index = readVarInt(buffer);
+                NodeType type = readType(buffer);
+                return new InstallRange(parentId, index, readIds(buffer), type);
+            }
+            case REMOVE_FIELD: {
+                int parentId = readVarInt(buffer);
+                int id = readVarInt(buffer);
+                int symbol = readName(buffer);
+                return new RemoveField(parentId, id, symbol, readDeallocatedIds(buffer));
+            }
+            case REMOVE_INDEX: {
+                int parentId = readVarInt(buffer);
+                int id = readVarInt(buffer);
+                int index = readVarInt(buffer);
+                return new RemoveIndex(parentId, id, index, readDeallocatedIds(buffer));
+            }
+            case REMOVE_RANGE: {
+                int parentId = readVarInt(buffer);
+                int index = readVarInt(buffer);
+                int[] ids = readIds(buffer);
+                return new RemoveRange(parentId, index, ids, readDeallocatedIds(buffer));
+            }
+            case REMOVE_CHILDREN: {
+                int id = readVarInt(buffer);
+                return new RemoveChildren(id, readDeallocatedIds(buffer));
+            }
+            case SET_SCALAR: {
+                int id = readVarInt(buffer);
+                return new SetScalar(id, scalars.decode(buffer));
+            }
+            case SET_BOOLEAN:
+                return new SetBooleanScalar(readVarInt(buffer), buffer.get() != 0);
+            case SET_INT:
+                return new SetIntScalar(readVarInt(buffer), readSignedVarInt(buffer));
+            case SET_LONG:
+                return new SetLongScalar(readVarInt(buffer), readSignedVarLong(buffer));
+            case SET_DOUBLE:
+                return new SetDoubleScalar(readVarInt(buffer), buffer.getDouble());
+            case REMAP_IDS: {
+                int[] from = readIds(buffer);
+                return new RemapIds(from, readIds(buffer));
+            }
+            case TERMINATE_HEAP:
+                return new TerminateHeap();
+            default:
+                throw new IllegalStateException("Unrecognised update tag: " + tag);
+        }
+    }
+
+    private int readName(ByteBuffer buffer) {
+        int ref = readVarInt(buffer);
+        if (ref != NEW_NAME) {
+            if (ref > dictionarySize) {
+                throw new IllegalStateException("Unknown field name reference: " + ref);
+            }
+            return symbols[ref - 1];
+        }
+        String name = FieldNames.intern(readString(buffer));
+        int symbol = FieldNames.symbolFor(name);
+        if (dictionarySize == symbols.length) {
+            symbols = Arrays.copyOf(symbols, symbols.length * 2);
+            names = Arrays.copyOf(names, names.length * 2);
+        }
+        names[dictionarySize] = name;
+        symbols[dictionarySize++] = symbol;
+        return symbol;
+    }
+
+    private static void skipDeallocatedIds(ByteBuffer buffer) {
+        for (int count = readVarInt(buffer) - 1; count > 0; count--) {
+            readVarInt(buffer);
+        }
+    }
+
+    private static IntSet readDeallocatedIds(ByteBuffer buffer) {
+        int count = readVarInt(buffer) - 1;
+        if (count < 0) {
+            return null;
+        }
+        IntSet ids = new IntSet();
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            previous += readVarInt(buffer);
+            ids.add(previous);
+        }
+        return ids;
+    }
+}
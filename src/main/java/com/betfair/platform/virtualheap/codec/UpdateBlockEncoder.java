@@ -0,0 +1,345 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.codec;
+
+import com.betfair.platform.virtualheap.FieldNames;
+import com.betfair.platform.virtualheap.IntSet;
+import com.betfair.platform.virtualheap.NodeType;
+import com.betfair.platform.virtualheap.updates.UpdateBlock;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static com.betfair.platform.virtualheap.codec.WireFormat.*;
+
+/**
+ * Writes update blocks to one stream in the binary format read by {@link UpdateBlockDecoder}. The encoder remembers
+ * the field names it has already written, so a stream needs an encoder of its own, and its blocks must be decoded in
+ * the order they were encoded.
+ * <p/>
+ * The encoder is also an {@link UpdateHandler}, which writes each block it's handed into the buffer given to
+ * {@link #setBuffer(ByteBuffer)}. Added to a heap with
+ * {@link com.betfair.platform.virtualheap.Heap#addUpdateHandler(UpdateHandler)}, it encodes each committed block
+ * straight from the heap's buffer of updates, without an update object being created for any of them.
+ */
+public class UpdateBlockEncoder implements UpdateHandler {
+
+    // the dictionary reference each field name symbol was sent with, where NEW_NAME means it hasn't been sent
+    private int[] refs = new int[256];
+    // the symbols in the order they were sent, and their names, which keep the symbols allocated while they're in the
+    // dictionary
+    private int[] sent = new int[256];
+    private String[] sentNames = new String[256];
+    private int dictionarySize;
+
+    private final ScalarCodecs scalars;
+
+    private ByteBuffer buffer;
+    // where the block being written starts and its length goes, and the dictionary's size before it, or -1 between blocks
+    private int blockStart = -1;
+    private int lengthAt;
+    private int dictionaryStart;
+
+    public UpdateBlockEncoder() {
+        this(new ScalarCodecs());
+    }
+
+    /**
+     * @param scalars the codecs for the values of generic scalars, which must match the decoder's
+     */
+    public UpdateBlockEncoder(ScalarCodecs scalars) {
+        this.scalars = scalars;
+    }
+
+    /**
+     * Sets the buffer the blocks handed to this encoder as an {@link UpdateHandler} are written into, each from the
+     * buffer's position at the start of the block. As with {@link #encode(UpdateBlock, ByteBuffer)}, a block which
+     * fails to be written leaves the buffer's position and the encoder's dictionary where they were.
+     */
+    public void setBuffer(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Writes the block into the buffer from its current position. If the block doesn't fit, the buffer's position is
+     * left where it was, as is the encoder's dictionary, so the same block can be encoded again into a larger buffer.
+     *
+     * @throws java.nio.BufferOverflowException if the buffer hasn't room for the whole block
+     * @throws IllegalArgumentException if a scalar holds a value of a type with no codec
+     */
+    public void encode(UpdateBlock block, ByteBuffer buffer) {
+        ByteBuffer target = this.buffer;
+        this.buffer = buffer;
+        try {
+            block.replay(this);
+        } finally {
+            this.buffer = target;
+        }
+    }
+
+    @Override
+    public void beginBlock(int size) {
+        if (blockStart != -1) {
+            throw new IllegalStateException("Block already begun");
+        }
+        blockStart = buffer.position();
+        dictionaryStart = dictionarySize;
+        try {
+            buffer.put(VERSION);
+            lengthAt = buffer.position();
+            buffer.putInt(0);
+            writeVarInt(buffer, size);
+        } catch (RuntimeException e) {
+            throw abort(e);
+        }
+    }
+
+    @Override
+    public void endBlock() {
+        buffer.putInt(lengthAt, buffer.position() - lengthAt - 4);
+        blockStart = -1;
+    }
+
+    // rewinds the block being written
+    private RuntimeException abort(RuntimeException e) {
+        if (blockStart != -1) {
+            buffer.position(blockStart);
+            forget(dictionaryStart);
+            blockStart = -1;
+        }
+        return e;
+    }
+
+    @Override
+    public void installRoot(int id, NodeType type) {
+        try {
+            buffer.put(INSTALL_ROOT);
+            writeVarInt(buffer, id);
+            writeType(buffer, type);
+        } catch (RuntimeException e) {
+            throw abort(e);
+        }
+    }
+
+    @Override
+    public void installField(int parentId, int id, int symbol, NodeType type) {
+        try {
+            buffer.put(INSTALL_FIELD);
+            writeVarInt(buffer, parentId);
+            writeVarInt(buffer, id);
+            writeName(buffer, symbol);
+            writeType(buffer, type);
+        } catch (RuntimeException e) {
+            throw abort(e);
+        }
+    }
+
+    @Override
+    public void installIndex(int parentId, int id, int index, NodeType type) {
+        try {
+            buffer.put(INSTALL_INDEX);
+            writeVarInt(buffer, parentId);
+            writeVarInt(buffer, id);
+            writeVarInt(buffer, index);
+            writeType(buffer, type);
+        } catch (RuntimeException e) {
+            throw abort(e);
+        }
+    }
+
+    @Override
+    public void installRange(int parentId, int index, int[] ids, NodeType type) {
+        try {
+            buffer.put(INSTALL_RANGE);
+            writeVarInt(buffer, parentId);
+            writeVarInt(buffer, index);
+            writeType(buffer, type);
+            writeIds(buffer, ids);
+        } catch (RuntimeException e) {
+            throw abort(e);
+        }
+    }
+
+    @Override
+    public void removeField(int parentId, int id, int symbol, IntSet deallocatedIds) {
+        try {
+            buffer.put(REMOVE_FIELD);
+            writeVarInt(buffer, parentId);
+            writeVarInt(buffer, id);
+            writeName(buffer, symbol);
+            writeDeallocatedIds(buffer, deallocatedIds);
+        } catch (RuntimeException e) {
+            throw abort(e);
+        }
+    }
+
+    @Override
+    public void removeIndex(int parentId, int id, int index, IntSet deallocatedIds) {
+        try {
+            buffer.put(REMOVE_INDEX);
+            writeVarInt(buffer, parentId);
+            writeVarInt(buffer, id);
+            writeVarInt(buffer, index);
+            writeDeallocatedIds(buffer, deallocatedIds);
+        } catch (RuntimeException e) {
+            throw abort(e);
+        }
+    }
+
+    @Override
+    public void removeRange(int parentId, int index, int[] ids, IntSet deallocatedIds) {
+        try {
+            buffer.put(REMOVE_RANGE);
+            writeVarInt(buffer, parentId);
+            writeVarInt(buffer, index);
+            writeIds(buffer, ids);
+            writeDeallocatedIds(buffer, deallocatedIds);
+        } catch (RuntimeException e) {
+            throw abort(e);
+        }
+    }
+
+    @Override
+    public void removeChildren(int id, IntSet deallocatedIds) {
+        try {
+            buffer.put(REMOVE_CHILDREN);
+            writeVarInt(buffer, id);
+            writeDeallocatedIds(buffer, deallocatedIds);
+        } catch (RuntimeException e) {
+            throw abort(e);
+        }
+    }
+
+    @Override
+    public void setScalar(int id, Object value) {
+        try {
+            buffer.put(SET_SCALAR);
+            writeVarInt(buffer, id);
+            scalars.encode(value, buffer);
+        } catch (RuntimeException e) {
+            throw abort(e);
+        }
+    }
+
+    @Override
+    public void setBooleanScalar(int id, boolean value) {
+        try {
+            buffer.put(SET_BOOLEAN);
+            writeVarInt(buffer, id);
+            buffer.put((byte) (value ? 1 : 0));
+        } catch (RuntimeException e) {
+            throw abort(e);
+        }
+    }
+
+    @Override
+    public void setIntScalar(int id, int value) {
+        try {
+            buffer.put(SET_INT);
+            writeVarInt(buffer, id);
+            writeSignedVarInt(buffer, value);
+        } catch (RuntimeException e) {
+            throw abort(e);
+        }
+    }
+
+    @Override
+    public void setLongScalar(int id, long value) {
+        try {
+            buffer.put(SET_LONG);
+            writeVarInt(buffer, id);
+            writeSignedVarLong(buffer, value);
+        } catch (RuntimeException e) {
+            throw abort(e);
+        }
+    }
+
+    @Override
+    public void setDoubleScalar(int id, double value) {
+        try {
+            buffer.put(SET_DOUBLE);
+            writeVarInt(buffer, id);
+            buffer.putDouble(value);
+        } catch (RuntimeException e) {
+            throw abort(e);
+        }
+    }
+
+    @Override
+    public void remapIds(int[] from, int[] to) {
+        try {
+            buffer.put(REMAP_IDS);
+            writeIds(buffer, from);
+            writeIds(buffer, to);
+        } catch (RuntimeException e) {
+            throw abort(e);
+        }
+    }
+
+    @Override
+    public void terminateHeap() {
+        try {
+            buffer.put(TERMINATE_HEAP);
+        } catch (RuntimeException e) {
+            throw abort(e);
+        }
+    }
+
+    private void writeName(ByteBuffer buffer, int symbol) {
+        if (symbol >= refs.length) {
+            refs = Arrays.copyOf(refs, Math.max(refs.length * 2, symbol + 1));
+        }
+        int ref = refs[symbol];
+        if (ref != NEW_NAME) {
+            writeVarInt(buffer, ref);
+            return;
+        }
+        String name = FieldNames.nameOf(symbol);
+        writeVarInt(buffer, NEW_NAME);
+        writeString(buffer, name);
+        if (dictionarySize == sent.length) {
+            sent = Arrays.copyOf(sent, sent.length * 2);
+            sentNames = Arrays.copyOf(sentNames, sentNames.length * 2);
+        }
+        sentNames[dictionarySize] = name;
+        sent[dictionarySize++] = symbol;
+        refs[symbol] = dictionarySize;
+    }
+
+    // forgets the names sent since the dictionary was the given size
+    private void forget(int size) {
+        while (dictionarySize > size) {
+            refs[sent[--dictionarySize]] = NEW_NAME;
+            sentNames[dictionarySize] = null;
+        }
+    }
+
+    private static void writeDeallocatedIds(ByteBuffer buffer, IntSet deallocatedIds) {
+        // a count one more than the number of ids, so that a missing set can be told apart from an empty one
+        if (deallocatedIds == null) {
+            writeVarInt(buffer, 0);
+            return;
+        }
+        int[] ids = deallocatedIds.toArray();
+        Arrays.sort(ids);
+        writeVarInt(buffer, ids.length + 1);
+        int previous = 0;
+        for (int id : ids) {
+            writeVarInt(buffer, id - previous);
+            previous = id;
+        }
+    }
+}
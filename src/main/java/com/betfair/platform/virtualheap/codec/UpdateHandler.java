@@ -0,0 +1,75 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.codec;
+
+import com.betfair.platform.virtualheap.IntSet;
+import com.betfair.platform.virtualheap.NodeType;
+
+/**
+ * Receives the updates of a block one at a time, with their fields unpacked, so that they can be acted on without an
+ * update object being created for each. Each block's updates come between a call to {@link #beginBlock(int)} and one
+ * to {@link #endBlock()}.
+ *
+ * @see UpdateBlockDecoder#decode(java.nio.ByteBuffer, UpdateHandler)
+ * @see com.betfair.platform.virtualheap.Heap#addUpdateHandler(UpdateHandler)
+ */
+public interface UpdateHandler {
+
+    /**
+     * @param size the number of updates in the block
+     */
+    void beginBlock(int size);
+
+    void endBlock();
+
+    void installRoot(int id, NodeType type);
+
+    /**
+     * @param symbol the field name's {@link com.betfair.platform.virtualheap.FieldNames} symbol, which is only sure to
+     * stand for the name during the call, so a handler keeping it must keep the name as well
+     */
+    void installField(int parentId, int id, int symbol, NodeType type);
+
+    void installIndex(int parentId, int id, int index, NodeType type);
+
+    void installRange(int parentId, int index, int[] ids, NodeType type);
+
+    /**
+     * @param deallocatedIds the ids of the nodes deallocated by the removal, or null where they aren't known, as when
+     * read by an {@link UpdateBlockDecoder}, which skips them; likewise for the other removals
+     */
+    void removeField(int parentId, int id, int symbol, IntSet deallocatedIds);
+
+    void removeIndex(int parentId, int id, int index, IntSet deallocatedIds);
+
+    void removeRange(int parentId, int index, int[] ids, IntSet deallocatedIds);
+
+    void removeChildren(int id, IntSet deallocatedIds);
+
+    void setScalar(int id, Object value);
+
+    void setBooleanScalar(int id, boolean value);
+
+    void setIntScalar(int id, int value);
+
+    void setLongScalar(int id, long value);
+
+    void setDoubleScalar(int id, double value);
+
+    void remapIds(int[] from, int[] to);
+
+    void terminateHeap();
+}
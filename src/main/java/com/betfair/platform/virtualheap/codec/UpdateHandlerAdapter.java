@@ -0,0 +1,93 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.codec;
+
+import com.betfair.platform.virtualheap.IntSet;
+import com.betfair.platform.virtualheap.NodeType;
+
+/**
+ * An {@link UpdateHandler} which ignores every update, for handlers interested in only a few kinds of them.
+ */
+public abstract class UpdateHandlerAdapter implements UpdateHandler {
+
+    @Override
+    public void beginBlock(int size) {
+    }
+
+    @Override
+    public void endBlock() {
+    }
+
+    @Override
+    public void installRoot(int id, NodeType type) {
+    }
+
+    @Override
+    public void installField(int parentId, int id, int symbol, NodeType type) {
+    }
+
+    @Override
+    public void installIndex(int parentId, int id, int index, NodeType type) {
+    }
+
+    @Override
+    public void installRange(int parentId, int index, int[] ids, NodeType type) {
+    }
+
+    @Override
+    public void removeField(int parentId, int id, int symbol, IntSet deallocatedIds) {
+    }
+
+    @Override
+    public void removeIndex(int parentId, int id, int index, IntSet deallocatedIds) {
+    }
+
+    @Override
+    public void removeRange(int parentId, int index, int[] ids, IntSet deallocatedIds) {
+    }
+
+    @Override
+    public void removeChildren(int id, IntSet deallocatedIds) {
+    }
+
+    @Override
+    public void setScalar(int id, Object value) {
+    }
+
+    @Override
+    public void setBooleanScalar(int id, boolean value) {
+    }
+
+    @Override
+    public void setIntScalar(int id, int value) {
+    }
+
+    @Override
+    public void setLongScalar(int id, long value) {
+    }
+
+    @Override
+    public void setDoubleScalar(int id, double value) {
+    }
+
+    @Override
+    public void remapIds(int[] from, int[] to) {
+    }
+
+    @Override
+    public void terminateHeap() {
+    }
+}
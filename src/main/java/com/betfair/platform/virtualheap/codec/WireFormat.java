@@ -0,0 +1,251 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.codec;
+
+import com.betfair.platform.virtualheap.NodeType;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The tags and primitive encodings shared by {@link UpdateBlockEncoder} and {@link UpdateBlockDecoder}.
+ *
+ * <p>A block is written as the format version, the length in bytes of the rest of the block as a four byte int, the
+ * number of updates, then each update as a one byte tag followed by its fields. Ids, indices and counts are unsigned
+ * varints, and runs of ids are written as the first id followed by zigzag varint differences, which makes consecutive
+ * ids a byte each. The values of generic scalars are written by {@link ScalarCodecs}. Field names are written in full
+ * the first time they're seen on a stream and as a reference into the stream's dictionary after that.</p>
+ */
+final class WireFormat {
+
+    static final byte VERSION = 2;
+
+    // the version and the length
+    static final int HEADER_SIZE = 5;
+
+    static final byte INSTALL_ROOT = 1;
+    static final byte INSTALL_FIELD = 2;
+    static final byte INSTALL_INDEX = 3;
+    static final byte INSTALL_RANGE = 4;
+    static final byte REMOVE_FIELD = 5;
+    static final byte REMOVE_INDEX = 6;
+    static final byte REMOVE_RANGE = 7;
+    static final byte REMOVE_CHILDREN = 8;
+    static final byte SET_SCALAR = 9;
+    static final byte SET_BOOLEAN = 10;
+    static final byte SET_INT = 11;
+    static final byte SET_LONG = 12;
+    static final byte SET_DOUBLE = 13;
+    static final byte REMAP_IDS = 14;
+    static final byte TERMINATE_HEAP = 15;
+
+    // node types, given codes of their own so that the format doesn't depend on the order NodeType declares them in
+    static final byte TYPE_LIST = 0;
+    static final byte TYPE_MAP = 1;
+    static final byte TYPE_OBJECT = 2;
+    static final byte TYPE_SCALAR = 3;
+    static final byte TYPE_BOOLEAN = 4;
+    static final byte TYPE_INTEGER = 5;
+    static final byte TYPE_LONG = 6;
+    static final byte TYPE_DOUBLE = 7;
+
+    // a dictionary reference which says that the name itself follows
+    static final int NEW_NAME = 0;
+
+    private WireFormat() {
+    }
+
+    static void writeType(ByteBuffer buffer, NodeType type) {
+        switch (type) {
+            case LIST:
+                buffer.put(TYPE_LIST);
+                break;
+            case MAP:
+                buffer.put(TYPE_MAP);
+                break;
+            case OBJECT:
+                buffer.put(TYPE_OBJECT);
+                break;
+            case SCALAR:
+                buffer.put(TYPE_SCALAR);
+                break;
+            case BOOLEAN:
+                buffer.put(TYPE_BOOLEAN);
+                break;
+            case INTEGER:
+                buffer.put(TYPE_INTEGER);
+                break;
+            case LONG:
+                buffer.put(TYPE_LONG);
+                break;
+            case DOUBLE:
+                buffer.put(TYPE_DOUBLE);
+                break;
+            default:
+                throw new IllegalArgumentException("No wire code for node type: " + type);
+        }
+    }
+
+    static NodeType readType(ByteBuffer buffer) {
+        byte code = buffer.get();
+        switch (code) {
+            case TYPE_LIST:
+                return NodeType.LIST;
+            case TYPE_MAP:
+                return NodeType.MAP;
+            case TYPE_OBJECT:
+                return NodeType.OBJECT;
+            case TYPE_SCALAR:
+                return NodeType.SCALAR;
+            case TYPE_BOOLEAN:
+                return NodeType.BOOLEAN;
+            case TYPE_INTEGER:
+                return NodeType.INTEGER;
+            case TYPE_LONG:
+                return NodeType.LONG;
+            case TYPE_DOUBLE:
+                return NodeType.DOUBLE;
+            default:
+                throw new IllegalStateException("Unrecognised node type: " + code);
+        }
+    }
+
+    static void writeVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+
+    static void writeVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+
+    /**
+     * Reads the length of something about to be read into an array of that length. Each element takes at least a
+     * byte, so a length longer than what's left in the buffer can only come from a corrupt stream, and is rejected
+     * before the array is allocated rather than after.
+     */
+    static int readLength(ByteBuffer buffer) {
+        int length = readVarInt(buffer);
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalStateException("Length " + length + " is more than the " + buffer.remaining() +
+                    " bytes left");
+        }
+        return length;
+    }
+
+    static void writeSignedVarInt(ByteBuffer buffer, int value) {
+        writeVarInt(buffer, (value << 1) ^ (value >> 31));
+    }
+
+    static int readSignedVarInt(ByteBuffer buffer) {
+        int value = readVarInt(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeSignedVarLong(ByteBuffer buffer, long value) {
+        writeVarLong(buffer, (value << 1) ^ (value >> 63));
+    }
+
+    static long readSignedVarLong(ByteBuffer buffer) {
+        long value = readVarLong(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeIds(ByteBuffer buffer, int[] ids) {
+        writeVarInt(buffer, ids.length);
+        int previous = 0;
+        for (int id : ids) {
+            writeSignedVarInt(buffer, id - previous);
+            previous = id;
+        }
+    }
+
+    static int[] readIds(ByteBuffer buffer) {
+        int[] ids = new int[readLength(buffer)];
+        int previous = 0;
+        for (int i = 0; i < ids.length; i++) {
+            previous += readSignedVarInt(buffer);
+            ids[i] = previous;
+        }
+        return ids;
+    }
+
+    /**
+     * Writes the string as its length in chars followed by each char in UTF-8, straight into the buffer.
+     */
+    static void writeString(ByteBuffer buffer, String s) {
+        int length = s.length();
+        writeVarInt(buffer, length);
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    static String readString(ByteBuffer buffer) {
+        char[] chars = new char[readLength(buffer)];
+        for (int i = 0; i < chars.length; i++) {
+            int b = buffer.get() & 0xFF;
+            if (b < 0x80) {
+                chars[i] = (char) b;
+            } else if (b < 0xE0) {
+                chars[i] = (char) (((b & 0x1F) << 6) | (buffer.get() & 0x3F));
+            } else {
+                chars[i] = (char) (((b & 0x0F) << 12) | ((buffer.get() & 0x3F) << 6) | (buffer.get() & 0x3F));
+            }
+        }
+        return new String(chars);
+    }
+}
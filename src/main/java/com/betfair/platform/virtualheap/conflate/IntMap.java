@@ -0,0 +1,154 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.conflate;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from ints to non null values, held without boxing the keys, for the conflater's per node bookkeeping.
+ * Open addressing with linear probing, and backward shift deletion so that removals leave no tombstones; a null value
+ * marks a free slot.
+ */
+final class IntMap<V> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] keys;
+    private V[] values;
+    private int size = 0;
+
+    IntMap() {
+        this(INITIAL_CAPACITY / 2);
+    }
+
+    /**
+     * @param expected the number of entries to make room for up front
+     */
+    IntMap(int expected) {
+        allocate(capacityFor(expected));
+    }
+
+    int size() {
+        return size;
+    }
+
+    V get(int key) {
+        int mask = keys.length - 1;
+        for (int slot = slotFor(key, mask); values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return null;
+    }
+
+    boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return the value the key was mapped to before, or null if there wasn't one
+     */
+    V put(int key, V value) {
+        if (value == null) {
+            throw new NullPointerException("Null values aren't allowed");
+        }
+        int mask = keys.length - 1;
+        int slot = slotFor(key, mask);
+        for (; values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                V previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        // kept at most half full, so that probe sequences stay short
+        if (++size > keys.length / 2) {
+            resize(keys.length * 2);
+        }
+        return null;
+    }
+
+    V remove(int key) {
+        int mask = keys.length - 1;
+        int slot = slotFor(key, mask);
+        while (true) {
+            if (values[slot] == null) {
+                return null;
+            }
+            if (keys[slot] == key) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        V removed = values[slot];
+        int hole = slot;
+        for (int next = (hole + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+            int home = slotFor(keys[next], mask);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        values[hole] = null;
+        size--;
+        return removed;
+    }
+
+    void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        V[] oldValues = values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = slotFor(oldKeys[i], mask);
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = (V[]) new Object[capacity];
+    }
+
+    private static int capacityFor(int expected) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity / 2 < expected) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    private static int slotFor(int key, int mask) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
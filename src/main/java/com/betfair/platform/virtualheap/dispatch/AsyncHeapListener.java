@@ -0,0 +1,299 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.dispatch;
+
+import com.betfair.platform.virtualheap.HeapListener;
+import com.betfair.platform.virtualheap.updates.UpdateBlock;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delivers update blocks to another listener on a thread of its own, so that a slow listener no longer holds up the
+ * heap's writer, which otherwise calls every listener in turn whilst holding the heap's write lock. Blocks are queued
+ * in a bounded buffer and delivered to the wrapped listener in the order the heap produced them; the
+ * {@link OverflowPolicy} decides what happens when the buffer fills up.
+ * <p/>
+ * Add it to a heap in place of the listener it wraps:
+ * <pre>
+ * heap.addListener(new AsyncHeapListener(listener, 1024, OverflowPolicy.BLOCK), true);
+ * </pre>
+ * The buffer takes blocks from a single thread at a time, which a heap guarantees by only notifying listeners under
+ * its write lock, so an instance must not be shared between heaps.
+ * <p/>
+ * Under the {@link OverflowPolicy#BLOCK} policy the writer waits for room whilst still holding the heap's write lock,
+ * so the wrapped listener must not take the heap's read lock, as reading the heap outside an optimistic read or
+ * adding a listener to it would: once the buffer fills, the two would wait for each other for ever.
+ */
+public class AsyncHeapListener implements HeapListener {
+
+    // how long a blocked writer sleeps between checks, in case it misses being woken up
+    private static final long BLOCKED_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final HeapListener delegate;
+    private final OverflowPolicy policy;
+    private final SpscRing<UpdateBlock> ring;
+    private final Executor executor;
+    private final ExecutorService ownExecutor;
+    private final Runnable drainer = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Object deliveryMonitor = new Object();
+
+    // written only by the producing thread
+    private volatile long accepted;
+    private volatile Thread blockedWriter;
+    private volatile boolean closed;
+    private volatile boolean disconnected;
+    private volatile Throwable failure;
+
+    /**
+     * Delivers on a daemon thread belonging to this listener, which stops when it is {@link #close() closed}.
+     */
+    public AsyncHeapListener(final HeapListener delegate, int capacity, OverflowPolicy policy) {
+        this(delegate, capacity, policy, Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "AsyncHeapListener-" + delegate);
+                thread.setDaemon(true);
+                return thread;
+            }
+        }), true);
+    }
+
+    /**
+     * Delivers using the given executor, which may be shared with other listeners. At most one delivery task per
+     * listener is ever outstanding, which is what keeps the blocks in order.
+     */
+    public AsyncHeapListener(HeapListener delegate, int capacity, OverflowPolicy policy, Executor executor) {
+        this(delegate, capacity, policy, executor, false);
+    }
+
+    private AsyncHeapListener(HeapListener delegate, int capacity, OverflowPolicy policy, Executor executor, boolean own) {
+        if (delegate == null || policy == null || executor == null) {
+            throw new IllegalArgumentException("Delegate, policy and executor are all required");
+        }
+        this.delegate = delegate;
+        this.policy = policy;
+        this.ring = new SpscRing<UpdateBlock>(capacity);
+        this.executor = executor;
+        this.ownExecutor = own ? (ExecutorService) executor : null;
+    }
+
+    @Override
+    public void applyUpdate(UpdateBlock update) {
+        if (closed || disconnected) {
+            return;
+        }
+        if (!ring.offer(update)) {
+            switch (policy) {
+                case BLOCK:
+                    if (!awaitSpace(update)) {
+                        return;
+                    }
+                    break;
+                case DROP:
+                    dropped.incrementAndGet();
+                    return;
+                case DISCONNECT:
+                    disconnected = true;
+                    schedule();
+                    return;
+                default:
+                    throw new IllegalStateException("Unrecognised overflow policy: " + policy);
+            }
+        }
+        accepted++;
+        schedule();
+    }
+
+    // waits holding the heap's write lock, which is why the delegate mustn't need the heap's read lock
+    private boolean awaitSpace(UpdateBlock update) {
+        blockedWriter = Thread.currentThread();
+        try {
+            do {
+                // the delivery thread may have gone quiet with a full buffer if it was disconnected or closed meanwhile
+                if (closed || disconnected) {
+                    return false;
+                }
+                schedule();
+                LockSupport.parkNanos(this, BLOCKED_PARK_NANOS);
+            } while (!ring.offer(update));
+            return true;
+        } finally {
+            blockedWriter = null;
+        }
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(drainer);
+            } catch (RejectedExecutionException e) {
+                // the executor has been shut down, so nothing more can be delivered
+                failure = e;
+                disconnected = true;
+            }
+        }
+    }
+
+    private void drain() {
+        boolean finished = false;
+        try {
+            while (true) {
+                UpdateBlock block;
+                while ((block = ring.poll()) != null) {
+                    wakeWriter();
+                    if (!disconnected) {
+                        try {
+                            delegate.applyUpdate(block);
+                        } catch (RuntimeException e) {
+                            failure = e;
+                            disconnected = true;
+                        } catch (Error e) {
+                            failure = e;
+                            disconnected = true;
+                            delivered.incrementAndGet();
+                            throw e;
+                        }
+                    }
+                    delivered.incrementAndGet();
+                }
+                scheduled.set(false);
+                synchronized (deliveryMonitor) {
+                    deliveryMonitor.notifyAll();
+                }
+                // a block queued after the last poll but before the flag was cleared would otherwise be stranded
+                if (ring.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                    finished = true;
+                    return;
+                }
+            }
+        } finally {
+            if (!finished) {
+                // an error is left to reach the executor, but mustn't leave delivery scheduled for ever, so the blocks
+                // left behind are thrown away by another run, and a blocked writer sees the disconnection
+                scheduled.set(false);
+                synchronized (deliveryMonitor) {
+                    deliveryMonitor.notifyAll();
+                }
+                wakeWriter();
+                if (!ring.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+    }
+
+    private void wakeWriter() {
+        Thread writer = blockedWriter;
+        if (writer != null) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Waits until every block accepted so far has been delivered, or thrown away following a disconnection.
+     *
+     * @return false if the time ran out first
+     */
+    public boolean awaitDelivery(long timeout, TimeUnit unit) throws InterruptedException {
+        long target = accepted;
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (deliveryMonitor) {
+            while (delivered.get() < target) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(deliveryMonitor, remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops accepting blocks. Those already queued are still delivered, after which a delivery thread belonging to this
+     * listener stops. Call once the listener has been removed from its heap.
+     */
+    public void close() {
+        closed = true;
+        wakeWriter();
+        if (ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
+    }
+
+    public HeapListener getDelegate() {
+        return delegate;
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    public int getCapacity() {
+        return ring.capacity();
+    }
+
+    /**
+     * @return the number of blocks waiting to be delivered
+     */
+    public int getQueued() {
+        return ring.size();
+    }
+
+    /**
+     * @return the number of blocks thrown away under the {@link OverflowPolicy#DROP} policy
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return true if the buffer overflowed under the {@link OverflowPolicy#DISCONNECT} policy, the wrapped listener
+     * threw or the executor refused a delivery, after which nothing more is delivered
+     */
+    public boolean isDisconnected() {
+        return disconnected;
+    }
+
+    /**
+     * @return the exception or error which disconnected the listener, if one did
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncHeapListener{" + delegate + ", policy=" + policy + ", queued=" + getQueued() + '}';
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.dispatch;
+
+import com.betfair.platform.virtualheap.HeapListener;
+import com.betfair.platform.virtualheap.conflate.Conflater;
+import com.betfair.platform.virtualheap.updates.UpdateBlock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Delivers update blocks to another listener on a thread of its own, and when that listener falls behind merges the
+ * blocks waiting for it through a {@link Conflater}, so that it catches up with one compact block rather than replaying
+ * every one it missed. The blocks waiting are conflated once there are more than a given number of them, or once the
+ * oldest has waited longer than a given time, whichever comes first; a listener which keeps up sees every block as the
+ * heap produced it.
+ * <p/>
+ * Unlike an {@link AsyncHeapListener} nothing is ever dropped and the writer is never held up by the listener. The
+ * delivery thread conflates the blocks which queued up whilst the listener was busy each time it comes back for them.
+ * So that a stalled listener doesn't leave every block the heap produces queued for it, the writer also folds the
+ * queue into one conflated block each time more than the given number of blocks are waiting. What is held is then at
+ * most that number of blocks on top of one conflated block, which is no bigger than the changes it stands for, and the
+ * writer conflates only once for every so many blocks it queues.
+ */
+public class ConflatingHeapListener implements HeapListener {
+
+    private final HeapListener delegate;
+    private final Conflater conflater;
+    private final int maxPendingBlocks;
+    private final long maxLagNanos;
+    private final Executor executor;
+    private final ExecutorService ownExecutor;
+    private final Runnable drainer = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    // guarded by this
+    private List<UpdateBlock> pending = new ArrayList<UpdateBlock>();
+    private long oldestPending;
+    // blocks are counted as the heap produced them, however many are conflated together
+    private int pendingBlocks;
+    private long accepted;
+    private long delivered;
+    private long conflations;
+    private long blocksConflated;
+    private long updatesConflated;
+    private long updatesSaved;
+
+    private volatile boolean closed;
+    private volatile RuntimeException failure;
+
+    /**
+     * Delivers on a daemon thread belonging to this listener, which stops when it is {@link #close() closed}.
+     *
+     * @param maxPendingBlocks the number of blocks which may wait for the listener before they're conflated
+     * @param maxLag how long a block may wait for the listener before it is conflated with those behind it
+     */
+    public ConflatingHeapListener(final HeapListener delegate, Conflater conflater, int maxPendingBlocks,
+                                  long maxLag, TimeUnit unit) {
+        this(delegate, conflater, maxPendingBlocks, maxLag, unit, Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ConflatingHeapListener-" + delegate);
+                thread.setDaemon(true);
+                return thread;
+            }
+        }), true);
+    }
+
+    /**
+     * Delivers using the given executor, which may be shared with other listeners.
+     */
+    public ConflatingHeapListener(HeapListener delegate, Conflater conflater, int maxPendingBlocks,
+                                  long maxLag, TimeUnit unit, Executor executor) {
+        this(delegate, conflater, maxPendingBlocks, maxLag, unit, executor, false);
+    }
+
+    private ConflatingHeapListener(HeapListener delegate, Conflater conflater, int maxPendingBlocks,
+                                   long maxLag, TimeUnit unit, Executor executor, boolean own) {
+        if (delegate == null || conflater == null || unit == null || executor == null) {
+            throw new IllegalArgumentException("Delegate, conflater, unit and executor are all required");
+        }
+        if (maxPendingBlocks < 1 || maxLag < 0) {
+            throw new IllegalArgumentException("Invalid thresholds: " + maxPendingBlocks + " blocks, " + maxLag + " " + unit);
+        }
+        this.delegate = delegate;
+        this.conflater = conflater;
+        this.maxPendingBlocks = maxPendingBlocks;
+        this.maxLagNanos = unit.toNanos(maxLag);
+        this.executor = executor;
+        this.ownExecutor = own ? (ExecutorService) executor : null;
+    }
+
+    @Override
+    public void applyUpdate(UpdateBlock update) {
+        if (closed || failure != null) {
+            return;
+        }
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                oldestPending = System.nanoTime();
+            }
+            pending.add(update);
+            pendingBlocks++;
+            accepted++;
+            // starting again from one block each time, so the conflating is spread over the blocks queued in between
+            if (pending.size() > maxPendingBlocks) {
+                conflatePending();
+            }
+        }
+        schedule();
+    }
+
+    // guarded by this
+    private boolean isLagging(long now) {
+        return pending.size() > maxPendingBlocks || (pending.size() > 1 && now - oldestPending > maxLagNanos);
+    }
+
+    // guarded by this
+    private void conflatePending() {
+        UpdateBlock[] blocks = pending.toArray(new UpdateBlock[pending.size()]);
+        UpdateBlock merged = conflater.conflate(blocks);
+        int updatesIn = 0;
+        for (UpdateBlock block : blocks) {
+            updatesIn += block.size();
+        }
+        conflations++;
+        blocksConflated += blocks.length;
+        updatesConflated += updatesIn;
+        updatesSaved += updatesIn - merged.size();
+
+        // the merged block stands in for all of them, so stays as old as the oldest
+        pending = new ArrayList<UpdateBlock>();
+        pending.add(merged);
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(drainer);
+            } catch (RejectedExecutionException e) {
+                // the executor has been shut down, so nothing more can be delivered
+                failure = e;
+            }
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            List<UpdateBlock> blocks;
+            int count;
+            synchronized (this) {
+                if (!pending.isEmpty() && isLagging(System.nanoTime())) {
+                    conflatePending();
+                }
+                blocks = pending;
+                count = pendingBlocks;
+                pending = new ArrayList<UpdateBlock>();
+                pendingBlocks = 0;
+            }
+            for (UpdateBlock block : blocks) {
+                if (failure == null && !block.isEmpty()) {
+                    try {
+                        delegate.applyUpdate(block);
+                    } catch (RuntimeException e) {
+                        failure = e;
+                    }
+                }
+            }
+            scheduled.set(false);
+            synchronized (this) {
+                delivered += count;
+                notifyAll();
+                // a block queued since the pending blocks were taken would otherwise be stranded
+                if (pending.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until every block accepted so far has been delivered, either as it was or as part of a conflated block.
+     *
+     * @return false if the time ran out first
+     */
+    public synchronized boolean awaitDelivery(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long target = accepted;
+        while (delivered < target) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+
+    /**
+     * Stops accepting blocks. Those already waiting are still delivered, after which a delivery thread belonging to
+     * this listener stops.
+     */
+    public void close() {
+        closed = true;
+        if (ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
+    }
+
+    public HeapListener getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * @return the number of blocks produced by the heap which are waiting to be delivered, whether or not they have been
+     * conflated together yet
+     */
+    public synchronized int getPending() {
+        return pendingBlocks;
+    }
+
+    /**
+     * @return the number of blocks held waiting to be delivered, where blocks conflated together count as one
+     */
+    public synchronized int getQueuedBlocks() {
+        return pending.size();
+    }
+
+    /**
+     * @return the number of updates in the blocks held waiting to be delivered
+     */
+    public synchronized int getQueuedUpdates() {
+        int updates = 0;
+        for (UpdateBlock block : pending) {
+            updates += block.size();
+        }
+        return updates;
+    }
+
+    /**
+     * @return the number of times the blocks waiting have been conflated
+     */
+    public synchronized long getConflations() {
+        return conflations;
+    }
+
+    /**
+     * @return the number of blocks which have been merged into conflated blocks, counting those merged more than once
+     * each time
+     */
+    public synchronized long getBlocksConflated() {
+        return blocksConflated;
+    }
+
+    /**
+     * @return the number of updates which have gone into conflated blocks, counting those conflated more than once
+     * each time
+     */
+    public synchronized long getUpdatesConflated() {
+        return updatesConflated;
+    }
+
+    /**
+     * @return the number of updates conflation has saved the listener from applying
+     */
+    public synchronized long getUpdatesSaved() {
+        return updatesSaved;
+    }
+
+    /**
+     * @return the exception which stopped delivery, if one did
+     */
+    public RuntimeException getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return "ConflatingHeapListener{" + delegate + ", pending=" + getPending() + ", conflations=" + getConflations() + '}';
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.dispatch;
+
+/**
+ * What an {@link AsyncHeapListener} does with a new update block when its buffer is already full.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Holds up the heap's writer until the listener has made room. Nothing is lost, but a listener which stops
+     * altogether stops the heap with it. The writer waits holding the heap's write lock, so a listener which takes the
+     * heap's read lock deadlocks with it.
+     */
+    BLOCK,
+
+    /**
+     * Throws the block away and counts it. The listener's view of the heap is no longer complete, so this only suits
+     * listeners which don't rebuild the heap, such as those gathering statistics.
+     */
+    DROP,
+
+    /**
+     * Disconnects the listener: everything still queued for it is thrown away and nothing more is delivered to it. The
+     * listener can then be removed and replaced by one which starts again from the heap's current state.
+     */
+    DISCONNECT
+}
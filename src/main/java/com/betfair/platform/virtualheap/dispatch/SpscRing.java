@@ -0,0 +1,109 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.dispatch;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded ring buffer for exactly one producing thread and one consuming thread at a time. Neither side takes a lock:
+ * each owns one counter and only reads the other's, and each caches the last value it read so that it only goes back
+ * to the other side's counter when the ring looks full or empty.
+ */
+final class SpscRing<E> {
+
+    private final Object[] buffer;
+    private final int mask;
+
+    // the next slot to read, written only by the consumer
+    private final AtomicLong head = new AtomicLong();
+    // the next slot to write, written only by the producer
+    private final AtomicLong tail = new AtomicLong();
+
+    private long headCache;
+    private long tailCache;
+
+    /**
+     * @param capacity rounded up to the next power of two
+     */
+    SpscRing(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        buffer = new Object[size];
+        mask = size - 1;
+    }
+
+    int capacity() {
+        return buffer.length;
+    }
+
+    /**
+     * Producer only.
+     *
+     * @return false if the ring is full
+     */
+    boolean offer(E element) {
+        long t = tail.get();
+        if (t - headCache == buffer.length) {
+            headCache = head.get();
+            if (t - headCache == buffer.length) {
+                return false;
+            }
+        }
+        buffer[(int) t & mask] = element;
+        // publishes the element along with the counter
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Consumer only.
+     *
+     * @return the oldest element, or null if the ring is empty
+     */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        long h = head.get();
+        if (h == tailCache) {
+            tailCache = tail.get();
+            if (h == tailCache) {
+                return null;
+            }
+        }
+        int slot = (int) h & mask;
+        E element = (E) buffer[slot];
+        buffer[slot] = null;
+        head.lazySet(h + 1);
+        return element;
+    }
+
+    /**
+     * Safe from either side, though only a snapshot while the other side is active.
+     */
+    int size() {
+        // read the head first so that the size can't come out negative
+        long h = head.get();
+        return (int) (tail.get() - h);
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+}
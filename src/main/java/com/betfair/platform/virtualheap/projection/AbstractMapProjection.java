@@ -1 +1,85 @@
-/* Copyright 2013, The Sporting Exchange Limited Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License. */package com.betfair.platform.virtualheap.projection;import com.betfair.platform.virtualheap.HMapBase;import com.betfair.platform.virtualheap.MapNode;import java.util.Set;public abstract class AbstractMapProjection<T> implements HMapBase<T> {	protected MapNode node;		public AbstractMapProjection(MapNode node) {		this.node = node;	}    @Override    public void remove(String key) {        node.removeField(key);    }		@Override    public void clear() {		node.clear();	}		public int size() {		return node.size();	}    @Override    public Set<String> keySet() {        return node.getFields();    }}
\ No newline at end of file
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.projection;
+
+
+
+
+
+import com.betfair.platform.virtualheap.HMapBase;
+
+import com.betfair.platform.virtualheap.MapNode;
+
+
+
+import java.util.Set;
+
+
+
+public abstract class AbstractMapProjection<T> implements HMapBase<T> {
+
+
+
+	protected MapNode node;
+
+	
+
+	public AbstractMapProjection(MapNode node) {
+
+		this.node = node;
+
+	}
+
+
+
+    @Override
+
+    public void remove(String key) {
+
+        node.removeField(key);
+
+    }
+
+	
+
+	@Override
+
+    public void clear() {
+
+		node.clear();
+
+	}
+
+	
+
+	public int size() {
+
+		return node.size();
+
+	}
+
+
+
+    @Override
+
+    public Set<String> keySet() {
+
+        return node.getFields();
+
+    }
+
+}
+
@@ -1 +1,69 @@
-/* Copyright 2013, The Sporting Exchange Limited Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License. */package com.betfair.platform.virtualheap.projection;import com.betfair.platform.virtualheap.ListNode;import com.betfair.platform.virtualheap.Node;import com.betfair.platform.virtualheap.NodeType;public class ComplexListProjector<T> implements NodeProjector<ComplexListProjection<T>> {	private NodeProjector<T> valueProjector;	public ComplexListProjector(NodeProjector<T> valueProjector) {		this.valueProjector = valueProjector;	}	@Override	public ComplexListProjection<T> project(Node node) {		return new ComplexListProjection<T>((ListNode)node, valueProjector);	}		@Override	public NodeType getType() {		return NodeType.LIST;	}	}
\ No newline at end of file
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.projection;
+
+
+
+
+
+import com.betfair.platform.virtualheap.ListNode;
+
+import com.betfair.platform.virtualheap.Node;
+
+import com.betfair.platform.virtualheap.NodeType;
+
+
+
+public class ComplexListProjector<T> implements NodeProjector<ComplexListProjection<T>> {
+
+	private NodeProjector<T> valueProjector;
+
+
+
+	public ComplexListProjector(NodeProjector<T> valueProjector) {
+
+		this.valueProjector = valueProjector;
+
+	}
+
+
+
+
+
+	@Override
+
+	public ComplexListProjection<T> project(Node node) {
+
+		return new ComplexListProjection<T>((ListNode)node, valueProjector);
+
+	}
+
+
+
+	
+
+	@Override
+
+	public NodeType getType() {
+
+		return NodeType.LIST;
+
+	}
+
+	
+
+}
+
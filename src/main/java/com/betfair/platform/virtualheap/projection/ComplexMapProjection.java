@@ -1 +1,75 @@
-/* Copyright 2013, The Sporting Exchange Limited Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License. */package com.betfair.platform.virtualheap.projection;import com.betfair.platform.virtualheap.HMapComplex;import com.betfair.platform.virtualheap.MapNode;import com.betfair.platform.virtualheap.Node;public class ComplexMapProjection<T> extends AbstractMapProjection<T> implements HMapComplex<T> {	private NodeProjector<T> valueProjector;	public ComplexMapProjection(MapNode node, NodeProjector<T> valueProjector) {		super(node);		this.valueProjector = valueProjector;	}	@Override    public T get(String key) {		Node value = node.getField(key);		if (value!=null) {			return value.project(valueProjector);		} else {			return null;		}	}	@Override    public T put(String key) {		return node.ensureField(key, valueProjector.getType()).project(valueProjector);	}}
\ No newline at end of file
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.projection;
+
+
+
+
+
+import com.betfair.platform.virtualheap.HMapComplex;
+
+import com.betfair.platform.virtualheap.MapNode;
+
+import com.betfair.platform.virtualheap.Node;
+
+
+
+public class ComplexMapProjection<T> extends AbstractMapProjection<T> implements HMapComplex<T> {
+
+	private NodeProjector<T> valueProjector;
+
+
+
+	public ComplexMapProjection(MapNode node, NodeProjector<T> valueProjector) {
+
+		super(node);
+
+		this.valueProjector = valueProjector;
+
+	}
+
+
+
+	@Override
+
+    public T get(String key) {
+
+		Node value = node.getField(key);
+
+		if (value!=null) {
+
+			return value.project(valueProjector);
+
+		} else {
+
+			return null;
+
+		}
+
+	}
+
+
+
+	@Override
+
+    public T put(String key) {
+
+		return node.ensureField(key, valueProjector.getType()).project(valueProjector);
+
+	}
+
+}
+
@@ -0,0 +1,36 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.projection;
+
+import com.betfair.platform.virtualheap.Node;
+import com.betfair.platform.virtualheap.NodeType;
+
+/**
+ * Projects {@link NodeType#DOUBLE} nodes, which hold their value as an unboxed {@code double}.
+ */
+public class DoubleScalarProjector extends ScalarProjector<Double> {
+
+    @Override
+    public DoubleScalarProjection project(Node node) {
+        return (DoubleScalarProjection) node;
+    }
+
+    @Override
+    public NodeType getType() {
+        return NodeType.DOUBLE;
+    }
+
+}
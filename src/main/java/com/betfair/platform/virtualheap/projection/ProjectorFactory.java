@@ -1 +1,91 @@
-/* Copyright 2013, The Sporting Exchange Limited Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License. */package com.betfair.platform.virtualheap.projection;import java.util.Date;public class ProjectorFactory {	public static <T> ComplexListProjector<T> listProjector(NodeProjector<T> valueProjector) {		return new ComplexListProjector<T>(valueProjector);	}	public static <T> ScalarListProjector<T> listProjector(ScalarProjector<T> valueProjector) {		return new ScalarListProjector<T>(valueProjector);	}	public static <T> ComplexMapProjector<T> mapProjector(NodeProjector<T> valueProjector) {		return new ComplexMapProjector<T>(valueProjector);	}	public static <T> ScalarMapProjector<T> mapProjector(ScalarProjector<T> valueProjector) {		return new ScalarMapProjector<T>(valueProjector);	}	public static <T> ObjectProjector<T> objectProjector(Class<T> clazz) {		return new ObjectProjector<T>(clazz);	}    public static ScalarProjector<Boolean> booleanProjector = new ScalarProjector<Boolean>();	public static ScalarProjector<Integer> intProjector = new ScalarProjector<Integer>();	public static ScalarProjector<Long> longProjector = new ScalarProjector<Long>();	public static ScalarProjector<Date> dateProjector = new ScalarProjector<Date>();    public static ScalarProjector<Character> charProjector = new ScalarProjector<Character>();    public static ScalarProjector<Byte> byteProjector = new ScalarProjector<Byte>();    public static ScalarProjector<byte[]> byteArrayProjector = new ScalarProjector<byte[]>();    public static ScalarProjector<Float> floatProjector = new ScalarProjector<Float>();    public static ScalarProjector<Double> doubleProjector = new ScalarProjector<Double>();    public static ScalarProjector<Short> shortProjector = new ScalarProjector<Short>();	public static ScalarProjector<String> stringProjector = new ScalarProjector<String>();}
\ No newline at end of file
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.projection;
+
+
+
+import java.util.Date;
+
+
+
+public class ProjectorFactory {
+
+
+
+	public static <T> ComplexListProjector<T> listProjector(NodeProjector<T> valueProjector) {
+
+		return new ComplexListProjector<T>(valueProjector);
+
+	}
+
+	public static <T> ScalarListProjector<T> listProjector(ScalarProjector<T> valueProjector) {
+
+		return new ScalarListProjector<T>(valueProjector);
+
+	}
+
+	public static <T> ComplexMapProjector<T> mapProjector(NodeProjector<T> valueProjector) {
+
+		return new ComplexMapProjector<T>(valueProjector);
+
+	}
+
+	public static <T> ScalarMapProjector<T> mapProjector(ScalarProjector<T> valueProjector) {
+
+		return new ScalarMapProjector<T>(valueProjector);
+
+	}
+
+	public static <T> ObjectProjector<T> objectProjector(Class<T> clazz) {
+
+		return new ObjectProjector<T>(clazz);
+
+	}
+
+    public static ScalarProjector<Boolean> booleanProjector = new ScalarProjector<Boolean>();
+
+	public static ScalarProjector<Integer> intProjector = new ScalarProjector<Integer>();
+
+	public static ScalarProjector<Long> longProjector = new ScalarProjector<Long>();
+
+	public static ScalarProjector<Date> dateProjector = new ScalarProjector<Date>();
+
+    public static ScalarProjector<Character> charProjector = new ScalarProjector<Character>();
+
+    public static ScalarProjector<Byte> byteProjector = new ScalarProjector<Byte>();
+
+    public static ScalarProjector<byte[]> byteArrayProjector = new ScalarProjector<byte[]>();
+
+    public static ScalarProjector<Float> floatProjector = new ScalarProjector<Float>();
+
+    public static ScalarProjector<Double> doubleProjector = new ScalarProjector<Double>();
+
+    public static ScalarProjector<Short> shortProjector = new ScalarProjector<Short>();
+
+	public static ScalarProjector<String> stringProjector = new ScalarProjector<String>();
+
+    public static BooleanScalarProjector unboxedBooleanProjector = new BooleanScalarProjector();
+
+    public static IntScalarProjector unboxedIntProjector = new IntScalarProjector();
+
+    public static LongScalarProjector unboxedLongProjector = new LongScalarProjector();
+
+    public static DoubleScalarProjector unboxedDoubleProjector = new DoubleScalarProjector();
+
+
+
+}
+
@@ -0,0 +1,225 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.snapshot;
+
+import com.betfair.platform.virtualheap.FieldNames;
+import com.betfair.platform.virtualheap.HeapListener;
+import com.betfair.platform.virtualheap.NodeType;
+import com.betfair.platform.virtualheap.updates.InstallField;
+import com.betfair.platform.virtualheap.updates.InstallIndex;
+import com.betfair.platform.virtualheap.updates.InstallRoot;
+import com.betfair.platform.virtualheap.updates.SetBooleanScalar;
+import com.betfair.platform.virtualheap.updates.SetDoubleScalar;
+import com.betfair.platform.virtualheap.updates.SetIntScalar;
+import com.betfair.platform.virtualheap.updates.SetLongScalar;
+import com.betfair.platform.virtualheap.updates.SetScalar;
+import com.betfair.platform.virtualheap.updates.TerminateHeap;
+import com.betfair.platform.virtualheap.updates.Update;
+import com.betfair.platform.virtualheap.updates.UpdateBlock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable, consistent view of a heap as it stood at the end of one update. Snapshots are taken without any
+ * locking, and stay valid however long they're held and however far the heap moves on in the meantime.
+ *
+ * @see SnapshotPublisher
+ */
+public final class HeapSnapshot {
+
+    static final HeapSnapshot EMPTY = new HeapSnapshot(NodeTrie.EMPTY, -1, 0, false);
+
+    private final NodeTrie nodes;
+    private final int rootId;
+    private final long version;
+    private final boolean terminated;
+
+    HeapSnapshot(NodeTrie nodes, int rootId, long version, boolean terminated) {
+        this.nodes = nodes;
+        this.rootId = rootId;
+        this.version = version;
+        this.terminated = terminated;
+    }
+
+    NodeTrie nodes() {
+        return nodes;
+    }
+
+    int rootId() {
+        return rootId;
+    }
+
+    /**
+     * @return the number of update blocks which went into this snapshot
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isTerminated() {
+        return terminated;
+    }
+
+    /**
+     * @return the root node, or null if the heap has no root yet
+     */
+    public SnapshotNode getRoot() {
+        return rootId < 0 ? null : getNode(rootId);
+    }
+
+    /**
+     * @return the node with the given id, or null if there isn't one
+     */
+    public SnapshotNode getNode(int id) {
+        return (SnapshotNode) nodes.get(id);
+    }
+
+    /**
+     * @return the child of a list node at the given index
+     */
+    public SnapshotNode getIndexAt(SnapshotNode list, int index) {
+        return getNode(list.getChildId(index));
+    }
+
+    /**
+     * @return the named child of a map node, or null if there isn't one
+     */
+    public SnapshotNode getField(SnapshotNode map, String name) {
+        int symbol = FieldNames.lookup(name);
+        if (symbol == FieldNames.NONE) {
+            return null;
+        }
+        int position = map.fieldPosition(symbol);
+        return position < 0 ? null : getNode(map.getChildId(position));
+    }
+
+    /**
+     * Passes the whole of this snapshot to the given listener as a single block, just as
+     * {@link com.betfair.platform.virtualheap.Heap#traverse(HeapListener)} would for the heap at this version.
+     */
+    public void traverse(HeapListener listener) {
+        traverse(listener, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Passes the whole of this snapshot to the given listener in blocks of at most chunkSize updates. Each node is
+     * installed before any of its children, so the listener can apply every block as it comes.
+     */
+    public void traverse(HeapListener listener, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        Chunks chunks = new Chunks(listener, chunkSize);
+        SnapshotNode root = getRoot();
+        if (root != null) {
+            chunks.add(new InstallRoot(root.getId(), root.getType()));
+            copy(root, chunks);
+        }
+        if (terminated) {
+            chunks.add(new TerminateHeap());
+        }
+        chunks.finish();
+    }
+
+    private void copy(SnapshotNode node, Chunks chunks) {
+        // each node's children are installed as it's visited, then each child is visited in turn
+        switch (node.getType()) {
+            case MAP:
+            case OBJECT:
+                for (int i = 0; i < node.size(); i++) {
+                    SnapshotNode child = getNode(node.getChildId(i));
+                    chunks.add(new InstallField(node.getId(), child.getId(), node.getSymbol(i), child.getType()));
+                }
+                break;
+            case LIST:
+                for (int i = 0; i < node.size(); i++) {
+                    SnapshotNode child = getNode(node.getChildId(i));
+                    chunks.add(new InstallIndex(node.getId(), child.getId(), i, child.getType()));
+                }
+                break;
+            default:
+                chunks.add(toUpdate(node));
+                return;
+        }
+        for (int i = 0; i < node.size(); i++) {
+            copy(getNode(node.getChildId(i)), chunks);
+        }
+    }
+
+    private static SetScalar toUpdate(SnapshotNode node) {
+        Object value = node.getValue();
+        switch (node.getType()) {
+            case BOOLEAN:
+                return new SetBooleanScalar(node.getId(), (Boolean) value);
+            case INTEGER:
+                return new SetIntScalar(node.getId(), ((Number) value).intValue());
+            case LONG:
+                return new SetLongScalar(node.getId(), ((Number) value).longValue());
+            case DOUBLE:
+                return new SetDoubleScalar(node.getId(), ((Number) value).doubleValue());
+            default:
+                return new SetScalar(node.getId(), value);
+        }
+    }
+
+    static Object initialValue(NodeType type) {
+        switch (type) {
+            case BOOLEAN:
+                return Boolean.FALSE;
+            case INTEGER:
+                return 0;
+            case LONG:
+                return 0L;
+            case DOUBLE:
+                return 0.0;
+            default:
+                return null;
+        }
+    }
+
+    private static final class Chunks {
+        private final HeapListener listener;
+        private final int chunkSize;
+        private List<Update> updates = new ArrayList<Update>();
+        private boolean delivered;
+
+        Chunks(HeapListener listener, int chunkSize) {
+            this.listener = listener;
+            this.chunkSize = chunkSize;
+        }
+
+        void add(Update update) {
+            updates.add(update);
+            if (updates.size() == chunkSize) {
+                deliver();
+            }
+        }
+
+        // always delivers at least one block, even for an empty snapshot
+        void finish() {
+            if (!updates.isEmpty() || !delivered) {
+                deliver();
+            }
+        }
+
+        private void deliver() {
+            listener.applyUpdate(new UpdateBlock(updates));
+            updates = new ArrayList<Update>();
+            delivered = true;
+        }
+    }
+}
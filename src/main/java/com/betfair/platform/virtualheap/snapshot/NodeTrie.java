@@ -0,0 +1,108 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.snapshot;
+
+/**
+ * A persistent array indexed by int, held as a trie of 32 way chunks. Setting an element copies only the path from the
+ * root to it, so every earlier version stays intact and shares all the chunks it has in common with the new one.
+ * <p/>
+ * Chunks are stamped with the edit token they were created under. Setting an element under the same token again
+ * updates those chunks in place, so a whole batch of changes copies each path at most once.
+ */
+final class NodeTrie {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    static final NodeTrie EMPTY = new NodeTrie(null, 0);
+
+    private static final class Chunk {
+        final Object edit;
+        final Object[] slots;
+
+        Chunk(Object edit, Object[] slots) {
+            this.edit = edit;
+            this.slots = slots;
+        }
+    }
+
+    private final Chunk root;
+    // the shift of the root chunk, so this trie can hold indexes below 1 << (shift + BITS)
+    private final int shift;
+
+    private NodeTrie(Chunk root, int shift) {
+        this.root = root;
+        this.shift = shift;
+    }
+
+    Object get(int index) {
+        if (root == null || index < 0 || index >>> shift >= WIDTH) {
+            return null;
+        }
+        Chunk chunk = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            chunk = (Chunk) chunk.slots[(index >>> level) & MASK];
+            if (chunk == null) {
+                return null;
+            }
+        }
+        return chunk.slots[index & MASK];
+    }
+
+    /**
+     * @return a trie like this one but with the given element set, sharing or reusing as much of this one as the edit
+     * token allows
+     */
+    NodeTrie set(Object edit, int index, Object value) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+        Chunk newRoot = root;
+        int newShift = shift;
+        while (newRoot != null && index >>> newShift >= WIDTH) {
+            Object[] slots = new Object[WIDTH];
+            slots[0] = newRoot;
+            newRoot = new Chunk(edit, slots);
+            newShift += BITS;
+        }
+        if (newRoot == null) {
+            while (index >>> newShift >= WIDTH) {
+                newShift += BITS;
+            }
+        }
+        newRoot = set(edit, newRoot, newShift, index, value);
+        return newRoot == root && newShift == shift ? this : new NodeTrie(newRoot, newShift);
+    }
+
+    private static Chunk set(Object edit, Chunk chunk, int level, int index, Object value) {
+        Chunk editable;
+        if (chunk == null) {
+            editable = new Chunk(edit, new Object[WIDTH]);
+        } else if (chunk.edit == edit) {
+            editable = chunk;
+        } else {
+            editable = new Chunk(edit, chunk.slots.clone());
+        }
+        int slot = (index >>> level) & MASK;
+        if (level == 0) {
+            editable.slots[slot] = value;
+        } else {
+            editable.slots[slot] = set(edit, (Chunk) editable.slots[slot], level - BITS, index, value);
+        }
+        return editable;
+    }
+}
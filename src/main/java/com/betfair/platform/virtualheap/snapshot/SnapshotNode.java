@@ -0,0 +1,249 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.snapshot;
+
+import com.betfair.platform.virtualheap.NodeType;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable version of a single heap node, as seen in a {@link HeapSnapshot}. A node's children are held by id, so a
+ * version of a node is shared by every snapshot in which neither it nor its list of children changed.
+ */
+public final class SnapshotNode {
+
+    private static final int[] NONE = new int[0];
+
+    // the lookup over a map's fields is only worth building once scanning them gets slow
+    private static final int MAX_SCAN = 8;
+
+    // the publishing batch which created this version, and so may still change it
+    final Object edit;
+
+    int id;
+    int parentId;
+    private final NodeType type;
+    private final String name;
+    Object value;
+
+    // child ids, in list or field installation order, and for maps the field name symbols alongside them
+    private int[] children = NONE;
+    private int[] symbols;
+    private int size;
+
+    // built on first use, once published; its final field makes it safe to share without synchronisation
+    private FieldLookup lookup;
+
+    SnapshotNode(Object edit, int id, int parentId, NodeType type, String name, Object value) {
+        this.edit = edit;
+        this.id = id;
+        this.parentId = parentId;
+        this.type = type;
+        this.name = name;
+        this.value = value;
+        if (type == NodeType.MAP || type == NodeType.OBJECT) {
+            symbols = NONE;
+        }
+    }
+
+    private SnapshotNode(Object edit, SnapshotNode from) {
+        this(edit, from.id, from.parentId, from.type, from.name, from.value);
+        children = from.children.clone();
+        symbols = from.symbols == null ? null : from.symbols.clone();
+        size = from.size;
+    }
+
+    SnapshotNode copy(Object edit) {
+        return new SnapshotNode(edit, this);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return the id of the parent node, or -1 for the root
+     */
+    public int getParentId() {
+        return parentId;
+    }
+
+    public NodeType getType() {
+        return type;
+    }
+
+    /**
+     * @return the field name of this node in its parent map, or null
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the value of a scalar node
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * @return the number of children of a list or map node
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the id of the child at the given position, in list order or field installation order
+     */
+    public int getChildId(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Index: " + position + ", Size: " + size);
+        }
+        return children[position];
+    }
+
+    /**
+     * @return the name symbol of the field at the given position of a map node
+     */
+    int getSymbol(int position) {
+        return symbols[position];
+    }
+
+    /**
+     * @return the position of the field with the given name symbol, or -1
+     */
+    int fieldPosition(int symbol) {
+        if (size <= MAX_SCAN) {
+            for (int i = 0; i < size; i++) {
+                if (symbols[i] == symbol) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        FieldLookup lookup = this.lookup;
+        if (lookup == null) {
+            lookup = new FieldLookup(symbols, size);
+            this.lookup = lookup;
+        }
+        Integer position = lookup.positions.get(symbol);
+        return position == null ? -1 : position;
+    }
+
+    // --- mutators, only for use on versions created by the current batch
+
+    void insertChild(int position, int childId) {
+        ensureCapacity();
+        System.arraycopy(children, position, children, position + 1, size - position);
+        children[position] = childId;
+        size++;
+    }
+
+    /**
+     * @return the id of the child which had the same name, or -1
+     */
+    int putField(int symbol, int childId) {
+        for (int i = 0; i < size; i++) {
+            if (symbols[i] == symbol) {
+                int replaced = children[i];
+                children[i] = childId;
+                return replaced;
+            }
+        }
+        ensureCapacity();
+        symbols[size] = symbol;
+        children[size++] = childId;
+        return -1;
+    }
+
+    /**
+     * @return the position the child was at, or -1 if it isn't a child of this node
+     */
+    int removeChild(int childId, int expectedPosition) {
+        int position = expectedPosition;
+        if (position < 0 || position >= size || children[position] != childId) {
+            position = -1;
+            for (int i = 0; i < size; i++) {
+                if (children[i] == childId) {
+                    position = i;
+                    break;
+                }
+            }
+        }
+        if (position >= 0) {
+            removeAt(position);
+        }
+        return position;
+    }
+
+    void removeAt(int position) {
+        System.arraycopy(children, position + 1, children, position, size - position - 1);
+        if (symbols != null) {
+            System.arraycopy(symbols, position + 1, symbols, position, size - position - 1);
+        }
+        size--;
+    }
+
+    void replaceChild(int oldId, int newId) {
+        for (int i = 0; i < size; i++) {
+            if (children[i] == oldId) {
+                children[i] = newId;
+                return;
+            }
+        }
+    }
+
+    void clearChildren() {
+        children = NONE;
+        if (symbols != null) {
+            symbols = NONE;
+        }
+        size = 0;
+    }
+
+    private void ensureCapacity() {
+        if (size == children.length) {
+            int capacity = Math.max(4, size * 2);
+            int[] grown = new int[capacity];
+            System.arraycopy(children, 0, grown, 0, size);
+            children = grown;
+            if (symbols != null) {
+                grown = new int[capacity];
+                System.arraycopy(symbols, 0, grown, 0, size);
+                symbols = grown;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SnapshotNode{id=" + id + ", type=" + type + ", name='" + name + "', value=" + value + ", size=" + size + '}';
+    }
+
+    private static final class FieldLookup {
+        final Map<Integer, Integer> positions;
+
+        FieldLookup(int[] symbols, int size) {
+            Map<Integer, Integer> positions = new HashMap<Integer, Integer>(size * 2);
+            for (int i = 0; i < size; i++) {
+                positions.put(symbols[i], i);
+            }
+            this.positions = positions;
+        }
+    }
+}
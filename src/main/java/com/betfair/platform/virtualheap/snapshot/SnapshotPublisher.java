@@ -0,0 +1,201 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.snapshot;
+
+import com.betfair.platform.virtualheap.HeapListener;
+import com.betfair.platform.virtualheap.NodeType;
+import com.betfair.platform.virtualheap.updates.InstallField;
+import com.betfair.platform.virtualheap.updates.InstallIndex;
+import com.betfair.platform.virtualheap.updates.InstallRange;
+import com.betfair.platform.virtualheap.updates.InstallRoot;
+import com.betfair.platform.virtualheap.updates.RemapIds;
+import com.betfair.platform.virtualheap.updates.RemoveChildren;
+import com.betfair.platform.virtualheap.updates.RemoveField;
+import com.betfair.platform.virtualheap.updates.RemoveIndex;
+import com.betfair.platform.virtualheap.updates.RemoveRange;
+import com.betfair.platform.virtualheap.updates.SetScalar;
+import com.betfair.platform.virtualheap.updates.Update;
+import com.betfair.platform.virtualheap.updates.UpdateBlock;
+
+/**
+ * A listener which keeps a {@link HeapSnapshot} of the heap it listens to, publishing a new one at the end of every
+ * update. Each new snapshot shares every node version which didn't change with the one before, so publishing costs the
+ * writer time in proportion to what changed rather than to the size of the heap, and readers never take the heap's
+ * lock.
+ * <p/>
+ * Like any other listener it must be added with the current state of the heap to start from a complete snapshot.
+ *
+ * @see com.betfair.platform.virtualheap.Heap#enableSnapshots()
+ */
+public class SnapshotPublisher implements HeapListener {
+
+    private volatile HeapSnapshot current = HeapSnapshot.EMPTY;
+
+    /**
+     * @return the latest published snapshot
+     */
+    public HeapSnapshot snapshot() {
+        return current;
+    }
+
+    @Override
+    public void applyUpdate(UpdateBlock block) {
+        Batch batch = new Batch(current);
+        for (Update update : block.list()) {
+            batch.apply(update);
+        }
+        current = batch.publish();
+    }
+
+    /**
+     * Applies the updates in one block, copying each node version it touches at most once.
+     */
+    private static final class Batch {
+        private final Object edit = new Object();
+        private final long version;
+        private NodeTrie nodes;
+        private int rootId;
+        private boolean terminated;
+
+        Batch(HeapSnapshot from) {
+            nodes = from.nodes();
+            rootId = from.rootId();
+            version = from.getVersion() + 1;
+            terminated = from.isTerminated();
+        }
+
+        HeapSnapshot publish() {
+            return new HeapSnapshot(nodes, rootId, version, terminated);
+        }
+
+        void apply(Update update) {
+            switch (update.getUpdateType()) {
+                case INSTALL_ROOT:
+                    InstallRoot installRoot = (InstallRoot) update;
+                    rootId = installRoot.getId();
+                    install(-1, installRoot.getId(), installRoot.getType(), null);
+                    break;
+                case INSTALL_FIELD:
+                    InstallField installField = (InstallField) update;
+                    int replaced = editable(installField.getParentId()).putField(installField.getSymbol(), installField.getId());
+                    if (replaced >= 0 && replaced != installField.getId()) {
+                        discard(replaced);
+                    }
+                    install(installField.getParentId(), installField.getId(), installField.getType(),
+                            installField.getName());
+                    break;
+                case INSTALL_INDEX:
+                    InstallIndex installIndex = (InstallIndex) update;
+                    editable(installIndex.getParentId()).insertChild(installIndex.getIndex(), installIndex.getId());
+                    install(installIndex.getParentId(), installIndex.getId(), installIndex.getType(), null);
+                    break;
+                case INSTALL_RANGE:
+                    InstallRange installRange = (InstallRange) update;
+                    SnapshotNode list = editable(installRange.getId());
+                    for (int i = 0; i < installRange.size(); i++) {
+                        list.insertChild(installRange.getIndex() + i, installRange.getChildId(i));
+                        install(installRange.getId(), installRange.getChildId(i), installRange.getType(), null);
+                    }
+                    break;
+                case SET_SCALAR:
+                    SetScalar setScalar = (SetScalar) update;
+                    editable(setScalar.getId()).value = setScalar.getValue();
+                    break;
+                case REMOVE_FIELD:
+                    RemoveField removeField = (RemoveField) update;
+                    editable(removeField.getParentId()).removeChild(removeField.getId(), -1);
+                    discard(removeField.getId());
+                    break;
+                case REMOVE_INDEX:
+                    RemoveIndex removeIndex = (RemoveIndex) update;
+                    editable(removeIndex.getParentId()).removeChild(removeIndex.getId(), removeIndex.getIndex());
+                    discard(removeIndex.getId());
+                    break;
+                case REMOVE_RANGE:
+                    RemoveRange removeRange = (RemoveRange) update;
+                    SnapshotNode parent = editable(removeRange.getId());
+                    for (int i = 0; i < removeRange.size(); i++) {
+                        parent.removeChild(removeRange.getChildId(i), removeRange.getIndex());
+                        discard(removeRange.getChildId(i));
+                    }
+                    break;
+                case REMOVE_CHILDREN:
+                    RemoveChildren removeChildren = (RemoveChildren) update;
+                    SnapshotNode cleared = editable(removeChildren.getId());
+                    for (int i = 0; i < cleared.size(); i++) {
+                        discard(cleared.getChildId(i));
+                    }
+                    cleared.clearChildren();
+                    break;
+                case TERMINATE_HEAP:
+                    terminated = true;
+                    break;
+                case REMAP_IDS:
+                    RemapIds remapIds = (RemapIds) update;
+                    for (int i = 0; i < remapIds.size(); i++) {
+                        move(remapIds.getFrom(i), remapIds.getTo(i));
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unrecognised update type: " + update.getUpdateType());
+            }
+        }
+
+        private void install(int parentId, int id, NodeType type, String name) {
+            nodes = nodes.set(edit, id, new SnapshotNode(edit, id, parentId, type, name, HeapSnapshot.initialValue(type)));
+        }
+
+        private SnapshotNode editable(int id) {
+            SnapshotNode node = (SnapshotNode) nodes.get(id);
+            if (node == null) {
+                throw new IllegalStateException("No node " + id + " in snapshot");
+            }
+            if (node.edit != edit) {
+                node = node.copy(edit);
+                nodes = nodes.set(edit, id, node);
+            }
+            return node;
+        }
+
+        // drops a node and everything beneath it
+        private void discard(int id) {
+            SnapshotNode node = (SnapshotNode) nodes.get(id);
+            if (node == null) {
+                return;
+            }
+            for (int i = 0; i < node.size(); i++) {
+                discard(node.getChildId(i));
+            }
+            nodes = nodes.set(edit, id, null);
+        }
+
+        private void move(int from, int to) {
+            SnapshotNode node = editable(from);
+            node.id = to;
+            nodes = nodes.set(edit, from, null);
+            nodes = nodes.set(edit, to, node);
+            if (node.parentId >= 0) {
+                editable(node.parentId).replaceChild(from, to);
+            }
+            for (int i = 0; i < node.size(); i++) {
+                editable(node.getChildId(i)).parentId = to;
+            }
+            if (rootId == from) {
+                rootId = to;
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.updates;
+
+import com.betfair.platform.virtualheap.NodeType;
+
+import java.util.Arrays;
+
+/**
+ * Installs a run of new children of the same type into a list, the first at the given index and the rest following
+ * it, as though by an {@link InstallIndex} for each in turn.
+ */
+public class InstallRange extends NodeUpdate {
+
+    private final int index;
+    private final int[] ids;
+    private final NodeType type;
+
+    /**
+     * @param parentId the id of the list
+     */
+    public InstallRange(int parentId, int index, int[] ids, NodeType type) {
+        super(parentId);
+        this.index = index;
+        this.ids = ids.clone();
+        this.type = type;
+    }
+
+    @Override
+    public UpdateType getUpdateType() {
+        return UpdateType.INSTALL_RANGE;
+    }
+
+    @Override
+    public void visit(UpdateVisitor visitor) {
+        visitor.onIndexRangeInstall(this);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public int getChildId(int i) {
+        return ids[i];
+    }
+
+    public int[] getChildIds() {
+        return ids.clone();
+    }
+
+    public NodeType getType() {
+        return type;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        InstallRange that = (InstallRange) o;
+
+        if (getId() != that.getId()) return false;
+        if (index != that.index) return false;
+        if (type != that.type) return false;
+        if (!Arrays.equals(ids, that.ids)) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = getId();
+        result = 31 * result + index;
+        result = 31 * result + Arrays.hashCode(ids);
+        result = 31 * result + type.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "InstallRange(" + getId() + ", " + index + ", " + Arrays.toString(ids) + ", " + type + ")";
+    }
+}
@@ -1,35 +1,56 @@
-/*
- Copyright 2013, The Sporting Exchange Limited
-
- Licensed under the Apache License, Version 2.0 (the "License");
- you may not use this file except in compliance with the License.
- You may obtain a copy of the License at
-
- http://www.apache.org/licenses/LICENSE-2.0
-
- Unless required by applicable law or agreed to in writing, software
- distributed under the License is distributed on an "AS IS" BASIS,
- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- See the License for the specific language governing permissions and
- limitations under the License.
- */
-package com.betfair.platform.virtualheap.updates;
-
-/**
- * User: mcintyret2
- * Date: 22/10/2012
- */
-public abstract class NamedUpdate extends ChildUpdate {
-
-    private final String name;
-
-    public NamedUpdate(int parentId, int id, String name) {
-        super(parentId, id);
-        this.name = name;
-    }
-
-    public final String getName() {
-        return name;
-    }
-
-}
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.updates;
+
+import com.betfair.platform.virtualheap.FieldNames;
+
+/**
+ * User: mcintyret2
+ * Date: 22/10/2012
+ */
+public abstract class NamedUpdate extends ChildUpdate {
+
+    // the name is carried as its FieldNames symbol, alongside the canonical name which keeps the symbol allocated
+    private final String name;
+    private final int symbol;
+
+    public NamedUpdate(int parentId, int id, String name) {
+        super(parentId, id);
+        this.name = FieldNames.intern(name);
+        this.symbol = FieldNames.symbolFor(this.name);
+    }
+
+    /**
+     * @param symbol the symbol of a name which is still held, as it is by whatever handed the symbol out
+     */
+    public NamedUpdate(int parentId, int id, int symbol) {
+        super(parentId, id);
+        this.name = FieldNames.nameOf(symbol);
+        if (name == null && symbol != FieldNames.NONE) {
+            throw new IllegalArgumentException("Symbol " + symbol + " stands for no field name");
+        }
+        this.symbol = symbol;
+    }
+
+    public final String getName() {
+        return name;
+    }
+
+    public final int getSymbol() {
+        return symbol;
+    }
+
+}
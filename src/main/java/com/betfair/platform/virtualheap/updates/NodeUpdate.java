@@ -1,33 +1,33 @@
-/*
- Copyright 2013, The Sporting Exchange Limited
-
- Licensed under the Apache License, Version 2.0 (the "License");
- you may not use this file except in compliance with the License.
- You may obtain a copy of the License at
-
- http://www.apache.org/licenses/LICENSE-2.0
-
- Unless required by applicable law or agreed to in writing, software
- distributed under the License is distributed on an "AS IS" BASIS,
- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- See the License for the specific language governing permissions and
- limitations under the License.
- */
-package com.betfair.platform.virtualheap.updates;
-
-/**
- * User: mcintyret2
- * Date: 22/10/2012
- */
-public abstract class NodeUpdate implements Update {
-
-    private final int id;
-
-    public NodeUpdate(int id) {
-        this.id = id;
-    }
-
-    public final int getId() {
-        return id;
-    }
-}
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.updates;
+
+/**
+ * User: mcintyret2
+ * Date: 22/10/2012
+ */
+public abstract class NodeUpdate implements Update {
+
+    private final int id;
+
+    public NodeUpdate(int id) {
+        this.id = id;
+    }
+
+    public final int getId() {
+        return id;
+    }
+}
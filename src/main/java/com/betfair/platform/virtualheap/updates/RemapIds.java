@@ -0,0 +1,94 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.updates;
+
+import java.util.Arrays;
+
+/**
+ * Moves nodes to new ids, as done by a heap compacting its id range. The pairs are applied in order, and once they
+ * have been applied no node is left at an id at or above the highest remaining live id, so a receiving heap may shrink
+ * its node table to match.
+ */
+public class RemapIds implements Update {
+
+    private final int[] from;
+    private final int[] to;
+
+    public RemapIds(int[] from, int[] to) {
+        if (from.length != to.length) {
+            throw new IllegalArgumentException("Mismatched remapping, " + from.length + " ids to " + to.length);
+        }
+        this.from = from.clone();
+        this.to = to.clone();
+    }
+
+    @Override
+    public UpdateType getUpdateType() {
+        return UpdateType.REMAP_IDS;
+    }
+
+    @Override
+    public void visit(UpdateVisitor visitor) {
+        visitor.onIdsRemap(this);
+    }
+
+    public int size() {
+        return from.length;
+    }
+
+    public int getFrom(int i) {
+        return from[i];
+    }
+
+    public int getTo(int i) {
+        return to[i];
+    }
+
+    public int[] getFromIds() {
+        return from.clone();
+    }
+
+    public int[] getToIds() {
+        return to.clone();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        RemapIds that = (RemapIds) o;
+
+        return Arrays.equals(from, that.from) && Arrays.equals(to, that.to);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(from) + Arrays.hashCode(to);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("RemapIds(");
+        for (int i = 0; i < from.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(from[i]).append("->").append(to[i]);
+        }
+        return sb.append(")").toString();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.updates;
+
+import com.betfair.platform.virtualheap.IntSet;
+
+import java.util.Arrays;
+
+/**
+ * Removes a run of consecutive children from a list, starting at the given index, as though by a {@link RemoveIndex}
+ * for each in turn.
+ */
+public class RemoveRange extends NodeUpdate {
+
+    private final int index;
+    private final int[] ids;
+    private transient IntSet deallocatedIds;
+
+    /**
+     * @param parentId the id of the list
+     * @param ids the ids of the removed children, in list order
+     */
+    public RemoveRange(int parentId, int index, int[] ids, IntSet deallocatedIds) {
+        super(parentId);
+        this.index = index;
+        this.ids = ids.clone();
+        this.deallocatedIds = deallocatedIds;
+    }
+
+    @Override
+    public UpdateType getUpdateType() {
+        return UpdateType.REMOVE_RANGE;
+    }
+
+    @Override
+    public void visit(UpdateVisitor visitor) {
+        visitor.onIndexRangeRemove(this);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public int getChildId(int i) {
+        return ids[i];
+    }
+
+    public int[] getChildIds() {
+        return ids.clone();
+    }
+
+    public IntSet getDeallocatedIds() {
+        return deallocatedIds;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        RemoveRange that = (RemoveRange) o;
+
+        if (getId() != that.getId()) return false;
+        if (index != that.index) return false;
+        if (!Arrays.equals(ids, that.ids)) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = getId();
+        result = 31 * result + index;
+        result = 31 * result + Arrays.hashCode(ids);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "RemoveRange(" + getId() + ", " + index + ", " + Arrays.toString(ids) + ", Set(...))";
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.updates;
+
+import com.betfair.platform.virtualheap.NodeType;
+
+/**
+ * Sets the value of a {@link NodeType#INTEGER} node without boxing it.
+ */
+public class SetIntScalar extends SetScalar {
+
+    private final int value;
+
+    public SetIntScalar(int id, int value) {
+        super(id, null);
+        this.value = value;
+    }
+
+    @Override
+    public NodeType getScalarType() {
+        return NodeType.INTEGER;
+    }
+
+    public int getInt() {
+        return value;
+    }
+
+    @Override
+    public Object getValue() {
+        return Integer.valueOf(value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o != null && o.getClass() == SetIntScalar.class) {
+            SetIntScalar that = (SetIntScalar) o;
+            return getId() == that.getId() && value == that.value;
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        // as SetScalar would hash the boxed value
+        return 31 * getId() + value;
+    }
+
+    @Override
+    public String toString() {
+        return "SetScalar(" + getId() + ", " + value + ")";
+    }
+}
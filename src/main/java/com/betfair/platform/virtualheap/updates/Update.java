@@ -1,24 +1,24 @@
-/*
- Copyright 2013, The Sporting Exchange Limited
-
- Licensed under the Apache License, Version 2.0 (the "License");
- you may not use this file except in compliance with the License.
- You may obtain a copy of the License at
-
- http://www.apache.org/licenses/LICENSE-2.0
-
- Unless required by applicable law or agreed to in writing, software
- distributed under the License is distributed on an "AS IS" BASIS,
- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- See the License for the specific language governing permissions and
- limitations under the License.
- */
-package com.betfair.platform.virtualheap.updates;
-
-public interface Update {
-
-    enum UpdateType { INSTALL_FIELD, INSTALL_INDEX, INSTALL_ROOT, REMOVE_CHILDREN, REMOVE_INDEX, REMOVE_FIELD, SET_SCALAR, TERMINATE_HEAP };
-
-    void visit(UpdateVisitor visitor);
-    UpdateType getUpdateType();
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.updates;
+
+public interface Update {
+
+    enum UpdateType { INSTALL_FIELD, INSTALL_INDEX, INSTALL_ROOT, REMOVE_CHILDREN, REMOVE_INDEX, REMOVE_FIELD, SET_SCALAR, TERMINATE_HEAP, REMAP_IDS, INSTALL_RANGE, REMOVE_RANGE };
+
+    void visit(UpdateVisitor visitor);
+    UpdateType getUpdateType();
 }
\ No newline at end of file
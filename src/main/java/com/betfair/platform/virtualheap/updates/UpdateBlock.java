@@ -1,88 +1,135 @@
-/*
- Copyright 2013, The Sporting Exchange Limited
-
- Licensed under the Apache License, Version 2.0 (the "License");
- you may not use this file except in compliance with the License.
- You may obtain a copy of the License at
-
- http://www.apache.org/licenses/LICENSE-2.0
-
- Unless required by applicable law or agreed to in writing, software
- distributed under the License is distributed on an "AS IS" BASIS,
- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- See the License for the specific language governing permissions and
- limitations under the License.
- */
-package com.betfair.platform.virtualheap.updates;
-
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
-public final class UpdateBlock {
-
-    public static UpdateBlock merge(UpdateBlock... updateBlocks) {
-        int size = 0;
-        for (UpdateBlock block : updateBlocks) {
-            size += block.list().size();
-        }
-
-        List<Update> merged = new ArrayList<Update>(size);
-        for (UpdateBlock updateBlock : updateBlocks) {
-            merged.addAll(updateBlock.list());
-        }
-        return new UpdateBlock(merged);
-    }
-
-    private final List<? extends Update> block;
-
-    public UpdateBlock(List<? extends Update> block) {
-        this.block = Collections.unmodifiableList(block);
-    }
-
-    public UpdateBlock() {
-        this(Collections.<Update>emptyList());
-    }
-
-    public List<? extends Update> list() {
-        return block;
-    }
-
-    public String toString() {
-        String s = "[";
-        for (Update delta : block) {
-            s += "\t" + delta + "\n";
-        }
-        return s + "]";
-    }
-
-    public void visit(UpdateVisitor visitor) {
-        for (Update update : block) {
-            update.visit(visitor);
-        }
-    }
-
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) {
-            return true;
-        }
-        if (o == null || getClass() != o.getClass()) {
-            return false;
-        }
-
-        UpdateBlock that = (UpdateBlock) o;
-
-        return !(block != null ? !block.equals(that.block) : that.block != null);
-
-    }
-
-    private int cachedHash = 0;
-    @Override
-    public int hashCode() {
-        if (cachedHash == 0 && !block.isEmpty()) {
-            cachedHash = block.hashCode();
-        }
-        return cachedHash;
-    }
-}
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.updates;
+
+import com.betfair.platform.virtualheap.codec.UpdateHandler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public final class UpdateBlock {
+
+    public static UpdateBlock merge(UpdateBlock... updateBlocks) {
+        int size = 0;
+        for (UpdateBlock block : updateBlocks) {
+            size += block.list().size();
+        }
+
+        List<Update> merged = new ArrayList<Update>(size);
+        for (UpdateBlock updateBlock : updateBlocks) {
+            merged.addAll(updateBlock.list());
+        }
+        return new UpdateBlock(merged);
+    }
+
+    // the updates as objects, created from the encoded updates when first asked for if the block was built from those
+    private volatile List<? extends Update> block;
+    private final UpdateBuffer encoded;
+
+    public UpdateBlock(List<? extends Update> block) {
+        this.block = Collections.unmodifiableList(block);
+        this.encoded = null;
+    }
+
+    public UpdateBlock() {
+        this(Collections.<Update>emptyList());
+    }
+
+    /**
+     * A block of the updates in the buffer, which mustn't be changed afterwards. No update objects are created unless
+     * {@link #list()} is called.
+     */
+    public UpdateBlock(UpdateBuffer encoded) {
+        this.encoded = encoded;
+    }
+
+    public List<? extends Update> list() {
+        List<? extends Update> list = block;
+        if (list == null) {
+            synchronized (this) {
+                list = block;
+                if (list == null) {
+                    list = Collections.unmodifiableList(encoded.toList());
+                    block = list;
+                }
+            }
+        }
+        return list;
+    }
+
+    public int size() {
+        return encoded != null ? encoded.size() : block.size();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Passes each update in turn to the handler, without creating update objects if the block doesn't have them
+     * already.
+     */
+    public void replay(UpdateHandler handler) {
+        if (encoded != null) {
+            encoded.replay(handler);
+        } else {
+            UpdateBuffer buffer = new UpdateBuffer();
+            for (Update update : block) {
+                buffer.add(update);
+            }
+            buffer.replay(handler);
+        }
+    }
+
+    public String toString() {
+        String s = "[";
+        for (Update delta : list()) {
+            s += "\t" + delta + "\n";
+        }
+        return s + "]";
+    }
+
+    public void visit(UpdateVisitor visitor) {
+        for (Update update : list()) {
+            update.visit(visitor);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        UpdateBlock that = (UpdateBlock) o;
+
+        return list().equals(that.list());
+
+    }
+
+    private int cachedHash = 0;
+    @Override
+    public int hashCode() {
+        if (cachedHash == 0 && !isEmpty()) {
+            cachedHash = list().hashCode();
+        }
+        return cachedHash;
+    }
+}
@@ -0,0 +1,468 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.updates;
+
+import com.betfair.platform.virtualheap.FieldNames;
+import com.betfair.platform.virtualheap.IntSet;
+import com.betfair.platform.virtualheap.NodeType;
+import com.betfair.platform.virtualheap.codec.UpdateHandler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A run of updates held flat, as an op code for each with its fields in arrays of ints, longs and references, so
+ * that updates can be recorded without creating an object for each, and the same buffer can be cleared and used
+ * again. Update objects are only created if {@link #toList()} is called.
+ */
+public final class UpdateBuffer {
+
+    private static final NodeType[] NODE_TYPES = NodeType.values();
+
+    private static final byte INSTALL_ROOT = 0;
+    private static final byte INSTALL_FIELD = 1;
+    private static final byte INSTALL_INDEX = 2;
+    private static final byte INSTALL_RANGE = 3;
+    private static final byte REMOVE_FIELD = 4;
+    private static final byte REMOVE_INDEX = 5;
+    private static final byte REMOVE_RANGE = 6;
+    private static final byte REMOVE_CHILDREN = 7;
+    private static final byte SET_SCALAR = 8;
+    private static final byte SET_BOOLEAN = 9;
+    private static final byte SET_INT = 10;
+    private static final byte SET_LONG = 11;
+    private static final byte SET_DOUBLE = 12;
+    private static final byte REMAP_IDS = 13;
+    private static final byte TERMINATE_HEAP = 14;
+
+    private byte[] ops;
+    private int opCount;
+    private int[] ints;
+    private int intCount;
+    private long[] longs;
+    private int longCount;
+    private Object[] refs;
+    private int refCount;
+
+    public UpdateBuffer() {
+        this(new byte[16], new int[64], new long[8], new Object[16]);
+    }
+
+    private UpdateBuffer(byte[] ops, int[] ints, long[] longs, Object[] refs) {
+        this.ops = ops;
+        this.ints = ints;
+        this.longs = longs;
+        this.refs = refs;
+    }
+
+    public int size() {
+        return opCount;
+    }
+
+    public boolean isEmpty() {
+        return opCount == 0;
+    }
+
+    /**
+     * Empties the buffer, keeping its arrays for the next updates.
+     */
+    public void clear() {
+        Arrays.fill(refs, 0, refCount, null);
+        opCount = 0;
+        intCount = 0;
+        longCount = 0;
+        refCount = 0;
+    }
+
+    /**
+     * @return a buffer holding the same updates, in arrays no bigger than they need to be
+     */
+    public UpdateBuffer copy() {
+        UpdateBuffer copy = new UpdateBuffer(Arrays.copyOf(ops, opCount), Arrays.copyOf(ints, intCount),
+                Arrays.copyOf(longs, longCount), Arrays.copyOf(refs, refCount));
+        copy.opCount = opCount;
+        copy.intCount = intCount;
+        copy.longCount = longCount;
+        copy.refCount = refCount;
+        return copy;
+    }
+
+    public void add(Update u) {
+        switch (u.getUpdateType()) {
+            case INSTALL_ROOT:
+                InstallRoot installRoot = (InstallRoot) u;
+                addInstallRoot(installRoot.getId(), installRoot.getType());
+                break;
+            case INSTALL_FIELD:
+                InstallField installField = (InstallField) u;
+                addInstallField(installField.getParentId(), installField.getId(), installField.getSymbol(),
+                                installField.getType());
+                break;
+            case INSTALL_INDEX:
+                InstallIndex installIndex = (InstallIndex) u;
+                addInstallIndex(installIndex.getParentId(), installIndex.getId(), installIndex.getIndex(),
+                                installIndex.getType());
+                break;
+            case INSTALL_RANGE:
+                InstallRange installRange = (InstallRange) u;
+                addInstallRange(installRange.getId(), installRange.getIndex(), installRange.getChildIds(),
+                                installRange.getType());
+                break;
+            case REMOVE_FIELD:
+                RemoveField removeField = (RemoveField) u;
+                addRemoveField(removeField.getParentId(), removeField.getId(), removeField.getSymbol(),
+                               removeField.getDeallocatedIds());
+                break;
+            case REMOVE_INDEX:
+                RemoveIndex removeIndex = (RemoveIndex) u;
+                addRemoveIndex(removeIndex.getParentId(), removeIndex.getId(), removeIndex.getIndex(),
+                               removeIndex.getDeallocatedIds());
+                break;
+            case REMOVE_RANGE:
+                RemoveRange removeRange = (RemoveRange) u;
+                addRemoveRange(removeRange.getId(), removeRange.getIndex(), removeRange.getChildIds(),
+                               removeRange.getDeallocatedIds());
+                break;
+            case REMOVE_CHILDREN:
+                RemoveChildren removeChildren = (RemoveChildren) u;
+                addRemoveChildren(removeChildren.getId(), removeChildren.getDeallocatedIds());
+                break;
+            case SET_SCALAR:
+                SetScalar setScalar = (SetScalar) u;
+                switch (setScalar.getScalarType()) {
+                    case BOOLEAN:
+                        addSetBooleanScalar(setScalar.getId(), ((SetBooleanScalar) setScalar).getBoolean());
+                        break;
+                    case INTEGER:
+                        addSetIntScalar(setScalar.getId(), ((SetIntScalar) setScalar).getInt());
+                        break;
+                    case LONG:
+                        addSetLongScalar(setScalar.getId(), ((SetLongScalar) setScalar).getLong());
+                        break;
+                    case DOUBLE:
+                        addSetDoubleScalar(setScalar.getId(), ((SetDoubleScalar) setScalar).getDouble());
+                        break;
+                    default:
+                        addSetScalar(setScalar.getId(), setScalar.getValue());
+                }
+                break;
+            case REMAP_IDS:
+                RemapIds remapIds = (RemapIds) u;
+                addRemapIds(remapIds.getFromIds(), remapIds.getToIds());
+                break;
+            case TERMINATE_HEAP:
+                addTerminateHeap();
+                break;
+            default:
+                throw new IllegalStateException("Unrecognised update type: "+u.getUpdateType());
+        }
+    }
+
+    public void addInstallRoot(int id, NodeType type) {
+        op(INSTALL_ROOT);
+        ints(2);
+        ints[intCount++] = id;
+        ints[intCount++] = type.ordinal();
+    }
+
+    public void addInstallField(int parentId, int id, int symbol, NodeType type) {
+        op(INSTALL_FIELD);
+        ints(4);
+        ints[intCount++] = parentId;
+        ints[intCount++] = id;
+        ints[intCount++] = symbol;
+        ints[intCount++] = type.ordinal();
+        // the name holds on to the symbol for as long as the buffer does
+        ref(FieldNames.nameOf(symbol));
+    }
+
+    public void addInstallIndex(int parentId, int id, int index, NodeType type) {
+        op(INSTALL_INDEX);
+        ints(4);
+        ints[intCount++] = parentId;
+        ints[intCount++] = id;
+        ints[intCount++] = index;
+        ints[intCount++] = type.ordinal();
+    }
+
+    public void addInstallRange(int parentId, int index, int[] ids, NodeType type) {
+        op(INSTALL_RANGE);
+        ints(3);
+        ints[intCount++] = parentId;
+        ints[intCount++] = index;
+        ints[intCount++] = type.ordinal();
+        ref(ids.clone());
+    }
+
+    public void addRemoveField(int parentId, int id, int symbol, IntSet deallocatedIds) {
+        op(REMOVE_FIELD);
+        ints(3);
+        ints[intCount++] = parentId;
+        ints[intCount++] = id;
+        ints[intCount++] = symbol;
+        ref(FieldNames.nameOf(symbol));
+        ref(deallocatedIds);
+    }
+
+    public void addRemoveIndex(int parentId, int id, int index, IntSet deallocatedIds) {
+        op(REMOVE_INDEX);
+        ints(3);
+        ints[intCount++] = parentId;
+        ints[intCount++] = id;
+        ints[intCount++] = index;
+        ref(deallocatedIds);
+    }
+
+    public void addRemoveRange(int parentId, int index, int[] ids, IntSet deallocatedIds) {
+        op(REMOVE_RANGE);
+        ints(2);
+        ints[intCount++] = parentId;
+        ints[intCount++] = index;
+        ref(ids.clone());
+        ref(deallocatedIds);
+    }
+
+    public void addRemoveChildren(int id, IntSet deallocatedIds) {
+        op(REMOVE_CHILDREN);
+        ints(1);
+        ints[intCount++] = id;
+        ref(deallocatedIds);
+    }
+
+    public void addSetScalar(int id, Object value) {
+        op(SET_SCALAR);
+        ints(1);
+        ints[intCount++] = id;
+        ref(value);
+    }
+
+    public void addSetBooleanScalar(int id, boolean value) {
+        op(SET_BOOLEAN);
+        ints(2);
+        ints[intCount++] = id;
+        ints[intCount++] = value ? 1 : 0;
+    }
+
+    public void addSetIntScalar(int id, int value) {
+        op(SET_INT);
+        ints(2);
+        ints[intCount++] = id;
+        ints[intCount++] = value;
+    }
+
+    public void addSetLongScalar(int id, long value) {
+        op(SET_LONG);
+        ints(1);
+        ints[intCount++] = id;
+        longs(value);
+    }
+
+    public void addSetDoubleScalar(int id, double value) {
+        op(SET_DOUBLE);
+        ints(1);
+        ints[intCount++] = id;
+        longs(Double.doubleToRawLongBits(value));
+    }
+
+    public void addRemapIds(int[] from, int[] to) {
+        op(REMAP_IDS);
+        ref(from.clone());
+        ref(to.clone());
+    }
+
+    public void addTerminateHeap() {
+        op(TERMINATE_HEAP);
+    }
+
+    /**
+     * Passes the updates to the handler as a block, without creating any update objects.
+     */
+    public void replay(UpdateHandler handler) {
+        handler.beginBlock(opCount);
+        int i = 0;
+        int l = 0;
+        int r = 0;
+        for (int op = 0; op < opCount; op++) {
+            switch (ops[op]) {
+                case INSTALL_ROOT:
+                    handler.installRoot(ints[i], NODE_TYPES[ints[i + 1]]);
+                    i += 2;
+                    break;
+                case INSTALL_FIELD:
+                    handler.installField(ints[i], ints[i + 1], ints[i + 2], NODE_TYPES[ints[i + 3]]);
+                    i += 4;
+                    r++;
+                    break;
+                case INSTALL_INDEX:
+                    handler.installIndex(ints[i], ints[i + 1], ints[i + 2], NODE_TYPES[ints[i + 3]]);
+                    i += 4;
+                    break;
+                case INSTALL_RANGE:
+                    handler.installRange(ints[i], ints[i + 1], (int[]) refs[r++], NODE_TYPES[ints[i + 2]]);
+                    i += 3;
+                    break;
+                case REMOVE_FIELD:
+                    handler.removeField(ints[i], ints[i + 1], ints[i + 2], (IntSet) refs[r + 1]);
+                    i += 3;
+                    r += 2;
+                    break;
+                case REMOVE_INDEX:
+                    handler.removeIndex(ints[i], ints[i + 1], ints[i + 2], (IntSet) refs[r++]);
+                    i += 3;
+                    break;
+                case REMOVE_RANGE:
+                    handler.removeRange(ints[i], ints[i + 1], (int[]) refs[r], (IntSet) refs[r + 1]);
+                    i += 2;
+                    r += 2;
+                    break;
+                case REMOVE_CHILDREN:
+                    handler.removeChildren(ints[i++], (IntSet) refs[r++]);
+                    break;
+                case SET_SCALAR:
+                    handler.setScalar(ints[i++], refs[r++]);
+                    break;
+                case SET_BOOLEAN:
+                    handler.setBooleanScalar(ints[i], ints[i + 1] != 0);
+                    i += 2;
+                    break;
+                case SET_INT:
+                    handler.setIntScalar(ints[i], ints[i + 1]);
+                    i += 2;
+                    break;
+                case SET_LONG:
+                    handler.setLongScalar(ints[i++], longs[l++]);
+                    break;
+                case SET_DOUBLE:
+                    handler.setDoubleScalar(ints[i++], Double.longBitsToDouble(longs[l++]));
+                    break;
+                case REMAP_IDS:
+                    handler.remapIds((int[]) refs[r], (int[]) refs[r + 1]);
+                    r += 2;
+                    break;
+                case TERMINATE_HEAP:
+                    handler.terminateHeap();
+                    break;
+                default:
+                    throw new IllegalStateException("Unrecognised op code: " + ops[op]);
+            }
+        }
+        handler.endBlock();
+    }
+
+    /**
+     * @return a new update object for each update in the buffer
+     */
+    public List<Update> toList() {
+        List<Update> updates = new ArrayList<Update>(opCount);
+        int i = 0;
+        int l = 0;
+        int r = 0;
+        for (int op = 0; op < opCount; op++) {
+            switch (ops[op]) {
+                case INSTALL_ROOT:
+                    updates.add(new InstallRoot(ints[i], NODE_TYPES[ints[i + 1]]));
+                    i += 2;
+                    break;
+                case INSTALL_FIELD:
+                    updates.add(new InstallField(ints[i], ints[i + 1], (String) refs[r++], NODE_TYPES[ints[i + 3]]));
+                    i += 4;
+                    break;
+                case INSTALL_INDEX:
+                    updates.add(new InstallIndex(ints[i], ints[i + 1], ints[i + 2], NODE_TYPES[ints[i + 3]]));
+                    i += 4;
+                    break;
+                case INSTALL_RANGE:
+                    updates.add(new InstallRange(ints[i], ints[i + 1], (int[]) refs[r++], NODE_TYPES[ints[i + 2]]));
+                    i += 3;
+                    break;
+                case REMOVE_FIELD:
+                    updates.add(new RemoveField(ints[i], ints[i + 1], (String) refs[r], (IntSet) refs[r + 1]));
+                    i += 3;
+                    r += 2;
+                    break;
+                case REMOVE_INDEX:
+                    updates.add(new RemoveIndex(ints[i], ints[i + 1], ints[i + 2], (IntSet) refs[r++]));
+                    i += 3;
+                    break;
+                case REMOVE_RANGE:
+                    updates.add(new RemoveRange(ints[i], ints[i + 1], (int[]) refs[r],
+                                                (IntSet) refs[r + 1]));
+                    i += 2;
+                    r += 2;
+                    break;
+                case REMOVE_CHILDREN:
+                    updates.add(new RemoveChildren(ints[i++], (IntSet) refs[r++]));
+                    break;
+                case SET_SCALAR:
+                    updates.add(new SetScalar(ints[i++], refs[r++]));
+                    break;
+                case SET_BOOLEAN:
+                    updates.add(new SetBooleanScalar(ints[i], ints[i + 1] != 0));
+                    i += 2;
+                    break;
+                case SET_INT:
+                    updates.add(new SetIntScalar(ints[i], ints[i + 1]));
+                    i += 2;
+                    break;
+                case SET_LONG:
+                    updates.add(new SetLongScalar(ints[i++], longs[l++]));
+                    break;
+                case SET_DOUBLE:
+                    updates.add(new SetDoubleScalar(ints[i++], Double.longBitsToDouble(longs[l++])));
+                    break;
+                case REMAP_IDS:
+                    updates.add(new RemapIds((int[]) refs[r], (int[]) refs[r + 1]));
+                    r += 2;
+                    break;
+                case TERMINATE_HEAP:
+                    updates.add(new TerminateHeap());
+                    break;
+                default:
+                    throw new IllegalStateException("Unrecognised op code: " + ops[op]);
+            }
+        }
+        return updates;
+    }
+
+    private void op(byte op) {
+        if (opCount == ops.length) {
+            ops = Arrays.copyOf(ops, Math.max(ops.length * 2, 1));
+        }
+        ops[opCount++] = op;
+    }
+
+    // makes room for the given number of ints
+    private void ints(int n) {
+        if (intCount + n > ints.length) {
+            ints = Arrays.copyOf(ints, Math.max(ints.length * 2, intCount + n));
+        }
+    }
+
+    private void longs(long value) {
+        if (longCount == longs.length) {
+            longs = Arrays.copyOf(longs, Math.max(longs.length * 2, 1));
+        }
+        longs[longCount++] = value;
+    }
+
+    private void ref(Object ref) {
+        if (refCount == refs.length) {
+            refs = Arrays.copyOf(refs, Math.max(refs.length * 2, 1));
+        }
+        refs[refCount++] = ref;
+    }
+}
@@ -1 +1,68 @@
-/* Copyright 2013, The Sporting Exchange Limited Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License. */package com.betfair.platform.virtualheap.updates;public interface UpdateVisitor {	public void onScalarSet(SetScalar delta);	public void onFieldInstall(InstallField delta);	public void onFieldRemove(RemoveField delta);	public void onIndexInstall(InstallIndex delta);	public void onIndexRemove(RemoveIndex delta);	public void onChildrenRemove(RemoveChildren delta);	public void onRootInstall(InstallRoot delta);    public void onHeapTermination(TerminateHeap delta);}
\ No newline at end of file
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.updates;
+
+
+
+
+
+public interface UpdateVisitor {
+
+
+
+	public void onScalarSet(SetScalar delta);
+
+
+
+	public void onFieldInstall(InstallField delta);
+
+
+
+	public void onFieldRemove(RemoveField delta);
+
+
+
+	public void onIndexInstall(InstallIndex delta);
+
+
+
+	public void onIndexRemove(RemoveIndex delta);
+
+
+
+	public void onChildrenRemove(RemoveChildren delta);
+
+
+
+	public void onRootInstall(InstallRoot delta);
+
+
+
+    public void onHeapTermination(TerminateHeap delta);
+
+
+
+    public void onIdsRemap(RemapIds delta);
+
+
+
+    public void onIndexRangeInstall(InstallRange delta);
+
+
+
+    public void onIndexRangeRemove(RemoveRange delta);
+
+}
\ No newline at end of file
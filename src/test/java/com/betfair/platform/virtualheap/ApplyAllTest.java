@@ -0,0 +1,103 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import com.betfair.platform.virtualheap.conflate.SmartConflater;
+import com.betfair.platform.virtualheap.updates.Update;
+import com.betfair.platform.virtualheap.updates.UpdateBlock;
+import com.betfair.platform.virtualheap.utils.RandomHeapBuilder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class ApplyAllTest {
+
+    @Test
+    public void appliesBacklogAsOneBlock() {
+        RecordingListener blocks = new RecordingListener();
+        RandomHeapBuilder source = new RandomHeapBuilder();
+        source.addListener(blocks, false);
+        source.randomUpdate(200);
+
+        MutableHeap replica = new MutableHeap("replica");
+        RecordingListener downstream = new RecordingListener();
+        replica.addListener(downstream, false);
+        UpdateBlock applied = replica.applyAll(blocks.blocks);
+
+        assertEquals(1, downstream.blocks.size());
+        assertEquals(applied, downstream.blocks.get(0));
+        assertEquals(count(blocks.blocks), applied.list().size());
+        assertEquals(traverse(source), traverse(replica));
+    }
+
+    @Test
+    public void conflatesBacklog() {
+        RecordingListener blocks = new RecordingListener();
+        RandomHeapBuilder source = new RandomHeapBuilder();
+        source.addListener(blocks, false);
+        source.randomUpdate(200);
+
+        MutableHeap replica = new MutableHeap("replica");
+        RecordingListener downstream = new RecordingListener();
+        replica.addListener(downstream, false);
+        UpdateBlock applied = replica.applyAll(blocks.blocks, new SmartConflater());
+
+        assertEquals(1, downstream.blocks.size());
+        assertTrue(applied.list().size() < count(blocks.blocks));
+        assertEquals(traverse(source), traverse(replica));
+    }
+
+    @Test
+    public void emptyBacklog() {
+        MutableHeap replica = new MutableHeap("replica");
+        RecordingListener downstream = new RecordingListener();
+        replica.addListener(downstream, false);
+
+        assertEquals(0, replica.applyAll(new ArrayList<UpdateBlock>(), new SmartConflater()).list().size());
+        assertEquals(0, downstream.blocks.size());
+    }
+
+    private static int count(List<UpdateBlock> blocks) {
+        int count = 0;
+        for (UpdateBlock block : blocks) {
+            count += block.list().size();
+        }
+        return count;
+    }
+
+    private static UpdateBlock traverse(Heap heap) {
+        RecordingListener listener = new RecordingListener();
+        heap.traverse(listener);
+        List<Update> updates = new ArrayList<Update>();
+        for (UpdateBlock block : listener.blocks) {
+            updates.addAll(block.list());
+        }
+        return new UpdateBlock(updates);
+    }
+
+    private static class RecordingListener implements HeapListener {
+        private final List<UpdateBlock> blocks = new ArrayList<UpdateBlock>();
+
+        @Override
+        public void applyUpdate(UpdateBlock update) {
+            blocks.add(update);
+        }
+    }
+}
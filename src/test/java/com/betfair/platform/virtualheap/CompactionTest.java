@@ -0,0 +1,230 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import com.betfair.platform.virtualheap.conflate.SmartConflater;
+import com.betfair.platform.virtualheap.projection.ComplexMapProjection;
+import com.betfair.platform.virtualheap.projection.ComplexMapProjector;
+import com.betfair.platform.virtualheap.projection.ProjectorFactory;
+import com.betfair.platform.virtualheap.projection.ScalarListProjection;
+import com.betfair.platform.virtualheap.updates.RemapIds;
+import com.betfair.platform.virtualheap.updates.Update;
+import com.betfair.platform.virtualheap.updates.UpdateBlock;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertTrue;
+
+public class CompactionTest {
+
+    @Test
+    public void compactsAfterClear() {
+        MutableHeap heap = new MutableHeap("");
+        populate(heap);
+        int live = liveNodes(heap);
+        thinOut(heap);
+        assertEquals(live, heap.nodeLimit());
+
+        heap.beginUpdate();
+        int moved = heap.compact();
+        UpdateBlock block = heap.endUpdate();
+
+        assertTrue(moved > 0);
+        assertEquals(1, block.list().size());
+        assertEquals(liveNodes(heap), heap.nodeLimit());
+        assertEquals(liveNodes(heap), heap.heap.size());
+        assertEquals(expectedPrint(), heap.prettyPrint());
+    }
+
+    @Test
+    public void replicasFollowCompaction() {
+        MutableHeap src = new MutableHeap("src");
+        MutableHeap replica = new MutableHeap("replica", src, true);
+        OffHeapMutableHeap offHeapReplica = new OffHeapMutableHeap("offHeapReplica", src, true);
+        MutableHeap conflated = new MutableHeap("conflated", new SmartConflater());
+        src.addListener(conflated.asListener(), true);
+
+        populate(src);
+        thinOut(src);
+        src.beginUpdate();
+        src.compact();
+        src.endUpdate();
+
+        assertEquals(snapshot(src), snapshot(replica));
+        assertEquals(snapshot(src), snapshot(offHeapReplica));
+        assertEquals(src.nodeLimit(), replica.nodeLimit());
+        assertEquals(src.nodeLimit(), offHeapReplica.nodeLimit());
+
+        // a late joiner to the conflating heap replays the history either side of the compaction
+        MutableHeap lateJoiner = new MutableHeap("lateJoiner");
+        conflated.addListener(lateJoiner.asListener(), true);
+        assertEquals(snapshot(src), snapshot(lateJoiner));
+
+        update(src);
+        assertEquals(snapshot(src), snapshot(replica));
+        assertEquals(snapshot(src), snapshot(offHeapReplica));
+        assertEquals(snapshot(src), snapshot(lateJoiner));
+    }
+
+    @Test
+    public void compactsIncrementally() {
+        MutableHeap src = new MutableHeap("src");
+        MutableHeap replica = new MutableHeap("replica", src, true);
+        populate(src);
+        thinOut(src);
+
+        int limit = src.nodeLimit();
+        int moves = 0;
+        while (true) {
+            src.beginUpdate();
+            int moved = src.compact(10);
+            src.endUpdate();
+            if (moved == 0) {
+                break;
+            }
+            assertTrue(moved <= 10);
+            assertTrue(src.nodeLimit() < limit);
+            limit = src.nodeLimit();
+            moves++;
+        }
+
+        assertTrue(moves > 1);
+        assertEquals(liveNodes(src), src.nodeLimit());
+        assertEquals(snapshot(src), snapshot(replica));
+        assertEquals(expectedPrint(), replica.prettyPrint());
+    }
+
+    @Test
+    public void allocationResumesAfterCompaction() {
+        MutableHeap heap = new MutableHeap("");
+        populate(heap);
+        thinOut(heap);
+        heap.beginUpdate();
+        heap.compact();
+        heap.endUpdate();
+
+        int limit = heap.nodeLimit();
+        update(heap);
+        assertEquals(liveNodes(heap), heap.nodeLimit());
+        assertTrue(heap.nodeLimit() > limit);
+        for (int id = 0; id < heap.nodeLimit(); id++) {
+            assertNotNull(heap.getNode(id));
+        }
+    }
+
+    @Test
+    public void offHeapCompaction() {
+        MutableHeap onHeap = new MutableHeap("");
+        OffHeapMutableHeap offHeap = new OffHeapMutableHeap("");
+        for (MutableHeap heap : new MutableHeap[] { onHeap, offHeap }) {
+            populate(heap);
+            thinOut(heap);
+        }
+
+        onHeap.beginUpdate();
+        onHeap.compact();
+        offHeap.beginUpdate();
+        offHeap.compact();
+        assertEquals(onHeap.endUpdate(), offHeap.endUpdate());
+
+        assertEquals(snapshot(onHeap), snapshot(offHeap));
+        assertEquals(onHeap.nodeLimit(), offHeap.nodeLimit());
+        assertEquals(update(onHeap), update(offHeap));
+        assertEquals(snapshot(onHeap), snapshot(offHeap));
+    }
+
+    @Test
+    public void remapToString() {
+        assertEquals("RemapIds(7->1, 5->2)", new RemapIds(new int[] { 7, 5 }, new int[] { 1, 2 }).toString());
+    }
+
+    private static void populate(Heap heap) {
+        heap.beginUpdate();
+        ComplexMapProjection<ScalarListProjection<Integer>> root = projector().project(heap.ensureRoot(NodeType.MAP));
+        for (int i = 0; i < 10; i++) {
+            ScalarListProjection<Integer> list = root.put("list" + i);
+            for (int j = 0; j < 50; j++) {
+                list.addLast(j);
+            }
+        }
+        heap.endUpdate();
+    }
+
+    // leaves a handful of nodes scattered across the id range
+    private static void thinOut(Heap heap) {
+        heap.beginUpdate();
+        ComplexMapProjection<ScalarListProjection<Integer>> root = projector().project(heap.getRoot());
+        for (int i = 0; i < 9; i++) {
+            root.get("list" + i).clear();
+        }
+        ScalarListProjection<Integer> last = root.get("list9");
+        while (last.size() > 3) {
+            last.remove(1);
+        }
+        heap.endUpdate();
+    }
+
+    private static UpdateBlock update(Heap heap) {
+        heap.beginUpdate();
+        ComplexMapProjection<ScalarListProjection<Integer>> root = projector().project(heap.getRoot());
+        root.remove("list3");
+        ScalarListProjection<Integer> list = root.get("list9");
+        list.insertAt(1, -1);
+        list.addFirst(42);
+        root.put("list10").addLast(7);
+        return heap.endUpdate();
+    }
+
+    private static String expectedPrint() {
+        MutableHeap expected = new MutableHeap("");
+        populate(expected);
+        thinOut(expected);
+        return expected.prettyPrint();
+    }
+
+    private static int liveNodes(MutableHeap heap) {
+        int live = 0;
+        for (int id = 0; id < heap.nodeLimit(); id++) {
+            if (heap.isAllocated(id)) {
+                live++;
+            }
+        }
+        return live;
+    }
+
+    private static ComplexMapProjector<ScalarListProjection<Integer>> projector() {
+        return ProjectorFactory.mapProjector(ProjectorFactory.listProjector(ProjectorFactory.intProjector));
+    }
+
+    private static UpdateBlock snapshot(Heap heap) {
+        RecordingListener listener = new RecordingListener();
+        heap.traverse(listener);
+        return new UpdateBlock(listener.updates);
+    }
+
+    private static class RecordingListener implements HeapListener {
+        private final List<Update> updates = new ArrayList<Update>();
+
+        @Override
+        public void applyUpdate(UpdateBlock update) {
+            updates.addAll(update.list());
+        }
+    }
+}
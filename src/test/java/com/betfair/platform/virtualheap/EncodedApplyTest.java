@@ -0,0 +1,145 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import com.betfair.platform.virtualheap.codec.UpdateBlockDecoder;
+import com.betfair.platform.virtualheap.codec.UpdateBlockEncoder;
+import com.betfair.platform.virtualheap.updates.InstallRoot;
+import com.betfair.platform.virtualheap.updates.SetIntScalar;
+import com.betfair.platform.virtualheap.updates.UpdateBlock;
+import com.betfair.platform.virtualheap.utils.RandomHeapBuilder;
+import org.junit.Test;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class EncodedApplyTest {
+
+    @Test
+    public void appliesEncodedStream() {
+        List<UpdateBlock> blocks = new ArrayList<UpdateBlock>();
+        RandomHeapBuilder src = randomHeap(blocks);
+        ByteBuffer buffer = encode(blocks);
+
+        MutableHeap replica = new MutableHeap("replica");
+        UpdateBlockDecoder decoder = new UpdateBlockDecoder();
+        while (buffer.hasRemaining()) {
+            assertTrue(replica.applyEncoded(buffer, decoder).list().isEmpty());
+        }
+        assertEquals(src.prettyPrint(), replica.prettyPrint());
+    }
+
+    @Test
+    public void listenersReceiveTheDecodedUpdates() {
+        List<UpdateBlock> blocks = new ArrayList<UpdateBlock>();
+        RandomHeapBuilder src = randomHeap(blocks);
+        ByteBuffer buffer = encode(blocks);
+
+        OffHeapMutableHeap replica = new OffHeapMutableHeap("replica");
+        MutableHeap replicaOfReplica = new MutableHeap("replicaOfReplica", replica, false);
+        UpdateBlockDecoder decoder = new UpdateBlockDecoder();
+        for (UpdateBlock block : blocks) {
+            assertEquals(block, replica.applyEncoded(buffer, decoder));
+        }
+        assertEquals(src.prettyPrint(), replica.prettyPrint());
+        assertEquals(src.prettyPrint(), replicaOfReplica.prettyPrint());
+    }
+
+    @Test
+    public void incompleteBlockIsNotApplied() {
+        List<UpdateBlock> blocks = new ArrayList<UpdateBlock>();
+        randomHeap(blocks);
+        ByteBuffer buffer = encode(blocks.subList(0, 1));
+        int length = buffer.limit();
+
+        MutableHeap replica = new MutableHeap("replica");
+        UpdateBlockDecoder decoder = new UpdateBlockDecoder();
+        buffer.limit(length - 1);
+        try {
+            replica.applyEncoded(buffer, decoder);
+            fail();
+        } catch (BufferUnderflowException e) {
+            assertEquals(0, buffer.position());
+        }
+        assertFalse(replica.isRootInstalled());
+
+        buffer.limit(length);
+        replica.applyEncoded(buffer, decoder);
+        assertTrue(replica.isRootInstalled());
+    }
+
+    @Test
+    public void unreadableBlockStillEndsTheUpdate() {
+        List<UpdateBlock> blocks = new ArrayList<UpdateBlock>();
+        blocks.add(new UpdateBlock(Collections.singletonList(new InstallRoot(0, NodeType.INTEGER))));
+        blocks.add(new UpdateBlock(Arrays.asList(new SetIntScalar(0, 5), new SetIntScalar(0, 6))));
+        ByteBuffer buffer = encode(blocks);
+        // the last update is a tag, an id and a value of a byte each
+        buffer.put(buffer.limit() - 3, (byte) 99);
+
+        MutableHeap replica = new MutableHeap("replica");
+        UpdateBlockDecoder decoder = new UpdateBlockDecoder();
+        replica.applyEncoded(buffer, decoder);
+        int start = buffer.position();
+        try {
+            replica.applyEncoded(buffer, decoder);
+            fail();
+        } catch (IllegalStateException e) {
+            // the first update has been applied, so the block isn't rewound to be applied again
+            assertTrue(buffer.position() > start);
+        }
+        assertFalse(replica.lock.isWriteLocked());
+        assertEquals(5, ((IntScalarNode) replica.getRoot()).getInt());
+
+        replica.beginUpdate();
+        ((IntScalarNode) replica.getRoot()).setInt(7);
+        replica.endUpdate();
+        assertEquals(7, ((IntScalarNode) replica.getRoot()).getInt());
+    }
+
+    private static RandomHeapBuilder randomHeap(final List<UpdateBlock> blocks) {
+        RandomHeapBuilder src = new RandomHeapBuilder();
+        src.addListener(new HeapListener() {
+            @Override
+            public void applyUpdate(UpdateBlock update) {
+                blocks.add(update);
+            }
+        }, false);
+        for (int i = 0; i < 2000; i++) {
+            src.randomUpdate();
+        }
+        return src;
+    }
+
+    private static ByteBuffer encode(List<UpdateBlock> blocks) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        UpdateBlockEncoder encoder = new UpdateBlockEncoder();
+        for (UpdateBlock block : blocks) {
+            encoder.encode(block, buffer);
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
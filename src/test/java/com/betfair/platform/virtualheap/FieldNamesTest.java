@@ -0,0 +1,189 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import com.betfair.platform.virtualheap.updates.InstallField;
+import com.betfair.platform.virtualheap.updates.UpdateBlock;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+public class FieldNamesTest {
+
+    @Test
+    public void symbolsAreStable() {
+        int home = FieldNames.symbolFor("home");
+        assertEquals(home, FieldNames.symbolFor(new String("home")));
+        assertEquals(home, FieldNames.lookup("home"));
+        assertEquals("home", FieldNames.nameOf(home));
+        assertEquals(FieldNames.NONE, FieldNames.lookup("neverInstalledAnywhere"));
+        assertEquals(FieldNames.NONE, FieldNames.symbolFor(null));
+        assertNull(FieldNames.nameOf(FieldNames.NONE));
+    }
+
+    @Test
+    public void namesAreSharedAcrossHeaps() {
+        MutableHeap one = new MutableHeap("one");
+        MutableHeap two = new MutableHeap("two");
+        for (MutableHeap heap : new MutableHeap[] { one, two }) {
+            heap.beginUpdate();
+            ((MapNode) heap.ensureRoot(NodeType.MAP)).ensureField(new String("away"), NodeType.SCALAR);
+            heap.endUpdate();
+        }
+
+        Node awayOne = ((MapNode) one.getRoot()).getField("away");
+        Node awayTwo = ((MapNode) two.getRoot()).getField(FieldNames.lookup("away"));
+        assertSame(awayOne.name, awayTwo.name);
+    }
+
+    @Test
+    public void updatesCarrySymbols() {
+        MutableHeap heap = new MutableHeap("");
+        heap.beginUpdate();
+        ((MapNode) heap.ensureRoot(NodeType.MAP)).ensureField("runners", NodeType.LIST);
+        UpdateBlock block = heap.endUpdate();
+
+        InstallField install = (InstallField) block.list().get(1);
+        assertEquals(FieldNames.lookup("runners"), install.getSymbol());
+        assertEquals("runners", install.getName());
+        assertEquals(new InstallField(0, 1, "runners", NodeType.LIST), install);
+    }
+
+    @Test
+    public void keepsInsertionOrder() {
+        Random rng = new Random(7);
+        MutableHeap heap = new MutableHeap("");
+        OffHeapMutableHeap offHeap = new OffHeapMutableHeap("", heap, true);
+        Map<String, Integer> expected = new LinkedHashMap<String, Integer>();
+
+        heap.beginUpdate();
+        MapNode root = (MapNode) heap.ensureRoot(NodeType.MAP);
+        heap.endUpdate();
+        for (int i = 0; i < 2000; i++) {
+            heap.beginUpdate();
+            String name = "f" + rng.nextInt(100);
+            if (expected.containsKey(name) && rng.nextBoolean()) {
+                root.removeField(name);
+                expected.remove(name);
+            } else if (!expected.containsKey(name)) {
+                Node child = root.ensureField(name, NodeType.SCALAR);
+                expected.put(name, child.id);
+            }
+            heap.endUpdate();
+        }
+
+        assertEquals(new ArrayList<String>(expected.keySet()), new ArrayList<String>(root.getFields()));
+        assertEquals(new ArrayList<String>(expected.keySet()), new ArrayList<String>(((MapNode) offHeap.getRoot()).getFields()));
+        assertEquals(expected.size(), root.size());
+        for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+            assertTrue(root.getFields().contains(entry.getKey()));
+            assertEquals((int) entry.getValue(), root.getField(entry.getKey()).id);
+            assertEquals((int) entry.getValue(), root.getField(FieldNames.lookup(entry.getKey())).id);
+        }
+        for (int i = 0; i < 100; i++) {
+            String name = "f" + i;
+            assertEquals(expected.containsKey(name), root.getFields().contains(name));
+            assertEquals(expected.containsKey(name), root.getField(name) != null);
+        }
+        assertFalse(root.getFields().contains("neverInstalledAnywhere"));
+    }
+
+    @Test
+    public void churnedKeysAreReclaimed() throws InterruptedException {
+        MutableHeap heap = new MutableHeap("");
+        OffHeapMutableHeap offHeap = new OffHeapMutableHeap("", heap, true);
+        heap.beginUpdate();
+        MapNode root = (MapNode) heap.ensureRoot(NodeType.MAP);
+        heap.endUpdate();
+        int before = FieldNames.size();
+
+        // keys from data, such as the ids of orders, each in the map for a single update
+        for (int i = 0; i < 20000; i++) {
+            heap.beginUpdate();
+            root.ensureField("order" + i, NodeType.SCALAR);
+            if (i > 0) {
+                root.removeField("order" + (i - 1));
+            }
+            heap.endUpdate();
+        }
+
+        assertTrue("order19999 should still be installed", FieldNames.lookup("order19999") != FieldNames.NONE);
+        assertNotNull(((MapNode) offHeap.getRoot()).getField("order19999"));
+        for (int i = 0; i < 50 && FieldNames.size() > before + 1000; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertTrue("symbols held: " + (FieldNames.size() - before), FieldNames.size() <= before + 1000);
+        assertEquals("order19999", FieldNames.nameOf(FieldNames.lookup("order19999")));
+    }
+
+    @Test
+    public void heldNamesKeepTheirSymbols() throws InterruptedException {
+        String held = FieldNames.intern(new String("heldName"));
+        int symbol = FieldNames.symbolFor(held);
+        assertSame(held, FieldNames.intern(new String("heldName")));
+
+        for (int i = 0; i < 10000; i++) {
+            FieldNames.symbolFor("dropped" + i);
+        }
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(20);
+            for (int j = 0; j < 1000; j++) {
+                FieldNames.symbolFor("droppedAgain" + j);
+            }
+        }
+
+        assertEquals(symbol, FieldNames.lookup("heldName"));
+        assertSame(held, FieldNames.nameOf(symbol));
+    }
+
+    @Test
+    public void visitsChildrenInOrder() {
+        MutableHeap heap = new MutableHeap("");
+        heap.beginUpdate();
+        MapNode root = (MapNode) heap.ensureRoot(NodeType.MAP);
+        for (int i = 0; i < 20; i++) {
+            root.ensureField("v" + i, NodeType.SCALAR);
+        }
+        for (int i = 0; i < 20; i += 3) {
+            root.removeField("v" + i);
+        }
+        root.ensureField("v0", NodeType.SCALAR);
+        heap.endUpdate();
+
+        final List<String> visited = new ArrayList<String>();
+        root.visitChildren(new NodeVisitor() {
+            @Override
+            public void visitNode(Node node) {
+                visited.add(node.name);
+            }
+        });
+        assertEquals(new ArrayList<String>(root.getFields()), visited);
+        assertEquals("v0", visited.get(visited.size() - 1));
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import com.betfair.platform.virtualheap.updates.UpdateBlock;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class HeapActorTest {
+
+    private final MutableHeap heap = new MutableHeap("actor");
+    private final HeapActor actor = new HeapActor(heap);
+
+    @After
+    public void shutdown() throws InterruptedException {
+        actor.shutdown();
+        assertTrue(actor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void appliesWritersFromManyThreadsInBatches() throws Exception {
+        final AtomicInteger blocks = new AtomicInteger();
+        heap.addListener(new HeapListener() {
+            @Override
+            public void applyUpdate(UpdateBlock update) {
+                blocks.incrementAndGet();
+            }
+        }, false);
+        actor.submit(new HeapWriter<Void>() {
+            @Override
+            public Void write(Heap heap) {
+                ((MapNode) heap.ensureRoot(NodeType.MAP)).ensureField("count", NodeType.INTEGER);
+                return null;
+            }
+        }).get();
+
+        ExecutorService producers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Future<Integer>>> submitted = new ArrayList<Future<Future<Integer>>>();
+            for (int i = 0; i < 2000; i++) {
+                submitted.add(producers.submit(new Callable<Future<Integer>>() {
+                    @Override
+                    public Future<Integer> call() {
+                        return actor.submit(new HeapWriter<Integer>() {
+                            @Override
+                            public Integer write(Heap heap) {
+                                IntScalarNode count = (IntScalarNode) ((MapNode) heap.getRoot()).getField("count");
+                                count.setInt(count.getInt() + 1);
+                                return count.getInt();
+                            }
+                        });
+                    }
+                }));
+            }
+            int total = 0;
+            for (Future<Future<Integer>> future : submitted) {
+                total += future.get().get();
+            }
+            // every writer saw a different count
+            assertEquals(2000 * 2001 / 2, total);
+        } finally {
+            producers.shutdown();
+        }
+        assertEquals(2000, ((IntScalarNode) ((MapNode) heap.getRoot()).getField("count")).getInt());
+        assertTrue(blocks.get() <= 2001);
+    }
+
+    @Test
+    public void writerFailuresAreReportedThroughTheirFutures() throws InterruptedException {
+        final IllegalArgumentException boom = new IllegalArgumentException("boom");
+        Future<Object> future = actor.submit(new HeapWriter<Object>() {
+            @Override
+            public Object write(Heap heap) {
+                throw boom;
+            }
+        });
+        try {
+            future.get();
+            fail("Expected the writer's exception");
+        } catch (ExecutionException e) {
+            assertSame(boom, e.getCause());
+        }
+    }
+
+    @Test
+    public void writerErrorsDontStopTheActor() throws Exception {
+        final Error error = new AssertionError("boom");
+        Future<Object> future = actor.submit(new HeapWriter<Object>() {
+            @Override
+            public Object write(Heap heap) {
+                throw error;
+            }
+        });
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("Expected the writer's error");
+        } catch (ExecutionException e) {
+            assertSame(error, e.getCause());
+        }
+
+        assertEquals(NodeType.LIST, actor.submit(new HeapWriter<NodeType>() {
+            @Override
+            public NodeType write(Heap heap) {
+                return heap.ensureRoot(NodeType.LIST).getType();
+            }
+        }).get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void throwablesOfAnyKindAreReported() throws Exception {
+        final Throwable odd = new Throwable("neither an exception nor an error");
+        Future<Object> future = actor.submit(new HeapWriter<Object>() {
+            @Override
+            public Object write(Heap heap) {
+                return HeapActorTest.<RuntimeException>sneakyThrow(odd);
+            }
+        });
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("Expected the writer's throwable");
+        } catch (ExecutionException e) {
+            assertSame(odd, e.getCause());
+        }
+    }
+
+    @Test
+    public void writersRacingShutdownAreNeverStranded() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            final HeapActor racing = new HeapActor(new MutableHeap("racing" + i));
+            final List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            Thread submitter = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 100; j++) {
+                            futures.add(racing.submit(new HeapWriter<Integer>() {
+                                @Override
+                                public Integer write(Heap heap) {
+                                    return 1;
+                                }
+                            }));
+                        }
+                    } catch (IllegalStateException e) {
+                        // refused once shut down
+                    }
+                }
+            };
+            submitter.start();
+            racing.shutdown();
+            submitter.join();
+
+            // every writer accepted is either applied or failed, never left waiting
+            for (Future<Integer> future : futures) {
+                try {
+                    assertEquals(1, (int) future.get(10, TimeUnit.SECONDS));
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof IllegalStateException);
+                }
+            }
+            assertTrue(racing.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Throwable> Object sneakyThrow(Throwable t) throws T {
+        throw (T) t;
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void onlyTheOwnerCanUpdate() {
+        heap.beginUpdate();
+    }
+
+    @Test
+    public void heapIsReleasedOnShutdown() throws InterruptedException {
+        actor.shutdown();
+        assertTrue(actor.awaitTermination(10, TimeUnit.SECONDS));
+        heap.beginUpdate();
+        heap.ensureRoot(NodeType.LIST);
+        heap.endUpdate();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void refusesWritersOnceShutDown() {
+        actor.shutdown();
+        actor.submit(new HeapWriter<Object>() {
+            @Override
+            public Object write(Heap heap) {
+                return null;
+            }
+        });
+    }
+}
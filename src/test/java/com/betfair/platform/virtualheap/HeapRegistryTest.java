@@ -0,0 +1,186 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import com.betfair.platform.virtualheap.codec.UpdateHandlerAdapter;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+public class HeapRegistryTest {
+
+    private final AtomicInteger created = new AtomicInteger();
+
+    private final HeapRegistry registry = new HeapRegistry(new HeapFactory() {
+        @Override
+        public Heap create(String uri) {
+            created.incrementAndGet();
+            return new MutableHeap(uri);
+        }
+    });
+
+    @Test
+    public void createsOnFirstUse() {
+        assertNull(registry.get("market/1"));
+        Heap heap = registry.getOrCreate("market/1");
+        assertEquals("market/1", heap.getUri());
+        assertSame(heap, registry.getOrCreate("market/1"));
+        assertSame(heap, registry.get("market/1"));
+        assertEquals(1, created.get());
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    public void createsEachHeapOnceUnderContention() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Heap>> futures = new ArrayList<Future<Heap>>();
+            for (int i = 0; i < 800; i++) {
+                final String uri = "market/" + (i % 100);
+                futures.add(executor.submit(new Callable<Heap>() {
+                    @Override
+                    public Heap call() {
+                        return registry.getOrCreate(uri);
+                    }
+                }));
+            }
+            for (Future<Heap> future : futures) {
+                assertSame(registry.get(future.get().getUri()), future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(100, created.get());
+        assertEquals(100, registry.size());
+    }
+
+    @Test
+    public void terminatedHeapsAreRetired() {
+        Heap heap = registry.getOrCreate("market/1");
+        registry.getOrCreate("market/2");
+        // the registry watches for termination without listening to every block
+        assertFalse(heap.hasListeners());
+
+        heap.beginUpdate();
+        heap.terminateHeap();
+        heap.endUpdate();
+
+        assertFalse(registry.contains("market/1"));
+        assertTrue(registry.contains("market/2"));
+        Heap recreated = registry.getOrCreate("market/1");
+        assertTrue(heap != recreated);
+        assertFalse(recreated.isTerminated());
+    }
+
+    @Test(timeout = 10000)
+    public void terminationRacingSnapshotsDoesntDeadlock() throws Exception {
+        final Heap heap = new MutableHeap("market/1");
+        final Thread[] enabler = new Thread[1];
+        // called before the registry's handler, so that snapshots are being enabled as the registry sees the heap end
+        heap.addUpdateHandler(new UpdateHandlerAdapter() {
+            @Override
+            public void terminateHeap() {
+                enabler[0] = new Thread() {
+                    @Override
+                    public void run() {
+                        heap.enableSnapshots();
+                    }
+                };
+                enabler[0].start();
+                while (enabler[0].getState() != Thread.State.WAITING) {
+                    Thread.yield();
+                }
+            }
+        });
+        registry.register(heap);
+
+        heap.beginUpdate();
+        heap.terminateHeap();
+        heap.endUpdate();
+        enabler[0].join();
+
+        assertFalse(registry.contains("market/1"));
+        assertTrue(heap.snapshot() != null);
+    }
+
+    @Test
+    public void chainedHeapsFollowTheirSource() {
+        Heap source = registry.getOrCreate("market/1");
+        source.beginUpdate();
+        ((MapNode) source.ensureRoot(NodeType.MAP)).ensureField("price", NodeType.DOUBLE);
+        source.endUpdate();
+
+        Heap replica = registry.chain("replica/1", "market/1");
+        assertEquals(NodeType.DOUBLE, ((MapNode) replica.getRoot()).getField("price").getType());
+
+        // terminating the source terminates, and so retires, the replica too
+        source.beginUpdate();
+        source.terminateHeap();
+        source.endUpdate();
+        assertTrue(replica.isTerminated());
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void retiredReplicasStopFollowing() {
+        Heap source = registry.getOrCreate("market/1");
+        Heap replica = registry.chain("replica/1", "market/1");
+        assertSame(replica, registry.retire("replica/1"));
+        assertNull(registry.get("replica/1"));
+
+        source.beginUpdate();
+        source.ensureRoot(NodeType.MAP);
+        source.endUpdate();
+        assertFalse(replica.isRootInstalled());
+    }
+
+    @Test
+    public void iteratesOverEveryHeap() {
+        Set<String> uris = new HashSet<String>();
+        for (int i = 0; i < 50; i++) {
+            uris.add(registry.getOrCreate("market/" + i).getUri());
+        }
+        MutableHeap registered = new MutableHeap("external");
+        registry.register(registered);
+        uris.add("external");
+
+        Set<String> seen = new HashSet<String>();
+        for (Heap heap : registry) {
+            seen.add(heap.getUri());
+        }
+        assertEquals(uris, seen);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void urisAreUnique() {
+        registry.getOrCreate("market/1");
+        registry.register(new MutableHeap("market/1"));
+    }
+}
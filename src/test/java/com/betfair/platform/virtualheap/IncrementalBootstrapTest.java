@@ -0,0 +1,179 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import com.betfair.platform.virtualheap.updates.Update;
+import com.betfair.platform.virtualheap.updates.UpdateBlock;
+import com.betfair.platform.virtualheap.utils.RandomHeapBuilder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class IncrementalBootstrapTest {
+
+    @Test
+    public void stateIsPassedInChunks() {
+        MutableHeap src = new MutableHeap("src");
+        src.beginUpdate();
+        MapNode root = (MapNode) src.ensureRoot(NodeType.MAP);
+        for (int i = 0; i < 10; i++) {
+            ListNode list = (ListNode) root.ensureField("list" + i, NodeType.LIST);
+            for (int j = 0; j < 50; j++) {
+                ((IntScalarNode) list.insertAt(j, NodeType.INTEGER)).setInt(j);
+            }
+        }
+        src.endUpdate();
+        final MutableHeap replica = new MutableHeap("replica");
+        final List<Integer> sizes = new ArrayList<Integer>();
+        src.addListener(new HeapListener() {
+            @Override
+            public void applyUpdate(UpdateBlock update) {
+                sizes.add(update.list().size());
+                replica.asListener().applyUpdate(update);
+            }
+        }, 50);
+
+        assertTrue(sizes.size() > 1);
+        for (int size : sizes) {
+            assertTrue(size <= 50);
+        }
+        assertEquals(traverse(src), traverse(replica));
+    }
+
+    @Test
+    public void writersCarryOnDuringBootstrap() throws Exception {
+        final RandomHeapBuilder src = new RandomHeapBuilder(2000);
+        final MutableHeap replica = new MutableHeap("replica");
+        final boolean[] writerFinished = new boolean[1];
+        src.addListener(new HeapListener() {
+            private int blocks;
+
+            @Override
+            public void applyUpdate(UpdateBlock update) {
+                replica.asListener().applyUpdate(update);
+                if (blocks++ == 0) {
+                    Thread writer = new Thread() {
+                        @Override
+                        public void run() {
+                            src.randomUpdate(500);
+                        }
+                    };
+                    writer.start();
+                    try {
+                        writer.join(10000);
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    writerFinished[0] = !writer.isAlive();
+                }
+            }
+        }, 10);
+
+        assertTrue(writerFinished[0]);
+        assertEquals(traverse(src), traverse(replica));
+
+        src.randomUpdate(100);
+        assertEquals(traverse(src), traverse(replica));
+    }
+
+    @Test(timeout = 10000)
+    public void writersOutpacingTheListenerDontHoldUpTheHandOver() {
+        final MutableHeap src = new MutableHeap("src");
+        src.beginUpdate();
+        MapNode root = (MapNode) src.ensureRoot(NodeType.MAP);
+        final IntScalarNode count = (IntScalarNode) root.ensureField("count", NodeType.INTEGER);
+        root.ensureField("other", NodeType.LONG);
+        src.endUpdate();
+        final MutableHeap replica = new MutableHeap("replica");
+        // every block passed on is followed by another, so as many are buffered as are replayed
+        src.addListener(new HeapListener() {
+            @Override
+            public void applyUpdate(UpdateBlock update) {
+                replica.asListener().applyUpdate(update);
+                if (src.lock.isWriteLockedByCurrentThread()) {
+                    return;
+                }
+                Thread writer = new Thread() {
+                    @Override
+                    public void run() {
+                        src.beginUpdate();
+                        count.setInt(count.getInt() + 1);
+                        src.endUpdate();
+                    }
+                };
+                writer.start();
+                try {
+                    writer.join();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }, 1);
+
+        assertTrue(count.getInt() > 0);
+        assertEquals(traverse(src), traverse(replica));
+    }
+
+    @Test
+    public void listenerCanBeRemoved() {
+        RandomHeapBuilder src = new RandomHeapBuilder(100);
+        final List<UpdateBlock> blocks = new ArrayList<UpdateBlock>();
+        HeapListener listener = new HeapListener() {
+            @Override
+            public void applyUpdate(UpdateBlock update) {
+                blocks.add(update);
+            }
+        };
+        src.addListener(listener, 10);
+        src.removeListener(listener);
+        int received = blocks.size();
+
+        src.randomUpdate(10);
+        assertEquals(received, blocks.size());
+        assertFalse(received == 0);
+    }
+
+    @Test
+    public void emptyHeap() {
+        MutableHeap src = new MutableHeap("src");
+        final List<UpdateBlock> blocks = new ArrayList<UpdateBlock>();
+        src.addListener(new HeapListener() {
+            @Override
+            public void applyUpdate(UpdateBlock update) {
+                blocks.add(update);
+            }
+        }, 10);
+
+        assertEquals(1, blocks.size());
+        assertEquals(0, blocks.get(0).list().size());
+    }
+
+    private static UpdateBlock traverse(Heap heap) {
+        final List<Update> updates = new ArrayList<Update>();
+        heap.traverse(new HeapListener() {
+            @Override
+            public void applyUpdate(UpdateBlock update) {
+                updates.addAll(update.list());
+            }
+        });
+        return new UpdateBlock(updates);
+    }
+}
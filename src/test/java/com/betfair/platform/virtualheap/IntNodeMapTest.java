@@ -0,0 +1,101 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+
+public class IntNodeMapTest {
+
+    private final MutableHeap heap = new MutableHeap("");
+
+    @Test
+    public void emptyMap() {
+        IntNodeMap map = new IntNodeMap();
+        assertEquals(0, map.size());
+        assertEquals(0, map.end());
+        assertNull(map.get(3));
+        assertNull(map.remove(3));
+        assertEquals(0, map.names().size());
+        assertEquals(new IntNodeMap(), map);
+    }
+
+    @Test
+    public void replacingKeepsPosition() {
+        IntNodeMap map = new IntNodeMap();
+        Node a = node(1);
+        Node b = node(2);
+        map.put(10, a);
+        map.put(20, b);
+        Node replacement = node(3);
+        map.put(10, replacement);
+
+        assertEquals(2, map.size());
+        assertSame(replacement, map.valueAt(0));
+        assertEquals(10, map.keyAt(0));
+    }
+
+    @Test
+    public void matchesLinkedHashMapAcrossSmallAndHashedSizes() {
+        Random rng = new Random(11);
+        for (int keyRange : new int[] { 3, IntNodeMap.SMALL_CAPACITY, IntNodeMap.SMALL_CAPACITY + 2, 40 }) {
+            IntNodeMap map = new IntNodeMap();
+            Map<Integer, Node> expected = new LinkedHashMap<Integer, Node>();
+            for (int i = 0; i < 5000; i++) {
+                int key = rng.nextInt(keyRange);
+                int op = rng.nextInt(10);
+                if (op < 5) {
+                    Node node = node(i);
+                    if (!expected.containsKey(key)) {
+                        map.put(key, node);
+                        expected.put(key, node);
+                    }
+                } else if (op < 9) {
+                    assertSame(expected.remove(key), map.remove(key));
+                } else if (rng.nextInt(20) == 0) {
+                    map.clear();
+                    expected.clear();
+                }
+                assertEquals(expected.size(), map.size());
+                assertSame(expected.get(key), map.get(key));
+            }
+            assertEquals(new ArrayList<Integer>(expected.keySet()), keys(map));
+        }
+    }
+
+    private static List<Integer> keys(IntNodeMap map) {
+        List<Integer> keys = new ArrayList<Integer>();
+        for (int i = 0; i < map.end(); i++) {
+            if (map.valueAt(i) != null) {
+                keys.add(map.keyAt(i));
+            }
+        }
+        return keys;
+    }
+
+    private Node node(int id) {
+        return new ScalarNode(id, heap);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+public class IntSetTest {
+
+    @Test
+    public void emptySet() {
+        IntSet set = new IntSet();
+        assertEquals(0, set.size());
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(0));
+        assertEquals(0, set.toArray().length);
+        assertEquals(new IntSet(), set);
+        assertEquals("[]", set.toString());
+    }
+
+    @Test
+    public void keepsOrderAdded() {
+        IntSet set = IntSet.of(5, -1, 1000000, 5, 0);
+        assertEquals(4, set.size());
+        assertEquals(-1, set.get(1));
+        assertTrue(Arrays.equals(new int[] { 5, -1, 1000000, 0 }, set.toArray()));
+        assertEquals("[5, -1, 1000000, 0]", set.toString());
+    }
+
+    @Test
+    public void equalWhateverTheOrder() {
+        IntSet a = IntSet.of(1, 2, 3);
+        IntSet b = IntSet.of(3, 1, 2);
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertFalse(a.equals(IntSet.of(1, 2)));
+        assertFalse(a.equals(IntSet.of(1, 2, 4)));
+    }
+
+    @Test
+    public void sameAsJavaUtilSet() {
+        Random random = new Random(17);
+        Set<Integer> expected = new LinkedHashSet<Integer>();
+        IntSet set = new IntSet();
+        for (int i = 0; i < 20000; i++) {
+            int value = random.nextInt(5000) - 100;
+            assertEquals(expected.add(value), set.add(value));
+            assertEquals(expected.size(), set.size());
+        }
+        int position = 0;
+        for (int value : expected) {
+            assertEquals(value, set.get(position++));
+        }
+        for (int value = -200; value < 5100; value++) {
+            assertEquals(expected.contains(value), set.contains(value));
+        }
+    }
+}
@@ -1,74 +1,137 @@
-/*
- Copyright 2013, The Sporting Exchange Limited
-
- Licensed under the Apache License, Version 2.0 (the "License");
- you may not use this file except in compliance with the License.
- You may obtain a copy of the License at
-
- http://www.apache.org/licenses/LICENSE-2.0
-
- Unless required by applicable law or agreed to in writing, software
- distributed under the License is distributed on an "AS IS" BASIS,
- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- See the License for the specific language governing permissions and
- limitations under the License.
- */
-package com.betfair.platform.virtualheap;
-
-import com.betfair.platform.virtualheap.projection.ComplexListProjection;
-import com.betfair.platform.virtualheap.projection.ProjectorFactory;
-import com.betfair.platform.virtualheap.projection.ScalarListProjection;
-import com.betfair.platform.virtualheap.projection.ScalarProjection;
-import org.junit.Test;
-
-import static junit.framework.Assert.assertEquals;
-
-/**
- *
- */
-public class ListNodeTest {
-
-    @Test
-    public void iterator() {
-        Heap h = new MutableHeap("");
-        h.beginUpdate();
-        ScalarListProjection<Integer> list = ProjectorFactory.listProjector(ProjectorFactory.intProjector).project(h.ensureRoot(NodeType.LIST));
-        list.addLast(1);
-        list.addLast(2);
-        list.addLast(3);
-        h.endUpdate();
-
-        assertEquals(3, list.size());
-        int i=0;
-        for (Integer n : list) {
-            assertEquals(++i, n.intValue());
-        }
-    }
-
-    @Test
-    public void addRemove() {
-        Heap h = new MutableHeap("");
-        ImmutableHeap ih = new ImmutableHeap("", h, true);
-        h.beginUpdate();
-        ScalarListProjection<Integer> list = ProjectorFactory.listProjector(ProjectorFactory.intProjector).project(h.ensureRoot(NodeType.LIST));
-        list.addLast(1);
-        h.endUpdate();
-        ScalarListProjection<Integer> ilist = ProjectorFactory.listProjector(ProjectorFactory.intProjector).project(h.getRoot());
-        assertEquals(1, list.size());
-        assertEquals(1, ilist.size());
-
-        h.beginUpdate();
-        list.addLast(2);
-        h.endUpdate();
-        assertEquals(2, list.size());
-        assertEquals(2, ilist.size());
-
-        h.beginUpdate();
-        list.removeFirst();
-        h.endUpdate();
-        assertEquals(1, list.size());
-        assertEquals(2, (int) list.get(0));
-        assertEquals(1, ilist.size());
-        assertEquals(2, (int) ilist.get(0));
-    }
-}
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import com.betfair.platform.virtualheap.projection.ComplexListProjection;
+import com.betfair.platform.virtualheap.projection.ProjectorFactory;
+import com.betfair.platform.virtualheap.projection.ScalarListProjection;
+import com.betfair.platform.virtualheap.projection.ScalarProjection;
+import com.betfair.platform.virtualheap.updates.InstallRange;
+import com.betfair.platform.virtualheap.updates.RemoveRange;
+import com.betfair.platform.virtualheap.updates.Update;
+import com.betfair.platform.virtualheap.updates.UpdateBlock;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ *
+ */
+public class ListNodeTest {
+
+    @Test
+    public void iterator() {
+        Heap h = new MutableHeap("");
+        h.beginUpdate();
+        ScalarListProjection<Integer> list = ProjectorFactory.listProjector(ProjectorFactory.intProjector).project(h.ensureRoot(NodeType.LIST));
+        list.addLast(1);
+        list.addLast(2);
+        list.addLast(3);
+        h.endUpdate();
+
+        assertEquals(3, list.size());
+        int i=0;
+        for (Integer n : list) {
+            assertEquals(++i, n.intValue());
+        }
+    }
+
+    @Test
+    public void addRemove() {
+        Heap h = new MutableHeap("");
+        ImmutableHeap ih = new ImmutableHeap("", h, true);
+        h.beginUpdate();
+        ScalarListProjection<Integer> list = ProjectorFactory.listProjector(ProjectorFactory.intProjector).project(h.ensureRoot(NodeType.LIST));
+        list.addLast(1);
+        h.endUpdate();
+        ScalarListProjection<Integer> ilist = ProjectorFactory.listProjector(ProjectorFactory.intProjector).project(h.getRoot());
+        assertEquals(1, list.size());
+        assertEquals(1, ilist.size());
+
+        h.beginUpdate();
+        list.addLast(2);
+        h.endUpdate();
+        assertEquals(2, list.size());
+        assertEquals(2, ilist.size());
+
+        h.beginUpdate();
+        list.removeFirst();
+        h.endUpdate();
+        assertEquals(1, list.size());
+        assertEquals(2, (int) list.get(0));
+        assertEquals(1, ilist.size());
+        assertEquals(2, (int) ilist.get(0));
+    }
+
+    @Test
+    public void ranges() {
+        Heap h = new MutableHeap("");
+        OffHeapMutableHeap replica = new OffHeapMutableHeap("", h, true);
+        h.beginUpdate();
+        ScalarListProjection<Integer> list = ProjectorFactory.listProjector(ProjectorFactory.intProjector).project(h.ensureRoot(NodeType.LIST));
+        list.addAll(Arrays.asList(1, 2, 5, 6));
+        list.insertRange(2, Arrays.asList(3, 4));
+        UpdateBlock installed = h.endUpdate();
+
+        assertEquals(2, countOf(InstallRange.class, installed));
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6), toList(list));
+
+        h.beginUpdate();
+        list.removeRange(1, 4);
+        UpdateBlock removed = h.endUpdate();
+
+        assertEquals(1, removed.list().size());
+        assertEquals(1, countOf(RemoveRange.class, removed));
+        assertEquals(Arrays.asList(1, 5, 6), toList(list));
+        assertEquals(Arrays.asList(1, 5, 6), toList(ProjectorFactory.listProjector(ProjectorFactory.intProjector).project(replica.getRoot())));
+    }
+
+    @Test
+    public void complexRanges() {
+        Heap h = new MutableHeap("");
+        h.beginUpdate();
+        ComplexListProjection<ScalarListProjection<Integer>> list = ProjectorFactory.listProjector(
+                ProjectorFactory.listProjector(ProjectorFactory.intProjector)).project(h.ensureRoot(NodeType.LIST));
+        List<ScalarListProjection<Integer>> rows = list.insertRange(0, 3);
+        rows.get(1).addLast(7);
+        h.endUpdate();
+
+        assertEquals(3, list.size());
+        assertEquals(7, (int) list.get(1).get(0));
+    }
+
+    private static int countOf(Class<? extends Update> type, UpdateBlock block) {
+        int count = 0;
+        for (Update update : block.list()) {
+            if (type.isInstance(update)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static List<Integer> toList(ScalarListProjection<Integer> list) {
+        List<Integer> values = new ArrayList<Integer>();
+        for (Integer value : list) {
+            values.add(value);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+
+public class NodeListTest {
+
+    private final MutableHeap heap = new MutableHeap("");
+
+    @Test
+    public void appendingPastManyPages() {
+        NodeList list = new NodeList();
+        List<Node> expected = new ArrayList<Node>();
+        for (int i = 0; i < NodeList.MAX_PAGE * NodeList.MAX_PAGE * 3; i++) {
+            Node node = node(i);
+            list.insert(i, node);
+            expected.add(node);
+        }
+        assertMatches(expected, list);
+
+        Random rng = new Random(3);
+        while (!expected.isEmpty()) {
+            int index = rng.nextInt(expected.size());
+            assertEquals(index, list.remove(expected.remove(index)));
+        }
+        assertMatches(expected, list);
+
+        Node node = node(0);
+        list.insert(0, node);
+        assertSame(node, list.get(0));
+    }
+
+    @Test
+    public void matchesArrayListUnderRandomInsertsAndRemoves() {
+        Random rng = new Random(7);
+        NodeList list = new NodeList();
+        List<Node> expected = new ArrayList<Node>();
+        for (int i = 0; i < 50000; i++) {
+            // grow for the first half, then drain
+            boolean insert = expected.isEmpty() || rng.nextInt(10) < (i < 25000 ? 7 : 3);
+            if (insert) {
+                int index = rng.nextInt(expected.size() + 1);
+                Node node = node(i);
+                list.insert(index, node);
+                expected.add(index, node);
+                assertEquals(index, NodeList.indexOf(node));
+            } else {
+                int index = rng.nextInt(expected.size());
+                Node node = expected.remove(index);
+                assertEquals(index, list.remove(node));
+            }
+            if (i % 5000 == 0) {
+                assertMatches(expected, list);
+            }
+        }
+        assertMatches(expected, list);
+    }
+
+    @Test
+    public void listNodeIndexesFollowInsertsAndRemoves() {
+        heap.beginUpdate();
+        ListNode list = (ListNode) heap.ensureRoot(NodeType.LIST);
+        Node last = list.insertAt(0, NodeType.SCALAR);
+        Node first = list.insertAt(0, NodeType.SCALAR);
+        Node middle = list.insertAt(1, NodeType.SCALAR);
+        assertEquals(0, first.index());
+        assertEquals(1, middle.index());
+        assertEquals(2, last.index());
+
+        list.removeIndex(0);
+        assertEquals(0, middle.index());
+        assertEquals(1, last.index());
+
+        list.clear();
+        assertEquals(0, list.size());
+        assertEquals(0, list.children().size());
+        heap.endUpdate();
+    }
+
+    private static void assertMatches(List<Node> expected, NodeList list) {
+        assertEquals(expected.size(), list.size());
+        assertEquals(expected, list);
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), list.get(i));
+            assertEquals(i, NodeList.indexOf(expected.get(i)));
+        }
+    }
+
+    private Node node(int id) {
+        return new ScalarNode(id, heap);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import com.betfair.platform.virtualheap.projection.ProjectorFactory;
+import com.betfair.platform.virtualheap.projection.ScalarMapProjection;
+import com.betfair.platform.virtualheap.updates.Update;
+import com.betfair.platform.virtualheap.updates.UpdateBlock;
+import com.betfair.platform.virtualheap.utils.RandomHeapBuilder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+
+public class NodePoolTest {
+
+    @Test
+    public void removedNodesAreReused() {
+        MutableHeap heap = new MutableHeap("");
+        heap.setNodePoolLimit(10);
+        heap.beginUpdate();
+        MapNode root = (MapNode) heap.ensureRoot(NodeType.MAP);
+        MapNode market = (MapNode) root.ensureField("market", NodeType.MAP);
+        ScalarNode<Object> price = (ScalarNode<Object>) market.ensureField("price", NodeType.SCALAR);
+        price.set(1.5);
+        root.removeField("market");
+        heap.endUpdate();
+
+        assertEquals(1, heap.pooledNodes(NodeType.MAP));
+        assertEquals(1, heap.pooledNodes(NodeType.SCALAR));
+
+        heap.beginUpdate();
+        MapNode reopened = (MapNode) root.ensureField("market", NodeType.MAP);
+        ScalarNode<Object> newPrice = (ScalarNode<Object>) reopened.ensureField("price", NodeType.SCALAR);
+        heap.endUpdate();
+
+        assertSame(market, reopened);
+        assertSame(price, newPrice);
+        assertNull(newPrice.get());
+        assertEquals(0, heap.pooledNodes(NodeType.MAP));
+    }
+
+    @Test
+    public void projectionsDontLeakToTheNewOwner() {
+        MutableHeap heap = new MutableHeap("");
+        heap.setNodePoolLimit(10);
+        heap.beginUpdate();
+        MapNode root = (MapNode) heap.ensureRoot(NodeType.MAP);
+        Node first = root.ensureField("first", NodeType.MAP);
+        ScalarMapProjection<Integer> projection = first.project(ProjectorFactory.mapProjector(ProjectorFactory.intProjector));
+        projection.put("a", 1);
+        root.removeField("first");
+
+        Node second = root.ensureField("second", NodeType.MAP);
+        assertSame(first, second);
+        assertNotSame(projection, second.project(ProjectorFactory.mapProjector(ProjectorFactory.intProjector)));
+        assertEquals(0, ((MapNode) second).size());
+        assertEquals("second", second.name);
+        heap.endUpdate();
+    }
+
+    @Test
+    public void schemasAreUnbound() {
+        MutableHeap heap = new MutableHeap("");
+        heap.setNodePoolLimit(10);
+        heap.beginUpdate();
+        MapNode root = (MapNode) heap.ensureRoot(NodeType.MAP);
+        ObjectNode object = (ObjectNode) root.ensureField("object", NodeType.OBJECT);
+        object.bind(ObjectSchema.builder().field("a", NodeType.SCALAR).build());
+        root.removeField("object");
+        ObjectNode reused = (ObjectNode) root.ensureField("other", NodeType.OBJECT);
+        heap.endUpdate();
+
+        assertSame(object, reused);
+        assertNull(reused.getSchema());
+    }
+
+    @Test
+    public void poolIsLimited() {
+        MutableHeap heap = new MutableHeap("");
+        heap.setNodePoolLimit(3);
+        heap.beginUpdate();
+        ListNode root = (ListNode) heap.ensureRoot(NodeType.LIST);
+        for (int i = 0; i < 10; i++) {
+            root.insertAt(i, NodeType.SCALAR);
+        }
+        root.clear();
+        heap.endUpdate();
+
+        assertEquals(3, heap.pooledNodes(NodeType.SCALAR));
+    }
+
+    @Test
+    public void pooledReplicaMatchesSource() {
+        RandomHeapBuilder builder = new RandomHeapBuilder(5000);
+
+        MutableHeap heap = new MutableHeap("");
+        heap.setNodePoolLimit(50);
+        RecordingListener emitted = new RecordingListener();
+        heap.addListener(emitted, false);
+        heap.asListener().applyUpdate(builder.getAllUpdates());
+
+        assertEquals(builder.getAllUpdates().list(), emitted.updates);
+        assertEquals(snapshot(builder), snapshot(heap));
+    }
+
+    private static UpdateBlock snapshot(Heap heap) {
+        RecordingListener listener = new RecordingListener();
+        heap.traverse(listener);
+        return new UpdateBlock(listener.updates);
+    }
+
+    private static class RecordingListener implements HeapListener {
+        private final List<Update> updates = new ArrayList<Update>();
+
+        @Override
+        public void applyUpdate(UpdateBlock update) {
+            updates.addAll(update.list());
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import com.betfair.platform.virtualheap.updates.UpdateBlock;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.fail;
+
+public class ObjectSchemaTest {
+
+    private static final ObjectSchema SCHEMA = ObjectSchema.builder()
+            .field("name", NodeType.SCALAR)
+            .field("children", NodeType.LIST)
+            .build();
+
+    @Test
+    public void slotsAreLaidOutInOrder() {
+        assertEquals(2, SCHEMA.size());
+        assertEquals(0, SCHEMA.slotOf("name"));
+        assertEquals(1, SCHEMA.slotOf("children"));
+        assertEquals(ObjectSchema.NO_SLOT, SCHEMA.slotOf("unknown"));
+        assertEquals(NodeType.LIST, SCHEMA.getType(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateFieldsAreRejected() {
+        ObjectSchema.builder().field("a", NodeType.SCALAR).field("a", NodeType.LIST);
+    }
+
+    @Test
+    public void slotsEmitTheSameUpdatesAsFields() {
+        MutableHeap bySlot = new MutableHeap("");
+        bySlot.beginUpdate();
+        ObjectNode object = (ObjectNode) bySlot.ensureRoot(NodeType.OBJECT);
+        object.bind(SCHEMA);
+        ((ScalarNode) object.ensureSlot(0)).set("x");
+        object.ensureSlot(1);
+        UpdateBlock slotUpdates = bySlot.endUpdate();
+
+        MutableHeap byField = new MutableHeap("");
+        byField.beginUpdate();
+        ObjectNode plain = (ObjectNode) byField.ensureRoot(NodeType.OBJECT);
+        ((ScalarNode) plain.ensureField("name", NodeType.SCALAR)).set("x");
+        plain.ensureField("children", NodeType.LIST);
+        assertEquals(byField.endUpdate(), slotUpdates);
+    }
+
+    @Test
+    public void slotsFollowUpdatesFromTheSource() {
+        slotsFollowUpdatesFromTheSource(new MutableHeap("replica"));
+        slotsFollowUpdatesFromTheSource(new OffHeapMutableHeap("replica"));
+    }
+
+    private void slotsFollowUpdatesFromTheSource(MutableHeap replica) {
+        MutableHeap src = new MutableHeap("src");
+        src.addListener(replica.asListener(), false);
+        src.beginUpdate();
+        ObjectNode root = (ObjectNode) src.ensureRoot(NodeType.OBJECT);
+        root.ensureField("name", NodeType.SCALAR);
+        src.endUpdate();
+
+        ObjectNode replicaRoot = (ObjectNode) replica.getRoot();
+        replicaRoot.bind(SCHEMA);
+        assertEquals(replicaRoot.getField("name"), replicaRoot.getSlot(0));
+        assertNull(replicaRoot.getSlot(1));
+
+        src.beginUpdate();
+        root.ensureField("children", NodeType.LIST);
+        root.removeField("name");
+        src.endUpdate();
+        assertNull(replicaRoot.getSlot(0));
+        assertEquals(NodeType.LIST, replicaRoot.getSlot(1).getType());
+
+        src.beginUpdate();
+        root.clear();
+        src.endUpdate();
+        assertNull(replicaRoot.getSlot(1));
+    }
+
+    @Test
+    public void bindingIsFixed() {
+        MutableHeap heap = new MutableHeap("");
+        heap.beginUpdate();
+        ObjectNode object = (ObjectNode) heap.ensureRoot(NodeType.OBJECT);
+        heap.endUpdate();
+        object.bind(SCHEMA);
+        object.bind(SCHEMA);
+        try {
+            object.bind(ObjectSchema.builder().field("name", NodeType.SCALAR).build());
+            fail("Rebinding to a different schema should fail");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+    }
+}
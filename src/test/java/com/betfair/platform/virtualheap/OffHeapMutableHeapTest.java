@@ -0,0 +1,149 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import com.betfair.platform.virtualheap.projection.ComplexMapProjection;
+import com.betfair.platform.virtualheap.projection.ProjectorFactory;
+import com.betfair.platform.virtualheap.projection.ScalarListProjection;
+import com.betfair.platform.virtualheap.updates.Update;
+import com.betfair.platform.virtualheap.updates.UpdateBlock;
+import com.betfair.platform.virtualheap.utils.RandomHeapBuilder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+
+public class OffHeapMutableHeapTest {
+
+    @Test
+    public void replaysRandomUpdates() {
+        RandomHeapBuilder builder = new RandomHeapBuilder(5000);
+
+        OffHeapMutableHeap heap = new OffHeapMutableHeap("");
+        RecordingListener emitted = new RecordingListener();
+        heap.addListener(emitted, false);
+        heap.asListener().applyUpdate(builder.getAllUpdates());
+
+        assertEquals(builder.getAllUpdates().list(), emitted.updates);
+        assertEquals(snapshot(builder), snapshot(heap));
+    }
+
+    @Test
+    public void sameUpdatesAsMutableHeap() {
+        MutableHeap onHeap = new MutableHeap("");
+        OffHeapMutableHeap offHeap = new OffHeapMutableHeap("");
+
+        assertEquals(populate(onHeap), populate(offHeap));
+        assertEquals(update(onHeap), update(offHeap));
+        assertEquals(snapshot(onHeap), snapshot(offHeap));
+        assertEquals(onHeap.prettyPrint(), offHeap.prettyPrint());
+    }
+
+    @Test
+    public void chaining() {
+        MutableHeap src = new MutableHeap("src");
+        populate(src);
+
+        OffHeapMutableHeap replica = new OffHeapMutableHeap("replica", src, true);
+        MutableHeap replicaOfReplica = new MutableHeap("replicaOfReplica", replica, true);
+        update(src);
+
+        assertEquals(snapshot(src), snapshot(replica));
+        assertEquals(snapshot(src), snapshot(replicaOfReplica));
+    }
+
+    @Test
+    public void removedFieldsAreForgotten() {
+        OffHeapMutableHeap heap = new OffHeapMutableHeap("");
+        heap.beginUpdate();
+        MapNode root = (MapNode) heap.ensureRoot(NodeType.MAP);
+        MapNode child = (MapNode) root.ensureField("child", NodeType.MAP);
+        child.ensureField("grandchild", NodeType.SCALAR);
+        root.removeField("child");
+        heap.endUpdate();
+
+        assertEquals(0, root.size());
+        assertNull(root.getField("child"));
+
+        heap.beginUpdate();
+        MapNode reused = (MapNode) root.ensureField("other", NodeType.MAP);
+        heap.endUpdate();
+
+        assertNull(reused.getField("grandchild"));
+        assertEquals(0, reused.size());
+    }
+
+    @Test
+    public void poolingIsHarmless() {
+        MutableHeap onHeap = new MutableHeap("");
+        OffHeapMutableHeap offHeap = new OffHeapMutableHeap("");
+        onHeap.setNodePoolLimit(10);
+        offHeap.setNodePoolLimit(10);
+
+        populate(onHeap);
+        populate(offHeap);
+        assertEquals(update(onHeap), update(offHeap));
+        assertEquals(snapshot(onHeap), snapshot(offHeap));
+        assertEquals(0, offHeap.pooledNodes(NodeType.MAP));
+    }
+
+    private UpdateBlock populate(Heap heap) {
+        heap.beginUpdate();
+        ComplexMapProjection<ScalarListProjection<Integer>> root = ProjectorFactory.mapProjector(
+                ProjectorFactory.listProjector(ProjectorFactory.intProjector)).project(heap.ensureRoot(NodeType.MAP));
+        for (int i = 0; i < 10; i++) {
+            ScalarListProjection<Integer> list = root.put("list" + i);
+            for (int j = 0; j < 20; j++) {
+                list.addFirst(j);
+                list.addLast(j);
+            }
+        }
+        return heap.endUpdate();
+    }
+
+    private UpdateBlock update(Heap heap) {
+        heap.beginUpdate();
+        ComplexMapProjection<ScalarListProjection<Integer>> root = ProjectorFactory.mapProjector(
+                ProjectorFactory.listProjector(ProjectorFactory.intProjector)).project(heap.getRoot());
+        root.remove("list3");
+        root.get("list4").clear();
+        ScalarListProjection<Integer> list = root.get("list5");
+        for (int i = 0; i < 10; i++) {
+            list.remove(i * 2);
+            list.insertAt(i * 3, -i);
+        }
+        root.put("list3").addLast(42);
+        return heap.endUpdate();
+    }
+
+    private static UpdateBlock snapshot(Heap heap) {
+        RecordingListener listener = new RecordingListener();
+        heap.traverse(listener);
+        return new UpdateBlock(listener.updates);
+    }
+
+    private static class RecordingListener implements HeapListener {
+        private final List<Update> updates = new ArrayList<Update>();
+
+        @Override
+        public void applyUpdate(UpdateBlock update) {
+            updates.addAll(update.list());
+        }
+    }
+}
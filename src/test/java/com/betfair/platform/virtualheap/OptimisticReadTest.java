@@ -0,0 +1,212 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import com.betfair.platform.virtualheap.updates.UpdateBlock;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+public class OptimisticReadTest {
+
+    @Test
+    public void updatesInvalidateStamps() {
+        MutableHeap heap = new MutableHeap("");
+        long stamp = heap.tryOptimisticRead();
+        assertTrue(stamp != 0);
+        assertTrue(heap.validate(stamp));
+
+        heap.beginUpdate();
+        assertEquals(0, heap.tryOptimisticRead());
+        assertFalse(heap.validate(stamp));
+        heap.ensureRoot(NodeType.MAP);
+        heap.endUpdate();
+
+        assertFalse(heap.validate(stamp));
+        assertTrue(heap.validate(heap.tryOptimisticRead()));
+        assertFalse(heap.validate(0));
+    }
+
+    @Test
+    public void readsWithinAnUpdate() {
+        final MutableHeap heap = new MutableHeap("");
+        heap.beginUpdate();
+        final MapNode root = (MapNode) heap.ensureRoot(NodeType.MAP);
+        ((ScalarNode<String>) root.ensureField("name", NodeType.SCALAR)).set("value");
+        assertEquals("value", heap.read(new HeapReader<Object>() {
+            @Override
+            public Object read() {
+                return ((ScalarNode) root.getField("name")).get();
+            }
+        }));
+        heap.endUpdate();
+    }
+
+    @Test
+    public void errorsFromInvalidatedReadsAreRetried() {
+        final MutableHeap heap = new MutableHeap("");
+        final AtomicBoolean first = new AtomicBoolean(true);
+        assertEquals("retried", heap.read(new HeapReader<String>() {
+            @Override
+            public String read() {
+                if (first.getAndSet(false)) {
+                    // as if an update got in the way and sent the read round in circles
+                    heap.beginUpdate();
+                    heap.endUpdate();
+                    throw new StackOverflowError();
+                }
+                return "retried";
+            }
+        }));
+    }
+
+    @Test
+    public void readsAreConsistent() throws InterruptedException {
+        final MutableHeap heap = new MutableHeap("");
+        heap.beginUpdate();
+        MapNode root = (MapNode) heap.ensureRoot(NodeType.MAP);
+        final IntScalarNode left = (IntScalarNode) root.ensureField("left", NodeType.INTEGER);
+        final IntScalarNode right = (IntScalarNode) root.ensureField("right", NodeType.INTEGER);
+        heap.endUpdate();
+
+        final AtomicBoolean stop = new AtomicBoolean();
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread() {
+                @Override
+                public void run() {
+                    HeapReader<int[]> both = new HeapReader<int[]>() {
+                        @Override
+                        public int[] read() {
+                            return new int[] { left.getInt(), right.getInt() };
+                        }
+                    };
+                    while (!stop.get()) {
+                        int[] values = heap.read(both);
+                        if (values[0] != values[1]) {
+                            failure.set(values[0] + " != " + values[1]);
+                        }
+                    }
+                }
+            };
+            readers[i].start();
+        }
+
+        // the two values only ever differ in the middle of an update
+        for (int i = 1; i <= 20000; i++) {
+            heap.beginUpdate();
+            left.setInt(i);
+            right.setInt(i);
+            heap.endUpdate();
+        }
+        stop.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get());
+    }
+
+    @Test(timeout = 10000)
+    public void readersDontQueueBehindASlowReader() throws InterruptedException {
+        final MutableHeap heap = new MutableHeap("");
+        heap.beginUpdate();
+        MapNode root = (MapNode) heap.ensureRoot(NodeType.MAP);
+        final IntScalarNode value = (IntScalarNode) root.ensureField("value", NodeType.INTEGER);
+        value.setInt(7);
+        heap.endUpdate();
+
+        // a slow reader holds the read lock, and a writer queues behind it, which would hold up any other reader
+        // taking the read lock
+        final CountDownLatch holding = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread slowReader = new Thread() {
+            @Override
+            public void run() {
+                heap.addListener(new HeapListener() {
+                    @Override
+                    public void applyUpdate(UpdateBlock update) {
+                        holding.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }, true);
+            }
+        };
+        slowReader.start();
+        holding.await();
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                heap.beginUpdate();
+                value.setInt(8);
+                heap.endUpdate();
+            }
+        };
+        writer.start();
+        while (writer.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+
+        final AtomicInteger reads = new AtomicInteger();
+        Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread() {
+                @Override
+                public void run() {
+                    HeapReader<Integer> reader = new HeapReader<Integer>() {
+                        @Override
+                        public Integer read() {
+                            return value.getInt();
+                        }
+                    };
+                    for (int j = 0; j < 1000; j++) {
+                        if (heap.read(reader) == 7) {
+                            reads.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            readers[i].start();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertEquals(4000, reads.get());
+        assertEquals(Thread.State.WAITING, writer.getState());
+
+        release.countDown();
+        slowReader.join();
+        writer.join();
+        assertEquals(8, (int) heap.read(new HeapReader<Integer>() {
+            @Override
+            public Integer read() {
+                return value.getInt();
+            }
+        }));
+    }
+}
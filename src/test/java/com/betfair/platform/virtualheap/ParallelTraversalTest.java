@@ -0,0 +1,103 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import com.betfair.platform.virtualheap.updates.Update;
+import com.betfair.platform.virtualheap.updates.UpdateBlock;
+import com.betfair.platform.virtualheap.utils.RandomHeapBuilder;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static junit.framework.Assert.assertEquals;
+
+public class ParallelTraversalTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void sameAsSequentialTraversal() {
+        RandomHeapBuilder heap = new RandomHeapBuilder(5000);
+        UpdateBlock sequential = traverse(heap);
+        for (int splitSize : new int[] { 1, 2, 7, 100, 100000 }) {
+            heap.setParallelTraversal(executor, splitSize);
+            assertEquals(sequential, traverse(heap));
+        }
+    }
+
+    @Test
+    public void largeCollectionsAreSplit() {
+        MutableHeap heap = new MutableHeap("");
+        heap.beginUpdate();
+        MapNode root = (MapNode) heap.ensureRoot(NodeType.MAP);
+        for (int i = 0; i < 20; i++) {
+            ListNode list = (ListNode) root.ensureField("list" + i, NodeType.LIST);
+            for (int j = 0; j < 500; j++) {
+                MapNode entry = (MapNode) list.insertAt(j, NodeType.MAP);
+                ((IntScalarNode) entry.ensureField("value", NodeType.INTEGER)).setInt(j);
+            }
+        }
+        heap.terminateHeap();
+        heap.endUpdate();
+
+        UpdateBlock sequential = traverse(heap);
+        heap.setParallelTraversal(executor, 64);
+        assertEquals(sequential, traverse(heap));
+
+        MutableHeap replica = new MutableHeap("replica", heap, true);
+        heap.setParallelTraversal(null, 1);
+        assertEquals(sequential, traverse(replica));
+    }
+
+    @Test
+    public void offHeapHeaps() {
+        RandomHeapBuilder builder = new RandomHeapBuilder(5000);
+        OffHeapMutableHeap heap = new OffHeapMutableHeap("offHeap", builder, true);
+        UpdateBlock sequential = traverse(heap);
+        assertEquals(traverse(builder), sequential);
+        for (int splitSize : new int[] { 1, 7, 100 }) {
+            heap.setParallelTraversal(executor, splitSize);
+            assertEquals(sequential, traverse(heap));
+        }
+    }
+
+    @Test
+    public void emptyHeap() {
+        MutableHeap heap = new MutableHeap("");
+        heap.setParallelTraversal(executor, 1);
+        assertEquals(0, traverse(heap).list().size());
+    }
+
+    private static UpdateBlock traverse(Heap heap) {
+        final List<Update> updates = new ArrayList<Update>();
+        heap.traverse(new HeapListener() {
+            @Override
+            public void applyUpdate(UpdateBlock update) {
+                updates.addAll(update.list());
+            }
+        });
+        return new UpdateBlock(updates);
+    }
+}
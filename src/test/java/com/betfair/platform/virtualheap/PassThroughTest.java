@@ -0,0 +1,137 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import com.betfair.platform.virtualheap.updates.InstallField;
+import com.betfair.platform.virtualheap.updates.Update;
+import com.betfair.platform.virtualheap.updates.UpdateBlock;
+import com.betfair.platform.virtualheap.utils.RandomHeapBuilder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+
+public class PassThroughTest {
+
+    @Test
+    public void chainRepublishesSourceBlocks() {
+        RandomHeapBuilder src = new RandomHeapBuilder();
+        MutableHeap first = new MutableHeap("first", src, true);
+        first.setPassThrough(true);
+        OffHeapMutableHeap second = new OffHeapMutableHeap("second", first, true);
+        second.setPassThrough(true);
+        ImmutableHeap third = new ImmutableHeap("third", second, true);
+
+        RecordingListener fromSrc = new RecordingListener();
+        src.addListener(fromSrc, false);
+        RecordingListener fromSecond = new RecordingListener();
+        second.addListener(fromSecond, false);
+        RecordingListener fromThird = new RecordingListener();
+        third.addListener(fromThird, false);
+
+        for (int i = 0; i < 500; i++) {
+            src.randomUpdate();
+        }
+
+        assertEquals(fromSrc.blocks.size(), fromSecond.blocks.size());
+        for (int i = 0; i < fromSrc.blocks.size(); i++) {
+            assertSame(fromSrc.blocks.get(i), fromSecond.blocks.get(i));
+            assertEquals(fromSrc.blocks.get(i), fromThird.blocks.get(i));
+        }
+        assertEquals(traverse(src), traverse(first));
+        assertEquals(traverse(src), traverse(second));
+        assertEquals(traverse(src), traverse(third));
+    }
+
+    @Test
+    public void applyAllRepublishesSourceUpdates() {
+        RecordingListener blocks = new RecordingListener();
+        RandomHeapBuilder src = new RandomHeapBuilder();
+        src.addListener(blocks, false);
+        src.randomUpdate(100);
+
+        MutableHeap replica = new MutableHeap("replica");
+        replica.setPassThrough(true);
+        UpdateBlock applied = replica.applyAll(blocks.blocks);
+
+        List<Update> expected = new ArrayList<Update>();
+        for (UpdateBlock block : blocks.blocks) {
+            expected.addAll(block.list());
+        }
+        assertEquals(expected.size(), applied.list().size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), applied.list().get(i));
+        }
+        assertEquals(traverse(src), traverse(replica));
+    }
+
+    @Test
+    public void localUpdatesAreEmitted() {
+        MutableHeap src = new MutableHeap("src");
+        src.beginUpdate();
+        src.ensureRoot(NodeType.MAP);
+        src.endUpdate();
+
+        MutableHeap replica = new MutableHeap("replica", src, true);
+        replica.setPassThrough(true);
+        RecordingListener listener = new RecordingListener();
+        replica.addListener(listener, false);
+
+        replica.beginUpdate();
+        ((MapNode) replica.getRoot()).ensureField("local", NodeType.SCALAR);
+        replica.endUpdate();
+
+        assertEquals(1, listener.blocks.size());
+        assertEquals(1, listener.blocks.get(0).list().size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void mismatchedIdsAreRejected() {
+        MutableHeap src = new MutableHeap("src");
+        src.beginUpdate();
+        src.ensureRoot(NodeType.MAP);
+        src.endUpdate();
+
+        MutableHeap replica = new MutableHeap("replica", src, true);
+        replica.setPassThrough(true);
+        int rootId = replica.getRoot().id;
+        replica.asListener().applyUpdate(new UpdateBlock(Arrays.asList(
+                new InstallField(rootId, rootId, "clash", NodeType.SCALAR))));
+    }
+
+    private static UpdateBlock traverse(Heap heap) {
+        RecordingListener listener = new RecordingListener();
+        heap.traverse(listener);
+        List<Update> updates = new ArrayList<Update>();
+        for (UpdateBlock block : listener.blocks) {
+            updates.addAll(block.list());
+        }
+        return new UpdateBlock(updates);
+    }
+
+    private static class RecordingListener implements HeapListener {
+        private final List<UpdateBlock> blocks = new ArrayList<UpdateBlock>();
+
+        @Override
+        public void applyUpdate(UpdateBlock update) {
+            blocks.add(update);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import com.betfair.platform.virtualheap.projection.IntScalarProjection;
+import com.betfair.platform.virtualheap.projection.ProjectorFactory;
+import com.betfair.platform.virtualheap.projection.ScalarListProjection;
+import com.betfair.platform.virtualheap.projection.ScalarMapProjection;
+import com.betfair.platform.virtualheap.updates.InstallField;
+import com.betfair.platform.virtualheap.updates.InstallRoot;
+import com.betfair.platform.virtualheap.updates.SetDoubleScalar;
+import com.betfair.platform.virtualheap.updates.SetIntScalar;
+import com.betfair.platform.virtualheap.updates.SetScalar;
+import com.betfair.platform.virtualheap.updates.UpdateBlock;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class PrimitiveScalarNodeTest {
+
+    @Test
+    public void setIntWithoutBoxing() {
+        Heap h = new MutableHeap("");
+        h.beginUpdate();
+        IntScalarProjection scalar = ProjectorFactory.unboxedIntProjector.project(h.ensureRoot(NodeType.INTEGER));
+        assertEquals(0, scalar.getInt());
+        scalar.setInt(0);
+        scalar.setInt(5);
+        scalar.setInt(5);
+        scalar.set(6);
+        UpdateBlock block = h.endUpdate();
+
+        assertEquals(3, block.list().size());
+        assertEquals(new InstallRoot(0, NodeType.INTEGER), block.list().get(0));
+        assertTrue(block.list().get(1) instanceof SetIntScalar);
+        assertEquals(5, ((SetIntScalar) block.list().get(1)).getInt());
+        assertEquals(6, ((SetIntScalar) block.list().get(2)).getInt());
+        assertEquals(Integer.valueOf(6), scalar.get());
+    }
+
+    @Test
+    public void typedUpdatesEqualBoxedUpdates() {
+        assertEquals(new SetScalar(1, 5), new SetIntScalar(1, 5));
+        assertEquals(new SetIntScalar(1, 5), new SetScalar(1, 5));
+        assertEquals(new SetScalar(1, 5).hashCode(), new SetIntScalar(1, 5).hashCode());
+        assertEquals(new SetScalar(1, 2.5d).hashCode(), new SetDoubleScalar(1, 2.5d).hashCode());
+        assertEquals(new SetScalar(1, 5).toString(), new SetIntScalar(1, 5).toString());
+        assertTrue(!new SetIntScalar(1, 5).equals(new SetScalar(1, 5L)));
+    }
+
+    @Test
+    public void equalNodesHaveEqualHashCodes() {
+        MutableHeap a = new MutableHeap("a");
+        MutableHeap b = new MutableHeap("b");
+        a.beginUpdate();
+        b.beginUpdate();
+        MapNode aRoot = (MapNode) a.ensureRoot(NodeType.MAP);
+        MapNode bRoot = (MapNode) b.ensureRoot(NodeType.MAP);
+        ((IntScalarNode) aRoot.ensureField("int", NodeType.INTEGER)).setInt(-5);
+        ((IntScalarNode) bRoot.ensureField("int", NodeType.INTEGER)).setInt(-5);
+        ((LongScalarNode) aRoot.ensureField("long", NodeType.LONG)).setLong(1L << 40);
+        ((LongScalarNode) bRoot.ensureField("long", NodeType.LONG)).setLong(1L << 40);
+        ((DoubleScalarNode) aRoot.ensureField("double", NodeType.DOUBLE)).setDouble(2.5d);
+        ((DoubleScalarNode) bRoot.ensureField("double", NodeType.DOUBLE)).setDouble(2.5d);
+        ((BooleanScalarNode) aRoot.ensureField("boolean", NodeType.BOOLEAN)).setBoolean(true);
+        ((BooleanScalarNode) bRoot.ensureField("boolean", NodeType.BOOLEAN)).setBoolean(true);
+        a.endUpdate();
+        b.endUpdate();
+
+        for (String field : new String[] { "int", "long", "double", "boolean" }) {
+            assertEquals(aRoot.getField(field), bRoot.getField(field));
+            assertEquals(aRoot.getField(field).hashCode(), bRoot.getField(field).hashCode());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cantSetNull() {
+        Heap h = new MutableHeap("");
+        h.beginUpdate();
+        ProjectorFactory.unboxedLongProjector.project(h.ensureRoot(NodeType.LONG)).set(null);
+    }
+
+    @Test
+    public void replicasHoldTypedValues() {
+        MutableHeap src = new MutableHeap("src");
+        src.beginUpdate();
+        ScalarMapProjection<Double> prices = ProjectorFactory.mapProjector(ProjectorFactory.unboxedDoubleProjector)
+                .project(src.ensureRoot(NodeType.MAP));
+        prices.put("back", 1.5d);
+        src.endUpdate();
+
+        MutableHeap replica = new MutableHeap("replica", src, true);
+        OffHeapMutableHeap offHeapReplica = new OffHeapMutableHeap("offHeapReplica", src, true);
+
+        src.beginUpdate();
+        prices.put("lay", 1.6d);
+        ProjectorFactory.unboxedDoubleProjector.project(((MapNode) src.getRoot()).getField("back")).setDouble(1.55d);
+        UpdateBlock block = src.endUpdate();
+
+        assertEquals(new InstallField(0, 2, "lay", NodeType.DOUBLE), block.list().get(0));
+        assertTrue(block.list().get(1) instanceof SetDoubleScalar);
+        for (MutableHeap heap : new MutableHeap[] { replica, offHeapReplica }) {
+            MapNode root = (MapNode) heap.getRoot();
+            assertEquals(NodeType.DOUBLE, root.getField("back").getType());
+            assertEquals(1.55d, ProjectorFactory.unboxedDoubleProjector.project(root.getField("back")).getDouble());
+            assertEquals(1.6d, ProjectorFactory.unboxedDoubleProjector.project(root.getField("lay")).getDouble());
+        }
+        assertEquals(src.prettyPrint(), offHeapReplica.prettyPrint());
+    }
+
+    @Test
+    public void typedListValues() {
+        OffHeapMutableHeap h = new OffHeapMutableHeap("");
+        h.beginUpdate();
+        ScalarListProjection<Boolean> flags = ProjectorFactory.listProjector(ProjectorFactory.unboxedBooleanProjector)
+                .project(h.ensureRoot(NodeType.LIST));
+        flags.addLast(true);
+        flags.addLast(false);
+        flags.addFirst(true);
+        h.endUpdate();
+
+        assertEquals(NodeType.BOOLEAN, ((ListNode) h.getRoot()).getIndexAt(1).getType());
+        assertEquals(Boolean.TRUE, flags.get(0));
+        assertEquals(Boolean.TRUE, flags.get(1));
+        assertEquals(Boolean.FALSE, flags.get(2));
+    }
+}
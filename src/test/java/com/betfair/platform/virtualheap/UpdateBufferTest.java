@@ -0,0 +1,232 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap;
+
+import com.betfair.platform.virtualheap.codec.UpdateBlockEncoder;
+import com.betfair.platform.virtualheap.codec.UpdateHandler;
+import com.betfair.platform.virtualheap.updates.Update;
+import com.betfair.platform.virtualheap.updates.UpdateBlock;
+import com.betfair.platform.virtualheap.updates.UpdateBuffer;
+import com.betfair.platform.virtualheap.utils.RandomHeapBuilder;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class UpdateBufferTest {
+
+    @Test
+    public void bufferHoldsUpdates() {
+        RandomHeapBuilder builder = new RandomHeapBuilder(2000);
+        List<? extends Update> updates = builder.getAllUpdates().list();
+
+        UpdateBuffer buffer = new UpdateBuffer();
+        for (Update u : updates) {
+            buffer.add(u);
+        }
+        assertEquals(updates.size(), buffer.size());
+        assertEquals(updates, buffer.toList());
+        assertEquals(new UpdateBlock(updates), new UpdateBlock(buffer.copy()));
+
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+        assertTrue(buffer.toList().isEmpty());
+    }
+
+    @Test
+    public void handlersReceiveEveryUpdate() {
+        RandomHeapBuilder builder = new RandomHeapBuilder();
+        final List<UpdateBlock> blocks = new ArrayList<UpdateBlock>();
+        builder.addListener(new HeapListener() {
+            @Override
+            public void applyUpdate(UpdateBlock update) {
+                blocks.add(update);
+            }
+        }, false);
+        LoggingHandler handled = new LoggingHandler();
+        builder.addUpdateHandler(handled);
+        builder.randomUpdate(2000);
+
+        LoggingHandler expected = new LoggingHandler();
+        for (UpdateBlock block : blocks) {
+            // replayed from the updates themselves rather than the heap's buffer
+            new UpdateBlock(block.list()).replay(expected);
+        }
+        assertEquals(expected.log, handled.log);
+
+        builder.removeUpdateHandler(handled);
+        builder.randomUpdate();
+        assertEquals(expected.log, handled.log);
+    }
+
+    @Test
+    public void commitWithOnlyHandlersCreatesNoBlocks() {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        MutableHeap heap = new MutableHeap("heap");
+        heap.beginUpdate();
+        MapNode root = (MapNode) heap.ensureRoot(NodeType.MAP);
+        IntScalarNode a = (IntScalarNode) root.ensureField("a", NodeType.INTEGER);
+        LongScalarNode b = (LongScalarNode) root.ensureField("b", NodeType.LONG);
+        heap.commit();
+        CountingHandler handler = new CountingHandler();
+        heap.addUpdateHandler(handler);
+
+        for (int i = 1; i <= 20000; i++) {
+            update(heap, a, b, i);
+        }
+        assertEquals(60000, handler.count);
+        long id = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int i = 20001; i <= 30000; i++) {
+            update(heap, a, b, i);
+        }
+        long allocated = threads.getThreadAllocatedBytes(id) - before;
+
+        assertEquals(90000, handler.count);
+        // a block and its updates would be well over a hundred bytes an update
+        assertTrue("Allocated " + allocated + " bytes", allocated < 10000);
+    }
+
+    @Test
+    public void encodingHandlerCreatesNoBlocks() {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        MutableHeap heap = new MutableHeap("heap");
+        heap.beginUpdate();
+        MapNode root = (MapNode) heap.ensureRoot(NodeType.MAP);
+        IntScalarNode a = (IntScalarNode) root.ensureField("a", NodeType.INTEGER);
+        LongScalarNode b = (LongScalarNode) root.ensureField("b", NodeType.LONG);
+        heap.commit();
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        UpdateBlockEncoder encoder = new UpdateBlockEncoder();
+        encoder.setBuffer(buffer);
+        heap.addUpdateHandler(encoder);
+
+        for (int i = 1; i <= 20000; i++) {
+            update(heap, a, b, i);
+            buffer.clear();
+        }
+        long id = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int i = 20001; i <= 30000; i++) {
+            update(heap, a, b, i);
+            buffer.clear();
+        }
+        long allocated = threads.getThreadAllocatedBytes(id) - before;
+
+        assertTrue("Allocated " + allocated + " bytes", allocated < 10000);
+    }
+
+    private static void update(Heap heap, IntScalarNode a, LongScalarNode b, int i) {
+        heap.beginUpdate();
+        a.setInt(i);
+        b.setLong(i);
+        a.setInt(-i - 1);
+        heap.commit();
+    }
+
+    private static class CountingHandler implements UpdateHandler {
+        private int count;
+
+        public void installRoot(int id, NodeType type) { count++; }
+        public void installField(int parentId, int id, int symbol, NodeType type) { count++; }
+        public void installIndex(int parentId, int id, int index, NodeType type) { count++; }
+        public void installRange(int parentId, int index, int[] ids, NodeType type) { count++; }
+        public void beginBlock(int size) { }
+        public void endBlock() { }
+        public void removeField(int parentId, int id, int symbol, IntSet deallocatedIds) { count++; }
+        public void removeIndex(int parentId, int id, int index, IntSet deallocatedIds) { count++; }
+        public void removeRange(int parentId, int index, int[] ids, IntSet deallocatedIds) { count++; }
+        public void removeChildren(int id, IntSet deallocatedIds) { count++; }
+        public void setScalar(int id, Object value) { count++; }
+        public void setBooleanScalar(int id, boolean value) { count++; }
+        public void setIntScalar(int id, int value) { count++; }
+        public void setLongScalar(int id, long value) { count++; }
+        public void setDoubleScalar(int id, double value) { count++; }
+        public void remapIds(int[] from, int[] to) { count++; }
+        public void terminateHeap() { count++; }
+    }
+
+    private static class LoggingHandler implements UpdateHandler {
+        private final List<String> log = new ArrayList<String>();
+
+        public void beginBlock(int size) {
+            log.add("beginBlock " + size);
+        }
+        public void endBlock() {
+            log.add("endBlock");
+        }
+        public void installRoot(int id, NodeType type) {
+            log.add("installRoot " + id + " " + type);
+        }
+        public void installField(int parentId, int id, int symbol, NodeType type) {
+            log.add("installField " + parentId + " " + id + " " + symbol + " " + type);
+        }
+        public void installIndex(int parentId, int id, int index, NodeType type) {
+            log.add("installIndex " + parentId + " " + id + " " + index + " " + type);
+        }
+        public void installRange(int parentId, int index, int[] ids, NodeType type) {
+            log.add("installRange " + parentId + " " + index + " " + Arrays.toString(ids) + " " + type);
+        }
+        public void removeField(int parentId, int id, int symbol, IntSet deallocatedIds) {
+            log.add("removeField " + parentId + " " + id + " " + symbol + " " + deallocatedIds);
+        }
+        public void removeIndex(int parentId, int id, int index, IntSet deallocatedIds) {
+            log.add("removeIndex " + parentId + " " + id + " " + index + " " + deallocatedIds);
+        }
+        public void removeRange(int parentId, int index, int[] ids, IntSet deallocatedIds) {
+            log.add("removeRange " + parentId + " " + index + " " + Arrays.toString(ids) + " " + deallocatedIds);
+        }
+        public void removeChildren(int id, IntSet deallocatedIds) {
+            log.add("removeChildren " + id + " " + deallocatedIds);
+        }
+        public void setScalar(int id, Object value) {
+            log.add("setScalar " + id + " " + value);
+        }
+        public void setBooleanScalar(int id, boolean value) {
+            log.add("setBooleanScalar " + id + " " + value);
+        }
+        public void setIntScalar(int id, int value) {
+            log.add("setIntScalar " + id + " " + value);
+        }
+        public void setLongScalar(int id, long value) {
+            log.add("setLongScalar " + id + " " + value);
+        }
+        public void setDoubleScalar(int id, double value) {
+            log.add("setDoubleScalar " + id + " " + value);
+        }
+        public void remapIds(int[] from, int[] to) {
+            log.add("remapIds " + Arrays.toString(from) + " " + Arrays.toString(to));
+        }
+        public void terminateHeap() {
+            log.add("terminateHeap");
+        }
+    }
+}
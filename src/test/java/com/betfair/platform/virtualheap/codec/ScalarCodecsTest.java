@@ -0,0 +1,139 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.codec;
+
+import com.betfair.platform.virtualheap.updates.SetScalar;
+import com.betfair.platform.virtualheap.updates.UpdateBlock;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Date;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+public class ScalarCodecsTest {
+
+    private enum Side {
+        BACK,
+        LAY {
+            @Override
+            public String toString() {
+                return "lay";
+            }
+        }
+    }
+
+    private static final ScalarCodec<BigDecimal> PRICE = new ScalarCodec<BigDecimal>() {
+        @Override
+        public void encode(BigDecimal value, ByteBuffer buffer) {
+            buffer.putInt(value.scale());
+            buffer.putLong(value.unscaledValue().longValue());
+        }
+
+        @Override
+        public BigDecimal decode(ByteBuffer buffer) {
+            int scale = buffer.getInt();
+            return new BigDecimal(BigInteger.valueOf(buffer.getLong()), scale);
+        }
+    };
+
+    @Test
+    public void builtInTypes() {
+        ScalarCodecs codecs = new ScalarCodecs();
+        Object[] values = { null, "text é€", true, -12, Long.MIN_VALUE, 1.5d, 2.5f, (short) -300, (byte) 7,
+                'x', new Date(1234567890123L) };
+        for (Object value : values) {
+            assertEquals(value, roundTrip(codecs, value));
+        }
+        assertTrue(Arrays.equals(new byte[] { 1, 2, 3 }, (byte[]) roundTrip(codecs, new byte[] { 1, 2, 3 })));
+    }
+
+    @Test
+    public void registeredTypes() {
+        ScalarCodecs codecs = new ScalarCodecs();
+        codecs.register(ScalarCodecs.FIRST_CUSTOM_TAG, BigDecimal.class, PRICE);
+        codecs.register(ScalarCodecs.FIRST_CUSTOM_TAG + 1, Side.class, ScalarCodecs.enumCodec(Side.class));
+
+        assertEquals(new BigDecimal("1.01"), roundTrip(codecs, new BigDecimal("1.01")));
+        assertSame(Side.BACK, roundTrip(codecs, Side.BACK));
+        assertSame(Side.LAY, roundTrip(codecs, Side.LAY));
+    }
+
+    @Test
+    public void registeredTypesOnTheWire() {
+        ScalarCodecs codecs = new ScalarCodecs();
+        codecs.register(40, BigDecimal.class, PRICE);
+        UpdateBlock block = new UpdateBlock(Arrays.asList(new SetScalar(1, new BigDecimal("3.45"))));
+
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        new UpdateBlockEncoder(codecs).encode(block, buffer);
+        buffer.flip();
+        assertEquals(block, new UpdateBlockDecoder(codecs).decode(buffer));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unregisteredType() {
+        new ScalarCodecs().encode(new BigDecimal("1.01"), ByteBuffer.allocate(64));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unregisteredTag() {
+        ScalarCodecs codecs = new ScalarCodecs();
+        codecs.register(40, BigDecimal.class, PRICE);
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        codecs.encode(new BigDecimal("1.01"), buffer);
+        buffer.flip();
+        new ScalarCodecs().decode(buffer);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void corruptLengthIsRejectedBeforeAllocating() {
+        ScalarCodecs codecs = new ScalarCodecs();
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        codecs.encode(new byte[] { 1, 2, 3 }, buffer);
+        // the length, a varint after the tag, rewritten as near 2GB
+        buffer.position(1);
+        buffer.put(new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 });
+        buffer.flip();
+        codecs.decode(buffer);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builtInTagsAreReserved() {
+        new ScalarCodecs().register(ScalarCodecs.FIRST_CUSTOM_TAG - 1, BigDecimal.class, PRICE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tagsCanOnlyBeRegisteredOnce() {
+        ScalarCodecs codecs = new ScalarCodecs();
+        codecs.register(40, BigDecimal.class, PRICE);
+        codecs.register(40, Side.class, ScalarCodecs.enumCodec(Side.class));
+    }
+
+    private static Object roundTrip(ScalarCodecs codecs, Object value) {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        codecs.encode(value, buffer);
+        buffer.flip();
+        Object decoded = codecs.decode(buffer);
+        assertEquals(0, buffer.remaining());
+        return decoded;
+    }
+}
@@ -0,0 +1,381 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.codec;
+
+import com.betfair.platform.virtualheap.HeapListener;
+import com.betfair.platform.virtualheap.IntSet;
+import com.betfair.platform.virtualheap.MapNode;
+import com.betfair.platform.virtualheap.MutableHeap;
+import com.betfair.platform.virtualheap.NodeType;
+import com.betfair.platform.virtualheap.ScalarNode;
+import com.betfair.platform.virtualheap.updates.*;
+import com.betfair.platform.virtualheap.utils.RandomHeapBuilder;
+import org.junit.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class UpdateBlockCodecTest {
+
+    @Test
+    public void roundTripsRandomUpdates() {
+        final List<UpdateBlock> blocks = new ArrayList<UpdateBlock>();
+        RandomHeapBuilder src = new RandomHeapBuilder();
+        src.addListener(new HeapListener() {
+            @Override
+            public void applyUpdate(UpdateBlock update) {
+                blocks.add(update);
+            }
+        }, false);
+        for (int i = 0; i < 3000; i++) {
+            src.randomUpdate();
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        UpdateBlockEncoder encoder = new UpdateBlockEncoder();
+        for (UpdateBlock block : blocks) {
+            encoder.encode(block, buffer);
+        }
+        buffer.flip();
+
+        UpdateBlockDecoder decoder = new UpdateBlockDecoder();
+        MutableHeap replica = new MutableHeap("replica");
+        for (UpdateBlock block : blocks) {
+            UpdateBlock decoded = decoder.decode(buffer);
+            assertEquals(block, decoded);
+            assertDeallocatedIds(block, decoded);
+            replica.asListener().applyUpdate(decoded);
+        }
+        assertEquals(0, buffer.remaining());
+        assertEquals(src.prettyPrint(), replica.prettyPrint());
+    }
+
+    @Test
+    public void scalarValues() {
+        UpdateBlock block = new UpdateBlock(Arrays.asList(
+                new SetScalar(1, null),
+                new SetScalar(2, "café €中"),
+                new SetScalar(3, true),
+                new SetScalar(4, Integer.MIN_VALUE),
+                new SetScalar(5, Long.MAX_VALUE),
+                new SetScalar(6, -0.5),
+                new SetBooleanScalar(7, true),
+                new SetIntScalar(8, -1),
+                new SetLongScalar(9, Long.MIN_VALUE),
+                new SetDoubleScalar(10, Double.NaN)));
+
+        UpdateBlock decoded = roundTrip(block);
+        assertEquals(block, decoded);
+        for (int i = 0; i < block.list().size(); i++) {
+            assertEquals(block.list().get(i).getClass(), decoded.list().get(i).getClass());
+        }
+    }
+
+    @Test
+    public void structuralUpdates() {
+        UpdateBlock block = new UpdateBlock(Arrays.asList(
+                new InstallRoot(0, NodeType.MAP),
+                new InstallField(0, 1, "list", NodeType.LIST),
+                new InstallRange(1, 0, new int[] { 5, 6, 7, 3 }, NodeType.INTEGER),
+                new InstallIndex(1, 300, 2, NodeType.OBJECT),
+                new RemoveRange(1, 0, new int[] { 5, 6 }, IntSet.of(5, 6)),
+                new RemoveIndex(1, 300, 0, null),
+                new RemapIds(new int[] { 7, 3 }, new int[] { 2, 4 }),
+                new RemoveChildren(1, new IntSet()),
+                new RemoveField(0, 1, "list", IntSet.of(1, 1000000)),
+                new TerminateHeap()));
+
+        UpdateBlock decoded = roundTrip(block);
+        assertEquals(block, decoded);
+        assertDeallocatedIds(block, decoded);
+        assertEquals("list", ((RemoveField) decoded.list().get(8)).getName());
+    }
+
+    @Test
+    public void namesAreOnlySentOnce() {
+        UpdateBlock block = new UpdateBlock(Arrays.asList(
+                new InstallField(0, 1, "aFairlyLongFieldName", NodeType.SCALAR)));
+        UpdateBlockEncoder encoder = new UpdateBlockEncoder();
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+        encoder.encode(block, buffer);
+        int first = buffer.position();
+        encoder.encode(block, buffer);
+        int second = buffer.position() - first;
+        assertTrue(second < first - "aFairlyLongFieldName".length());
+
+        buffer.flip();
+        UpdateBlockDecoder decoder = new UpdateBlockDecoder();
+        assertEquals(block, decoder.decode(buffer));
+        assertEquals(block, decoder.decode(buffer));
+    }
+
+    @Test
+    public void overflowLeavesEncoderUnchanged() {
+        UpdateBlock block = new UpdateBlock(Arrays.asList(
+                new InstallField(0, 1, "overflowingName", NodeType.SCALAR),
+                new SetScalar(1, "a value too long for the buffer")));
+        UpdateBlockEncoder encoder = new UpdateBlockEncoder();
+        ByteBuffer small = ByteBuffer.allocate(24);
+        small.put((byte) 42);
+        try {
+            encoder.encode(block, small);
+            fail();
+        } catch (BufferOverflowException e) {
+            assertEquals(1, small.position());
+        }
+
+        // the name must still be sent in full, as the decoder never saw it
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        encoder.encode(block, buffer);
+        buffer.flip();
+        assertEquals(block, new UpdateBlockDecoder().decode(buffer));
+    }
+
+    @Test
+    public void partialBlockCanBeReadLater() {
+        UpdateBlock block = new UpdateBlock(Arrays.asList(
+                new InstallField(0, 1, "partial", NodeType.SCALAR),
+                new SetScalar(1, "value")));
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        new UpdateBlockEncoder().encode(block, buffer);
+        int length = buffer.position();
+
+        UpdateBlockDecoder decoder = new UpdateBlockDecoder();
+        buffer.position(0);
+        buffer.limit(length - 1);
+        try {
+            decoder.decode(buffer);
+            fail();
+        } catch (BufferUnderflowException e) {
+            assertEquals(0, buffer.position());
+        }
+        buffer.limit(length);
+        assertEquals(block, decoder.decode(buffer));
+    }
+
+    @Test
+    public void handlerReceivesEveryUpdate() {
+        UpdateBlock block = new UpdateBlock(Arrays.asList(
+                new InstallRoot(0, NodeType.MAP),
+                new InstallField(0, 1, "list", NodeType.LIST),
+                new InstallRange(1, 0, new int[] { 5, 6, 7 }, NodeType.INTEGER),
+                new InstallIndex(1, 8, 1, NodeType.SCALAR),
+                new SetScalar(8, "value"),
+                new SetBooleanScalar(2, true),
+                new SetIntScalar(5, -7),
+                new SetLongScalar(6, 1L << 40),
+                new SetDoubleScalar(7, 2.5),
+                new RemoveRange(1, 0, new int[] { 5, 8 }, null),
+                new RemoveIndex(1, 6, 0, IntSet.of(6)),
+                new RemapIds(new int[] { 7 }, new int[] { 2 }),
+                new RemoveChildren(1, null),
+                new RemoveField(0, 1, "list", null),
+                new TerminateHeap()));
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        new UpdateBlockEncoder().encode(block, buffer);
+        buffer.flip();
+
+        final List<Update> handled = new ArrayList<Update>();
+        final List<Integer> begun = new ArrayList<Integer>();
+        final List<Integer> ended = new ArrayList<Integer>();
+        assertEquals(block.list().size(), new UpdateBlockDecoder().decode(buffer, new UpdateHandler() {
+            public void beginBlock(int size) {
+                begun.add(size);
+            }
+            public void endBlock() {
+                ended.add(handled.size());
+            }
+            public void installRoot(int id, NodeType type) {
+                handled.add(new InstallRoot(id, type));
+            }
+            public void installField(int parentId, int id, int symbol, NodeType type) {
+                handled.add(new InstallField(parentId, id, symbol, type));
+            }
+            public void installIndex(int parentId, int id, int index, NodeType type) {
+                handled.add(new InstallIndex(parentId, id, index, type));
+            }
+            public void installRange(int parentId, int index, int[] ids, NodeType type) {
+                handled.add(new InstallRange(parentId, index, ids, type));
+            }
+            public void removeField(int parentId, int id, int symbol, IntSet deallocatedIds) {
+                handled.add(new RemoveField(parentId, id, symbol, deallocatedIds));
+            }
+            public void removeIndex(int parentId, int id, int index, IntSet deallocatedIds) {
+                handled.add(new RemoveIndex(parentId, id, index, deallocatedIds));
+            }
+            public void removeRange(int parentId, int index, int[] ids, IntSet deallocatedIds) {
+                handled.add(new RemoveRange(parentId, index, ids, deallocatedIds));
+            }
+            public void removeChildren(int id, IntSet deallocatedIds) {
+                handled.add(new RemoveChildren(id, deallocatedIds));
+            }
+            public void setScalar(int id, Object value) {
+                handled.add(new SetScalar(id, value));
+            }
+            public void setBooleanScalar(int id, boolean value) {
+                handled.add(new SetBooleanScalar(id, value));
+            }
+            public void setIntScalar(int id, int value) {
+                handled.add(new SetIntScalar(id, value));
+            }
+            public void setLongScalar(int id, long value) {
+                handled.add(new SetLongScalar(id, value));
+            }
+            public void setDoubleScalar(int id, double value) {
+                handled.add(new SetDoubleScalar(id, value));
+            }
+            public void remapIds(int[] from, int[] to) {
+                handled.add(new RemapIds(from, to));
+            }
+            public void terminateHeap() {
+                handled.add(new TerminateHeap());
+            }
+        }));
+        assertEquals(block.list(), handled);
+        assertEquals(Arrays.asList(block.size()), begun);
+        assertEquals(Arrays.asList(block.size()), ended);
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    public void encodesAsAnUpdateHandler() {
+        final List<UpdateBlock> blocks = new ArrayList<UpdateBlock>();
+        RandomHeapBuilder src = new RandomHeapBuilder();
+        src.addListener(new HeapListener() {
+            @Override
+            public void applyUpdate(UpdateBlock update) {
+                blocks.add(update);
+            }
+        }, false);
+        ByteBuffer handled = ByteBuffer.allocate(1 << 20);
+        UpdateBlockEncoder handler = new UpdateBlockEncoder();
+        handler.setBuffer(handled);
+        src.addUpdateHandler(handler);
+        for (int i = 0; i < 3000; i++) {
+            src.randomUpdate();
+        }
+
+        ByteBuffer expected = ByteBuffer.allocate(1 << 20);
+        UpdateBlockEncoder encoder = new UpdateBlockEncoder();
+        for (UpdateBlock block : blocks) {
+            encoder.encode(block, expected);
+        }
+        expected.flip();
+        handled.flip();
+        assertEquals(expected, handled);
+
+        UpdateBlockDecoder decoder = new UpdateBlockDecoder();
+        MutableHeap replica = new MutableHeap("replica");
+        while (handled.hasRemaining()) {
+            replica.asListener().applyUpdate(decoder.decode(handled));
+        }
+        assertEquals(src.prettyPrint(), replica.prettyPrint());
+    }
+
+    @Test
+    public void handlerOverflowLeavesBufferUnchanged() {
+        MutableHeap heap = new MutableHeap("heap");
+        ByteBuffer small = ByteBuffer.allocate(24);
+        small.put((byte) 42);
+        UpdateBlockEncoder encoder = new UpdateBlockEncoder();
+        encoder.setBuffer(small);
+        heap.addUpdateHandler(encoder);
+        heap.beginUpdate();
+        MapNode root = (MapNode) heap.ensureRoot(NodeType.MAP);
+        ((ScalarNode<String>) root.ensureField("overflowingName", NodeType.SCALAR)).set("a value too long for the buffer");
+        try {
+            heap.commit();
+            fail();
+        } catch (BufferOverflowException e) {
+            assertEquals(1, small.position());
+        }
+
+        // the heap is still usable, and the name must still be sent in full, as the decoder never saw it
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        encoder.setBuffer(buffer);
+        heap.beginUpdate();
+        ((MapNode) root.ensureField("child", NodeType.MAP)).ensureField("overflowingName", NodeType.INTEGER);
+        heap.commit();
+        buffer.flip();
+        assertEquals(2, new UpdateBlockDecoder().decode(buffer).size());
+    }
+
+    @Test
+    public void nodeTypesHaveFixedCodes() {
+        // the codes are part of the format, so mustn't change if NodeType's constants are reordered
+        NodeType[] types = { NodeType.LIST, NodeType.MAP, NodeType.OBJECT, NodeType.SCALAR, NodeType.BOOLEAN,
+                NodeType.INTEGER, NodeType.LONG, NodeType.DOUBLE };
+        for (int code = 0; code < types.length; code++) {
+            ByteBuffer buffer = encode(new InstallRoot(1, types[code]));
+            assertEquals(code, buffer.get(buffer.limit() - 1));
+            assertEquals(types[code], ((InstallRoot) new UpdateBlockDecoder().decode(buffer).list().get(0)).getType());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unknownNodeTypeIsRejected() {
+        ByteBuffer buffer = encode(new InstallRoot(1, NodeType.MAP));
+        buffer.put(buffer.limit() - 1, (byte) 99);
+        new UpdateBlockDecoder().decode(buffer);
+    }
+
+    private static ByteBuffer encode(Update... updates) {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        new UpdateBlockEncoder().encode(new UpdateBlock(Arrays.asList(updates)), buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedScalar() {
+        roundTrip(new UpdateBlock(Arrays.asList(new SetScalar(1, new Object()))));
+    }
+
+    private static UpdateBlock roundTrip(UpdateBlock block) {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        new UpdateBlockEncoder().encode(block, buffer);
+        buffer.flip();
+        UpdateBlock decoded = new UpdateBlockDecoder().decode(buffer);
+        assertEquals(0, buffer.remaining());
+        return decoded;
+    }
+
+    private static void assertDeallocatedIds(UpdateBlock expected, UpdateBlock actual) {
+        for (int i = 0; i < expected.list().size(); i++) {
+            Update update = expected.list().get(i);
+            Object decoded = actual.list().get(i);
+            if (update instanceof RemoveField) {
+                assertEquals(((RemoveField) update).getDeallocatedIds(), ((RemoveField) decoded).getDeallocatedIds());
+            } else if (update instanceof RemoveIndex) {
+                assertEquals(((RemoveIndex) update).getDeallocatedIds(), ((RemoveIndex) decoded).getDeallocatedIds());
+            } else if (update instanceof RemoveRange) {
+                assertEquals(((RemoveRange) update).getDeallocatedIds(), ((RemoveRange) decoded).getDeallocatedIds());
+            } else if (update instanceof RemoveChildren) {
+                assertEquals(((RemoveChildren) update).getDeallocatedIds(),
+                        ((RemoveChildren) decoded).getDeallocatedIds());
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.conflate;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+public class IntMapTest {
+
+    @Test
+    public void putGetAndRemove() {
+        IntMap<String> map = new IntMap<String>();
+        assertNull(map.put(3, "a"));
+        assertNull(map.put(-7, "b"));
+        assertEquals("a", map.put(3, "c"));
+        assertEquals(2, map.size());
+        assertEquals("c", map.get(3));
+        assertEquals("b", map.get(-7));
+        assertNull(map.get(4));
+        assertTrue(map.containsKey(-7));
+
+        assertEquals("b", map.remove(-7));
+        assertNull(map.remove(-7));
+        assertFalse(map.containsKey(-7));
+        assertEquals(1, map.size());
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertNull(map.get(3));
+    }
+
+    @Test
+    public void matchesHashMap() {
+        Random random = new Random(42);
+        IntMap<Integer> map = new IntMap<Integer>();
+        Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+        for (int i = 0; i < 100000; i++) {
+            // a narrow range of keys, so that entries are often replaced and removed, and probe sequences collide
+            int key = random.nextInt(2000) * 1024;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (int key = 0; key < 2000 * 1024; key += 1024) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.dispatch;
+
+import com.betfair.platform.virtualheap.Heap;
+import com.betfair.platform.virtualheap.HeapListener;
+import com.betfair.platform.virtualheap.MutableHeap;
+import com.betfair.platform.virtualheap.updates.Update;
+import com.betfair.platform.virtualheap.updates.UpdateBlock;
+import com.betfair.platform.virtualheap.utils.RandomHeapBuilder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+public class AsyncHeapListenerTest {
+
+    @Test
+    public void replicaKeepsUp() throws InterruptedException {
+        RandomHeapBuilder builder = new RandomHeapBuilder(50);
+        MutableHeap replica = new MutableHeap("replica");
+        AsyncHeapListener async = new AsyncHeapListener(replica.asListener(), 4, OverflowPolicy.BLOCK);
+        builder.addListener(async, true);
+
+        builder.randomUpdate(500);
+        assertTrue(async.awaitDelivery(10, TimeUnit.SECONDS));
+        assertEquals(traverse(builder), traverse(replica));
+        async.close();
+    }
+
+    @Test
+    public void blocksArriveInOrderOnASharedExecutor() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            MutableHeap heap = new MutableHeap("");
+            List<RecordingListener> recorders = new ArrayList<RecordingListener>();
+            List<AsyncHeapListener> listeners = new ArrayList<AsyncHeapListener>();
+            for (int i = 0; i < 3; i++) {
+                RecordingListener recorder = new RecordingListener();
+                AsyncHeapListener async = new AsyncHeapListener(recorder, 8, OverflowPolicy.BLOCK, executor);
+                heap.addListener(async, false);
+                recorders.add(recorder);
+                listeners.add(async);
+            }
+            RecordingListener produced = new RecordingListener();
+            heap.addListener(produced, false);
+            RandomHeapBuilder builder = new RandomHeapBuilder();
+            builder.addListener(heap.asListener(), false);
+            builder.randomUpdate(200);
+            for (int i = 0; i < listeners.size(); i++) {
+                assertTrue(listeners.get(i).awaitDelivery(10, TimeUnit.SECONDS));
+                assertEquals(produced.blocks, recorders.get(i).blocks);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void dropPolicyCountsWhatItThrowsAway() throws InterruptedException {
+        BlockingListener slow = new BlockingListener();
+        AsyncHeapListener async = new AsyncHeapListener(slow, 2, OverflowPolicy.DROP);
+
+        async.applyUpdate(new UpdateBlock());
+        assertTrue(slow.entered.await(10, TimeUnit.SECONDS));
+        // the first block is held up in delivery, so two more fill the buffer and the rest are dropped
+        for (int i = 0; i < 5; i++) {
+            async.applyUpdate(new UpdateBlock());
+        }
+        assertEquals(3, async.getDropped());
+        assertEquals(2, async.getQueued());
+
+        slow.release.countDown();
+        assertTrue(async.awaitDelivery(10, TimeUnit.SECONDS));
+        assertEquals(3, slow.count);
+        assertFalse(async.isDisconnected());
+        async.close();
+    }
+
+    @Test
+    public void disconnectPolicyStopsDelivery() throws InterruptedException {
+        BlockingListener slow = new BlockingListener();
+        AsyncHeapListener async = new AsyncHeapListener(slow, 2, OverflowPolicy.DISCONNECT);
+
+        async.applyUpdate(new UpdateBlock());
+        assertTrue(slow.entered.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 3; i++) {
+            async.applyUpdate(new UpdateBlock());
+        }
+        assertTrue(async.isDisconnected());
+
+        slow.release.countDown();
+        assertTrue(async.awaitDelivery(10, TimeUnit.SECONDS));
+        assertEquals(1, slow.count);
+        async.applyUpdate(new UpdateBlock());
+        assertEquals(0, async.getQueued());
+        async.close();
+    }
+
+    @Test
+    public void blockPolicyHoldsUpTheWriter() throws InterruptedException {
+        final BlockingListener slow = new BlockingListener();
+        final AsyncHeapListener async = new AsyncHeapListener(slow, 1, OverflowPolicy.BLOCK);
+
+        async.applyUpdate(new UpdateBlock());
+        assertTrue(slow.entered.await(10, TimeUnit.SECONDS));
+        async.applyUpdate(new UpdateBlock());
+        final CountDownLatch written = new CountDownLatch(1);
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                async.applyUpdate(new UpdateBlock());
+                written.countDown();
+            }
+        };
+        writer.start();
+        assertFalse(written.await(50, TimeUnit.MILLISECONDS));
+
+        slow.release.countDown();
+        assertTrue(written.await(10, TimeUnit.SECONDS));
+        writer.join();
+        assertTrue(async.awaitDelivery(10, TimeUnit.SECONDS));
+        assertEquals(3, slow.count);
+        async.close();
+    }
+
+    @Test
+    public void failingListenerIsDisconnected() throws InterruptedException {
+        final IllegalStateException boom = new IllegalStateException("boom");
+        AsyncHeapListener async = new AsyncHeapListener(new HeapListener() {
+            @Override
+            public void applyUpdate(UpdateBlock update) {
+                throw boom;
+            }
+        }, 4, OverflowPolicy.BLOCK);
+
+        async.applyUpdate(new UpdateBlock());
+        assertTrue(async.awaitDelivery(10, TimeUnit.SECONDS));
+        assertTrue(async.isDisconnected());
+        assertSame(boom, async.getFailure());
+        async.close();
+    }
+
+    @Test
+    public void errorFromListenerDisconnectsIt() throws InterruptedException {
+        final Error boom = new Error("boom");
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicReference<Throwable> escaped = new AtomicReference<Throwable>();
+        Executor executor = new Executor() {
+            @Override
+            public void execute(final Runnable task) {
+                new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            task.run();
+                        } catch (Throwable t) {
+                            escaped.set(t);
+                        }
+                    }
+                }.start();
+            }
+        };
+        final AsyncHeapListener async = new AsyncHeapListener(new HeapListener() {
+            @Override
+            public void applyUpdate(UpdateBlock update) {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw boom;
+            }
+        }, 1, OverflowPolicy.BLOCK, executor);
+
+        async.applyUpdate(new UpdateBlock());
+        assertTrue(entered.await(10, TimeUnit.SECONDS));
+        async.applyUpdate(new UpdateBlock());
+        final CountDownLatch written = new CountDownLatch(1);
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                async.applyUpdate(new UpdateBlock());
+                written.countDown();
+            }
+        };
+        writer.start();
+        assertFalse(written.await(50, TimeUnit.MILLISECONDS));
+
+        // the blocked writer gives up, and the block still queued is thrown away
+        release.countDown();
+        assertTrue(written.await(10, TimeUnit.SECONDS));
+        writer.join();
+        assertTrue(async.awaitDelivery(10, TimeUnit.SECONDS));
+        assertTrue(async.isDisconnected());
+        assertSame(boom, async.getFailure());
+        assertEquals(0, async.getQueued());
+        // and the error itself reaches the executor
+        for (int i = 0; i < 1000 && escaped.get() == null; i++) {
+            Thread.sleep(10);
+        }
+        assertSame(boom, escaped.get());
+        async.close();
+    }
+
+    private static UpdateBlock traverse(Heap heap) {
+        RecordingListener listener = new RecordingListener();
+        heap.traverse(listener);
+        List<Update> updates = new ArrayList<Update>();
+        for (UpdateBlock block : listener.blocks) {
+            updates.addAll(block.list());
+        }
+        return new UpdateBlock(updates);
+    }
+
+    private static class RecordingListener implements HeapListener {
+        private final List<UpdateBlock> blocks = new ArrayList<UpdateBlock>();
+
+        @Override
+        public void applyUpdate(UpdateBlock update) {
+            blocks.add(update);
+        }
+    }
+
+    // holds up the first block it is given until released
+    private static class BlockingListener implements HeapListener {
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile int count;
+
+        @Override
+        public void applyUpdate(UpdateBlock update) {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            count++;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.dispatch;
+
+import com.betfair.platform.virtualheap.Heap;
+import com.betfair.platform.virtualheap.HeapListener;
+import com.betfair.platform.virtualheap.MutableHeap;
+import com.betfair.platform.virtualheap.conflate.SmartConflater;
+import com.betfair.platform.virtualheap.updates.SetScalar;
+import com.betfair.platform.virtualheap.updates.Update;
+import com.betfair.platform.virtualheap.updates.UpdateBlock;
+import com.betfair.platform.virtualheap.utils.RandomHeapBuilder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+public class ConflatingHeapListenerTest {
+
+    @Test
+    public void slowListenerCatchesUpWithConflatedBlocks() throws InterruptedException {
+        RandomHeapBuilder builder = new RandomHeapBuilder(100);
+        MutableHeap replica = new MutableHeap("replica");
+        GatedListener gate = new GatedListener(replica.asListener());
+        ConflatingHeapListener listener = new ConflatingHeapListener(gate, new SmartConflater(), 10, 1, TimeUnit.HOURS);
+        builder.addListener(listener, true);
+        assertTrue(gate.entered.await(10, TimeUnit.SECONDS));
+
+        // the first block is held up in delivery while the rest pile up behind it
+        for (int i = 0; i < 200; i++) {
+            builder.randomUpdate();
+        }
+        assertTrue(listener.getPending() > 10);
+        // the writer folds the queue up each time it passes the limit
+        assertTrue(listener.getConflations() > 0);
+        assertTrue(listener.getQueuedBlocks() <= 11);
+
+        gate.release.countDown();
+        assertTrue(listener.awaitDelivery(10, TimeUnit.SECONDS));
+        assertEquals(0, listener.getPending());
+        assertTrue(listener.getConflations() > 0);
+        assertTrue(listener.getUpdatesSaved() > 0);
+        assertTrue(gate.blocks < 200);
+        assertNull(listener.getFailure());
+        assertEquals(traverse(builder), traverse(replica));
+        listener.close();
+    }
+
+    @Test
+    public void stalledListenerHoldsABoundedBacklog() throws InterruptedException {
+        RandomHeapBuilder builder = new RandomHeapBuilder(100);
+        MutableHeap replica = new MutableHeap("replica");
+        GatedListener gate = new GatedListener(replica.asListener());
+        ConflatingHeapListener listener = new ConflatingHeapListener(gate, new SmartConflater(), 10, 1, TimeUnit.HOURS);
+        builder.addListener(listener, true);
+        assertTrue(gate.entered.await(10, TimeUnit.SECONDS));
+
+        int maxUpdates = 0;
+        for (int i = 0; i < 20000; i++) {
+            builder.randomUpdate();
+            assertTrue(listener.getQueuedBlocks() <= 11);
+            maxUpdates = Math.max(maxUpdates, listener.getQueuedUpdates());
+        }
+        assertTrue(listener.getPending() > 10000);
+        // bounded by the size of the heap rather than by how many updates it has made
+        assertTrue("Held " + maxUpdates + " updates", maxUpdates < 2000);
+
+        gate.release.countDown();
+        assertTrue(listener.awaitDelivery(10, TimeUnit.SECONDS));
+        assertEquals(0, listener.getQueuedBlocks());
+        assertNull(listener.getFailure());
+        assertEquals(traverse(builder), traverse(replica));
+        listener.close();
+    }
+
+    @Test
+    public void listenerWhichKeepsUpSeesEveryBlock() throws InterruptedException {
+        MutableHeap heap = new MutableHeap("");
+        RecordingListener produced = new RecordingListener();
+        heap.addListener(produced, false);
+        RecordingListener recorder = new RecordingListener();
+        ConflatingHeapListener listener = new ConflatingHeapListener(recorder, new SmartConflater(), 1000, 1, TimeUnit.HOURS);
+        heap.addListener(listener, false);
+
+        RandomHeapBuilder builder = new RandomHeapBuilder();
+        builder.addListener(heap.asListener(), false);
+        for (int i = 0; i < 50; i++) {
+            builder.randomUpdate();
+            assertTrue(listener.awaitDelivery(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(produced.blocks, recorder.blocks);
+        assertEquals(0, listener.getConflations());
+        listener.close();
+    }
+
+    @Test
+    public void oldBlocksAreConflated() throws InterruptedException {
+        RecordingListener recorder = new RecordingListener();
+        GatedListener gate = new GatedListener(recorder);
+        ConflatingHeapListener listener = new ConflatingHeapListener(gate, new SmartConflater(), 1000, 0, TimeUnit.NANOSECONDS);
+
+        listener.applyUpdate(set(1, "first"));
+        assertTrue(gate.entered.await(10, TimeUnit.SECONDS));
+        listener.applyUpdate(set(1, "second"));
+        Thread.sleep(1);
+        listener.applyUpdate(set(1, "third"));
+        assertEquals(0, listener.getConflations());
+
+        gate.release.countDown();
+        assertTrue(listener.awaitDelivery(10, TimeUnit.SECONDS));
+        assertEquals(1, listener.getConflations());
+        assertEquals(2, listener.getBlocksConflated());
+        assertEquals(1, listener.getUpdatesSaved());
+        assertEquals(2, gate.blocks);
+        assertEquals(set(1, "third"), recorder.blocks.get(1));
+        listener.close();
+    }
+
+    private static UpdateBlock set(int id, Object value) {
+        return new UpdateBlock(Collections.singletonList(new SetScalar(id, value)));
+    }
+
+    private static UpdateBlock traverse(Heap heap) {
+        RecordingListener listener = new RecordingListener();
+        heap.traverse(listener);
+        List<Update> updates = new ArrayList<Update>();
+        for (UpdateBlock block : listener.blocks) {
+            updates.addAll(block.list());
+        }
+        return new UpdateBlock(updates);
+    }
+
+    private static class RecordingListener implements HeapListener {
+        private final List<UpdateBlock> blocks = new ArrayList<UpdateBlock>();
+
+        @Override
+        public void applyUpdate(UpdateBlock update) {
+            blocks.add(update);
+        }
+    }
+
+    // holds up the first block it is given until released
+    private static class GatedListener implements HeapListener {
+        private final HeapListener delegate;
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile int blocks;
+
+        private GatedListener(HeapListener delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void applyUpdate(UpdateBlock update) {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            delegate.applyUpdate(update);
+            blocks++;
+        }
+    }
+}
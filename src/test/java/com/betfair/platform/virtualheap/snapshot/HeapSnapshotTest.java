@@ -0,0 +1,161 @@
+/*
+ Copyright 2013, The Sporting Exchange Limited
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+package com.betfair.platform.virtualheap.snapshot;
+
+import com.betfair.platform.virtualheap.Heap;
+import com.betfair.platform.virtualheap.HeapListener;
+import com.betfair.platform.virtualheap.ListNode;
+import com.betfair.platform.virtualheap.MapNode;
+import com.betfair.platform.virtualheap.MutableHeap;
+import com.betfair.platform.virtualheap.NodeType;
+import com.betfair.platform.virtualheap.ScalarNode;
+import com.betfair.platform.virtualheap.updates.Update;
+import com.betfair.platform.virtualheap.updates.UpdateBlock;
+import com.betfair.platform.virtualheap.utils.RandomHeapBuilder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+public class HeapSnapshotTest {
+
+    @Test
+    public void oldSnapshotsDontChange() {
+        MutableHeap heap = new MutableHeap("");
+        heap.enableSnapshots();
+        assertNull(heap.snapshot().getRoot());
+
+        heap.beginUpdate();
+        MapNode root = (MapNode) heap.ensureRoot(NodeType.MAP);
+        ((ScalarNode) root.ensureField("name", NodeType.SCALAR)).set("first");
+        ListNode list = (ListNode) root.ensureField("list", NodeType.LIST);
+        list.insertRange(0, 3, NodeType.INTEGER);
+        heap.endUpdate();
+
+        HeapSnapshot first = heap.snapshot();
+        UpdateBlock firstState = traverse(first);
+
+        heap.beginUpdate();
+        ((ScalarNode) root.getField("name")).set("second");
+        list.removeRange(0, 2);
+        root.ensureField("other", NodeType.MAP);
+        heap.endUpdate();
+
+        HeapSnapshot second = heap.snapshot();
+        assertEquals(first.getVersion() + 1, second.getVersion());
+        assertEquals(firstState, traverse(first));
+        assertEquals("first", first.getField(first.getRoot(), "name").getValue());
+        assertEquals(3, first.getField(first.getRoot(), "list").size());
+        assertNull(first.getField(first.getRoot(), "other"));
+
+        assertEquals("second", second.getField(second.getRoot(), "name").getValue());
+        assertEquals(1, second.getField(second.getRoot(), "list").size());
+        assertEquals(0, second.getIndexAt(second.getField(second.getRoot(), "list"), 0).getValue());
+        assertEquals(traverse(heap), traverse(second));
+    }
+
+    @Test
+    public void unchangedNodesAreShared() {
+        MutableHeap heap = new MutableHeap("");
+        heap.enableSnapshots();
+        heap.beginUpdate();
+        MapNode root = (MapNode) heap.ensureRoot(NodeType.MAP);
+        MapNode left = (MapNode) root.ensureField("left", NodeType.MAP);
+        MapNode right = (MapNode) root.ensureField("right", NodeType.MAP);
+        left.ensureField("value", NodeType.LONG);
+        right.ensureField("value", NodeType.LONG);
+        heap.endUpdate();
+        HeapSnapshot before = heap.snapshot();
+
+        heap.beginUpdate();
+        right.ensureField("extra", NodeType.BOOLEAN);
+        heap.endUpdate();
+        HeapSnapshot after = heap.snapshot();
+
+        assertSame(before.getField(before.getRoot(), "left"), after.getField(after.getRoot(), "left"));
+        assertTrue(before.getField(before.getRoot(), "right") != after.getField(after.getRoot(), "right"));
+    }
+
+    @Test
+    public void followsRandomUpdates() {
+        RandomHeapBuilder builder = new RandomHeapBuilder(100);
+        builder.enableSnapshots();
+        assertEquals(traverse(builder), traverse(builder.snapshot()));
+        for (int i = 0; i < 50; i++) {
+            HeapSnapshot previous = builder.snapshot();
+            UpdateBlock previousState = traverse(previous);
+            builder.randomUpdate(20);
+            assertEquals(traverse(builder), traverse(builder.snapshot()));
+            assertEquals(previousState, traverse(previous));
+        }
+    }
+
+    @Test
+    public void followsCompaction() {
+        MutableHeap heap = new MutableHeap("");
+        heap.enableSnapshots();
+        heap.beginUpdate();
+        ListNode root = (ListNode) heap.ensureRoot(NodeType.LIST);
+        for (int i = 0; i < 20; i++) {
+            MapNode child = (MapNode) root.insertAt(i, NodeType.MAP);
+            ((ScalarNode) child.ensureField("value", NodeType.SCALAR)).set(i);
+        }
+        heap.endUpdate();
+        heap.beginUpdate();
+        root.removeRange(0, 10);
+        heap.endUpdate();
+        HeapSnapshot beforeCompaction = heap.snapshot();
+        UpdateBlock beforeState = traverse(beforeCompaction);
+
+        heap.beginUpdate();
+        assertTrue(heap.compact() > 0);
+        heap.endUpdate();
+
+        assertEquals(traverse(heap), traverse(heap.snapshot()));
+        assertEquals(beforeState, traverse(beforeCompaction));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void snapshotsMustBeEnabled() {
+        new MutableHeap("").snapshot();
+    }
+
+    private static UpdateBlock traverse(Heap heap) {
+        RecordingListener listener = new RecordingListener();
+        heap.traverse(listener);
+        return new UpdateBlock(listener.updates);
+    }
+
+    private static UpdateBlock traverse(HeapSnapshot snapshot) {
+        RecordingListener listener = new RecordingListener();
+        snapshot.traverse(listener);
+        return new UpdateBlock(listener.updates);
+    }
+
+    private static class RecordingListener implements HeapListener {
+        private final List<Update> updates = new ArrayList<Update>();
+
+        @Override
+        public void applyUpdate(UpdateBlock update) {
+            updates.addAll(update.list());
+        }
+    }
+}